@@ -21,6 +21,7 @@ CREATE TABLE `users` (
                          `role` VARCHAR(20) NOT NULL DEFAULT 'volunteer' COMMENT '用户角色 (volunteer, admin, super_admin)',
                          `total_service_hours` DECIMAL(10, 2) NOT NULL DEFAULT 0.00 COMMENT '累计志愿服务总时长',
                          `status` TINYINT NOT NULL DEFAULT 1 COMMENT '账户状态 (1:正常, 0:禁用)',
+                         `token_version` INT UNSIGNED NOT NULL DEFAULT 0 COMMENT 'Token版本号 (禁用/改角色/改密码时加一, 吊销旧Token)',
                          `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记录创建时间',
                          `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '记录更新时间',
                          PRIMARY KEY (`id`)
@@ -72,7 +73,8 @@ CREATE TABLE `activities` (
                               `created_by` BIGINT UNSIGNED NULL COMMENT '创建活动的管理员ID (外键关联 users.id)',
                               `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记录创建时间',
                               `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP ON UPDATE CURRENT_TIMESTAMP COMMENT '记录更新时间',
-                              PRIMARY KEY (`id`)
+                              PRIMARY KEY (`id`),
+                              INDEX `idx_category_id` (`category`, `id`) COMMENT '按分类游标分页'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='志愿活动信息表';
 
 -- -----------------------------------------------------
@@ -101,7 +103,10 @@ CREATE TABLE `service_records` (
                                    `remarks` VARCHAR(500) NULL COMMENT '备注信息',
                                    `recorded_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记录时间',
                                    PRIMARY KEY (`id`),
-                                   UNIQUE INDEX `uq_user_activity` (`user_id`, `activity_id`)
+                                   UNIQUE INDEX `uq_user_activity` (`user_id`, `activity_id`),
+                                   INDEX `idx_recorded` (`recorded_at`, `id`) COMMENT '后台列表按记录时间游标分页',
+                                   INDEX `idx_activity_recorded` (`activity_id`, `recorded_at`, `id`) COMMENT '按活动筛选后游标分页',
+                                   INDEX `idx_user_recorded` (`user_id`, `recorded_at`, `id`) COMMENT '按用户筛选后游标分页'
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='志愿服务时长记录表';
 
 -- -----------------------------------------------------
@@ -121,6 +126,59 @@ CREATE TABLE `news` (
                         PRIMARY KEY (`id`)
 ) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='新闻资讯表';
 
+-- -----------------------------------------------------
+-- Table `import_jobs` (后台导入任务表)
+-- -----------------------------------------------------
+CREATE TABLE `import_jobs` (
+                               `id` VARCHAR(36) NOT NULL COMMENT '任务ID (UUID)',
+                               `activity_id` BIGINT UNSIGNED NOT NULL COMMENT '导入到哪个活动',
+                               `file_name` VARCHAR(255) NULL COMMENT '上传时的原始文件名',
+                               `spool_path` VARCHAR(500) NOT NULL COMMENT '上传文件在本机磁盘上的暂存路径',
+                               `node_id` VARCHAR(100) NOT NULL COMMENT '受理任务的节点 (暂存文件所在的机器)，重启时只恢复本节点的任务',
+                               `status` VARCHAR(20) NOT NULL DEFAULT 'queued' COMMENT '状态 (queued, running, completed, failed)',
+                               `total_rows` INT UNSIGNED NULL COMMENT '数据总行数 (按工作表声明的范围估算，未知时为空)',
+                               `processed_rows` INT UNSIGNED NOT NULL DEFAULT 0 COMMENT '已提交的行数',
+                               `success_rows` INT UNSIGNED NOT NULL DEFAULT 0 COMMENT '成功写入的行数',
+                               `failed_rows` INT UNSIGNED NOT NULL DEFAULT 0 COMMENT '失败的行数',
+                               `last_row_index` INT UNSIGNED NOT NULL DEFAULT 0 COMMENT '最后一个已提交批次的末行 (物理行序号，表头为0)，重启后从这里继续',
+                               `message` VARCHAR(500) NULL COMMENT '结束时的汇总信息',
+                               `created_by` BIGINT UNSIGNED NULL COMMENT '提交任务的管理员ID',
+                               `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '提交时间',
+                               `started_at` DATETIME NULL COMMENT '开始处理时间',
+                               `finished_at` DATETIME NULL COMMENT '结束时间',
+                               PRIMARY KEY (`id`),
+                               INDEX `idx_node_status` (`node_id`, `status`)
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='后台导入任务表';
+
+-- -----------------------------------------------------
+-- Table `import_job_errors` (导入任务的逐行错误)
+-- -----------------------------------------------------
+CREATE TABLE `import_job_errors` (
+                                     `id` BIGINT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键',
+                                     `job_id` VARCHAR(36) NOT NULL COMMENT '任务ID (外键关联 import_jobs.id)',
+                                     `row_num` INT UNSIGNED NOT NULL COMMENT 'Excel 中的行号',
+                                     `message` VARCHAR(500) NOT NULL COMMENT '失败原因',
+                                     PRIMARY KEY (`id`),
+                                     INDEX `idx_job_row` (`job_id`, `row_num`),
+                                     CONSTRAINT `fk_import_error_job` FOREIGN KEY (`job_id`) REFERENCES `import_jobs` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='导入任务的逐行错误';
+
+-- -----------------------------------------------------
+-- Table `service_hour_ledger` (服务时长流水表)
+-- -----------------------------------------------------
+CREATE TABLE `service_hour_ledger` (
+                                       `id` BIGINT UNSIGNED NOT NULL AUTO_INCREMENT COMMENT '主键',
+                                       `user_id` BIGINT UNSIGNED NOT NULL COMMENT '用户ID (外键关联 users.id)',
+                                       `service_record_id` BIGINT UNSIGNED NULL COMMENT '引起变化的时长记录ID (记录删除后仍保留，不设外键)',
+                                       `activity_id` BIGINT UNSIGNED NULL COMMENT '活动ID',
+                                       `delta` DECIMAL(10, 2) NOT NULL COMMENT '累计时长的变化量，可为负',
+                                       `reason` VARCHAR(20) NOT NULL COMMENT '变化原因 (create, update, delete, import, opening)',
+                                       `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP COMMENT '记账时间',
+                                       PRIMARY KEY (`id`),
+                                       INDEX `idx_ledger_user` (`user_id`, `id`),
+                                       CONSTRAINT `fk_ledger_user` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE
+) ENGINE=InnoDB DEFAULT CHARSET=utf8mb4 COMMENT='服务时长流水表 (只追加，users.total_service_hours 可由它重算)';
+
 -- =====================================================
 -- 外键约束定义 (Foreign Key Constraints)
 -- =====================================================
@@ -14,6 +14,7 @@ TRUNCATE TABLE `organization_members`;
 TRUNCATE TABLE `activities`;
 TRUNCATE TABLE `enrollments`;
 TRUNCATE TABLE `service_records`;
+TRUNCATE TABLE `service_hour_ledger`;
 TRUNCATE TABLE `news`;
 SET FOREIGN_KEY_CHECKS = 1;
 
@@ -141,6 +142,17 @@ VALUES
     (14, 12, 3.0, 13, '马慧同学积极参与海滩清洁。'),
     (16, 12, 3.0, 13, '何平同学完成了任务。');
 
+-- ================= 时长流水 (Service Hour Ledger) ====================
+-- 每条时长记录记一笔；用户初始累计时长与记录之和的差额记一笔期初余额，保证流水之和等于累计时长
+INSERT INTO `service_hour_ledger` (`user_id`, `service_record_id`, `activity_id`, `delta`, `reason`)
+SELECT `user_id`, `id`, `activity_id`, `service_hours`, 'create' FROM `service_records`;
+
+INSERT INTO `service_hour_ledger` (`user_id`, `delta`, `reason`)
+SELECT u.`id`, u.`total_service_hours` - COALESCE(SUM(sr.`service_hours`), 0), 'opening'
+FROM `users` u LEFT JOIN `service_records` sr ON sr.`user_id` = u.`id`
+GROUP BY u.`id`, u.`total_service_hours`
+HAVING u.`total_service_hours` <> COALESCE(SUM(sr.`service_hours`), 0);
+
 -- ================== 新闻资讯 (News) - 5条 =====================
 INSERT INTO `news` (`id`, `title`, `summary`, `content`, `author_id`, `likes_count`)
 VALUES
@@ -3,8 +3,10 @@ package com.student.webproject;
 import org.mybatis.spring.annotation.MapperScan;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling
 @MapperScan({
     "com.student.webproject.activity.mapper",
     "com.student.webproject.admin.mapper",
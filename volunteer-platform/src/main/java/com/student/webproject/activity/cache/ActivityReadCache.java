@@ -0,0 +1,222 @@
+package com.student.webproject.activity.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.student.webproject.activity.dto.ActivityListResponse;
+import com.student.webproject.admin.entity.Activity;
+import com.student.webproject.common.util.TransactionUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 公开活动接口的进程内读缓存
+ * 活动一天只改几次，匿名流量却很大：列表页按 (分类, 页码, 每页条数) 缓存整页响应，详情按 id 缓存活动行。
+ * 同一个 key 并发未命中时只有一个线程查库，其余线程等待它的结果 (Caffeine 按 key 加锁加载)。
+ * 写操作在事务提交后精确失效受影响的条目；TTL 只是兜底，防止直接改库后长期读到旧数据。
+ * 另外维护"活动 id -> 包含它的列表页"的反向索引，报名人数变化时直接定位到那几页，不用扫描整个列表缓存。
+ * 索引的增删都发生在缓存对同一个 key 的原子操作里 (加载、淘汰、失效)，不会和并发的重新加载交错。
+ * 正在加载的页还不在缓存和索引里，失效时找不到它：每次失效先记下一个递增的序号，
+ * 加载完的页如果包含的活动 (或所在分类) 在加载开始之后被失效过，就立即丢弃，下次读取重新加载。
+ */
+@Component
+public class ActivityReadCache {
+
+    // 不按分类筛选的列表在缓存 key 里用空字符串表示
+    private static final String ALL_CATEGORIES = "";
+
+    private final Cache<ListKey, ActivityListResponse> listCache;
+    private final Cache<Long, Activity> detailCache;
+    private final Cache<String, Integer> countCache;
+    private final Map<Long, Set<ListKey>> pagesByActivity = new ConcurrentHashMap<>();
+    // 失效序号：活动 / 分类最近一次被失效时的序号，整体清空时的序号
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Map<Long, Long> activityInvalidatedAt = new ConcurrentHashMap<>();
+    private final Map<String, Long> categoryInvalidatedAt = new ConcurrentHashMap<>();
+    private volatile long clearedAt;
+
+    public ActivityReadCache(MeterRegistry meterRegistry,
+                             @Value("${activity.cache.list-max-size:500}") long listMaxSize,
+                             @Value("${activity.cache.detail-max-size:2000}") long detailMaxSize,
+                             @Value("${activity.cache.ttl-seconds:300}") long ttlSeconds,
+                             @Value("${activity.list.count-cache-seconds:30}") long countCacheSeconds) {
+        this.listCache = Caffeine.newBuilder()
+                .maximumSize(listMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .evictionListener((ListKey key, ActivityListResponse value, RemovalCause cause) -> unindex(key, value))
+                .recordStats()
+                .build();
+        this.detailCache = Caffeine.newBuilder()
+                .maximumSize(detailMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        this.countCache = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(countCacheSeconds))
+                .recordStats()
+                .build();
+        // 命中、未命中、淘汰次数等以 cache.* 指标暴露，tag cache=activity.list / activity.detail / activity.count
+        CaffeineCacheMetrics.monitor(meterRegistry, listCache, "activity.list");
+        CaffeineCacheMetrics.monitor(meterRegistry, detailCache, "activity.detail");
+        CaffeineCacheMetrics.monitor(meterRegistry, countCache, "activity.count");
+    }
+
+    public ActivityListResponse getPage(String category, int page, int pageSize, Supplier<ActivityListResponse> loader) {
+        ListKey listKey = new ListKey(normalize(category), page, pageSize);
+        long[] loadStartedAt = {-1};
+        ActivityListResponse result = listCache.get(listKey, key -> {
+            loadStartedAt[0] = invalidations.get();
+            ActivityListResponse response = loader.get();
+            for (Long id : activityIds(response)) {
+                pagesByActivity.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+            return response;
+        });
+        // 在加载结束、页已放进缓存之后再检查：之后才发生的失效一定能在缓存和索引里找到这一页
+        if (loadStartedAt[0] >= 0 && invalidatedSince(listKey, result, loadStartedAt[0])) {
+            invalidatePage(listKey);
+        }
+        return result;
+    }
+
+    /**
+     * @return 活动行；不存在时返回 null 且不缓存
+     */
+    public Activity getActivity(Long id, Function<Long, Activity> loader) {
+        return detailCache.get(id, loader);
+    }
+
+    public int getCount(String category, Supplier<Integer> loader) {
+        return countCache.get(normalize(category), key -> loader.get());
+    }
+
+    /**
+     * 新建或删除活动：该分类和"全部"列表的分页边界都会整体移动，两边的所有页和总数都失效
+     */
+    public void onActivityAddedOrRemoved(Long id, String category) {
+        TransactionUtils.afterCommit(() -> {
+            detailCache.invalidate(id);
+            markActivity(id);
+            invalidateCategory(category);
+            invalidateCategory(ALL_CATEGORIES);
+        });
+    }
+
+    /**
+     * 修改活动内容：分类没变时只影响包含它的那些页；
+     * 分类变了则新旧两个分类的分页都会移动 ("全部"列表按 id 排序，位置不变)
+     */
+    public void onActivityUpdated(Long id, String oldCategory, String newCategory) {
+        TransactionUtils.afterCommit(() -> {
+            detailCache.invalidate(id);
+            markActivity(id);
+            if (!Objects.equals(normalize(oldCategory), normalize(newCategory))) {
+                invalidateCategory(oldCategory);
+                invalidateCategory(newCategory);
+            }
+            invalidatePagesContaining(id);
+        });
+    }
+
+    /**
+     * 报名人数变化：只失效详情和包含该活动的列表页
+     */
+    public void onEnrollmentChanged(Long id) {
+        TransactionUtils.afterCommit(() -> {
+            detailCache.invalidate(id);
+            markActivity(id);
+            invalidatePagesContaining(id);
+        });
+    }
+
+    /**
+     * 批量变更 (如删除组织级联删除了它主办的活动) 无法逐条定位时，整体清空
+     */
+    public void invalidateAll() {
+        TransactionUtils.afterCommit(() -> {
+            clearedAt = invalidations.incrementAndGet();
+            listCache.asMap().keySet().forEach(this::invalidatePage);
+            detailCache.invalidateAll();
+            countCache.invalidateAll();
+        });
+    }
+
+    private void invalidateCategory(String category) {
+        String normalized = normalize(category);
+        categoryInvalidatedAt.merge(normalized, invalidations.incrementAndGet(), Math::max);
+        listCache.asMap().keySet().stream()
+                .filter(key -> key.category().equals(normalized))
+                .forEach(this::invalidatePage);
+        countCache.invalidate(normalized);
+    }
+
+    private void invalidatePagesContaining(Long id) {
+        Set<ListKey> keys = pagesByActivity.get(id);
+        if (keys != null) {
+            List.copyOf(keys).forEach(this::invalidatePage);
+        }
+    }
+
+    private void markActivity(Long id) {
+        activityInvalidatedAt.merge(id, invalidations.incrementAndGet(), Math::max);
+    }
+
+    private boolean invalidatedSince(ListKey key, ActivityListResponse response, long since) {
+        if (clearedAt > since || categoryInvalidatedAt.getOrDefault(key.category(), 0L) > since) {
+            return true;
+        }
+        return activityIds(response).stream().anyMatch(id -> activityInvalidatedAt.getOrDefault(id, 0L) > since);
+    }
+
+    // 在该 key 的原子操作里同时移除缓存页和它的索引
+    private void invalidatePage(ListKey key) {
+        listCache.asMap().computeIfPresent(key, (k, value) -> {
+            unindex(k, value);
+            return null;
+        });
+    }
+
+    private void unindex(ListKey key, ActivityListResponse value) {
+        if (key == null) {
+            return;
+        }
+        for (Long id : activityIds(value)) {
+            pagesByActivity.computeIfPresent(id, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static List<Long> activityIds(ActivityListResponse response) {
+        if (response == null || response.getData() == null || response.getData().getList() == null) {
+            return List.of();
+        }
+        return response.getData().getList().stream().map(ActivityListResponse.ActivityItem::getId).toList();
+    }
+
+    // 反向索引里登记的活动数，测试用
+    int indexedActivityCount() {
+        return pagesByActivity.size();
+    }
+
+    private static String normalize(String category) {
+        return category == null ? ALL_CATEGORIES : category;
+    }
+
+    private record ListKey(String category, int page, int pageSize) {
+    }
+}
@@ -2,11 +2,13 @@ package com.student.webproject.activity.controller;
 
 import com.student.webproject.activity.dto.ActivityListResponse;
 import com.student.webproject.activity.dto.ActivityDetailResponse;
+import com.student.webproject.activity.queue.EnrollmentAdmissionQueue;
+import com.student.webproject.activity.queue.EnrollmentTicket;
 import com.student.webproject.activity.service.ActivityService;
-// 1. 导入 Principal
-import java.security.Principal;
+import com.student.webproject.security.LoginUser;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.http.HttpStatus;
@@ -16,10 +18,12 @@ import org.springframework.http.HttpStatus;
 public class ActivityController {
 
     private final ActivityService activityService;
+    private final EnrollmentAdmissionQueue admissionQueue;
 
     @Autowired
-    public ActivityController(ActivityService activityService) {
+    public ActivityController(ActivityService activityService, EnrollmentAdmissionQueue admissionQueue) {
         this.activityService = activityService;
+        this.admissionQueue = admissionQueue;
     }
 
     // 查询活动列表 (此接口通常是公开的，可以暂时不修改)
@@ -27,52 +31,106 @@ public class ActivityController {
     public ActivityListResponse getActivities(
             @RequestParam(defaultValue = "1") int page,
             @RequestParam(defaultValue = "10") int pageSize,
-            @RequestParam(required = false) String category) {
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal) {
+        // 传了 cursor (第一页传空串) 就走游标分页，否则保持原来的页码分页
+        if (cursor != null) {
+            return activityService.getActivitiesByCursor(cursor, pageSize, category, withTotal);
+        }
         return activityService.getActivities(page, pageSize, category);
     }
 
     // 2. 修改：查询活动详情接口
     @GetMapping("/{id}")
-    public ActivityDetailResponse getActivity(@PathVariable Long id, Principal principal) {
-        // Principal 对象包含了当前登录用户的信息。如果用户未登录，它会是 null。
-        String currentUsername = (principal != null) ? principal.getName() : null;
-        return activityService.getActivityById(id, currentUsername);
+    public ActivityDetailResponse getActivity(@PathVariable Long id, @AuthenticationPrincipal LoginUser loginUser) {
+        // loginUser 是当前登录用户 (带 id)。如果用户未登录，它会是 null。
+        Long currentUserId = (loginUser != null) ? loginUser.getId() : null;
+        return activityService.getActivityById(id, currentUserId);
     }
 
     // 3. 修改：报名活动接口
     @PostMapping("/{id}/enroll")
-    public ResponseEntity<?> enroll(@PathVariable Long id, Principal principal) {
-        if (principal == null) {
+    public ResponseEntity<?> enroll(@PathVariable Long id, @AuthenticationPrincipal LoginUser loginUser) {
+        if (loginUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new java.util.HashMap<String, Object>() {{
                 put("code", 401);
                 put("message", "未登录，无��报名");
             }});
         }
-        String currentUsername = principal.getName();
-        activityService.enrollActivity(id, currentUsername);
+        Long currentUserId = loginUser.getId();
+        // 排队模式：只负责入队，立即返回 202 和凭证号，结果通过凭证查询接口获取
+        if (admissionQueue.isEnabled()) {
+            EnrollmentTicket ticket = admissionQueue.submit(id, currentUserId);
+            if (ticket == null) {
+                return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).body(new java.util.HashMap<String, Object>() {{
+                    put("code", 503);
+                    put("message", "当前报名人数过多，请稍后重试");
+                }});
+            }
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(new java.util.HashMap<String, Object>() {{
+                put("code", 202);
+                put("message", "报名请求已受理，正在排队处理");
+                put("data", toTicketView(ticket));
+            }});
+        }
+        activityService.enrollActivity(id, currentUserId);
         return ResponseEntity.ok().body(new java.util.HashMap<String, Object>() {{
             put("code", 200);
             put("message", "报名成功");
         }});
     }
 
+    // 查询排队报名的处理结果
+    @GetMapping("/enrollment-tickets/{ticketId}")
+    public ResponseEntity<?> getEnrollmentTicket(@PathVariable String ticketId, @AuthenticationPrincipal LoginUser loginUser) {
+        if (loginUser == null) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new java.util.HashMap<String, Object>() {{
+                put("code", 401);
+                put("message", "未登录，无法查询报名结果");
+            }});
+        }
+        EnrollmentTicket ticket = admissionQueue.getTicket(ticketId);
+        // 只能查询自己的凭证
+        if (ticket == null || !ticket.getUserId().equals(loginUser.getId())) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(new java.util.HashMap<String, Object>() {{
+                put("code", 404);
+                put("message", "报名凭证不存在或已过期");
+            }});
+        }
+        return ResponseEntity.ok().body(new java.util.HashMap<String, Object>() {{
+            put("code", 200);
+            put("message", "Success");
+            put("data", toTicketView(ticket));
+        }});
+    }
+
     // 4. 修改：取消报名接口
     @DeleteMapping("/{id}/enroll")
-    public ResponseEntity<?> unenroll(@PathVariable Long id, Principal principal) {
-        if (principal == null) {
+    public ResponseEntity<?> unenroll(@PathVariable Long id, @AuthenticationPrincipal LoginUser loginUser) {
+        if (loginUser == null) {
             return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(new java.util.HashMap<String, Object>() {{
                 put("code", 401);
                 put("message", "未登录，无法取消报名");
             }});
         }
-        String currentUsername = principal.getName();
-        activityService.unenrollActivity(id, currentUsername);
+        activityService.unenrollActivity(id, loginUser.getId());
         return ResponseEntity.ok().body(new java.util.HashMap<String, Object>() {{
             put("code", 200);
             put("message", "取消报名成功");
         }});
     }
 
+    private java.util.Map<String, Object> toTicketView(EnrollmentTicket ticket) {
+        java.util.Map<String, Object> view = new java.util.HashMap<>();
+        view.put("ticketId", ticket.getTicketId());
+        view.put("activityId", ticket.getActivityId());
+        view.put("status", ticket.getStatus());
+        view.put("message", ticket.getMessage());
+        view.put("queueDepth", admissionQueue.getQueueDepth(ticket.getActivityId()));
+        return view;
+    }
+
     @ExceptionHandler(RuntimeException.class)
     public ResponseEntity<?> handleRuntimeException(RuntimeException ex) {
         java.util.Map<String, Object> body = new java.util.HashMap<>();
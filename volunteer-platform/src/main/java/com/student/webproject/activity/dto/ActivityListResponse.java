@@ -1,5 +1,7 @@
 package com.student.webproject.activity.dto;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
+
 import java.util.List;
 
 public class ActivityListResponse {
@@ -33,18 +35,40 @@ public class ActivityListResponse {
     }
 
     public static class Data {
-        private int total;
+        // 游标模式下默认不统计总数，此时为 null
+        private Integer total;
         private List<ActivityItem> list;
+        // 以下两个字段只在游标模式下返回
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private String nextCursor;
+        @JsonInclude(JsonInclude.Include.NON_NULL)
+        private Boolean hasMore;
 
         // Getters and Setters
-        public int getTotal() {
+        public Integer getTotal() {
             return total;
         }
 
-        public void setTotal(int total) {
+        public void setTotal(Integer total) {
             this.total = total;
         }
 
+        public String getNextCursor() {
+            return nextCursor;
+        }
+
+        public void setNextCursor(String nextCursor) {
+            this.nextCursor = nextCursor;
+        }
+
+        public Boolean getHasMore() {
+            return hasMore;
+        }
+
+        public void setHasMore(Boolean hasMore) {
+            this.hasMore = hasMore;
+        }
+
         public List<ActivityItem> getList() {
             return list;
         }
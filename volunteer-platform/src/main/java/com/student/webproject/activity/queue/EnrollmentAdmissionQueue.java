@@ -0,0 +1,294 @@
+package com.student.webproject.activity.queue;
+
+import com.student.webproject.activity.service.ActivityService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 报名排队入口 (可选模式)
+ * 每个活动一个有界 FIFO 队列，由少量工作线程按批次依次消费，
+ * 报名高峰时请求在内存里排队，而不是同时占住 Tomcat 线程和数据库连接去抢同一行。
+ * 一批请求在同一个事务里处理，每个请求一个保存点：某人报名失败只回滚他自己，整批只提交一次。
+ */
+@Component
+public class EnrollmentAdmissionQueue {
+
+    private static final Logger logger = LoggerFactory.getLogger(EnrollmentAdmissionQueue.class);
+
+    private final ActivityService activityService;
+    private final MeterRegistry meterRegistry;
+    private final TransactionTemplate batchTransaction;
+    private final TransactionTemplate ticketSavepoint;
+
+    private final boolean enabled;
+    private final int capacity;
+    private final int batchSize;
+    private final long ticketTtlMinutes;
+    private final long idleEvictNanos;
+
+    private final ExecutorService workers;
+    private final Map<Long, ActivityQueue> queues = new ConcurrentHashMap<>();
+    private final Map<String, EnrollmentTicket> tickets = new ConcurrentHashMap<>();
+    private volatile boolean closed;
+
+    public EnrollmentAdmissionQueue(ActivityService activityService,
+                                    MeterRegistry meterRegistry,
+                                    PlatformTransactionManager transactionManager,
+                                    @Value("${activity.enrollment.queue.enabled:false}") boolean enabled,
+                                    @Value("${activity.enrollment.queue.capacity:1000}") int capacity,
+                                    @Value("${activity.enrollment.queue.workers:4}") int workerCount,
+                                    @Value("${activity.enrollment.queue.batch-size:50}") int batchSize,
+                                    @Value("${activity.enrollment.queue.ticket-ttl-minutes:30}") long ticketTtlMinutes,
+                                    @Value("${activity.enrollment.queue.idle-evict-minutes:10}") long idleEvictMinutes) {
+        this.activityService = activityService;
+        this.meterRegistry = meterRegistry;
+        this.batchTransaction = new TransactionTemplate(transactionManager);
+        this.ticketSavepoint = new TransactionTemplate(transactionManager);
+        this.ticketSavepoint.setPropagationBehavior(TransactionDefinition.PROPAGATION_NESTED);
+        this.enabled = enabled;
+        this.capacity = capacity;
+        this.batchSize = batchSize;
+        this.ticketTtlMinutes = ticketTtlMinutes;
+        this.idleEvictNanos = TimeUnit.MINUTES.toNanos(idleEvictMinutes);
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "enroll-queue-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 提交一个报名请求
+     * @return 受理凭证；队列已满或服务正在停止时返回 null，调用方应提示稍后重试
+     */
+    public EnrollmentTicket submit(Long activityId, Long userId) {
+        if (closed) {
+            return null;
+        }
+        EnrollmentTicket ticket = new EnrollmentTicket(activityId, userId);
+        tickets.put(ticket.getTicketId(), ticket);
+        boolean[] accepted = {false};
+        // 入队和空闲回收都在 compute 里做，回收不会拿走刚放进请求的队列
+        ActivityQueue activityQueue = queues.compute(activityId, (id, existing) -> {
+            ActivityQueue target = existing != null ? existing : createQueue(id);
+            accepted[0] = target.pending.offer(ticket);
+            target.lastActiveNanos = System.nanoTime();
+            return target;
+        });
+        if (!accepted[0]) {
+            tickets.remove(ticket.getTicketId());
+            activityQueue.rejected.increment();
+            return null;
+        }
+        scheduleDrain(activityQueue);
+        return ticket;
+    }
+
+    public EnrollmentTicket getTicket(String ticketId) {
+        return tickets.get(ticketId);
+    }
+
+    public int getQueueDepth(Long activityId) {
+        ActivityQueue activityQueue = queues.get(activityId);
+        return activityQueue == null ? 0 : activityQueue.pending.size();
+    }
+
+    private ActivityQueue createQueue(Long activityId) {
+        ActivityQueue activityQueue = new ActivityQueue();
+        String tag = String.valueOf(activityId);
+        activityQueue.depth = Gauge.builder("enrollment.queue.depth", activityQueue.pending, BlockingQueue::size)
+                .description("排队中的报名请求数")
+                .tag("activityId", tag)
+                .register(meterRegistry);
+        activityQueue.drainLatency = Timer.builder("enrollment.queue.latency")
+                .description("报名请求从入队到出结果的耗时")
+                .tag("activityId", tag)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        activityQueue.rejected = Counter.builder("enrollment.queue.rejected")
+                .description("队列已满被拒绝的报名请求数")
+                .tag("activityId", tag)
+                .register(meterRegistry);
+        return activityQueue;
+    }
+
+    private void scheduleDrain(ActivityQueue activityQueue) {
+        // 同一个活动同一时刻只有一个消费任务，保证 FIFO，也避免多个线程抢同一行
+        if (!closed && activityQueue.draining.compareAndSet(false, true)) {
+            try {
+                workers.execute(() -> drain(activityQueue));
+            } catch (RejectedExecutionException e) {
+                // 正在停止，剩下的请求由 shutdown 统一答复
+                activityQueue.draining.set(false);
+            }
+        }
+    }
+
+    private void drain(ActivityQueue activityQueue) {
+        try {
+            if (closed) {
+                return;
+            }
+            List<EnrollmentTicket> batch = new ArrayList<>(batchSize);
+            activityQueue.pending.drainTo(batch, batchSize);
+            if (!batch.isEmpty()) {
+                process(activityQueue, batch);
+            }
+        } finally {
+            activityQueue.lastActiveNanos = System.nanoTime();
+            activityQueue.draining.set(false);
+            // 一批处理完后如果还有积压，重新排到线程池队尾，让其他活动的队列也有机会被消费
+            if (!activityQueue.pending.isEmpty()) {
+                scheduleDrain(activityQueue);
+            }
+        }
+    }
+
+    private void process(ActivityQueue activityQueue, List<EnrollmentTicket> batch) {
+        // 业务校验失败 (名额已满、重复报名等) 的原因，提交成功后原样告知用户
+        Map<EnrollmentTicket, String> refused = new HashMap<>();
+        try {
+            batchTransaction.executeWithoutResult(status -> {
+                for (EnrollmentTicket ticket : batch) {
+                    try {
+                        ticketSavepoint.executeWithoutResult(savepoint ->
+                                activityService.enrollActivity(ticket.getActivityId(), ticket.getUserId()));
+                    } catch (DataAccessException e) {
+                        throw e;
+                    } catch (RuntimeException e) {
+                        refused.put(ticket, e.getMessage());
+                    }
+                }
+            });
+        } catch (DataAccessException | TransactionException e) {
+            // 整批已回滚 (如死锁被选为牺牲者)，退回逐个处理，不让一个人的问题连累整批
+            logger.warn("报名批次提交失败，改为逐个处理, size={}: {}", batch.size(), e.getMessage());
+            for (EnrollmentTicket ticket : batch) {
+                processSingle(activityQueue, ticket);
+            }
+            return;
+        }
+        for (EnrollmentTicket ticket : batch) {
+            String reason = refused.get(ticket);
+            if (reason == null) {
+                ticket.succeed();
+            } else {
+                ticket.fail(reason);
+            }
+            activityQueue.drainLatency.record(System.nanoTime() - ticket.getEnqueuedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    private void processSingle(ActivityQueue activityQueue, EnrollmentTicket ticket) {
+        try {
+            activityService.enrollActivity(ticket.getActivityId(), ticket.getUserId());
+            ticket.succeed();
+        } catch (DataAccessException e) {
+            logger.error("处理排队报名失败, ticket={}", ticket.getTicketId(), e);
+            ticket.fail("报名处理失败，请稍后重试");
+        } catch (RuntimeException e) {
+            ticket.fail(e.getMessage());
+        } finally {
+            activityQueue.drainLatency.record(System.nanoTime() - ticket.getEnqueuedNanos(), TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 定期清理已经出结果且过期的凭证，防止凭证表无限增长
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void purgeExpiredTickets() {
+        LocalDateTime deadline = LocalDateTime.now().minusMinutes(ticketTtlMinutes);
+        tickets.values().removeIf(ticket -> ticket.getFinishedAt() != null && ticket.getFinishedAt().isBefore(deadline));
+    }
+
+    /**
+     * 回收一段时间没有报名请求的活动队列及其指标，报名结束的活动不再常驻内存
+     */
+    @Scheduled(fixedDelay = 60_000)
+    public void evictIdleQueues() {
+        long now = System.nanoTime();
+        for (Long activityId : queues.keySet()) {
+            queues.computeIfPresent(activityId, (id, activityQueue) -> {
+                if (!activityQueue.isIdle(now - idleEvictNanos)) {
+                    return activityQueue;
+                }
+                meterRegistry.remove(activityQueue.depth);
+                meterRegistry.remove(activityQueue.drainLatency);
+                meterRegistry.remove(activityQueue.rejected);
+                return null;
+            });
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        closed = true;
+        workers.shutdown();
+        if (!workers.awaitTermination(10, TimeUnit.SECONDS)) {
+            logger.warn("报名队列关闭超时，中断仍在处理的批次");
+            workers.shutdownNow();
+        }
+        // 还没轮到的请求不会再处理，明确告知失败，而不是让客户端一直看到"排队中"
+        int abandoned = 0;
+        for (ActivityQueue activityQueue : queues.values()) {
+            EnrollmentTicket ticket;
+            while ((ticket = activityQueue.pending.poll()) != null) {
+                ticket.fail("服务正在重启，本次报名未处理，请重新报名");
+                abandoned++;
+            }
+        }
+        if (abandoned > 0) {
+            logger.warn("报名队列关闭，{} 个未处理的请求已答复失败", abandoned);
+        }
+    }
+
+    private final class ActivityQueue {
+        private final BlockingQueue<EnrollmentTicket> pending = new ArrayBlockingQueue<>(capacity);
+        private final AtomicBoolean draining = new AtomicBoolean(false);
+        private volatile long lastActiveNanos = System.nanoTime();
+        private Gauge depth;
+        private Timer drainLatency;
+        private Counter rejected;
+
+        private boolean isIdle(long cutoffNanos) {
+            return pending.isEmpty() && !draining.get() && lastActiveNanos - cutoffNanos < 0;
+        }
+    }
+}
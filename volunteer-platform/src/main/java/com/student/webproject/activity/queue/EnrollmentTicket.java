@@ -0,0 +1,48 @@
+package com.student.webproject.activity.queue;
+
+import lombok.Getter;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * 排队报名的受理凭证，客户端拿 ticketId 轮询最终结果
+ */
+@Getter
+public class EnrollmentTicket {
+
+    public enum Status {
+        QUEUED, SUCCEEDED, FAILED
+    }
+
+    private final String ticketId;
+    private final Long activityId;
+    private final Long userId;
+    private final LocalDateTime createdAt;
+    // 入队时刻 (纳秒)，用于统计排队 + 处理的总耗时
+    private final long enqueuedNanos;
+
+    private volatile Status status = Status.QUEUED;
+    private volatile String message = "排队中";
+    private volatile LocalDateTime finishedAt;
+
+    EnrollmentTicket(Long activityId, Long userId) {
+        this.ticketId = UUID.randomUUID().toString();
+        this.activityId = activityId;
+        this.userId = userId;
+        this.createdAt = LocalDateTime.now();
+        this.enqueuedNanos = System.nanoTime();
+    }
+
+    void succeed() {
+        this.message = "报名成功";
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.SUCCEEDED;
+    }
+
+    void fail(String message) {
+        this.message = message;
+        this.finishedAt = LocalDateTime.now();
+        this.status = Status.FAILED;
+    }
+}
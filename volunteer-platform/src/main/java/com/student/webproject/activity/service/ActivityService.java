@@ -5,7 +5,14 @@ import com.student.webproject.activity.dto.ActivityDetailResponse;
 
 public interface ActivityService {
     ActivityListResponse getActivities(int page, int pageSize, String category);
-    ActivityDetailResponse getActivityById(Long id, String currentUserId);
-    void enrollActivity(Long id, String currentUserId);
-    void unenrollActivity(Long id, String currentUserId);
+
+    /**
+     * 游标分页查询活动列表
+     * @param cursor 上一页返回的 nextCursor，第一页传空字符串
+     * @param withTotal 是否需要返回总数 (总数走短期缓存)
+     */
+    ActivityListResponse getActivitiesByCursor(String cursor, int pageSize, String category, boolean withTotal);
+    ActivityDetailResponse getActivityById(Long id, Long currentUserId);
+    void enrollActivity(Long id, Long currentUserId);
+    void unenrollActivity(Long id, Long currentUserId);
 }
\ No newline at end of file
@@ -1,16 +1,16 @@
 package com.student.webproject.activity.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper; // 导入QueryWrapper
+import com.student.webproject.activity.cache.ActivityReadCache;
 import com.student.webproject.activity.dto.ActivityListResponse;
 import com.student.webproject.activity.dto.ActivityDetailResponse;
 import com.student.webproject.activity.service.ActivityService;
 import com.student.webproject.admin.entity.Activity;
 import com.student.webproject.activity.entity.Enrollment;
-import com.student.webproject.user.Entity.User; // 导入User实体
-import com.student.webproject.user.mapper.UserMapper; // 导入UserMapper
 import com.student.webproject.admin.mapper.AdminActivityMapper;
 import com.student.webproject.activity.mapper.EnrollmentMapper;
+import com.student.webproject.common.util.CursorCodec;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
@@ -26,7 +26,7 @@ public class ActivityServiceImpl implements ActivityService {
     @Autowired
     private EnrollmentMapper enrollmentMapper;
     @Autowired
-    private UserMapper userMapper; // 注入UserMapper
+    private ActivityReadCache activityReadCache;
 
     // ... （构造函数可以简化或移除，因为我们用了@Autowired）
 
@@ -35,9 +35,13 @@ public class ActivityServiceImpl implements ActivityService {
         if (page <= 0 || pageSize <= 0) {
             throw new IllegalArgumentException("Page and pageSize must be positive numbers");
         }
+        return activityReadCache.getPage(category, page, pageSize, () -> loadPage(page, pageSize, category));
+    }
+
+    private ActivityListResponse loadPage(int page, int pageSize, String category) {
         int offset = (page - 1) * pageSize;
         List<Activity> activityList = activityMapper.selectActivities(offset, pageSize, category);
-        int total = activityMapper.countActivities(category);
+        int total = countActivities(category);
 
         ActivityListResponse response = new ActivityListResponse();
         response.setCode(200);
@@ -56,8 +60,50 @@ public class ActivityServiceImpl implements ActivityService {
     }
 
     @Override
-    public ActivityDetailResponse getActivityById(Long id, String currentUsername) {
-        Activity activity = activityMapper.selectById(id);
+    public ActivityListResponse getActivitiesByCursor(String cursor, int pageSize, String category, boolean withTotal) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page and pageSize must be positive numbers");
+        }
+        Long lastId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            try {
+                lastId = Long.valueOf(CursorCodec.decode(cursor, category, 1)[0]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+        }
+        // 多取一条用来判断是否还有下一页，不需要 COUNT
+        List<Activity> activityList = activityMapper.selectActivitiesAfter(lastId, pageSize + 1, category);
+        boolean hasMore = activityList.size() > pageSize;
+        if (hasMore) {
+            activityList = activityList.subList(0, pageSize);
+        }
+
+        ActivityListResponse response = new ActivityListResponse();
+        response.setCode(200);
+        response.setMessage("Success");
+
+        ActivityListResponse.Data data = new ActivityListResponse.Data();
+        if (withTotal) {
+            data.setTotal(countActivities(category));
+        }
+        List<ActivityListResponse.ActivityItem> items = new ArrayList<>();
+        for (Activity activity : activityList) {
+            items.add(mapToActivityItem(activity));
+        }
+        data.setList(items);
+        data.setHasMore(hasMore);
+        if (hasMore) {
+            // 游标绑定分类，换了分类再用旧游标会被拒绝
+            data.setNextCursor(CursorCodec.encode(category, activityList.get(activityList.size() - 1).getId()));
+        }
+        response.setData(data);
+        return response;
+    }
+
+    @Override
+    public ActivityDetailResponse getActivityById(Long id, Long currentUserId) {
+        Activity activity = activityReadCache.getActivity(id, activityMapper::selectById);
         if (activity == null) {
             throw new RuntimeException("Activity not found");
         }
@@ -69,10 +115,9 @@ public class ActivityServiceImpl implements ActivityService {
         mapToActivityData(activity, data);
 
         boolean isEnrolled = false;
-        // 如果用户名不为空（即用户已登录），则检查报名状态
-        if (currentUsername != null) {
-            User user = findUserByUsername(currentUsername);
-            isEnrolled = enrollmentMapper.existsByUserIdAndActivityId(user.getId(), id);
+        // 如果用户id不为空（即用户已登录），则检查报名状态
+        if (currentUserId != null) {
+            isEnrolled = enrollmentMapper.existsByUserIdAndActivityId(currentUserId, id);
         }
         data.setIsEnrolled(isEnrolled);
         response.setData(data);
@@ -81,55 +126,49 @@ public class ActivityServiceImpl implements ActivityService {
 
     @Override
     @Transactional
-    public void enrollActivity(Long id, String currentUsername) {
-        User user = findUserByUsername(currentUsername);
-        Activity activity = activityMapper.selectById(id);
-        if (activity == null) {
-            throw new RuntimeException("Activity not found");
-        }
-        if (enrollmentMapper.existsByUserIdAndActivityId(user.getId(), id)) {
-            throw new RuntimeException("Already enrolled");
-        }
-        if (activity.getCurrentEnrollment() >= activity.getRecruitmentQuota()) {
+    public void enrollActivity(Long id, Long currentUserId) {
+        // 先做条件自增再插入报名记录：热点活动行的排他锁先拿到，
+        // 避免插入时外键检查加的共享锁与随后的自增互相升级导致死锁
+        if (activityMapper.incrementEnrollmentIfAvailable(id) == 0) {
+            // 只有失败时才回查，区分具体原因
+            if (activityMapper.selectById(id) == null) {
+                throw new RuntimeException("Activity not found");
+            }
+            if (enrollmentMapper.existsByUserIdAndActivityId(currentUserId, id)) {
+                throw new RuntimeException("Already enrolled");
+            }
             throw new RuntimeException("No available slots");
         }
         Enrollment enrollment = new Enrollment();
-        enrollment.setUserId(user.getId());
+        enrollment.setUserId(currentUserId);
         enrollment.setActivityId(id);
         enrollment.setEnrolledAt(LocalDateTime.now());
         enrollment.setStatus("enrolled");
-        enrollmentMapper.insertEnrollment(enrollment);
-        activity.setCurrentEnrollment(activity.getCurrentEnrollment() + 1);
-        activityMapper.updateCurrentEnrollment(id, activity.getCurrentEnrollment());
+        try {
+            // 重复报名交给 uq_user_activity 唯一索引判断，抛异常后事务回滚上面的自增
+            enrollmentMapper.insertEnrollment(enrollment);
+        } catch (DuplicateKeyException e) {
+            throw new RuntimeException("Already enrolled");
+        }
+        activityReadCache.onEnrollmentChanged(id);
     }
 
     @Override
     @Transactional
-    public void unenrollActivity(Long id, String currentUsername) {
-        User user = findUserByUsername(currentUsername);
-        Activity activity = activityMapper.selectById(id);
-        if (activity == null) {
-            throw new RuntimeException("Activity not found");
-        }
-        enrollmentMapper.deleteByUserIdAndActivityId(user.getId(), id);
-        if (activity.getCurrentEnrollment() > 0) {
-            activity.setCurrentEnrollment(activity.getCurrentEnrollment() - 1);
-            activityMapper.updateCurrentEnrollment(id, activity.getCurrentEnrollment());
+    public void unenrollActivity(Long id, Long currentUserId) {
+        if (enrollmentMapper.deleteByUserIdAndActivityId(currentUserId, id) == 0) {
+            if (activityMapper.selectById(id) == null) {
+                throw new RuntimeException("Activity not found");
+            }
+            throw new RuntimeException("Not enrolled");
         }
+        activityMapper.decrementEnrollment(id);
+        activityReadCache.onEnrollmentChanged(id);
     }
 
-    // 新增一个辅助方法，通过用户名查找用户
-    private User findUserByUsername(String username) {
-        if (username == null) {
-            throw new IllegalArgumentException("Username cannot be null");
-        }
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("username", username);
-        User user = userMapper.selectOne(queryWrapper);
-        if (user == null) {
-            throw new RuntimeException("User not found: " + username);
-        }
-        return user;
+    // 带短期缓存的总数统计，过期或有活动增删后由下一次请求重新 COUNT
+    private int countActivities(String category) {
+        return activityReadCache.getCount(category, () -> activityMapper.countActivities(category));
     }
 
     // ... (其他 mapToActivityItem 和 mapToActivityData 方法保持不变)
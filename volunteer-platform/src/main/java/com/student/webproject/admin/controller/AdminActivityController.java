@@ -7,14 +7,12 @@ import com.student.webproject.admin.dto.EnrollmentViewDTO;
 import com.student.webproject.admin.entity.Activity;
 import com.student.webproject.admin.service.ActivityAdminService;
 import com.student.webproject.common.response.Result; // 1. 导入 Result 类
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.util.List;
 
@@ -52,17 +50,18 @@ public class AdminActivityController {
     }
 
     // 导出报名名单Excel的API
+    // 直接写入响应输出流，名单再大也不在内存里拼出整个文件
     @GetMapping("/{id}/enrollments/export")
-    public ResponseEntity<InputStreamResource> exportEnrollments(@PathVariable Long id) throws IOException {
-        ByteArrayInputStream bis = activityAdminService.exportEnrollmentsToExcel(id);
-
-        HttpHeaders headers = new HttpHeaders();
-        headers.add("Content-Disposition", "attachment; filename=enrollments.xlsx");
-
-        return ResponseEntity
-                .ok()
-                .headers(headers)
-                .contentType(MediaType.APPLICATION_OCTET_STREAM)
-                .body(new InputStreamResource(bis));
+    public Result<Void> exportEnrollments(@PathVariable Long id, HttpServletResponse response) throws IOException {
+        response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=enrollments.xlsx");
+        if (!activityAdminService.exportEnrollmentsToExcel(id, response.getOutputStream())) {
+            // 还没写任何内容，撤掉下载用的响应头，按普通接口返回 404
+            response.reset();
+            response.setStatus(HttpServletResponse.SC_NOT_FOUND);
+            return Result.error(404, "导出失败，找不到ID为 " + id + " 的活动。");
+        }
+        response.flushBuffer();
+        return null;
     }
-}
\ No newline at end of file
+}
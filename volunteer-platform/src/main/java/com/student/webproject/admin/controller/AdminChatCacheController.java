@@ -0,0 +1,70 @@
+package com.student.webproject.admin.controller;
+
+import com.student.webproject.admin.dto.ChatAnswerPinDTO;
+import com.student.webproject.chat.cache.ChatAnswerCache;
+import com.student.webproject.common.response.Result;
+import lombok.AllArgsConstructor;
+import org.springframework.util.StringUtils;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * AI 问答缓存管理：查看、清除错误答案、钉住标准答案
+ */
+@RestController
+@RequestMapping("/api/admin/chat/cache")
+@AllArgsConstructor
+public class AdminChatCacheController {
+
+    private final ChatAnswerCache answerCache;
+
+    @GetMapping
+    public Result<List<Map<String, Object>>> listEntries() {
+        List<Map<String, Object>> entries = answerCache.entries().stream().map(this::toView).toList();
+        return Result.success(entries, "查询成功");
+    }
+
+    /**
+     * 清除缓存：带 question 时只清除这一条，否则清空全部普通缓存 (钉住的答案不受影响)
+     */
+    @DeleteMapping
+    public Result<Void> evict(@RequestParam(required = false) String question) {
+        if (!StringUtils.hasText(question)) {
+            answerCache.evictAll();
+            return Result.success(null, "已清空问答缓存");
+        }
+        if (!answerCache.evict(question)) {
+            return Result.error(404, "缓存中没有这个问题");
+        }
+        return Result.success(null, "已清除");
+    }
+
+    @PostMapping("/pins")
+    public Result<Map<String, Object>> pin(@RequestBody ChatAnswerPinDTO dto) {
+        if (!StringUtils.hasText(dto.getQuestion()) || !StringUtils.hasText(dto.getAnswer())) {
+            return Result.error(400, "问题和答案都不能为空");
+        }
+        return Result.created(toView(answerCache.pin(dto.getQuestion(), dto.getAnswer())));
+    }
+
+    @DeleteMapping("/pins")
+    public Result<Void> unpin(@RequestParam String question) {
+        if (!answerCache.unpin(question)) {
+            return Result.error(404, "没有钉住这个问题");
+        }
+        return Result.success(null, "已取消钉住");
+    }
+
+    private Map<String, Object> toView(ChatAnswerCache.CachedAnswer entry) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("question", entry.question());
+        view.put("answer", entry.answer());
+        view.put("pinned", entry.pinned());
+        view.put("hits", entry.hits().get());
+        view.put("createdAt", entry.createdAt());
+        return view;
+    }
+}
@@ -0,0 +1,58 @@
+package com.student.webproject.admin.controller;
+
+import com.student.webproject.common.response.Result;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Measurement;
+import io.micrometer.core.instrument.Tag;
+import lombok.AllArgsConstructor;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行指标查询 (报名队列、缓存、连接池等)，仅管理员可访问
+ */
+@RestController
+@RequestMapping("/api/admin/metrics")
+@AllArgsConstructor
+public class AdminMetricsController {
+
+    private final MeterRegistry meterRegistry;
+
+    /**
+     * 按名称前缀列出指标，例如 prefix=enrollment.queue
+     */
+    @GetMapping
+    public Result<List<Map<String, Object>>> listMetrics(@RequestParam(defaultValue = "") String prefix) {
+        List<Map<String, Object>> metrics = new ArrayList<>();
+        meterRegistry.getMeters().stream()
+                .filter(meter -> meter.getId().getName().startsWith(prefix))
+                .sorted(Comparator.comparing(meter -> meter.getId().getName()))
+                .forEach(meter -> metrics.add(toView(meter)));
+        return Result.success(metrics, "查询成功");
+    }
+
+    private Map<String, Object> toView(Meter meter) {
+        Map<String, Object> view = new LinkedHashMap<>();
+        view.put("name", meter.getId().getName());
+        Map<String, String> tags = new LinkedHashMap<>();
+        for (Tag tag : meter.getId().getTags()) {
+            tags.put(tag.getKey(), tag.getValue());
+        }
+        view.put("tags", tags);
+        Map<String, Double> measurements = new LinkedHashMap<>();
+        for (Measurement measurement : meter.measure()) {
+            measurements.put(measurement.getStatistic().getTagValueRepresentation(), measurement.getValue());
+        }
+        view.put("measurements", measurements);
+        return view;
+    }
+}
@@ -6,11 +6,11 @@ import com.student.webproject.common.response.Result;
 import com.student.webproject.news.News;
 import com.student.webproject.news.dto.NewsCreateDTO;
 import com.student.webproject.news.dto.NewsUpdateDTO;
+import com.student.webproject.security.LoginUser;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
-
 @RestController
 @RequestMapping("/api/admin/news")
 public class AdminNewsController {
@@ -25,8 +25,8 @@ public class AdminNewsController {
     }
 
     @PostMapping
-    public Result<News> createNews(@RequestBody NewsCreateDTO dto, Principal principal) {
-        return newsAdminService.createNews(dto, principal);
+    public Result<News> createNews(@RequestBody NewsCreateDTO dto, @AuthenticationPrincipal LoginUser loginUser) {
+        return newsAdminService.createNews(dto, loginUser);
     }
 
     @PutMapping("/{id}")
@@ -10,7 +10,8 @@ import com.student.webproject.organization.entity.Organization;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
 
-import java.security.Principal;
+import com.student.webproject.security.LoginUser;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 
 @RestController
 @RequestMapping("/api/admin/organizations")
@@ -33,14 +34,14 @@ public class AdminOrganizationController {
     }
 
     @PutMapping("/{id}")
-    public Result<Organization> updateOrganization(@PathVariable Long id, @RequestBody OrganizationUpdateDTO dto, Principal principal) {
-        // 已加入 Principal 参数用于权限校验
-        return organizationAdminService.updateOrganization(id, dto, principal);
+    public Result<Organization> updateOrganization(@PathVariable Long id, @RequestBody OrganizationUpdateDTO dto, @AuthenticationPrincipal LoginUser loginUser) {
+        // 已加入当前登录用户参数用于权限校验
+        return organizationAdminService.updateOrganization(id, dto, loginUser);
     }
 
     @DeleteMapping("/{id}")
-    public Result<Void> deleteOrganization(@PathVariable Long id, Principal principal) {
-        // 已加入 Principal 参数用于权限校验
-        return organizationAdminService.deleteOrganization(id, principal);
+    public Result<Void> deleteOrganization(@PathVariable Long id, @AuthenticationPrincipal LoginUser loginUser) {
+        // 已加入当前登录用户参数用于权限校验
+        return organizationAdminService.deleteOrganization(id, loginUser);
     }
 }
\ No newline at end of file
@@ -6,10 +6,11 @@ import com.student.webproject.admin.dto.UserPasswordUpdateDTO;
 import com.student.webproject.admin.dto.UserUpdateDTO;
 import com.student.webproject.admin.service.UserAdminService;
 import com.student.webproject.common.response.Result;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.Entity.User;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import java.security.Principal; // 引入 Principal
 
 @RestController
 @RequestMapping("/api/admin/users")
@@ -25,15 +26,15 @@ public class AdminUserController {
     }
 
     @PostMapping
-    public Result<User> createUser(Principal principal, @RequestBody UserCreateDTO userCreateDTO) {
-        // 将 principal (当前登录用户) 传给 Service 层
-        return userAdminService.createUser(principal, userCreateDTO);
+    public Result<User> createUser(@AuthenticationPrincipal LoginUser operator, @RequestBody UserCreateDTO userCreateDTO) {
+        // 将 operator (当前登录用户) 传给 Service 层
+        return userAdminService.createUser(operator, userCreateDTO);
     }
 
     @PutMapping("/{id}")
-    public Result<User> updateUser(@PathVariable Long id, Principal principal, @RequestBody UserUpdateDTO userUpdateDTO) {
-        // 将 principal (当前登录用户) 传给 Service 层
-        return userAdminService.updateUser(principal, id, userUpdateDTO);
+    public Result<User> updateUser(@PathVariable Long id, @AuthenticationPrincipal LoginUser operator, @RequestBody UserUpdateDTO userUpdateDTO) {
+        // 将 operator (当前登录用户) 传给 Service 层
+        return userAdminService.updateUser(operator, id, userUpdateDTO);
     }
 
     @DeleteMapping("/{id}")
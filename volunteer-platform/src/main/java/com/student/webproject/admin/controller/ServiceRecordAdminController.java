@@ -3,21 +3,32 @@
 package com.student.webproject.admin.controller;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.student.webproject.admin.dto.ImportJobProgressDTO;
+import com.student.webproject.admin.dto.ServiceHourReconcileReportDTO;
+import com.student.webproject.admin.dto.ServiceRecordBatchCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordBatchResultDTO;
 import com.student.webproject.admin.dto.ServiceRecordCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordQueryDTO;
 import com.student.webproject.admin.dto.ServiceRecordViewDTO;
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.admin.hours.ServiceHourReconciler;
+import com.student.webproject.admin.importer.ServiceRecordImportJobRunner;
 import com.student.webproject.admin.service.ServiceRecordAdminService;
 import com.student.webproject.common.response.Result;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.Entity.ServiceRecord;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.io.InputStreamResource;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.List;
 
 @RestController
 @RequestMapping("/api/admin/service-records")
@@ -26,6 +37,12 @@ public class ServiceRecordAdminController {
     @Autowired
     private ServiceRecordAdminService serviceRecordAdminService;
 
+    @Autowired
+    private ServiceRecordImportJobRunner importJobRunner;
+
+    @Autowired
+    private ServiceHourReconciler serviceHourReconciler;
+
     /**
      * 创建服务记录
      *
@@ -38,6 +55,17 @@ public class ServiceRecordAdminController {
     }
 
 
+    /**
+     * 为同一个活动批量登记时长
+     * 请求体：{"activityId": 1, "items": [{"studentId": "S1", "serviceHours": 2.5, "remarks": "..."}, ...]}
+     * 每条用 userId 或 studentId 指定用户；单条失败不影响其它条目
+     * @return 与 items 一一对应的登记结果
+     */
+    @PostMapping("/batch")
+    public Result<ServiceRecordBatchResultDTO> createServiceRecords(@RequestBody ServiceRecordBatchCreateDTO dto) {
+        return serviceRecordAdminService.createServiceRecords(dto);
+    }
+
     /**
      * 更新服务时长记录的API端点
      * @param id 要更新的记录ID，从URL路径中获取
@@ -58,30 +86,76 @@ public class ServiceRecordAdminController {
     public Result<Void> deleteServiceRecord(@PathVariable Long id) {
         return serviceRecordAdminService.deleteServiceRecord(id);
     }
+
+    /**
+     * 按时长流水重算指定用户的累计时长
+     * @param userIds 要重算的用户ID，可传多个
+     * @return 被纠正的用户及纠正前后的累计时长
+     */
+    @PostMapping("/totals/rebuild")
+    public Result<List<ServiceHourLedger.Correction>> rebuildServiceHourTotals(@RequestParam("userId") List<Long> userIds) {
+        return serviceRecordAdminService.rebuildServiceHourTotals(userIds);
+    }
+
+    /**
+     * 开始一次累计时长对账 (后台执行)，用 GET /totals/reconcile 查看报告
+     * @param dryRun 为 true (默认) 时只报告不一致的用户，不修复
+     */
+    @PostMapping("/totals/reconcile")
+    public Result<ServiceHourReconcileReportDTO> startReconcile(@RequestParam(defaultValue = "true") boolean dryRun) {
+        return serviceHourReconciler.start(dryRun);
+    }
+
+    /**
+     * 查看正在执行或上一次的对账报告
+     */
+    @GetMapping("/totals/reconcile")
+    public Result<ServiceHourReconcileReportDTO> getReconcileReport() {
+        return serviceHourReconciler.getReport();
+    }
     /**
      * 获取服务时长记录列表的API端点
+     * 可按 activityId、userId/studentId、startDate~endDate (yyyy-MM-dd) 筛选
+     * 传了 cursor (第一页传空串) 就走游标分页，否则保持原来的页码分页
      */
     @GetMapping
-    public Result<IPage<ServiceRecordViewDTO>> listServiceRecords(
+    public Result<?> listServiceRecords(
             @RequestParam(defaultValue = "1") Long page,
-            @RequestParam(defaultValue = "10") Long pageSize
+            @RequestParam(defaultValue = "10") Long pageSize,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "false") boolean withTotal,
+            ServiceRecordQueryDTO query
     ) {
-        return serviceRecordAdminService.listServiceRecords(page, pageSize);
+        if (cursor != null) {
+            return serviceRecordAdminService.listServiceRecordsByCursor(cursor, pageSize.intValue(), query, withTotal);
+        }
+        return serviceRecordAdminService.listServiceRecords(page, pageSize, query);
     }
     /**
      * 处理Excel文件上传的API端点
+     * 文件落盘后作为后台任务导入，立即返回任务ID，用 GET /import/{jobId} 查询进度
      * @param file 上传的文件
      * @param activityId 表单中附带的活动ID
-     * @return 处理结果
-     * @throws IOException 如果文件读取过程中失败
+     * @return 新建的导入任务
+     * @throws IOException 如果文件暂存失败
      */
     @PostMapping("/import")
-    public Result<String> importFromExcel(@RequestParam("file") MultipartFile file, @RequestParam("activityId") Long activityId) throws IOException {
+    public Result<ImportJobProgressDTO> importFromExcel(@RequestParam("file") MultipartFile file,
+                                                       @RequestParam("activityId") Long activityId,
+                                                       @AuthenticationPrincipal LoginUser loginUser) throws IOException {
         // 检查文件是否为空
         if (file.isEmpty()) {
             return Result.error(400, "上传失败，文件为空。");
         }
-        return serviceRecordAdminService.importServiceRecordsFromExcel(file, activityId);
+        return importJobRunner.submit(file, activityId, loginUser.getId());
+    }
+
+    /**
+     * 查询导入任务进度：已处理/失败行数、吞吐、预计剩余时间
+     */
+    @GetMapping("/import/{jobId}")
+    public Result<ImportJobProgressDTO> getImportProgress(@PathVariable String jobId) {
+        return importJobRunner.getProgress(jobId);
     }
     /**
      * 提供Excel模板下载的API端点
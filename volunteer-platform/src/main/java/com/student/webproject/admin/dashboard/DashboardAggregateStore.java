@@ -0,0 +1,367 @@
+package com.student.webproject.admin.dashboard;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.student.webproject.admin.dto.DashboardStatsDTO;
+import com.student.webproject.admin.entity.Activity;
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.organization.mapper.OrganizationMapper;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.mapper.UserMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * 仪表盘聚合数据的内存副本
+ * 启动时从数据库加载一次，之后由各写路径在事务提交后增量更新，仪表盘接口直接读内存、不查库。
+ * 定时对账：重新统计数据库并覆盖内存值，纠正直接改库、多实例部署等带来的偏差。
+ * 增量从事务提交前 (beforeCommit) 起算"在途"，提交后应用完才结束；重新统计只在整个统计期间没有在途增量时才覆盖，
+ * 否则查到的值可能已包含某个刚提交、但增量还没应用的写入，覆盖后再应用就会重复计算。
+ * 增量只在提交成功后应用；需要查库的 (删除后补齐"最新 N 条"、组织删除) 交给后台线程，不在请求线程的事务回调里查库。
+ * 时长以"百分之一小时"为单位存成整数 (与 DECIMAL(10,2) 精度一致)，累加不会有浮点误差。
+ */
+@Component
+public class DashboardAggregateStore {
+
+    private static final Logger logger = LoggerFactory.getLogger(DashboardAggregateStore.class);
+
+    private static final int LATEST_SIZE = 5;
+    // 必须覆盖的重新统计 (组织删除后) 遇到并发写入时的重试次数
+    private static final int RELOAD_ATTEMPTS = 5;
+
+    private final UserMapper userMapper;
+    private final AdminActivityMapper activityMapper;
+    private final OrganizationMapper organizationMapper;
+
+    private final AtomicLong totalUsers = new AtomicLong();
+    private final AtomicLong totalActivities = new AtomicLong();
+    private final AtomicLong totalOrganizations = new AtomicLong();
+    private final AtomicLong serviceHoursHundredths = new AtomicLong();
+    // 每个增量进入提交时加一，对账时据此判断统计期间有没有并发写入
+    private final AtomicLong changeSequence = new AtomicLong();
+    // 已进入提交、但还没应用到内存的增量数
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 删除后的重新统计放到后台线程，多次删除合并成一次
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "dashboard-reload");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final AtomicBoolean reloadScheduled = new AtomicBoolean();
+
+    private final LatestBuffer<User> latestUsers = new LatestBuffer<>(User::getId);
+    private final LatestBuffer<Activity> latestActivities = new LatestBuffer<>(Activity::getId);
+
+    private volatile boolean loaded;
+
+    public DashboardAggregateStore(UserMapper userMapper,
+                                   AdminActivityMapper activityMapper,
+                                   OrganizationMapper organizationMapper) {
+        this.userMapper = userMapper;
+        this.activityMapper = activityMapper;
+        this.organizationMapper = organizationMapper;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        reload(true);
+    }
+
+    /**
+     * 定时对账，默认 5 分钟一次
+     */
+    @Scheduled(initialDelayString = "${dashboard.reconcile-interval-ms:300000}",
+            fixedDelayString = "${dashboard.reconcile-interval-ms:300000}")
+    public void reconcile() {
+        reload(false);
+    }
+
+    public DashboardStatsDTO getStats() {
+        ensureLoaded();
+        DashboardStatsDTO stats = new DashboardStatsDTO();
+        stats.setTotalUsers(totalUsers.get());
+        stats.setTotalActivities(totalActivities.get());
+        stats.setTotalOrganizations(totalOrganizations.get());
+        stats.setTotalServiceHours(BigDecimal.valueOf(serviceHoursHundredths.get(), 2));
+        return stats;
+    }
+
+    public List<User> getLatestUsers() {
+        ensureLoaded();
+        return latestUsers.snapshot();
+    }
+
+    public List<Activity> getLatestActivities() {
+        ensureLoaded();
+        return latestActivities.snapshot();
+    }
+
+    // ---------------- 写路径事件 (均在事务提交后生效) ----------------
+
+    public void onUserCreated(User user) {
+        afterCommit(() -> {
+            totalUsers.incrementAndGet();
+            addHours(user.getTotalServiceHours());
+            latestUsers.push(user);
+        });
+    }
+
+    public void onUserUpdated(User user) {
+        afterCommit(() -> latestUsers.replace(user));
+    }
+
+    /**
+     * 被删的用户在"最新用户"里时，需要查库补位：提交后交给后台线程重新统计，不在请求线程上查库
+     * @param user 删除前的用户记录，需要扣掉他的累计时长
+     */
+    public void onUserDeleted(User user) {
+        afterCommit(() -> {
+            totalUsers.decrementAndGet();
+            addHours(negate(user.getTotalServiceHours()));
+            if (latestUsers.remove(user.getId())) {
+                scheduleReload();
+            }
+        });
+    }
+
+    public void onActivityCreated(Activity activity) {
+        afterCommit(() -> {
+            totalActivities.incrementAndGet();
+            latestActivities.push(activity);
+        });
+    }
+
+    public void onActivityUpdated(Activity activity) {
+        afterCommit(() -> latestActivities.replace(activity));
+    }
+
+    /**
+     * 同 onUserDeleted：被删的活动在"最新活动"里时，提交后在后台重新统计
+     */
+    public void onActivityDeleted(Long activityId) {
+        afterCommit(() -> {
+            totalActivities.decrementAndGet();
+            if (latestActivities.remove(activityId)) {
+                scheduleReload();
+            }
+        });
+    }
+
+    public void onOrganizationCreated() {
+        afterCommit(totalOrganizations::incrementAndGet);
+    }
+
+    /**
+     * 删除组织会级联删除它主办的活动，数量无法增量推算，提交后在后台重新统计一次
+     */
+    public void onOrganizationDeleted() {
+        afterCommit(this::scheduleReload);
+    }
+
+    /**
+     * 用户累计时长发生变化 (新增/修改/删除时长记录)
+     * @param delta 实际写入 users.total_service_hours 的变化量
+     */
+    public void onServiceHoursChanged(BigDecimal delta) {
+        afterCommit(() -> addHours(delta));
+    }
+
+    // ---------------- 内部实现 ----------------
+
+    private void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            changeSequence.incrementAndGet();
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            private boolean committing;
+
+            @Override
+            public void beforeCommit(boolean readOnly) {
+                committing = true;
+                inFlight.incrementAndGet();
+                changeSequence.incrementAndGet();
+            }
+
+            @Override
+            public void afterCompletion(int status) {
+                try {
+                    if (status == STATUS_COMMITTED) {
+                        action.run();
+                    }
+                } finally {
+                    if (committing) {
+                        inFlight.decrementAndGet();
+                    }
+                }
+            }
+        });
+    }
+
+    private void scheduleReload() {
+        if (reloadScheduled.compareAndSet(false, true)) {
+            reloadExecutor.execute(() -> {
+                reloadScheduled.set(false);
+                reload(true);
+            });
+        }
+    }
+
+    private void ensureLoaded() {
+        // 正常情况下启动完成时已加载；万一请求先到，就地加载一次
+        if (!loaded) {
+            synchronized (this) {
+                if (!loaded) {
+                    reload(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * 重新统计并覆盖内存值
+     * @param force 统计期间有并发写入时是否重试；定时对账直接跳过本轮，组织删除和首次加载会重试几次
+     */
+    synchronized void reload(boolean force) {
+        for (int attempt = 1; ; attempt++) {
+            long sequenceBefore = changeSequence.get();
+            boolean quietBefore = inFlight.get() == 0;
+            long users = userMapper.selectCount(null);
+            long activities = activityMapper.selectCount(null);
+            long organizations = organizationMapper.selectCount(null);
+            long hours = toHundredths(sumServiceHours());
+            List<User> users5 = loadLatestUsers();
+            List<Activity> activities5 = loadLatestActivities();
+
+            // 统计期间有增量在途时，查到的值和增量可能重叠；首次加载重试不成也只能先用着，由定时对账纠正
+            boolean quiet = quietBefore && inFlight.get() == 0 && changeSequence.get() == sequenceBefore;
+            if (quiet || (!loaded && attempt >= RELOAD_ATTEMPTS)) {
+                apply(users, activities, organizations, hours, users5, activities5);
+                return;
+            }
+            if (!force || attempt >= RELOAD_ATTEMPTS) {
+                logger.debug("仪表盘对账期间有并发写入，跳过本轮");
+                return;
+            }
+            try {
+                Thread.sleep(20L * attempt);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private void apply(long users, long activities, long organizations, long hours,
+                       List<User> users5, List<Activity> activities5) {
+        if (loaded && (users != totalUsers.get() || activities != totalActivities.get()
+                || organizations != totalOrganizations.get() || hours != serviceHoursHundredths.get())) {
+            logger.warn("仪表盘聚合数据与数据库不一致，已按数据库校正: users {}->{}, activities {}->{}, organizations {}->{}, hours {}->{}",
+                    totalUsers.get(), users, totalActivities.get(), activities,
+                    totalOrganizations.get(), organizations,
+                    BigDecimal.valueOf(serviceHoursHundredths.get(), 2), BigDecimal.valueOf(hours, 2));
+        }
+        totalUsers.set(users);
+        totalActivities.set(activities);
+        totalOrganizations.set(organizations);
+        serviceHoursHundredths.set(hours);
+        latestUsers.reset(users5);
+        latestActivities.reset(activities5);
+        loaded = true;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloadExecutor.shutdownNow();
+    }
+
+    private BigDecimal sumServiceHours() {
+        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
+        queryWrapper.select("sum(total_service_hours) as totalServiceHours");
+        List<Object> result = userMapper.selectObjs(queryWrapper);
+        if (result != null && !result.isEmpty() && result.get(0) != null) {
+            return new BigDecimal(result.get(0).toString());
+        }
+        return BigDecimal.ZERO;
+    }
+
+    private List<User> loadLatestUsers() {
+        return userMapper.selectList(new QueryWrapper<User>().orderByDesc("created_at").last("LIMIT " + LATEST_SIZE));
+    }
+
+    private List<Activity> loadLatestActivities() {
+        return activityMapper.selectList(new QueryWrapper<Activity>().orderByDesc("created_at").last("LIMIT " + LATEST_SIZE));
+    }
+
+    private void addHours(BigDecimal delta) {
+        if (delta != null && delta.signum() != 0) {
+            serviceHoursHundredths.addAndGet(toHundredths(delta));
+        }
+    }
+
+    private static BigDecimal negate(BigDecimal value) {
+        return value == null ? null : value.negate();
+    }
+
+    private static long toHundredths(BigDecimal hours) {
+        return hours.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    /**
+     * 固定容量的"最新 N 条"缓冲区，新记录放在最前面
+     */
+    private static final class LatestBuffer<T> {
+
+        private final Function<T, Long> idOf;
+        private final LinkedList<T> items = new LinkedList<>();
+
+        private LatestBuffer(Function<T, Long> idOf) {
+            this.idOf = idOf;
+        }
+
+        synchronized void push(T item) {
+            items.addFirst(item);
+            while (items.size() > LATEST_SIZE) {
+                items.removeLast();
+            }
+        }
+
+        synchronized void replace(T item) {
+            Long id = idOf.apply(item);
+            items.replaceAll(existing -> Objects.equals(idOf.apply(existing), id) ? item : existing);
+        }
+
+        synchronized boolean remove(Long id) {
+            return items.removeIf(existing -> Objects.equals(idOf.apply(existing), id));
+        }
+
+        synchronized void reset(List<T> latest) {
+            items.clear();
+            items.addAll(latest);
+        }
+
+        synchronized List<T> snapshot() {
+            return new ArrayList<>(items);
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.student.webproject.admin.dto;
+
+import lombok.Data;
+
+@Data
+public class ChatAnswerPinDTO {
+    private String question;
+    private String answer;
+}
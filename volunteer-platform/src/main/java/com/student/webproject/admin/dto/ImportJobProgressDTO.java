@@ -0,0 +1,32 @@
+package com.student.webproject.admin.dto;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 导入任务进度
+ */
+@Data
+public class ImportJobProgressDTO {
+    private String jobId;
+    private Long activityId;
+    private String fileName;
+    private String status;
+    // 工作表声明的数据行数，文件里没有声明时为空
+    private Integer totalRows;
+    private Integer processedRows;
+    private Integer successRows;
+    private Integer failedRows;
+    // 每秒处理的行数；未开始时为空
+    private Double rowsPerSecond;
+    // 预计剩余秒数；总行数未知或已结束时为空
+    private Long etaSeconds;
+    private String message;
+    // 前若干条失败明细，格式与同步导入时一致："第 N 行处理失败: 原因"
+    private List<String> errors;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
@@ -0,0 +1,17 @@
+package com.student.webproject.admin.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+
+/**
+ * 累计时长与时长记录之和对不上的用户
+ */
+@Data
+public class ServiceHourMismatchDTO {
+    private Long userId;
+    // users.total_service_hours 里的值
+    private BigDecimal recordedTotal;
+    // SUM(service_records.service_hours)
+    private BigDecimal expectedTotal;
+}
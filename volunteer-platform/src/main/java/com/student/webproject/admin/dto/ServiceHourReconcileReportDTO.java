@@ -0,0 +1,32 @@
+package com.student.webproject.admin.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * 累计时长对账报告
+ */
+@Data
+public class ServiceHourReconcileReportDTO {
+    // running, completed, failed
+    private String status;
+    // 只报告不修复
+    private Boolean dryRun;
+    private Long maxUserId;
+    private Integer chunkSize;
+    private Integer totalChunks;
+    private Integer processedChunks;
+    private Integer mismatchedUsers;
+    // 已修复的用户数，试运行时为 0
+    private Integer repairedUsers;
+    // 所有不一致用户的 (记录之和 - 累计时长) 之和
+    private BigDecimal netDrift;
+    // 前若干个不一致的用户
+    private List<ServiceHourMismatchDTO> samples;
+    private String message;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+}
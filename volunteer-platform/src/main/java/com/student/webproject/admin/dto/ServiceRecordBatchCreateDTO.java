@@ -0,0 +1,28 @@
+package com.student.webproject.admin.dto;
+
+import com.fasterxml.jackson.annotation.JsonAlias;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 为同一个活动批量登记时长
+ */
+@Data
+public class ServiceRecordBatchCreateDTO {
+    private Long activityId;
+    private List<Item> items;
+
+    /**
+     * 一个人的时长，userId 和 studentId 二选一 (都传时以 userId 为准，并校验二者是否匹配)
+     */
+    @Data
+    public static class Item {
+        private Long userId;
+        private String studentId;
+        @JsonAlias("hours")
+        private BigDecimal serviceHours;
+        private String remarks;
+    }
+}
@@ -0,0 +1,27 @@
+package com.student.webproject.admin.dto;
+
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * 批量登记时长的结果，results 与请求的 items 一一对应、顺序相同
+ */
+@Data
+public class ServiceRecordBatchResultDTO {
+    private Integer total;
+    private Integer successCount;
+    private Integer failedCount;
+    // 加到各用户累计时长上的总量
+    private BigDecimal hoursAdded;
+    private List<ItemResult> results;
+
+    @Data
+    public static class ItemResult {
+        // 在请求 items 里的下标，从 0 开始
+        private Integer index;
+        private Boolean success;
+        private String message;
+    }
+}
@@ -0,0 +1,21 @@
+package com.student.webproject.admin.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 时长记录列表的一页 (游标分页)
+ */
+@Data
+public class ServiceRecordCursorPageDTO {
+    private List<ServiceRecordViewDTO> list;
+    private Boolean hasMore;
+    // 下一页的游标，没有下一页时不返回
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String nextCursor;
+    // 只在 withTotal=true 时返回，按该列表配置的总数策略统计
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long total;
+}
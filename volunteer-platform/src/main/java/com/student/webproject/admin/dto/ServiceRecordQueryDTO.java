@@ -0,0 +1,22 @@
+package com.student.webproject.admin.dto;
+
+import lombok.Data;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDate;
+
+/**
+ * 后台时长记录列表的筛选条件，均可不传
+ */
+@Data
+public class ServiceRecordQueryDTO {
+    private Long activityId;
+    // userId 与 studentId 任传其一即可
+    private Long userId;
+    private String studentId;
+    // 记录日期范围，两端都包含
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate startDate;
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE)
+    private LocalDate endDate;
+}
@@ -0,0 +1,47 @@
+package com.student.webproject.admin.entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+/**
+ * 后台导入任务，对应 `import_jobs` 表
+ * 进度随每个批次在同一事务里提交，节点重启后从 lastRowIndex 之后继续。
+ */
+@Data
+@TableName("import_jobs")
+public class ImportJob {
+
+    public static final String STATUS_QUEUED = "queued";
+    public static final String STATUS_RUNNING = "running";
+    public static final String STATUS_COMPLETED = "completed";
+    public static final String STATUS_FAILED = "failed";
+
+    @TableId(value = "id", type = IdType.INPUT)
+    private String id;
+
+    private Long activityId;
+    private String fileName;
+    private String spoolPath;
+    // 受理任务的节点，暂存文件在它的本机磁盘上
+    private String nodeId;
+    private String status;
+    private Integer totalRows;
+    private Integer processedRows;
+    private Integer successRows;
+    private Integer failedRows;
+    // 最后一个已提交批次的末行 (物理行序号，表头为 0)
+    private Integer lastRowIndex;
+    private String message;
+    private Long createdBy;
+    private LocalDateTime createdAt;
+    private LocalDateTime startedAt;
+    private LocalDateTime finishedAt;
+
+    public boolean isFinished() {
+        return STATUS_COMPLETED.equals(status) || STATUS_FAILED.equals(status);
+    }
+}
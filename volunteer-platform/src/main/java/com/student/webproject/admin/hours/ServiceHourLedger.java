@@ -0,0 +1,186 @@
+package com.student.webproject.admin.hours;
+
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.ServiceHourMismatchDTO;
+import com.student.webproject.user.Entity.ServiceHourLedgerEntry;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.mapper.ServiceHourLedgerMapper;
+import com.student.webproject.user.mapper.ServiceRecordMapper;
+import com.student.webproject.user.mapper.UserMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 用户累计服务时长的记账入口
+ * 每次变化先在 users 上做原子加法 (total_service_hours = total_service_hours + ?)，再往 service_hour_ledger 追加一笔流水，
+ * 两步在调用方的同一个事务里提交，所以任何时刻 累计时长 = 该用户全部流水之和，随时可以按流水重算。
+ * 不再读出用户、在 Java 里加减再整行写回：两个管理员同时给同一个人登记时长不会再丢掉一次更新。
+ * 加锁顺序固定为 时长记录 -> 用户行 (按 id 升序) -> 流水，与导入、重算一致，避免死锁。
+ */
+@Component
+public class ServiceHourLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceHourLedger.class);
+
+    public static final String REASON_CREATE = "create";
+    public static final String REASON_UPDATE = "update";
+    public static final String REASON_DELETE = "delete";
+    public static final String REASON_IMPORT = "import";
+    public static final String REASON_RECONCILE = "reconcile";
+
+    private final UserMapper userMapper;
+    private final ServiceHourLedgerMapper ledgerMapper;
+    private final ServiceRecordMapper serviceRecordMapper;
+    private final DashboardAggregateStore dashboardAggregateStore;
+
+    public ServiceHourLedger(UserMapper userMapper,
+                             ServiceHourLedgerMapper ledgerMapper,
+                             ServiceRecordMapper serviceRecordMapper,
+                             DashboardAggregateStore dashboardAggregateStore) {
+        this.userMapper = userMapper;
+        this.ledgerMapper = ledgerMapper;
+        this.serviceRecordMapper = serviceRecordMapper;
+        this.dashboardAggregateStore = dashboardAggregateStore;
+    }
+
+    public static ServiceHourLedgerEntry entry(Long userId, Long serviceRecordId, Long activityId, BigDecimal delta, String reason) {
+        ServiceHourLedgerEntry entry = new ServiceHourLedgerEntry();
+        entry.setUserId(userId);
+        entry.setServiceRecordId(serviceRecordId);
+        entry.setActivityId(activityId);
+        entry.setDelta(delta);
+        entry.setReason(reason);
+        return entry;
+    }
+
+    /**
+     * 记一笔
+     * @return 实际加到累计时长上的量
+     */
+    public BigDecimal post(Long userId, Long serviceRecordId, Long activityId, BigDecimal delta, String reason) {
+        return post(List.of(entry(userId, serviceRecordId, activityId, delta, reason)));
+    }
+
+    /**
+     * 记多笔：同一用户的多笔合并成一个增量，一条 UPDATE 写回，再一条多行 INSERT 写流水。变化量为 0 的不记。
+     * 本方法不开事务，必须在调用方的事务里执行，否则累计时长和流水可能只写进去一边。
+     * @return 实际加到累计时长上的总量
+     */
+    public BigDecimal post(List<ServiceHourLedgerEntry> entries) {
+        Map<Long, BigDecimal> deltas = new TreeMap<>();
+        List<ServiceHourLedgerEntry> nonZero = new ArrayList<>(entries.size());
+        BigDecimal total = BigDecimal.ZERO;
+        for (ServiceHourLedgerEntry entry : entries) {
+            if (entry.getDelta() == null || entry.getDelta().signum() == 0) {
+                continue;
+            }
+            nonZero.add(entry);
+            deltas.merge(entry.getUserId(), entry.getDelta(), BigDecimal::add);
+            total = total.add(entry.getDelta());
+        }
+        if (nonZero.isEmpty()) {
+            return BigDecimal.ZERO;
+        }
+        userMapper.addServiceHours(deltas);
+        ledgerMapper.insertBatch(nonZero);
+        dashboardAggregateStore.onServiceHoursChanged(total);
+        return total;
+    }
+
+    /**
+     * 按流水重算一批用户的累计时长，纠正直接改库等造成的偏差
+     * 先按 id 升序锁住用户行，等正在给他们记账的事务提交；READ COMMITTED 下之后的汇总语句能看到这些已提交的流水。
+     * @return 被纠正的用户，累计时长本来就对的不在其中
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<Correction> rebuild(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        List<User> locked = userMapper.selectServiceHoursForUpdate(userIds);
+        Map<Long, BigDecimal> ledgerTotals = new HashMap<>();
+        for (ServiceHourLedgerEntry sum : ledgerMapper.sumByUserIds(userIds)) {
+            ledgerTotals.put(sum.getUserId(), sum.getDelta());
+        }
+
+        Map<Long, BigDecimal> fixes = new TreeMap<>();
+        List<Correction> corrections = new ArrayList<>();
+        BigDecimal change = BigDecimal.ZERO;
+        for (User user : locked) {
+            BigDecimal before = user.getTotalServiceHours() == null ? BigDecimal.ZERO : user.getTotalServiceHours();
+            BigDecimal after = ledgerTotals.getOrDefault(user.getId(), BigDecimal.ZERO);
+            if (before.compareTo(after) != 0) {
+                fixes.put(user.getId(), after);
+                corrections.add(new Correction(user.getId(), before, after));
+                change = change.add(after.subtract(before));
+            }
+        }
+        if (!fixes.isEmpty()) {
+            userMapper.setServiceHours(fixes);
+            dashboardAggregateStore.onServiceHoursChanged(change);
+            logger.warn("按流水重算累计时长，纠正了 {} 个用户: {}", corrections.size(), corrections);
+        }
+        return corrections;
+    }
+
+    /**
+     * 按时长记录之和修复一批用户的累计时长 (对账用)
+     * 锁住用户行后复查一遍，仍不一致的才修：累计时长直接改成记录之和；
+     * 偏差多半是绕过流水改出来的，流水之和不一定等于累计时长，所以另记一笔 reconcile 流水把流水之和也补成记录之和。
+     * @return 实际修复的用户
+     */
+    @Transactional(isolation = Isolation.READ_COMMITTED)
+    public List<Correction> reconcile(Collection<Long> userIds) {
+        if (userIds.isEmpty()) {
+            return List.of();
+        }
+        userMapper.selectServiceHoursForUpdate(userIds);
+        List<ServiceHourMismatchDTO> mismatches = serviceRecordMapper.selectHourMismatchesByUserIds(userIds);
+        if (mismatches.isEmpty()) {
+            return List.of();
+        }
+        Map<Long, BigDecimal> ledgerTotals = new HashMap<>();
+        for (ServiceHourLedgerEntry sum : ledgerMapper.sumByUserIds(mismatches.stream().map(ServiceHourMismatchDTO::getUserId).toList())) {
+            ledgerTotals.put(sum.getUserId(), sum.getDelta());
+        }
+
+        Map<Long, BigDecimal> fixes = new TreeMap<>();
+        List<ServiceHourLedgerEntry> adjustments = new ArrayList<>();
+        List<Correction> corrections = new ArrayList<>(mismatches.size());
+        BigDecimal change = BigDecimal.ZERO;
+        for (ServiceHourMismatchDTO mismatch : mismatches) {
+            BigDecimal expected = mismatch.getExpectedTotal();
+            fixes.put(mismatch.getUserId(), expected);
+            BigDecimal ledgerGap = expected.subtract(ledgerTotals.getOrDefault(mismatch.getUserId(), BigDecimal.ZERO));
+            if (ledgerGap.signum() != 0) {
+                adjustments.add(entry(mismatch.getUserId(), null, null, ledgerGap, REASON_RECONCILE));
+            }
+            corrections.add(new Correction(mismatch.getUserId(), mismatch.getRecordedTotal(), expected));
+            change = change.add(expected.subtract(mismatch.getRecordedTotal()));
+        }
+        userMapper.setServiceHours(fixes);
+        if (!adjustments.isEmpty()) {
+            ledgerMapper.insertBatch(adjustments);
+        }
+        dashboardAggregateStore.onServiceHoursChanged(change);
+        return corrections;
+    }
+
+    /**
+     * @param before 纠正前的累计时长
+     * @param after 按流水重算后的累计时长
+     */
+    public record Correction(Long userId, BigDecimal before, BigDecimal after) {
+    }
+}
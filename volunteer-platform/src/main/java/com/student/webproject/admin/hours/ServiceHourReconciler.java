@@ -0,0 +1,272 @@
+package com.student.webproject.admin.hours;
+
+import com.student.webproject.admin.dto.ServiceHourMismatchDTO;
+import com.student.webproject.admin.dto.ServiceHourReconcileReportDTO;
+import com.student.webproject.common.response.Result;
+import com.student.webproject.user.mapper.ServiceRecordMapper;
+import com.student.webproject.user.mapper.UserMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 用户累计时长对账
+ * users.total_service_hours 是 SUM(service_records.service_hours) 的冗余副本，直接改库、历史代码 (如删除时把负数截成 0) 都可能让两者不一致。
+ * 按用户 id 区间分片，几个工作线程并行处理，每片一条分组求和语句找出不一致的用户；
+ * 修复时交给 ServiceHourLedger 锁行复查后按差额记账，一片的修复合并成一条 UPDATE 和一条多行 INSERT。
+ * 为了白天也能跑而不拖慢正常读写：工作线程数很少，所有线程共享一个每秒分片数上限，每片都是按主键范围的短语句。
+ * 同一时刻只允许一次对账；试运行只出报告不修复。
+ */
+@Component
+public class ServiceHourReconciler {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceHourReconciler.class);
+
+    // 报告里最多列出的不一致用户数
+    private static final int MAX_SAMPLES = 100;
+
+    private final UserMapper userMapper;
+    private final ServiceRecordMapper serviceRecordMapper;
+    private final ServiceHourLedger serviceHourLedger;
+
+    private final int chunkSize;
+    private final int threads;
+    // 相邻两个分片开始之间的最小间隔
+    private final long chunkIntervalNanos;
+    private final boolean scheduledRepair;
+    private final ThreadPoolExecutor workers;
+
+    private final AtomicReference<ServiceHourReconcileReportDTO> lastReport = new AtomicReference<>();
+    private final AtomicLong nextChunkAt = new AtomicLong();
+    private volatile Run running;
+
+    public ServiceHourReconciler(UserMapper userMapper,
+                                 ServiceRecordMapper serviceRecordMapper,
+                                 ServiceHourLedger serviceHourLedger,
+                                 @Value("${service-hours.reconcile.chunk-size:1000}") int chunkSize,
+                                 @Value("${service-hours.reconcile.threads:2}") int threads,
+                                 @Value("${service-hours.reconcile.max-chunks-per-second:10}") double maxChunksPerSecond,
+                                 @Value("${service-hours.reconcile.scheduled-repair:false}") boolean scheduledRepair) {
+        this.userMapper = userMapper;
+        this.serviceRecordMapper = serviceRecordMapper;
+        this.serviceHourLedger = serviceHourLedger;
+        this.chunkSize = chunkSize;
+        this.threads = threads;
+        this.chunkIntervalNanos = (long) (TimeUnit.SECONDS.toNanos(1) / maxChunksPerSecond);
+        this.scheduledRepair = scheduledRepair;
+
+        // 一个协调线程 + threads 个分片线程；同一时刻只有一次对账，队列不会积压
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads + 1, threads + 1, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, "service-hour-reconcile-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 在后台开始一次对账，立即返回初始报告
+     */
+    public synchronized Result<ServiceHourReconcileReportDTO> start(boolean dryRun) {
+        if (running != null) {
+            return Result.error(409, "已有对账任务在执行，请稍后查询结果");
+        }
+        Run run = begin(dryRun);
+        try {
+            workers.execute(() -> execute(run));
+        } catch (RejectedExecutionException e) {
+            running = null;
+            return Result.error(503, "对账任务无法启动，请稍后再试");
+        }
+        return Result.created(run.snapshot(), dryRun ? "对账任务已开始 (试运行，不修复)" : "对账任务已开始");
+    }
+
+    /**
+     * 正在执行的对账的实时报告；没有正在执行的则返回上一次的报告
+     */
+    public Result<ServiceHourReconcileReportDTO> getReport() {
+        Run run = running;
+        ServiceHourReconcileReportDTO report = run != null ? run.snapshot() : lastReport.get();
+        if (report == null) {
+            return Result.error(404, "还没有执行过对账");
+        }
+        return Result.success(report, "查询成功");
+    }
+
+    /**
+     * 在当前线程执行一次完整的对账并返回报告；已有对账在执行时返回 null
+     */
+    public ServiceHourReconcileReportDTO runNow(boolean dryRun) {
+        Run run;
+        synchronized (this) {
+            if (running != null) {
+                return null;
+            }
+            run = begin(dryRun);
+        }
+        return execute(run);
+    }
+
+    /**
+     * 定时对账，默认不开启；用 service-hours.reconcile.cron 配置 (如每天凌晨 "0 0 3 * * *")
+     * 是否顺带修复由 service-hours.reconcile.scheduled-repair 决定，默认只出报告
+     */
+    @Scheduled(cron = "${service-hours.reconcile.cron:-}")
+    public void scheduledRun() {
+        if (runNow(!scheduledRepair) == null) {
+            logger.info("上一次对账尚未结束，跳过本次定时对账");
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private Run begin(boolean dryRun) {
+        Long maxId = userMapper.selectMaxId();
+        Run run = new Run(dryRun, maxId == null ? 0 : maxId);
+        running = run;
+        return run;
+    }
+
+    private ServiceHourReconcileReportDTO execute(Run run) {
+        try {
+            // 各工作线程从共享游标领取下一个 id 区间，直到领完
+            AtomicLong cursor = new AtomicLong(1);
+            List<Future<?>> futures = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                futures.add(workers.submit(() -> {
+                    long from;
+                    while ((from = cursor.getAndAdd(chunkSize)) <= run.maxUserId && !Thread.currentThread().isInterrupted()) {
+                        throttle();
+                        processChunk(run, from, from + chunkSize - 1);
+                    }
+                }));
+            }
+            try {
+                for (Future<?> future : futures) {
+                    future.get();
+                }
+                run.finish("completed", null);
+            } catch (ExecutionException e) {
+                futures.forEach(future -> future.cancel(true));
+                logger.error("累计时长对账失败", e.getCause());
+                run.finish("failed", e.getCause().getMessage());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            run.finish("failed", "对账被中断");
+        } finally {
+            ServiceHourReconcileReportDTO report = run.snapshot();
+            lastReport.set(report);
+            synchronized (this) {
+                running = null;
+            }
+            logger.info("累计时长对账结束: dryRun={}, 分片 {}/{}, 不一致 {} 人, 修复 {} 人, 净差额 {}",
+                    report.getDryRun(), report.getProcessedChunks(), report.getTotalChunks(),
+                    report.getMismatchedUsers(), report.getRepairedUsers(), report.getNetDrift());
+        }
+        return lastReport.get();
+    }
+
+    private void processChunk(Run run, long fromId, long toId) {
+        List<ServiceHourMismatchDTO> mismatches = serviceRecordMapper.selectHourMismatches(fromId, toId);
+        int repaired = 0;
+        if (!run.dryRun && !mismatches.isEmpty()) {
+            repaired = serviceHourLedger.reconcile(mismatches.stream().map(ServiceHourMismatchDTO::getUserId).toList()).size();
+        }
+        run.chunkDone(mismatches, repaired);
+    }
+
+    /**
+     * 所有工作线程共享的节流：相邻两个分片的开始时间至少间隔 chunkIntervalNanos
+     */
+    private void throttle() {
+        long now = System.nanoTime();
+        long slot = nextChunkAt.updateAndGet(next -> Math.max(next, now) + chunkIntervalNanos) - chunkIntervalNanos;
+        long wait = slot - now;
+        if (wait > 0) {
+            LockSupport.parkNanos(wait);
+        }
+    }
+
+    /**
+     * 一次对账的进度，分片线程并发更新
+     */
+    private final class Run {
+        private final boolean dryRun;
+        private final long maxUserId;
+        private final int totalChunks;
+        private final LocalDateTime startedAt = LocalDateTime.now();
+        private final List<ServiceHourMismatchDTO> samples = new ArrayList<>();
+        private int processedChunks;
+        private int mismatchedUsers;
+        private int repairedUsers;
+        private BigDecimal netDrift = BigDecimal.ZERO;
+        private String status = "running";
+        private String message;
+        private LocalDateTime finishedAt;
+
+        private Run(boolean dryRun, long maxUserId) {
+            this.dryRun = dryRun;
+            this.maxUserId = maxUserId;
+            this.totalChunks = (int) ((maxUserId + chunkSize - 1) / chunkSize);
+        }
+
+        private synchronized void chunkDone(List<ServiceHourMismatchDTO> mismatches, int repaired) {
+            processedChunks++;
+            mismatchedUsers += mismatches.size();
+            repairedUsers += repaired;
+            for (ServiceHourMismatchDTO mismatch : mismatches) {
+                netDrift = netDrift.add(mismatch.getExpectedTotal().subtract(mismatch.getRecordedTotal()));
+                if (samples.size() < MAX_SAMPLES) {
+                    samples.add(mismatch);
+                }
+            }
+        }
+
+        private synchronized void finish(String status, String message) {
+            this.status = status;
+            this.message = message;
+            this.finishedAt = LocalDateTime.now();
+        }
+
+        private synchronized ServiceHourReconcileReportDTO snapshot() {
+            ServiceHourReconcileReportDTO report = new ServiceHourReconcileReportDTO();
+            report.setStatus(status);
+            report.setDryRun(dryRun);
+            report.setMaxUserId(maxUserId);
+            report.setChunkSize(chunkSize);
+            report.setTotalChunks(totalChunks);
+            report.setProcessedChunks(processedChunks);
+            report.setMismatchedUsers(mismatchedUsers);
+            report.setRepairedUsers(repairedUsers);
+            report.setNetDrift(netDrift);
+            report.setSamples(new ArrayList<>(samples));
+            report.setMessage(message);
+            report.setStartedAt(startedAt);
+            report.setFinishedAt(finishedAt);
+            return report;
+        }
+    }
+}
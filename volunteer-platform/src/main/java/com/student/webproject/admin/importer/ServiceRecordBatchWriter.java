@@ -0,0 +1,217 @@
+package com.student.webproject.admin.importer;
+
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.common.pagination.PageCounter;
+import com.student.webproject.user.Entity.ServiceHourLedgerEntry;
+import com.student.webproject.user.Entity.ServiceRecord;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.mapper.ServiceRecordMapper;
+import com.student.webproject.user.mapper.UserMapper;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按批写入时长记录
+ * 一批行只查两次用户 (按学号、按 id 各一条 IN 查询)、每个活动查一次已有记录，
+ * 用一条多行 INSERT 写入，再经 ServiceHourLedger 用一条 UPDATE 把每个用户本批的时长增量一次加到累计时长上、一条 INSERT 记流水。
+ * 每行的校验规则和报错文案与逐条登记 (createServiceRecord) 保持一致，失败的行不影响同批其它行。
+ * 本类不开事务，由调用方决定一批或整个导入在哪个事务里提交。
+ */
+@Component
+public class ServiceRecordBatchWriter {
+
+    static final String DUPLICATE_MESSAGE = "操作失败：该用户已存在此活动的志愿时长记录，请使用“编辑”功能进行修改。";
+
+    private final ServiceRecordMapper serviceRecordMapper;
+    private final UserMapper userMapper;
+    private final ServiceHourLedger serviceHourLedger;
+    private final PageCounter pageCounter;
+
+    public ServiceRecordBatchWriter(ServiceRecordMapper serviceRecordMapper,
+                                    UserMapper userMapper,
+                                    ServiceHourLedger serviceHourLedger,
+                                    PageCounter pageCounter) {
+        this.serviceRecordMapper = serviceRecordMapper;
+        this.userMapper = userMapper;
+        this.serviceHourLedger = serviceHourLedger;
+        this.pageCounter = pageCounter;
+    }
+
+    /**
+     * 写入一批记录
+     * @param rows 本批的行，条数由调用方控制 (决定 IN 列表和多行 INSERT 的大小)
+     * @param written 本次导入中已写入的 (用户, 活动)，跨批共享，用于拦截文件内的重复行；本方法会往里追加
+     * @param reason 流水原因，Excel 导入为 ServiceHourLedger.REASON_IMPORT，后台批量登记为 REASON_CREATE
+     */
+    public ChunkResult write(List<ServiceRecordImportRow> rows, Set<RecordKey> written, String reason) {
+        List<RowFailure> failures = new ArrayList<>();
+        Map<Long, User> usersById = new HashMap<>();
+        Map<String, User> usersByStudentId = new HashMap<>();
+        loadUsers(rows, usersById, usersByStudentId);
+
+        // 1. 逐行校验并解析出真实用户 id
+        List<Candidate> candidates = new ArrayList<>();
+        Map<Long, Set<Long>> userIdsByActivity = new LinkedHashMap<>();
+        for (ServiceRecordImportRow row : rows) {
+            try {
+                Long userId = resolveUserId(row, usersById, usersByStudentId);
+                if (row.getServiceHours() == null) {
+                    throw new RuntimeException("服务时长不能为空");
+                }
+                candidates.add(new Candidate(row, userId));
+                userIdsByActivity.computeIfAbsent(row.getActivityId(), k -> new LinkedHashSet<>()).add(userId);
+            } catch (RuntimeException e) {
+                failures.add(new RowFailure(row.getRowNum(), e.getMessage()));
+            }
+        }
+
+        // 2. 每个活动一次查出已存在的记录
+        Set<RecordKey> existing = new HashSet<>();
+        userIdsByActivity.forEach((activityId, userIds) -> {
+            for (Long userId : serviceRecordMapper.selectExistingUserIds(activityId, userIds)) {
+                existing.add(new RecordKey(userId, activityId));
+            }
+        });
+
+        List<Candidate> toInsert = new ArrayList<>();
+        LocalDateTime now = LocalDateTime.now();
+        for (Candidate candidate : candidates) {
+            RecordKey key = new RecordKey(candidate.userId(), candidate.row().getActivityId());
+            if (existing.contains(key) || !written.add(key)) {
+                failures.add(new RowFailure(candidate.row().getRowNum(), DUPLICATE_MESSAGE));
+                continue;
+            }
+            toInsert.add(candidate);
+        }
+
+        // 3. 多行 INSERT；批量失败 (如查重之后被并发写入了同一对) 时退回逐行插入，只让冲突的行失败
+        List<ServiceRecord> inserted = insert(toInsert, now, failures, written);
+
+        // 4. 记账：同一用户本批的时长合并成一个增量，一条 UPDATE 写回 (按 id 升序加锁，避免并发导入互相死锁)，
+        // 每条记录一笔流水，记录 id 由 INSERT 回填
+        List<ServiceHourLedgerEntry> entries = new ArrayList<>(inserted.size());
+        for (ServiceRecord record : inserted) {
+            entries.add(ServiceHourLedger.entry(record.getUserId(), record.getId(), record.getActivityId(),
+                    record.getServiceHours(), reason));
+        }
+        BigDecimal total = serviceHourLedger.post(entries);
+
+        failures.sort(Comparator.comparingInt(RowFailure::rowNum));
+        return new ChunkResult(inserted.size(), failures, total);
+    }
+
+    private void loadUsers(List<ServiceRecordImportRow> rows, Map<Long, User> usersById, Map<String, User> usersByStudentId) {
+        Set<Long> ids = new HashSet<>();
+        Set<String> studentIds = new HashSet<>();
+        for (ServiceRecordImportRow row : rows) {
+            if (row.getUserId() != null) {
+                ids.add(row.getUserId());
+            } else if (row.getStudentId() != null && !row.getStudentId().isEmpty()) {
+                studentIds.add(row.getStudentId());
+            }
+        }
+        if (!ids.isEmpty()) {
+            userMapper.selectIdentitiesByIds(ids).forEach(user -> usersById.put(user.getId(), user));
+        }
+        if (!studentIds.isEmpty()) {
+            userMapper.selectIdentitiesByStudentIds(studentIds).forEach(user -> usersByStudentId.put(user.getStudentId(), user));
+        }
+    }
+
+    private static Long resolveUserId(ServiceRecordImportRow row, Map<Long, User> usersById, Map<String, User> usersByStudentId) {
+        boolean hasStudentId = row.getStudentId() != null && !row.getStudentId().isEmpty();
+        if (row.getUserId() != null) {
+            User user = usersById.get(row.getUserId());
+            if (user == null) {
+                throw new RuntimeException("操作失败，ID为 " + row.getUserId() + " 的用户不存在");
+            }
+            // userId 和学号都传时必须对应同一个用户
+            if (hasStudentId && !row.getStudentId().equals(user.getStudentId())) {
+                throw new RuntimeException("操作失败，用户ID与学号不匹配（ID对应的学号为：" + user.getStudentId() + "）");
+            }
+            return user.getId();
+        }
+        if (!hasStudentId) {
+            throw new RuntimeException("学号不能为空");
+        }
+        User user = usersByStudentId.get(row.getStudentId());
+        if (user == null) {
+            throw new RuntimeException("学号 " + row.getStudentId() + " 对应的用户不存在");
+        }
+        return user.getId();
+    }
+
+    private List<ServiceRecord> insert(List<Candidate> toInsert, LocalDateTime now, List<RowFailure> failures, Set<RecordKey> written) {
+        if (toInsert.isEmpty()) {
+            return List.of();
+        }
+        // 本批提交后列表总数失效
+        pageCounter.invalidate("service_records");
+        try {
+            List<ServiceRecord> records = toInsert.stream().map(c -> toRecord(c, now)).toList();
+            serviceRecordMapper.insertBatch(records);
+            return records;
+        } catch (DataAccessException batchFailure) {
+            List<ServiceRecord> inserted = new ArrayList<>();
+            for (Candidate candidate : toInsert) {
+                try {
+                    ServiceRecord record = toRecord(candidate, now);
+                    serviceRecordMapper.insert(record);
+                    inserted.add(record);
+                } catch (DataAccessException e) {
+                    if (!(e instanceof DuplicateKeyException)) {
+                        written.remove(new RecordKey(candidate.userId(), candidate.row().getActivityId()));
+                    }
+                    String message = e instanceof DuplicateKeyException ? DUPLICATE_MESSAGE : e.getMessage();
+                    failures.add(new RowFailure(candidate.row().getRowNum(), message));
+                }
+            }
+            return inserted;
+        }
+    }
+
+    private static ServiceRecord toRecord(Candidate candidate, LocalDateTime now) {
+        ServiceRecord record = new ServiceRecord();
+        record.setUserId(candidate.userId());
+        record.setActivityId(candidate.row().getActivityId());
+        record.setServiceHours(candidate.row().getServiceHours());
+        record.setRemarks(candidate.row().getRemarks());
+        record.setRecordedAt(now);
+        record.setRecordedBy(1L);
+        record.setRecordMethod("manual");
+        return record;
+    }
+
+    private record Candidate(ServiceRecordImportRow row, Long userId) {
+    }
+
+    /**
+     * (用户, 活动) 对，service_records 上的唯一约束
+     */
+    public record RecordKey(Long userId, Long activityId) {
+    }
+
+    public record RowFailure(int rowNum, String message) {
+    }
+
+    /**
+     * @param successCount 本批成功写入的条数
+     * @param failures 失败的行，按行号升序
+     * @param hoursAdded 本批加到用户累计时长上的总量
+     */
+    public record ChunkResult(int successCount, List<RowFailure> failures, BigDecimal hoursAdded) {
+    }
+}
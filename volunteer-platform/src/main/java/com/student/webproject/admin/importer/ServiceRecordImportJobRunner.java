@@ -0,0 +1,357 @@
+package com.student.webproject.admin.importer;
+
+import com.student.webproject.admin.dto.ImportJobProgressDTO;
+import com.student.webproject.admin.entity.ImportJob;
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.admin.mapper.ImportJobMapper;
+import com.student.webproject.common.response.Result;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 时长 Excel 导入的后台任务
+ * 上传文件先落到本机磁盘，接口立即返回任务 ID；有界线程池里的工作线程按批解析、写入，
+ * 每批的数据、失败明细和任务进度在同一个事务里提交。
+ * 节点重启后，启动时把本节点未结束的任务重新排队，从最后一个已提交批次之后的行继续；
+ * 暂存文件只在受理任务的节点上，所以任务记下节点标识，其他节点启动时不会去动它。
+ */
+@Component
+public class ServiceRecordImportJobRunner {
+
+    private static final Logger logger = LoggerFactory.getLogger(ServiceRecordImportJobRunner.class);
+
+    // 进度接口最多返回的失败明细条数
+    private static final int MAX_REPORTED_ERRORS = 100;
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final ImportJobMapper importJobMapper;
+    private final AdminActivityMapper activityMapper;
+    private final ServiceRecordBatchWriter batchWriter;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Path spoolDir;
+    private final String nodeId;
+    private final int chunkSize;
+    private final ThreadPoolExecutor workers;
+    // 本节点上正在执行的任务的吞吐统计
+    private final Map<String, RunStats> runningJobs = new ConcurrentHashMap<>();
+
+    public ServiceRecordImportJobRunner(ImportJobMapper importJobMapper,
+                                        AdminActivityMapper activityMapper,
+                                        ServiceRecordBatchWriter batchWriter,
+                                        PlatformTransactionManager transactionManager,
+                                        @Value("${service-record.import.spool-dir:${java.io.tmpdir}/volunteer-imports}") String spoolDir,
+                                        @Value("${service-record.import.node-id:}") String nodeId,
+                                        @Value("${service-record.import.chunk-size:500}") int chunkSize,
+                                        @Value("${service-record.import.workers:2}") int workerCount,
+                                        @Value("${service-record.import.queue-capacity:20}") int queueCapacity) {
+        this.importJobMapper = importJobMapper;
+        this.activityMapper = activityMapper;
+        this.batchWriter = batchWriter;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.spoolDir = Paths.get(spoolDir);
+        this.nodeId = nodeId.isBlank() ? localHostName() : nodeId;
+        this.chunkSize = chunkSize;
+
+        AtomicInteger threadIndex = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "service-record-import-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 受理一次导入：文件落盘、登记任务、排队，不等待处理完成
+     */
+    public Result<ImportJobProgressDTO> submit(MultipartFile file, Long activityId, Long operatorId) throws IOException {
+        if (activityMapper.selectById(activityId) == null) {
+            return Result.error(404, "导入失败，ID为 " + activityId + " 的活动不存在");
+        }
+
+        String jobId = UUID.randomUUID().toString();
+        Files.createDirectories(spoolDir);
+        Path spool = spoolDir.resolve(jobId + ".xlsx");
+        file.transferTo(spool);
+
+        ImportJob job = new ImportJob();
+        job.setId(jobId);
+        job.setActivityId(activityId);
+        job.setFileName(file.getOriginalFilename());
+        job.setSpoolPath(spool.toAbsolutePath().toString());
+        job.setNodeId(nodeId);
+        job.setStatus(ImportJob.STATUS_QUEUED);
+        job.setProcessedRows(0);
+        job.setSuccessRows(0);
+        job.setFailedRows(0);
+        job.setLastRowIndex(0);
+        job.setCreatedBy(operatorId);
+        job.setCreatedAt(LocalDateTime.now());
+        importJobMapper.insert(job);
+
+        try {
+            workers.execute(() -> run(jobId));
+        } catch (RejectedExecutionException e) {
+            importJobMapper.deleteById(jobId);
+            Files.deleteIfExists(spool);
+            return Result.error(429, "当前排队的导入任务过多，请稍后再试");
+        }
+        return Result.created(toProgress(job), "导入任务已提交，请通过任务ID查询进度");
+    }
+
+    public Result<ImportJobProgressDTO> getProgress(String jobId) {
+        ImportJob job = importJobMapper.selectById(jobId);
+        if (job == null) {
+            return Result.error(404, "找不到ID为 " + jobId + " 的导入任务");
+        }
+        return Result.success(toProgress(job), "查询成功");
+    }
+
+    /**
+     * 启动完成后恢复本节点上次没有跑完的任务
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumeUnfinished() {
+        for (ImportJob job : importJobMapper.selectUnfinished(nodeId)) {
+            try {
+                workers.execute(() -> run(job.getId()));
+                logger.info("恢复导入任务 {}，从第 {} 行之后继续", job.getId(), job.getLastRowIndex() + 1);
+            } catch (RejectedExecutionException e) {
+                logger.warn("导入任务 {} 恢复时线程池已满，等待下次启动再恢复", job.getId());
+            }
+        }
+    }
+
+    void run(String jobId) {
+        ImportJob job = importJobMapper.selectById(jobId);
+        if (job == null || job.isFinished()) {
+            return;
+        }
+        Path spool = Paths.get(job.getSpoolPath());
+        if (!Files.exists(spool)) {
+            importJobMapper.finish(jobId, ImportJob.STATUS_FAILED, "上传的文件已不存在，无法继续导入");
+            return;
+        }
+
+        importJobMapper.markRunning(jobId);
+        runningJobs.put(jobId, new RunStats(System.nanoTime()));
+        try {
+            process(job, spool);
+            ImportJob done = importJobMapper.selectById(jobId);
+            importJobMapper.finish(jobId, ImportJob.STATUS_COMPLETED, summary(done));
+            Files.deleteIfExists(spool);
+        } catch (JobInterruptedException e) {
+            // 节点关闭：任务保持 running，已提交的批次不会重复，下次启动从断点继续
+            logger.info("导入任务 {} 被中断，等待重启后继续", jobId);
+        } catch (Exception e) {
+            if (workers.isShutdown()) {
+                logger.info("导入任务 {} 在节点关闭时中断，等待重启后继续", jobId);
+                return;
+            }
+            logger.error("导入任务 {} 执行失败", jobId, e);
+            importJobMapper.finish(jobId, ImportJob.STATUS_FAILED, truncate("导入中断: " + e.getMessage()));
+            try {
+                Files.deleteIfExists(spool);
+            } catch (IOException ignored) {
+                // 暂存文件删不掉不影响任务结果
+            }
+        } finally {
+            runningJobs.remove(jobId);
+        }
+    }
+
+    private void process(ImportJob job, Path spool) throws IOException {
+        Chunk chunk = new Chunk();
+        // 本次运行里已写入的 (用户, 活动)；重启前写入的那些已在库里，会被已存在校验拦下
+        Set<ServiceRecordBatchWriter.RecordKey> written = new HashSet<>();
+        int resumeAfter = job.getLastRowIndex() == null ? 0 : job.getLastRowIndex();
+
+        XlsxRowReader.read(spool.toFile(), new XlsxRowReader.RowHandler() {
+            @Override
+            public void onDimension(int lastRowIndex) {
+                if (job.getTotalRows() == null) {
+                    importJobMapper.updateTotalRows(job.getId(), lastRowIndex);
+                }
+            }
+
+            @Override
+            public void onRow(int rowIndex, Map<Integer, XlsxRowReader.SheetCell> cells) {
+                // 跳过表头和已经提交过的行；行号与 Excel 中看到的一致 (第一条数据是第 2 行)
+                if (rowIndex == 0 || rowIndex <= resumeAfter) {
+                    return;
+                }
+                if (Thread.currentThread().isInterrupted()) {
+                    throw new JobInterruptedException();
+                }
+                int rowNum = rowIndex + 1;
+                try {
+                    chunk.rows.add(ServiceRecordImportRow.fromSheetRow(rowNum, cells, job.getActivityId()));
+                } catch (Exception e) {
+                    chunk.failures.add(new ServiceRecordBatchWriter.RowFailure(rowNum, e.getMessage()));
+                }
+                chunk.lastRowIndex = rowIndex;
+                if (chunk.size() >= chunkSize) {
+                    commit(job.getId(), chunk, written);
+                }
+            }
+        });
+        commit(job.getId(), chunk, written);
+    }
+
+    private void commit(String jobId, Chunk chunk, Set<ServiceRecordBatchWriter.RecordKey> written) {
+        if (chunk.size() == 0) {
+            return;
+        }
+        int processed = chunk.size();
+        transactionTemplate.executeWithoutResult(status -> {
+            ServiceRecordBatchWriter.ChunkResult result = chunk.rows.isEmpty()
+                    ? new ServiceRecordBatchWriter.ChunkResult(0, List.of(), BigDecimal.ZERO)
+                    : batchWriter.write(chunk.rows, written, ServiceHourLedger.REASON_IMPORT);
+            List<ServiceRecordBatchWriter.RowFailure> failures = new ArrayList<>(chunk.failures);
+            failures.addAll(result.failures());
+            failures.sort(Comparator.comparingInt(ServiceRecordBatchWriter.RowFailure::rowNum));
+            if (!failures.isEmpty()) {
+                importJobMapper.insertErrors(jobId, failures.stream()
+                        .map(f -> new ServiceRecordBatchWriter.RowFailure(f.rowNum(), truncate(f.message())))
+                        .toList());
+            }
+            importJobMapper.advance(jobId, chunk.lastRowIndex, processed, result.successCount(), failures.size());
+        });
+        RunStats stats = runningJobs.get(jobId);
+        if (stats != null) {
+            stats.processed.addAndGet(processed);
+        }
+        chunk.rows.clear();
+        chunk.failures.clear();
+    }
+
+    private ImportJobProgressDTO toProgress(ImportJob job) {
+        ImportJobProgressDTO dto = new ImportJobProgressDTO();
+        dto.setJobId(job.getId());
+        dto.setActivityId(job.getActivityId());
+        dto.setFileName(job.getFileName());
+        dto.setStatus(job.getStatus());
+        dto.setTotalRows(job.getTotalRows());
+        dto.setProcessedRows(job.getProcessedRows());
+        dto.setSuccessRows(job.getSuccessRows());
+        dto.setFailedRows(job.getFailedRows());
+        dto.setMessage(job.getMessage());
+        dto.setCreatedAt(job.getCreatedAt());
+        dto.setStartedAt(job.getStartedAt());
+        dto.setFinishedAt(job.getFinishedAt());
+
+        Double rate = rowsPerSecond(job);
+        dto.setRowsPerSecond(rate);
+        if (!job.isFinished() && rate != null && rate > 0 && job.getTotalRows() != null) {
+            int remaining = Math.max(0, job.getTotalRows() - job.getProcessedRows());
+            dto.setEtaSeconds((long) Math.ceil(remaining / rate));
+        }
+
+        if (job.getFailedRows() != null && job.getFailedRows() > 0) {
+            dto.setErrors(importJobMapper.selectErrors(job.getId(), MAX_REPORTED_ERRORS).stream()
+                    .map(f -> "第 " + f.rowNum() + " 行处理失败: " + f.message())
+                    .toList());
+        }
+        return dto;
+    }
+
+    private Double rowsPerSecond(ImportJob job) {
+        RunStats stats = runningJobs.get(job.getId());
+        if (stats != null) {
+            // 正在本节点运行：按本次运行处理的行数计算，不把重启前的行算进来
+            double seconds = (System.nanoTime() - stats.startedNanos) / 1_000_000_000.0;
+            return seconds > 0 ? stats.processed.get() / seconds : null;
+        }
+        if (job.getStartedAt() != null && job.getFinishedAt() != null) {
+            double seconds = Math.max(Duration.between(job.getStartedAt(), job.getFinishedAt()).toMillis(), 1) / 1000.0;
+            return job.getProcessedRows() / seconds;
+        }
+        return null;
+    }
+
+    private static String summary(ImportJob job) {
+        if (job.getFailedRows() == 0) {
+            return "成功导入全部 " + job.getSuccessRows() + " 条记录！";
+        }
+        return "部分记录导入失败。成功 " + job.getSuccessRows() + " 条，失败 " + job.getFailedRows() + " 条。";
+    }
+
+    private static String truncate(String message) {
+        if (message == null) {
+            return "未知错误";
+        }
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    // 未配置 service-record.import.node-id 时用主机名，同一台机器重启后仍能认出自己的任务
+    private static String localHostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            logger.warn("无法获取主机名，导入任务的节点标识使用 localhost: {}", e.getMessage());
+            return "localhost";
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        // 中断正在执行的任务，它们停在某个批次边界上，重启后继续
+        workers.shutdownNow();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+    }
+
+    private static final class Chunk {
+        private final List<ServiceRecordImportRow> rows = new ArrayList<>();
+        private final List<ServiceRecordBatchWriter.RowFailure> failures = new ArrayList<>();
+        private int lastRowIndex;
+
+        int size() {
+            return rows.size() + failures.size();
+        }
+    }
+
+    private static final class RunStats {
+        private final long startedNanos;
+        private final AtomicInteger processed = new AtomicInteger();
+
+        private RunStats(long startedNanos) {
+            this.startedNanos = startedNanos;
+        }
+    }
+
+    private static final class JobInterruptedException extends RuntimeException {
+    }
+}
@@ -0,0 +1,59 @@
+package com.student.webproject.admin.importer;
+
+import com.student.webproject.admin.dto.ServiceRecordBatchCreateDTO;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.util.Map;
+
+/**
+ * 批量登记时长时的一行待写入数据
+ * userId 和 studentId 二选一 (都传时以 userId 为准，并校验二者是否匹配)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ServiceRecordImportRow {
+
+    /**
+     * 导入模板的列：学号 (文本)、服务时长 (数字)、备注 (文本，可空)
+     */
+    public static final String[] TEMPLATE_HEADERS = {"学生学号", "服务时长(小时)", "备注"};
+
+    // 行号，用于在错误信息里定位 (Excel 导入时与原先的行号规则一致)
+    private int rowNum;
+    private Long userId;
+    private String studentId;
+    private Long activityId;
+    private BigDecimal serviceHours;
+    private String remarks;
+
+    /**
+     * 把 Excel 里的一行按模板列转换成待写入数据，缺少必填列或类型不对时抛出异常，由调用方记为该行失败
+     */
+    public static ServiceRecordImportRow fromSheetRow(int rowNum, Map<Integer, XlsxRowReader.SheetCell> cells, Long activityId) {
+        XlsxRowReader.SheetCell studentIdCell = cells.get(0);
+        if (studentIdCell == null) {
+            throw new RuntimeException("学号不能为空");
+        }
+        XlsxRowReader.SheetCell hoursCell = cells.get(1);
+        if (hoursCell == null) {
+            throw new RuntimeException("服务时长不能为空");
+        }
+        String studentId = studentIdCell.asString();
+        double hoursValue = hoursCell.asNumeric();
+        XlsxRowReader.SheetCell remarksCell = cells.get(2);
+        String remarks = (remarksCell != null) ? remarksCell.asString() : "";
+        return new ServiceRecordImportRow(rowNum, null, studentId, activityId, BigDecimal.valueOf(hoursValue), remarks);
+    }
+
+    /**
+     * 把批量登记接口的一个条目转换成待写入数据，行号即条目下标
+     */
+    public static ServiceRecordImportRow fromItem(int rowNum, ServiceRecordBatchCreateDTO.Item item, Long activityId) {
+        return new ServiceRecordImportRow(rowNum, item.getUserId(), item.getStudentId(), activityId,
+                item.getServiceHours(), item.getRemarks());
+    }
+}
@@ -0,0 +1,218 @@
+package com.student.webproject.admin.importer;
+
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.util.XMLHelper;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+import org.xml.sax.helpers.DefaultHandler;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * 基于 POI 事件模型 (SAX) 的 xlsx 逐行读取器
+ * 不构建整个工作簿的 DOM，内存只与单行大小有关；只读取第一个工作表。
+ * 单元格的类型判断与 usermodel 的 getStringCellValue / getNumericCellValue 保持一致，
+ * 这样导入时的逐行报错和原来一样。
+ */
+public final class XlsxRowReader {
+
+    public enum CellType {
+        STRING, NUMERIC, BOOLEAN, ERROR, BLANK
+    }
+
+    /**
+     * 一个单元格的缓存值 (公式单元格取计算结果)
+     */
+    public record SheetCell(CellType type, String raw) {
+
+        public String asString() {
+            if (type == CellType.STRING) {
+                return raw;
+            }
+            if (type == CellType.BLANK) {
+                return "";
+            }
+            throw new IllegalStateException("Cannot get a STRING value from a " + type + " cell");
+        }
+
+        public double asNumeric() {
+            if (type == CellType.NUMERIC) {
+                return Double.parseDouble(raw);
+            }
+            if (type == CellType.BLANK) {
+                return 0.0;
+            }
+            throw new IllegalStateException("Cannot get a NUMERIC value from a " + type + " cell");
+        }
+    }
+
+    /**
+     * 行回调
+     */
+    public interface RowHandler {
+        /**
+         * @param rowIndex 物理行序号 (从 0 开始，只计算文件中实际存在的行)
+         * @param cells 列号 (从 0 开始) -> 单元格，没有的列不在 map 里
+         */
+        void onRow(int rowIndex, Map<Integer, SheetCell> cells);
+
+        /**
+         * 工作表开头声明的使用范围 (dimension)，在第一行之前回调；文件里没有声明时不会调用
+         * @param lastRowIndex 范围内最后一行的物理行序号 (从 0 开始)
+         */
+        default void onDimension(int lastRowIndex) {
+        }
+    }
+
+    private XlsxRowReader() {
+    }
+
+    public static void read(File xlsx, RowHandler handler) throws IOException {
+        try (OPCPackage pkg = OPCPackage.open(xlsx, PackageAccess.READ)) {
+            XSSFReader reader = new XSSFReader(pkg);
+            ReadOnlySharedStringsTable sharedStrings = new ReadOnlySharedStringsTable(pkg);
+            Iterator<InputStream> sheets = reader.getSheetsData();
+            if (!sheets.hasNext()) {
+                return;
+            }
+            try (InputStream sheet = sheets.next()) {
+                XMLReader parser = XMLHelper.newXMLReader();
+                parser.setContentHandler(new SheetHandler(sharedStrings, handler));
+                parser.parse(new InputSource(sheet));
+            }
+        } catch (IOException | RuntimeException e) {
+            // 行回调里抛出的业务/数据库异常原样抛出，交给调用方的事务处理
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("Excel 文件解析失败: " + e.getMessage(), e);
+        }
+    }
+
+    private static final class SheetHandler extends DefaultHandler {
+
+        private final ReadOnlySharedStringsTable sharedStrings;
+        private final RowHandler handler;
+
+        private final Map<Integer, SheetCell> cells = new TreeMap<>();
+        private final StringBuilder text = new StringBuilder();
+        private int rowIndex = -1;
+        private int nextColumn;
+        private int column;
+        private String cellType;
+        private boolean inValue;
+        private boolean inInlineString;
+
+        private SheetHandler(ReadOnlySharedStringsTable sharedStrings, RowHandler handler) {
+            this.sharedStrings = sharedStrings;
+            this.handler = handler;
+        }
+
+        @Override
+        public void startElement(String uri, String localName, String qName, Attributes attributes) {
+            switch (localName) {
+                case "dimension" -> {
+                    String ref = attributes.getValue("ref");
+                    if (ref != null) {
+                        int lastRow = rowNumber(ref.substring(ref.indexOf(':') + 1));
+                        if (lastRow > 0) {
+                            handler.onDimension(lastRow - 1);
+                        }
+                    }
+                }
+                case "row" -> {
+                    rowIndex++;
+                    nextColumn = 0;
+                    cells.clear();
+                }
+                case "c" -> {
+                    String ref = attributes.getValue("r");
+                    column = ref != null ? columnIndex(ref) : nextColumn;
+                    nextColumn = column + 1;
+                    cellType = attributes.getValue("t");
+                    text.setLength(0);
+                    // 有样式但没有值的单元格在 usermodel 里是 BLANK
+                    cells.put(column, new SheetCell(CellType.BLANK, ""));
+                }
+                case "v" -> {
+                    inValue = true;
+                    text.setLength(0);
+                }
+                case "is" -> {
+                    inInlineString = true;
+                    text.setLength(0);
+                }
+                default -> {
+                }
+            }
+        }
+
+        @Override
+        public void characters(char[] ch, int start, int length) {
+            if (inValue || inInlineString) {
+                text.append(ch, start, length);
+            }
+        }
+
+        @Override
+        public void endElement(String uri, String localName, String qName) {
+            switch (localName) {
+                case "v" -> {
+                    inValue = false;
+                    cells.put(column, toCell(text.toString()));
+                }
+                case "is" -> {
+                    inInlineString = false;
+                    cells.put(column, new SheetCell(CellType.STRING, text.toString()));
+                }
+                case "row" -> handler.onRow(rowIndex, new TreeMap<>(cells));
+                default -> {
+                }
+            }
+        }
+
+        private SheetCell toCell(String value) {
+            if (cellType == null || "n".equals(cellType)) {
+                return new SheetCell(CellType.NUMERIC, value);
+            }
+            return switch (cellType) {
+                case "s" -> new SheetCell(CellType.STRING, sharedStrings.getItemAt(Integer.parseInt(value)).getString());
+                case "str", "inlineStr" -> new SheetCell(CellType.STRING, value);
+                case "b" -> new SheetCell(CellType.BOOLEAN, value);
+                case "e" -> new SheetCell(CellType.ERROR, value);
+                default -> new SheetCell(CellType.STRING, value);
+            };
+        }
+
+        private static int rowNumber(String cellRef) {
+            int number = 0;
+            for (int i = 0; i < cellRef.length(); i++) {
+                char c = cellRef.charAt(i);
+                if (c >= '0' && c <= '9') {
+                    number = number * 10 + (c - '0');
+                }
+            }
+            return number;
+        }
+
+        private static int columnIndex(String cellRef) {
+            int index = 0;
+            for (int i = 0; i < cellRef.length(); i++) {
+                char c = cellRef.charAt(i);
+                if (c < 'A' || c > 'Z') {
+                    break;
+                }
+                index = index * 26 + (c - 'A' + 1);
+            }
+            return index - 1;
+        }
+    }
+}
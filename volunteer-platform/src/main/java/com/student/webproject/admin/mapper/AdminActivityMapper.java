@@ -4,6 +4,8 @@ import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.student.webproject.admin.dto.EnrollmentViewDTO;
 import com.student.webproject.admin.entity.Activity;
 import org.apache.ibatis.annotations.*;
+import org.apache.ibatis.mapping.ResultSetType;
+import org.apache.ibatis.session.ResultHandler;
 
 import java.util.List;
 
@@ -36,12 +38,48 @@ public interface AdminActivityMapper extends BaseMapper<Activity> {
     })
     int countActivities(@Param("category") String category);
 
+    /**
+     * 游标(keyset)分页：按 id 倒序，从上一页最后一条的 id 之后继续取，
+     * 有分类条件时走 idx_category_id (category, id) 索引，翻到多深都不需要扫描跳过的行
+     * @param lastId 上一页最后一条记录的 id，为 null 表示第一页
+     * @param limit 本次最多取多少条
+     */
+    @Select({
+            "<script>",
+            "SELECT * FROM activities",
+            "<where>",
+            "<if test='category != null and category != \"\"'>",
+            "category = #{category}",
+            "</if>",
+            "<if test='lastId != null'>",
+            "AND id &lt; #{lastId}",
+            "</if>",
+            "</where>",
+            "ORDER BY id DESC",
+            "LIMIT #{limit}",
+            "</script>"
+    })
+    List<Activity> selectActivitiesAfter(@Param("lastId") Long lastId, @Param("limit") int limit, @Param("category") String category);
+
     @Select("SELECT * FROM activities WHERE id = #{id}")
     Activity selectById(@Param("id") Long id);
 
     @Update("UPDATE activities SET current_enrollment = #{currentEnrollment} WHERE id = #{id}")
     int updateCurrentEnrollment(@Param("id") Long id, @Param("currentEnrollment") int currentEnrollment);
 
+    /**
+     * 条件自增报名人数：名额判断和自增在同一条语句里完成，并发报名不会超额
+     * @return 受影响行数，0 表示活动不存在或名额已满
+     */
+    @Update("UPDATE activities SET current_enrollment = current_enrollment + 1 WHERE id = #{id} AND current_enrollment < recruitment_quota")
+    int incrementEnrollmentIfAvailable(@Param("id") Long id);
+
+    /**
+     * 报名人数原子减一，不会减到负数
+     */
+    @Update("UPDATE activities SET current_enrollment = current_enrollment - 1 WHERE id = #{id} AND current_enrollment > 0")
+    int decrementEnrollment(@Param("id") Long id);
+
     @Update("UPDATE activities SET title=#{title}, description=#{description}, cover_image_url=#{coverImageUrl}, category=#{category}, location=#{location}, start_time=#{startTime}, end_time=#{endTime}, recruitment_quota=#{recruitmentQuota}, current_enrollment=#{currentEnrollment}, status=#{status}, organizer_id=#{organizerId}, created_by=#{createdBy}, created_at=#{createdAt}, updated_at=#{updatedAt} WHERE id=#{id}")
     int updateActivity(Activity activity);
 
@@ -57,4 +95,17 @@ public interface AdminActivityMapper extends BaseMapper<Activity> {
             "WHERE e.activity_id = #{activityId} AND e.status = 'enrolled' " +
             "ORDER BY e.enrolled_at ASC")
     List<EnrollmentViewDTO> selectEnrollmentsByActivityId(@Param("activityId") Long activityId);
-}
\ No newline at end of file
+
+    /**
+     * 流式读取报名名单，逐行交给 handler，不把整份名单放进一个 List
+     * fetchSize = Integer.MIN_VALUE 让 MySQL 驱动按行从服务器读取结果集，而不是一次全部缓存在客户端
+     */
+    @Select("SELECT u.id as userId, u.real_name, u.student_id, u.phone_number, e.enrolled_at " +
+            "FROM enrollments e " +
+            "JOIN users u ON e.user_id = u.id " +
+            "WHERE e.activity_id = #{activityId} AND e.status = 'enrolled' " +
+            "ORDER BY e.enrolled_at ASC")
+    @Options(resultSetType = ResultSetType.FORWARD_ONLY, fetchSize = Integer.MIN_VALUE)
+    @ResultType(EnrollmentViewDTO.class)
+    void streamEnrollmentsByActivityId(@Param("activityId") Long activityId, ResultHandler<EnrollmentViewDTO> handler);
+}
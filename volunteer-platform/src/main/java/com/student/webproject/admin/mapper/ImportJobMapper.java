@@ -0,0 +1,53 @@
+package com.student.webproject.admin.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.student.webproject.admin.entity.ImportJob;
+import com.student.webproject.admin.importer.ServiceRecordBatchWriter;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.List;
+
+/**
+ * 导入任务及其逐行错误
+ */
+@Mapper
+public interface ImportJobMapper extends BaseMapper<ImportJob> {
+
+    /**
+     * 某个节点上未结束的任务 (排队中或处理到一半)，该节点启动时据此恢复
+     */
+    @Select("SELECT * FROM import_jobs WHERE node_id = #{nodeId} AND status IN ('queued', 'running') ORDER BY created_at")
+    List<ImportJob> selectUnfinished(String nodeId);
+
+    @Update("UPDATE import_jobs SET status = 'running', started_at = COALESCE(started_at, NOW()) WHERE id = #{id}")
+    int markRunning(String id);
+
+    @Update("UPDATE import_jobs SET total_rows = #{totalRows} WHERE id = #{id} AND total_rows IS NULL")
+    int updateTotalRows(@Param("id") String id, @Param("totalRows") int totalRows);
+
+    /**
+     * 提交一个批次后推进进度，与该批的数据写入在同一个事务里
+     */
+    @Update("UPDATE import_jobs SET last_row_index = #{lastRowIndex}, processed_rows = processed_rows + #{processed}, " +
+            "success_rows = success_rows + #{succeeded}, failed_rows = failed_rows + #{failed} WHERE id = #{id}")
+    int advance(@Param("id") String id, @Param("lastRowIndex") int lastRowIndex,
+                @Param("processed") int processed, @Param("succeeded") int succeeded, @Param("failed") int failed);
+
+    @Update("UPDATE import_jobs SET status = #{status}, message = #{message}, finished_at = NOW() WHERE id = #{id}")
+    int finish(@Param("id") String id, @Param("status") String status, @Param("message") String message);
+
+    @Insert({
+            "<script>",
+            "INSERT INTO import_job_errors (job_id, row_num, message) VALUES",
+            "<foreach collection='failures' item='f' separator=','>(#{jobId}, #{f.rowNum}, #{f.message})</foreach>",
+            "</script>"
+    })
+    int insertErrors(@Param("jobId") String jobId, @Param("failures") List<ServiceRecordBatchWriter.RowFailure> failures);
+
+    @Select("SELECT row_num, message FROM import_job_errors WHERE job_id = #{jobId} ORDER BY row_num LIMIT #{limit}")
+    List<ServiceRecordBatchWriter.RowFailure> selectErrors(@Param("jobId") String jobId, @Param("limit") int limit);
+}
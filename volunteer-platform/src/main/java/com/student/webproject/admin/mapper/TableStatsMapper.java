@@ -0,0 +1,19 @@
+package com.student.webproject.admin.mapper;
+
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+/**
+ * 读取数据库维护的表统计信息
+ */
+@Mapper
+public interface TableStatsMapper {
+
+    /**
+     * InnoDB 的表行数估计值，来自统计信息，不扫描表；误差可能有几成
+     * @return 估计行数；表不存在时返回 null
+     */
+    @Select("SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = #{table}")
+    Long selectEstimatedRows(@Param("table") String table);
+}
@@ -6,8 +6,8 @@ import com.student.webproject.admin.dto.EnrollmentViewDTO; // 【新增】导入
 import com.student.webproject.admin.entity.Activity;
 import com.student.webproject.common.response.Result;
 
-import java.io.ByteArrayInputStream; // 【新增】导入
 import java.io.IOException;         // 【新增】导入
+import java.io.OutputStream;
 import java.util.List;              // 【新增】导入
 
 public interface ActivityAdminService {
@@ -28,10 +28,11 @@ public interface ActivityAdminService {
     Result<List<EnrollmentViewDTO>> getEnrollmentsByActivityId(Long activityId);
 
     /**
-     * 导出报名名单为Excel的接口定义
+     * 导出报名名单为Excel，边查边写到输出流，内存占用与名单长度无关
      * @param activityId 活动ID
-     * @return 包含Excel文件的字节输入流
+     * @param out 输出流 (通常是响应体)，由调用方负责关闭
+     * @return 活动不存在时返回 false，此时什么都没写
      * @throws IOException IO异常
      */
-    ByteArrayInputStream exportEnrollmentsToExcel(Long activityId) throws IOException;
+    boolean exportEnrollmentsToExcel(Long activityId, OutputStream out) throws IOException;
 }
\ No newline at end of file
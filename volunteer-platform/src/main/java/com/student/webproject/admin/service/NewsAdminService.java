@@ -5,14 +5,13 @@ import com.student.webproject.common.response.Result;
 import com.student.webproject.news.News;
 import com.student.webproject.news.dto.NewsCreateDTO;
 import com.student.webproject.news.dto.NewsUpdateDTO;
-
-import java.security.Principal;
+import com.student.webproject.security.LoginUser;
 
 public interface NewsAdminService {
 
     Result<IPage<News>> listNews(Long page, Long pageSize);
 
-    Result<News> createNews(NewsCreateDTO dto, Principal principal);
+    Result<News> createNews(NewsCreateDTO dto, LoginUser loginUser);
 
     Result<News> updateNews(Long id, NewsUpdateDTO dto);
 
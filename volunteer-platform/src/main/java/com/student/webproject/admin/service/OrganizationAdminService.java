@@ -6,7 +6,7 @@ import com.student.webproject.admin.dto.OrganizationUpdateDTO;
 import com.student.webproject.common.response.Result;
 import com.student.webproject.organization.dto.OrganizationAdminViewDTO; // 修改导入
 import com.student.webproject.organization.entity.Organization;
-import java.security.Principal; // 新增导入
+import com.student.webproject.security.LoginUser;
 
 public interface OrganizationAdminService {
     // 修改返回类型
@@ -14,7 +14,7 @@ public interface OrganizationAdminService {
 
     Result<Organization> createOrganization(OrganizationCreateDTO dto);
 
-    // 为 update 和 delete 添加 Principal 参数用于鉴权
-    Result<Organization> updateOrganization(Long id, OrganizationUpdateDTO dto, Principal principal);
-    Result<Void> deleteOrganization(Long id, Principal principal);
+    // 为 update 和 delete 添加当前登录用户参数用于鉴权
+    Result<Organization> updateOrganization(Long id, OrganizationUpdateDTO dto, LoginUser loginUser);
+    Result<Void> deleteOrganization(Long id, LoginUser loginUser);
 }
\ No newline at end of file
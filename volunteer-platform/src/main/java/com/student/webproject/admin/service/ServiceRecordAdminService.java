@@ -3,17 +3,32 @@
 package com.student.webproject.admin.service;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.student.webproject.admin.dto.ServiceRecordBatchCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordBatchResultDTO;
 import com.student.webproject.admin.dto.ServiceRecordCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordCursorPageDTO;
+import com.student.webproject.admin.dto.ServiceRecordQueryDTO;
 import com.student.webproject.admin.dto.ServiceRecordViewDTO;
+import com.student.webproject.admin.hours.ServiceHourLedger;
 import com.student.webproject.common.response.Result;
 import com.student.webproject.user.Entity.ServiceRecord;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.util.List;
 
 public interface ServiceRecordAdminService {
-    Result<IPage<ServiceRecordViewDTO>> listServiceRecords(Long page, Long pageSize);
+    /**
+     * 页码分页的时长记录列表，总数取自短期缓存
+     */
+    Result<IPage<ServiceRecordViewDTO>> listServiceRecords(Long page, Long pageSize, ServiceRecordQueryDTO query);
+
+    /**
+     * 游标分页的时长记录列表，按 (记录时间, id) 倒序
+     * @param cursor 上一页返回的 nextCursor，第一页传空串
+     * @param withTotal 是否同时返回 (缓存的) 总数
+     */
+    Result<ServiceRecordCursorPageDTO> listServiceRecordsByCursor(String cursor, int pageSize, ServiceRecordQueryDTO query, boolean withTotal);
    /**
      * 管理员为用户创建一条服务时长记录，并自动更新该用户的总时长
      * @param dto 包含了用户ID、活动ID和时长的信息包
@@ -37,13 +52,20 @@ public interface ServiceRecordAdminService {
     Result<Void> deleteServiceRecord(Long recordId);
 
     /**
-     * 从Excel文件批量导入服务时长记录
-     * @param file 上传的Excel文件
-     * @param activityId 要关联的活动ID
-     * @return 返回操作结果，例如成功导入了多少条记录
-     * @throws IOException 文件读取异常
+     * 为同一个活动批量登记时长：一次查出全部用户、多行插入，每个用户的总时长只更新一次
+     * 单条失败 (用户不存在、已有记录等) 不影响其它条目，逐条返回结果
+     * @param dto 活动ID和每个人的时长
+     * @return 每一条的登记结果
      */
-    Result<String> importServiceRecordsFromExcel(MultipartFile file, Long activityId) throws IOException;
+    Result<ServiceRecordBatchResultDTO> createServiceRecords(ServiceRecordBatchCreateDTO dto);
+
+    /**
+     * 按时长流水重算用户的累计时长
+     * @param userIds 要重算的用户ID
+     * @return 被纠正的用户及纠正前后的累计时长
+     */
+    Result<List<ServiceHourLedger.Correction>> rebuildServiceHourTotals(List<Long> userIds);
+
     /**
      * 下载批量导入服务时长的Excel模板
      * @return 包含Excel模板文件的字节输入流
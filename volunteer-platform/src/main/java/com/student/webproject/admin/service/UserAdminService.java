@@ -5,17 +5,16 @@ import com.student.webproject.admin.dto.UserCreateDTO;
 import com.student.webproject.admin.dto.UserPasswordUpdateDTO;
 import com.student.webproject.admin.dto.UserUpdateDTO;
 import com.student.webproject.common.response.Result;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.Entity.User;
 
-import java.security.Principal;
-
 public interface UserAdminService {
 
     Result<IPage<User>> listUsers(Long page, Long pageSize);
 
-    Result<User> createUser(Principal principal, UserCreateDTO dto);
+    Result<User> createUser(LoginUser operator, UserCreateDTO dto);
 
-    Result<User> updateUser(Principal principal, Long id, UserUpdateDTO dto);
+    Result<User> updateUser(LoginUser operator, Long id, UserUpdateDTO dto);
 
     Result<Void> deleteUser(Long id);
 
@@ -1,22 +1,25 @@
 package com.student.webproject.admin.service.impl;
 
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
 import com.student.webproject.admin.dto.ActivityCreateDTO;
 import com.student.webproject.admin.dto.EnrollmentViewDTO;
 import com.student.webproject.admin.entity.Activity;
 import com.student.webproject.admin.mapper.AdminActivityMapper;
 import com.student.webproject.admin.service.ActivityAdminService;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
+import com.student.webproject.common.pagination.CountStrategy;
+import com.student.webproject.common.pagination.PageCounter;
 import com.student.webproject.common.response.Result;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.List;
 
 import java.time.LocalDateTime;
@@ -26,10 +29,25 @@ import java.time.format.DateTimeFormatter;
 public class ActivityAdminServiceImpl implements ActivityAdminService {
 
     private final AdminActivityMapper activityMapper;
+    private final ActivityReadCache activityReadCache;
+    private final DashboardAggregateStore dashboardAggregateStore;
+    private final PlatformKnowledgeBase knowledgeBase;
+    private final PageCounter pageCounter;
+
+    @Value("${admin.list.activities.count-strategy:CACHED}")
+    private CountStrategy countStrategy = CountStrategy.CACHED;
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
+    // 导出时内存中保留的行数
+    private static final int EXPORT_ROW_WINDOW = 100;
 
-    public ActivityAdminServiceImpl(AdminActivityMapper activityMapper) {
+    public ActivityAdminServiceImpl(AdminActivityMapper activityMapper, ActivityReadCache activityReadCache,
+                                    DashboardAggregateStore dashboardAggregateStore, PlatformKnowledgeBase knowledgeBase,
+                                    PageCounter pageCounter) {
         this.activityMapper = activityMapper;
+        this.activityReadCache = activityReadCache;
+        this.dashboardAggregateStore = dashboardAggregateStore;
+        this.knowledgeBase = knowledgeBase;
+        this.pageCounter = pageCounter;
     }
     // 查询报名名单的业务逻辑
     @Override
@@ -39,13 +57,19 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
     }
 
     // 导出报名名单为Excel的业务逻辑
+    // 名单用流式查询逐行取出，SXSSF 只在内存里保留最近 EXPORT_ROW_WINDOW 行，其余刷到临时文件，
+    // 最后直接写进输出流，不再在堆里攒整份名单和整个文件
     @Override
-    public ByteArrayInputStream exportEnrollmentsToExcel(Long activityId) throws IOException {
-        List<EnrollmentViewDTO> enrollments = activityMapper.selectEnrollmentsByActivityId(activityId);
+    public boolean exportEnrollmentsToExcel(Long activityId, OutputStream out) throws IOException {
         Activity activity = activityMapper.selectById(activityId);
-        String sheetName = "活动报名表-" + (activity != null ? activity.getTitle() : activityId);
+        if (activity == null) {
+            return false;
+        }
+        String sheetName = "活动报名表-" + activity.getTitle();
 
-        try (Workbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+        SXSSFWorkbook workbook = new SXSSFWorkbook(EXPORT_ROW_WINDOW);
+        workbook.setCompressTempFiles(true);
+        try {
             Sheet sheet = workbook.createSheet(sheetName);
 
             // 创建表头
@@ -56,18 +80,23 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
             }
 
             // 填充数据
-            int rowIdx = 1;
-            for (EnrollmentViewDTO enrollment : enrollments) {
-                Row row = sheet.createRow(rowIdx++);
+            int[] rowIdx = {1};
+            activityMapper.streamEnrollmentsByActivityId(activityId, context -> {
+                EnrollmentViewDTO enrollment = context.getResultObject();
+                Row row = sheet.createRow(rowIdx[0]++);
                 row.createCell(0).setCellValue(enrollment.getRealName());
                 row.createCell(1).setCellValue(enrollment.getStudentId());
                 row.createCell(2).setCellValue(enrollment.getPhoneNumber());
                 row.createCell(3).setCellValue(enrollment.getEnrolledAt().format(FORMATTER));
-            }
+            });
 
             workbook.write(out);
-            return new ByteArrayInputStream(out.toByteArray());
+        } finally {
+            // 删除 SXSSF 落盘的临时文件
+            workbook.dispose();
+            workbook.close();
         }
+        return true;
     }
 
     @Override
@@ -94,6 +123,10 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
         int rows = activityMapper.insert(activity);
 
         if (rows > 0) {
+            activityReadCache.onActivityAddedOrRemoved(activity.getId(), activity.getCategory());
+            pageCounter.invalidate("activities");
+            dashboardAggregateStore.onActivityCreated(activity);
+            knowledgeBase.onActivitySaved(activity);
             return Result.created(activity, "活动发布成功");
         } else {
             throw new RuntimeException("活动发布失败，数据库插入操作未成功。");
@@ -107,6 +140,7 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
         if (activityFromDB == null) {
             throw new RuntimeException("更新失败，找不到ID为 " + id + " 的活动。");
         }
+        String oldCategory = activityFromDB.getCategory();
 
         if (dto.getTitle() != null) {
             activityFromDB.setTitle(dto.getTitle());
@@ -142,6 +176,9 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
         int rows = activityMapper.updateById(activityFromDB);
 
         if (rows > 0) {
+            activityReadCache.onActivityUpdated(id, oldCategory, activityFromDB.getCategory());
+            dashboardAggregateStore.onActivityUpdated(activityFromDB);
+            knowledgeBase.onActivitySaved(activityFromDB);
             return Result.success(activityFromDB, "ID为 " + id + " 的活动更新成功！");
         } else {
             throw new RuntimeException("更新失败，数据库更新操作未成功。");
@@ -150,13 +187,20 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
 
     @Override
     public Result<Void> deleteActivity(Long id) {
-        if (activityMapper.selectById(id) == null) {
+        Activity activity = activityMapper.selectById(id);
+        if (activity == null) {
             throw new RuntimeException("删除失败，找不到ID为 " + id + " 的活动。");
         }
 
         int rows = activityMapper.deleteById(id);
 
         if (rows > 0) {
+            activityReadCache.onActivityAddedOrRemoved(id, activity.getCategory());
+            // 时长记录随活动级联删除
+            pageCounter.invalidate("activities");
+            pageCounter.invalidate("service_records");
+            dashboardAggregateStore.onActivityDeleted(id);
+            knowledgeBase.onActivityDeleted(id);
             return Result.success(null, "ID为 " + id + " 的活动删除成功！");
         } else {
             throw new RuntimeException("删除失败，数据库删除操作未成功。");
@@ -165,8 +209,8 @@ public class ActivityAdminServiceImpl implements ActivityAdminService {
 
     @Override
     public Result<IPage<Activity>> listActivities(Long page, Long pageSize) {
-        IPage<Activity> pageRequest = new Page<>(page, pageSize);
-        IPage<Activity> pageResult = activityMapper.selectPage(pageRequest, null);
+        IPage<Activity> pageResult = pageCounter.selectPage(countStrategy, page, pageSize, "activities", null,
+                pageRequest -> activityMapper.selectPage(pageRequest, null), () -> activityMapper.selectCount(null));
 
         return Result.success(pageResult, "活动列表查询成功");
     }
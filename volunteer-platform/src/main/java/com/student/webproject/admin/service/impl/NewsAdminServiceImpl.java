@@ -1,21 +1,23 @@
 package com.student.webproject.admin.service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper; // 导入 QueryWrapper
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.student.webproject.admin.service.NewsAdminService;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
+import com.student.webproject.common.pagination.CountStrategy;
+import com.student.webproject.common.pagination.PageCounter;
 import com.student.webproject.common.response.Result;
 import com.student.webproject.news.News;
+import com.student.webproject.news.NewsLikeBuffer;
 import com.student.webproject.news.NewsMapper;
+import com.student.webproject.news.NewsReadCache;
 import com.student.webproject.news.dto.NewsCreateDTO;
 import com.student.webproject.news.dto.NewsUpdateDTO;
-import com.student.webproject.user.Entity.User;
-import com.student.webproject.user.mapper.UserMapper;
+import com.student.webproject.security.LoginUser;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
-import java.security.Principal;
 import java.time.LocalDateTime;
 
 @Service
@@ -25,26 +27,36 @@ public class NewsAdminServiceImpl implements NewsAdminService {
     private NewsMapper newsMapper;
 
     @Autowired
-    private UserMapper userMapper;
+    private PlatformKnowledgeBase knowledgeBase;
+
+    @Autowired
+    private NewsLikeBuffer likeBuffer;
+
+    @Autowired
+    private NewsReadCache newsReadCache;
+
+    @Autowired
+    private PageCounter pageCounter;
+
+    @Value("${admin.list.news.count-strategy:CACHED}")
+    private CountStrategy countStrategy = CountStrategy.CACHED;
 
     @Override
     public Result<IPage<News>> listNews(Long page, Long pageSize) {
-        IPage<News> pageRequest = new Page<>(page, pageSize);
-        IPage<News> pageResult = newsMapper.selectPage(pageRequest, null);
+        IPage<News> pageResult = pageCounter.selectPage(countStrategy, page, pageSize, "news", null,
+                pageRequest -> newsMapper.selectPage(pageRequest, null), () -> newsMapper.selectCount(null));
         return Result.success(pageResult, "新闻列表查询成功");
     }
 
     @Override
-    public Result<News> createNews(NewsCreateDTO dto, Principal principal) {
-        // 使用 QueryWrapper 通过 username 查询用户
-        User currentUser = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
-        if (currentUser == null) {
+    public Result<News> createNews(NewsCreateDTO dto, LoginUser loginUser) {
+        if (loginUser == null) {
             throw new RuntimeException("无法获取当前用户信息");
         }
 
         News news = new News();
         BeanUtils.copyProperties(dto, news);
-        news.setAuthorId(currentUser.getId());
+        news.setAuthorId(loginUser.getId());
 
         // 移除不存在的 setCreatedAt，保留 setUpdatedAt 和 setPublishedAt
         news.setUpdatedAt(LocalDateTime.now());
@@ -55,6 +67,9 @@ public class NewsAdminServiceImpl implements NewsAdminService {
         news.setFavoritesCount(0);
 
         newsMapper.insert(news);
+        newsReadCache.onNewsAddedOrRemoved(news.getId());
+        pageCounter.invalidate("news");
+        knowledgeBase.onNewsSaved(news);
         return Result.created(news, "新闻创建成功");
     }
 
@@ -66,7 +81,13 @@ public class NewsAdminServiceImpl implements NewsAdminService {
         }
         BeanUtils.copyProperties(dto, news);
         news.setUpdatedAt(LocalDateTime.now());
+        // 计数列由点赞缓冲在库里做加法，这里不能用读出来的旧值整行写回
+        Integer persistedLikes = news.getLikesCount();
+        news.setLikesCount(null);
         newsMapper.updateById(news);
+        news.setLikesCount(likeBuffer.currentCount(id, persistedLikes));
+        newsReadCache.onNewsUpdated(id);
+        knowledgeBase.onNewsSaved(news);
         return Result.success(news, "新闻更新成功");
     }
 
@@ -76,6 +97,10 @@ public class NewsAdminServiceImpl implements NewsAdminService {
             throw new RuntimeException("删除失败，找不到ID为 " + id + " 的新闻。");
         }
         newsMapper.deleteById(id);
+        likeBuffer.discard(id);
+        newsReadCache.onNewsAddedOrRemoved(id);
+        pageCounter.invalidate("news");
+        knowledgeBase.onNewsDeleted(id);
         return Result.success(null, "新闻删除成功");
     }
 }
\ No newline at end of file
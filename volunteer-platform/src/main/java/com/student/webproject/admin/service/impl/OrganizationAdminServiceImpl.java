@@ -2,32 +2,42 @@ package com.student.webproject.admin.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
 import com.student.webproject.admin.dto.OrganizationCreateDTO;
 import com.student.webproject.admin.dto.OrganizationUpdateDTO;
 import com.student.webproject.admin.service.OrganizationAdminService;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
+import com.student.webproject.common.pagination.CountStrategy;
+import com.student.webproject.common.pagination.PageCounter;
 import com.student.webproject.common.response.Result;
 import com.student.webproject.organization.dto.OrganizationAdminViewDTO;
 import com.student.webproject.organization.entity.Organization;
 import com.student.webproject.organization.mapper.OrganizationMapper;
-import com.student.webproject.user.Entity.User;
-import com.student.webproject.user.mapper.UserMapper;
-import lombok.AllArgsConstructor;
+import com.student.webproject.security.LoginUser;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
-import java.security.Principal;
 import java.util.Objects;
 
 @Service
-@AllArgsConstructor
+@RequiredArgsConstructor
 public class OrganizationAdminServiceImpl implements OrganizationAdminService {
 
     private final OrganizationMapper organizationMapper;
-    private final UserMapper userMapper; // 引入 UserMapper 用于鉴权
+    private final DashboardAggregateStore dashboardAggregateStore;
+    private final ActivityReadCache activityReadCache;
+    private final PlatformKnowledgeBase knowledgeBase;
+    private final PageCounter pageCounter;
+
+    // 组织数量很少，COUNT 的代价主要在联表上，精确统计即可
+    @Value("${admin.list.organizations.count-strategy:EXACT}")
+    private CountStrategy countStrategy = CountStrategy.EXACT;
 
     @Override
     public Result<IPage<OrganizationAdminViewDTO>> listOrganizations(Long page, Long pageSize) {
-        Page<OrganizationAdminViewDTO> pageRequest = new Page<>(page, pageSize);
-        IPage<OrganizationAdminViewDTO> pageResult = organizationMapper.selectOrganizationAdminViewPage(pageRequest);
+        IPage<OrganizationAdminViewDTO> pageResult = pageCounter.selectPage(countStrategy, page, pageSize, "organizations", null,
+                organizationMapper::selectOrganizationAdminViewPage, () -> organizationMapper.selectCount(null));
         return Result.success(pageResult, "组织列表查询成功");
     }
 
@@ -42,12 +52,15 @@ public class OrganizationAdminServiceImpl implements OrganizationAdminService {
         organization.setDescription(dto.getDescription());
         organization.setLeaderId(dto.getLeaderId());
         organizationMapper.insert(organization);
+        pageCounter.invalidate("organizations");
+        dashboardAggregateStore.onOrganizationCreated();
+        knowledgeBase.onOrganizationSaved(organization);
         return Result.created(organization, "组织创建成功");
     }
 
     @Override
-    public Result<Organization> updateOrganization(Long id, OrganizationUpdateDTO dto, Principal principal) {
-        checkPermission(id, principal); // 权限校验
+    public Result<Organization> updateOrganization(Long id, OrganizationUpdateDTO dto, LoginUser loginUser) {
+        checkPermission(id, loginUser); // 权限校验
         Organization organization = organizationMapper.selectById(id);
         if (organization == null) {
             throw new RuntimeException("组织不存在");
@@ -56,26 +69,33 @@ public class OrganizationAdminServiceImpl implements OrganizationAdminService {
         if (dto.getDescription() != null) organization.setDescription(dto.getDescription());
         if (dto.getLeaderId() != null) organization.setLeaderId(dto.getLeaderId());
         organizationMapper.updateById(organization);
+        knowledgeBase.onOrganizationSaved(organization);
         return Result.success(organization, "组织信息更新成功");
     }
 
     @Override
-    public Result<Void> deleteOrganization(Long id, Principal principal) {
-        checkPermission(id, principal); // 权限校验
+    public Result<Void> deleteOrganization(Long id, LoginUser loginUser) {
+        checkPermission(id, loginUser); // 权限校验
         if (organizationMapper.selectById(id) == null) {
             throw new RuntimeException("删除失败，找不到ID为 " + id + " 的组织。");
         }
         organizationMapper.deleteById(id);
+        // 主办的活动会被级联删除
+        dashboardAggregateStore.onOrganizationDeleted();
+        activityReadCache.invalidateAll();
+        pageCounter.invalidate("organizations");
+        pageCounter.invalidate("activities");
+        pageCounter.invalidate("service_records");
+        knowledgeBase.onOrganizationDeleted(id);
         return Result.success(null, "组织删除成功");
     }
 
-    private void checkPermission(Long orgId, Principal principal) {
-        User operator = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
+    private void checkPermission(Long orgId, LoginUser loginUser) {
         Organization org = organizationMapper.selectById(orgId);
         if (org == null) throw new RuntimeException("操作失败，组织不存在");
 
-        boolean isSuperAdmin = "super_admin".equals(operator.getRole());
-        boolean isLeader = Objects.equals(operator.getId(), org.getLeaderId());
+        boolean isSuperAdmin = loginUser.isSuperAdmin();
+        boolean isLeader = Objects.equals(loginUser.getId(), org.getLeaderId());
 
         if (!isSuperAdmin && !isLeader) {
             throw new RuntimeException("权限不足，只有超级管理员或该组织负责人可以操作！");
@@ -5,34 +5,47 @@ package com.student.webproject.admin.service.impl;
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.student.webproject.admin.dto.ServiceRecordBatchCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordBatchResultDTO;
 import com.student.webproject.admin.dto.ServiceRecordCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordCursorPageDTO;
+import com.student.webproject.admin.dto.ServiceRecordQueryDTO;
 import com.student.webproject.admin.dto.ServiceRecordViewDTO;
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.admin.importer.ServiceRecordBatchWriter;
+import com.student.webproject.admin.importer.ServiceRecordImportRow;
+import com.student.webproject.admin.mapper.AdminActivityMapper;
 import com.student.webproject.admin.service.ServiceRecordAdminService;
+import com.student.webproject.common.pagination.CountStrategy;
+import com.student.webproject.common.pagination.PageCounter;
 import com.student.webproject.common.response.Result;
+import com.student.webproject.common.util.CursorCodec;
 import com.student.webproject.user.Entity.User;
 import com.student.webproject.user.Entity.ServiceRecord;
 import com.student.webproject.user.mapper.UserMapper;
 import com.student.webproject.user.mapper.ServiceRecordMapper;
-import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
 import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
-import org.springframework.web.multipart.MultipartFile;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
-import java.util.Iterator;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 @Service
 public class ServiceRecordAdminServiceImpl implements ServiceRecordAdminService {
@@ -43,6 +56,30 @@ public class ServiceRecordAdminServiceImpl implements ServiceRecordAdminService
     @Autowired
     private UserMapper userMapper;
 
+    @Autowired
+    private ServiceHourLedger serviceHourLedger;
+
+    @Autowired
+    private ServiceRecordBatchWriter batchWriter;
+
+    @Autowired
+    private AdminActivityMapper activityMapper;
+
+    // 一次批量登记最多的条数
+    @Value("${service-record.batch.max-items:2000}")
+    private int batchMaxItems;
+
+    // 写入时每批的条数，决定 IN 列表和多行 INSERT 的大小
+    @Value("${service-record.batch.chunk-size:500}")
+    private int batchChunkSize;
+
+    @Autowired
+    private PageCounter pageCounter;
+
+    // 时长记录是最大的表，默认用缓存的总数
+    @Value("${admin.list.service-records.count-strategy:CACHED}")
+    private CountStrategy countStrategy = CountStrategy.CACHED;
+
     // 调整 createServiceRecord 方法中的用户查询逻辑
     @Override
     @Transactional
@@ -88,66 +125,14 @@ public class ServiceRecordAdminServiceImpl implements ServiceRecordAdminService
         newRecord.setRecordedBy(1L);
         newRecord.setRecordMethod("manual");
         serviceRecordMapper.insert(newRecord);
+        pageCounter.invalidate("service_records");
 
-        // 5. 更新用户总时长
-        BigDecimal currentTotalHours = user.getTotalServiceHours() == null ? BigDecimal.ZERO : user.getTotalServiceHours();
-        BigDecimal newTotalHours = currentTotalHours.add(dto.getServiceHours());
-        user.setTotalServiceHours(newTotalHours);
-        userMapper.updateById(user);
+        // 5. 记账：在库里给用户总时长做加法，并追加一笔流水
+        serviceHourLedger.post(user.getId(), newRecord.getId(), newRecord.getActivityId(),
+                dto.getServiceHours(), ServiceHourLedger.REASON_CREATE);
 
         return Result.created(newRecord, "时长登记成功，用户总时长已更新");
     }
-    @Override
-    @Transactional
-    public Result<String> importServiceRecordsFromExcel(MultipartFile file, Long activityId) throws IOException {
-        List<String> errorMessages = new ArrayList<>();
-        int successCount = 0;
-
-        try (InputStream is = file.getInputStream(); Workbook workbook = new XSSFWorkbook(is)) {
-            Sheet sheet = workbook.getSheetAt(0);
-            Iterator<Row> rows = sheet.iterator();
-
-            // 跳过表头
-            if (rows.hasNext()) {
-                rows.next();
-            }
-
-            int rowNum = 1;
-            while (rows.hasNext()) {
-                Row currentRow = rows.next();
-                rowNum++;
-
-                try {
-                    String studentId = currentRow.getCell(0).getStringCellValue();
-                    double hoursValue = currentRow.getCell(1).getNumericCellValue();
-                    Cell remarksCell = currentRow.getCell(2);
-                    String remarks = (remarksCell != null) ? remarksCell.getStringCellValue() : "";
-
-                    User user = userMapper.selectOne(new QueryWrapper<User>().eq("student_id", studentId));
-                    if (user == null) {
-                        throw new RuntimeException("学号 " + studentId + " 对应的用户不存在");
-                    }
-
-                    ServiceRecordCreateDTO dto = new ServiceRecordCreateDTO();
-                    dto.setUserId(user.getId());
-                    dto.setActivityId(activityId);
-                    dto.setServiceHours(BigDecimal.valueOf(hoursValue));
-                    dto.setRemarks(remarks);
-
-                    createServiceRecord(dto); // 调用已有的创建方法，它包含了所有事务和校验逻辑
-                    successCount++;
-                } catch (Exception e) {
-                    errorMessages.add("第 " + rowNum + " 行处理失败: " + e.getMessage());
-                }
-            }
-        }
-
-        if (errorMessages.isEmpty()) {
-            return Result.success("成功导入全部 " + successCount + " 条记录！");
-        } else {
-            return Result.error(400, "部分记录导入失败。成功 " + successCount + " 条，失败 " + errorMessages.size() + " 条。失败详情: " + String.join("; ", errorMessages));
-        }
-    }
     /**
      * 更新时长记录的实现（支持userId或studentId）
      */
@@ -179,43 +164,33 @@ public class ServiceRecordAdminServiceImpl implements ServiceRecordAdminService
             }
         }
 
-        // 3. 通过 userId 和 activityId 查记录（使用查询到的真实用户ID）
-        ServiceRecord oldRecord = serviceRecordMapper.selectOne(
-                new QueryWrapper<ServiceRecord>()
-                        .eq("user_id", user.getId())
-                        .eq("activity_id", dto.getActivityId())
-        );
+        // 3. 通过 userId 和 activityId 查记录并加锁（使用查询到的真实用户ID），并发修改同一条记录时排队计算差值
+        ServiceRecord oldRecord = serviceRecordMapper.selectByUserAndActivityForUpdate(user.getId(), dto.getActivityId());
         if (oldRecord == null) {
             throw new RuntimeException("更新失败，该用户在此活动中无时长记录");
         }
+        // 差值按查到的这条记录计算，路径里的记录ID必须就是它，否则改的是另一条记录，总时长会和记录对不上
+        if (!oldRecord.getId().equals(recordId)) {
+            throw new RuntimeException("更新失败，记录ID与用户、活动不匹配");
+        }
 
-        // 4. 计算并更新用户总时长
-        BigDecimal newTotalHours = calcTotalHoursAfterDiff(dto, user, oldRecord);
-        user.setTotalServiceHours(newTotalHours);
-        userMapper.updateById(user);
+        // 4. 按新旧时长的差值记账
+        serviceHourLedger.post(user.getId(), oldRecord.getId(), oldRecord.getActivityId(),
+                calcHoursDifference(dto, oldRecord), ServiceHourLedger.REASON_UPDATE);
 
         // 5. 更新时长记录本身（强制使用查询到的真实用户ID）
         BeanUtils.copyProperties(dto, oldRecord);
-        oldRecord.setId(recordId); // 确保ID不变
         oldRecord.setUserId(user.getId()); // 覆盖可能传入的错误用户ID
         serviceRecordMapper.updateById(oldRecord);
 
         return Result.success(oldRecord, "时长记录更新成功");
     }
 
-    private static BigDecimal calcTotalHoursAfterDiff(ServiceRecordCreateDTO dto, User user, ServiceRecord oldRecord) {
-        if (user == null) {
-            throw new RuntimeException("数据关联错误，找不到记录对应的用户");
-        }
-
+    private static BigDecimal calcHoursDifference(ServiceRecordCreateDTO dto, ServiceRecord oldRecord) {
         // 计算时长差值，处理可能的null值
         BigDecimal oldHours = oldRecord.getServiceHours() == null ? BigDecimal.ZERO : oldRecord.getServiceHours();
         BigDecimal newHours = dto.getServiceHours() == null ? BigDecimal.ZERO : dto.getServiceHours();
-        BigDecimal difference = newHours.subtract(oldHours); // 新时长 - 旧时长
-
-        // 更新用户总时长
-        BigDecimal currentTotalHours = user.getTotalServiceHours() == null ? BigDecimal.ZERO : user.getTotalServiceHours();
-        return currentTotalHours.add(difference);
+        return newHours.subtract(oldHours); // 新时长 - 旧时长
     }
 
     /**
@@ -224,58 +199,192 @@ public class ServiceRecordAdminServiceImpl implements ServiceRecordAdminService
     @Override
     @Transactional
     public Result<Void> deleteServiceRecord(Long recordId) {
-        // 1. 查找要删除的记录
-        ServiceRecord recordToDelete = serviceRecordMapper.selectById(recordId);
+        // 1. 查找并锁住要删除的记录，并发删除同一条记录时只有一个能扣减时长
+        ServiceRecord recordToDelete = serviceRecordMapper.selectByIdForUpdate(recordId);
         if (recordToDelete == null) {
             throw new RuntimeException("删除失败，找不到ID为 " + recordId + " 的时长记录");
         }
 
-        // 2. 查找关联用户
-        User user = userMapper.selectById(recordToDelete.getUserId());
-        BigDecimal updatedTotalHours = getBigDecimal(user, recordToDelete);
-
-        user.setTotalServiceHours(updatedTotalHours);
-        userMapper.updateById(user);
-
-        // 4. 删除这条时长记录
+        // 2. 删除这条时长记录，并按原时长冲减用户总时长
         serviceRecordMapper.deleteById(recordId);
+        pageCounter.invalidate("service_records");
+        BigDecimal hoursToDelete = recordToDelete.getServiceHours() == null ? BigDecimal.ZERO : recordToDelete.getServiceHours();
+        serviceHourLedger.post(recordToDelete.getUserId(), recordId, recordToDelete.getActivityId(),
+                hoursToDelete.negate(), ServiceHourLedger.REASON_DELETE);
 
         return Result.success(null, "时长记录删除成功");
     }
 
-    private static BigDecimal getBigDecimal(User user, ServiceRecord recordToDelete) {
-        if (user == null) {
-            throw new RuntimeException("数据关联错误，找不到记录对应的用户");
+    @Override
+    @Transactional
+    public Result<ServiceRecordBatchResultDTO> createServiceRecords(ServiceRecordBatchCreateDTO dto) {
+        List<ServiceRecordBatchCreateDTO.Item> items = dto.getItems();
+        if (dto.getActivityId() == null || items == null || items.isEmpty()) {
+            return Result.error(400, "活动ID和登记条目都不能为空");
+        }
+        if (items.size() > batchMaxItems) {
+            return Result.error(400, "一次最多登记 " + batchMaxItems + " 条，请分批提交");
+        }
+        if (activityMapper.selectById(dto.getActivityId()) == null) {
+            return Result.error(404, "操作失败，ID为 " + dto.getActivityId() + " 的活动不存在");
         }
 
-        // 3. 计算并更新用户总时长（增加空值处理）
-        BigDecimal hoursToDelete = recordToDelete.getServiceHours() == null ? BigDecimal.ZERO : recordToDelete.getServiceHours();
-        BigDecimal currentTotalHours = user.getTotalServiceHours() == null ? BigDecimal.ZERO : user.getTotalServiceHours();
+        // 行号即条目下标；同一批里的重复条目由 written 拦截，与 Excel 导入的规则一致
+        List<ServiceRecordImportRow> rows = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            rows.add(ServiceRecordImportRow.fromItem(i, items.get(i), dto.getActivityId()));
+        }
+        Map<Integer, String> failures = new HashMap<>();
+        Set<ServiceRecordBatchWriter.RecordKey> written = new HashSet<>();
+        BigDecimal hoursAdded = BigDecimal.ZERO;
+        for (int from = 0; from < rows.size(); from += batchChunkSize) {
+            ServiceRecordBatchWriter.ChunkResult chunk =
+                    batchWriter.write(rows.subList(from, Math.min(from + batchChunkSize, rows.size())), written,
+                            ServiceHourLedger.REASON_CREATE);
+            chunk.failures().forEach(failure -> failures.put(failure.rowNum(), failure.message()));
+            hoursAdded = hoursAdded.add(chunk.hoursAdded());
+        }
 
-        // 确保总时长不会为负数
-        BigDecimal updatedTotalHours = currentTotalHours.subtract(hoursToDelete);
-        if (updatedTotalHours.compareTo(BigDecimal.ZERO) < 0) {
-            updatedTotalHours = BigDecimal.ZERO;
-            // 可以考虑这里记录日志，提示总时长出现负数的异常情况
+        List<ServiceRecordBatchResultDTO.ItemResult> results = new ArrayList<>(items.size());
+        for (int i = 0; i < items.size(); i++) {
+            ServiceRecordBatchResultDTO.ItemResult result = new ServiceRecordBatchResultDTO.ItemResult();
+            result.setIndex(i);
+            result.setSuccess(!failures.containsKey(i));
+            result.setMessage(failures.getOrDefault(i, "登记成功"));
+            results.add(result);
         }
-        return updatedTotalHours;
+        ServiceRecordBatchResultDTO response = new ServiceRecordBatchResultDTO();
+        response.setTotal(items.size());
+        response.setSuccessCount(items.size() - failures.size());
+        response.setFailedCount(failures.size());
+        response.setHoursAdded(hoursAdded);
+        response.setResults(results);
+        String message = failures.isEmpty()
+                ? "成功登记全部 " + items.size() + " 条时长记录"
+                : "部分记录登记失败。成功 " + response.getSuccessCount() + " 条，失败 " + failures.size() + " 条。";
+        return Result.created(response, message);
+    }
+
+    @Override
+    public Result<List<ServiceHourLedger.Correction>> rebuildServiceHourTotals(List<Long> userIds) {
+        if (userIds == null || userIds.isEmpty()) {
+            throw new RuntimeException("请指定要重算的用户ID");
+        }
+        List<ServiceHourLedger.Correction> corrections = serviceHourLedger.rebuild(userIds);
+        return Result.success(corrections, corrections.isEmpty()
+                ? "累计时长与流水一致，无需纠正"
+                : "已按流水纠正 " + corrections.size() + " 个用户的累计时长");
     }
 
     /**
      * 【新增】获取时长记录列表的实现
      */
     @Override
-    public Result<IPage<ServiceRecordViewDTO>> listServiceRecords(Long page, Long pageSize) {
-        Page<ServiceRecordViewDTO> pageRequest = new Page<>(page, pageSize);
-        IPage<ServiceRecordViewDTO> pageResult = serviceRecordMapper.selectServiceRecordViewPage(pageRequest);
+    public Result<IPage<ServiceRecordViewDTO>> listServiceRecords(Long page, Long pageSize, ServiceRecordQueryDTO query) {
+        RecordFilter filter = resolveFilter(query);
+        if (filter == null) {
+            IPage<ServiceRecordViewDTO> empty = new Page<>(page, pageSize, 0);
+            return Result.success(empty, "时长记录查询成功");
+        }
+        IPage<ServiceRecordViewDTO> pageResult = pageCounter.selectPage(countStrategy, page, pageSize, "service_records", filter.cacheKey(),
+                pageRequest -> serviceRecordMapper.selectServiceRecordViewPage(pageRequest,
+                        filter.activityId(), filter.userId(), filter.recordedFrom(), filter.recordedTo()),
+                () -> countServiceRecords(filter));
         return Result.success(pageResult, "时长记录查询成功");
     }
+
+    @Override
+    public Result<ServiceRecordCursorPageDTO> listServiceRecordsByCursor(String cursor, int pageSize, ServiceRecordQueryDTO query, boolean withTotal) {
+        if (pageSize <= 0) {
+            throw new IllegalArgumentException("Page and pageSize must be positive numbers");
+        }
+        LocalDateTime lastRecordedAt = null;
+        Long lastId = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            String[] parts = CursorCodec.decode(cursor, cursorFilterKey(query), 2);
+            try {
+                lastRecordedAt = LocalDateTime.parse(parts[0]);
+                lastId = Long.valueOf(parts[1]);
+            } catch (DateTimeParseException | NumberFormatException e) {
+                throw new IllegalArgumentException("无效的分页游标");
+            }
+        }
+
+        ServiceRecordCursorPageDTO result = new ServiceRecordCursorPageDTO();
+        RecordFilter filter = resolveFilter(query);
+        if (filter == null) {
+            result.setList(new ArrayList<>());
+            result.setHasMore(false);
+            if (withTotal) {
+                result.setTotal(0L);
+            }
+            return Result.success(result, "时长记录查询成功");
+        }
+        // 多取一条用来判断是否还有下一页
+        List<ServiceRecordViewDTO> records = serviceRecordMapper.selectServiceRecordViewsAfter(filter.activityId(),
+                filter.userId(), filter.recordedFrom(), filter.recordedTo(), lastRecordedAt, lastId, pageSize + 1);
+        boolean hasMore = records.size() > pageSize;
+        if (hasMore) {
+            records = records.subList(0, pageSize);
+            ServiceRecordViewDTO last = records.get(pageSize - 1);
+            result.setNextCursor(CursorCodec.encode(cursorFilterKey(query), last.getRecordedAt(), last.getId()));
+        }
+        result.setList(records);
+        result.setHasMore(hasMore);
+        if (withTotal) {
+            result.setTotal(pageCounter.count(countStrategy, "service_records", filter.cacheKey(), () -> countServiceRecords(filter)));
+        }
+        return Result.success(result, "时长记录查询成功");
+    }
+
+    /**
+     * 把请求里的筛选条件转成查询参数：学号换成用户 id，日期范围换成 [起始日 0 点, 截止日次日 0 点)
+     * @return 筛选条件不可能匹配任何记录 (学号不存在、与用户ID不一致) 时返回 null
+     */
+    private RecordFilter resolveFilter(ServiceRecordQueryDTO query) {
+        if (query == null) {
+            return new RecordFilter(null, null, null, null);
+        }
+        Long userId = query.getUserId();
+        if (query.getStudentId() != null && !query.getStudentId().isEmpty()) {
+            User user = userMapper.selectOne(new QueryWrapper<User>().select("id").eq("student_id", query.getStudentId()));
+            if (user == null || (userId != null && !userId.equals(user.getId()))) {
+                return null;
+            }
+            userId = user.getId();
+        }
+        LocalDateTime recordedFrom = query.getStartDate() == null ? null : query.getStartDate().atStartOfDay();
+        LocalDateTime recordedTo = query.getEndDate() == null ? null : query.getEndDate().plusDays(1).atStartOfDay();
+        return new RecordFilter(query.getActivityId(), userId, recordedFrom, recordedTo);
+    }
+
+    // 游标绑定的筛选条件，取请求里的原始值，解码游标时还不需要查学号
+    private static String cursorFilterKey(ServiceRecordQueryDTO query) {
+        if (query == null) {
+            query = new ServiceRecordQueryDTO();
+        }
+        return query.getActivityId() + "|" + query.getUserId() + "|" + query.getStudentId()
+                + "|" + query.getStartDate() + "|" + query.getEndDate();
+    }
+
+    private long countServiceRecords(RecordFilter filter) {
+        return serviceRecordMapper.countServiceRecordViews(filter.activityId(), filter.userId(), filter.recordedFrom(), filter.recordedTo());
+    }
+
+    private record RecordFilter(Long activityId, Long userId, LocalDateTime recordedFrom, LocalDateTime recordedTo) {
+
+        // 总数缓存的 key，不带任何筛选时为 null
+        Object cacheKey() {
+            return activityId == null && userId == null && recordedFrom == null && recordedTo == null ? null : this;
+        }
+    }
+
     /**
      * 下载模板的业务逻辑实现
      */
     @Override
     public ByteArrayInputStream downloadExcelTemplate() throws IOException {
-        String[] headers = {"学生学号", "服务时长(小时)", "备注"};
+        String[] headers = ServiceRecordImportRow.TEMPLATE_HEADERS;
         try (
                 Workbook workbook = new XSSFWorkbook();
                 ByteArrayOutputStream out = new ByteArrayOutputStream()
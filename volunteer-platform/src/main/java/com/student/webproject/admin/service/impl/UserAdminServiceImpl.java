@@ -2,50 +2,68 @@ package com.student.webproject.admin.service.impl;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
-import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
 import com.student.webproject.admin.dto.UserCreateDTO;
 import com.student.webproject.admin.dto.UserPasswordUpdateDTO;
 import com.student.webproject.admin.dto.UserUpdateDTO;
 import com.student.webproject.admin.service.UserAdminService;
+import com.student.webproject.common.pagination.CountStrategy;
+import com.student.webproject.common.pagination.PageCounter;
 import com.student.webproject.common.response.Result;
+import com.student.webproject.security.LoginUser;
+import com.student.webproject.security.TokenVersionCache;
 import com.student.webproject.user.Entity.User;
 import com.student.webproject.user.mapper.UserMapper;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
-import java.security.Principal;
+import java.time.LocalDateTime;
+import java.util.Objects;
 
 @Service
 public class UserAdminServiceImpl implements UserAdminService {
 
     private final UserMapper userMapper;
     private final PasswordEncoder passwordEncoder;
+    private final TokenVersionCache tokenVersionCache;
+    private final DashboardAggregateStore dashboardAggregateStore;
+    private final PageCounter pageCounter;
 
-    public UserAdminServiceImpl(UserMapper userMapper, PasswordEncoder passwordEncoder) {
+    // 用户表最大，默认用缓存的总数
+    @Value("${admin.list.users.count-strategy:CACHED}")
+    private CountStrategy countStrategy = CountStrategy.CACHED;
+
+    public UserAdminServiceImpl(UserMapper userMapper, PasswordEncoder passwordEncoder, TokenVersionCache tokenVersionCache,
+                                DashboardAggregateStore dashboardAggregateStore, PageCounter pageCounter) {
         this.userMapper = userMapper;
         this.passwordEncoder = passwordEncoder;
+        this.tokenVersionCache = tokenVersionCache;
+        this.dashboardAggregateStore = dashboardAggregateStore;
+        this.pageCounter = pageCounter;
     }
 
     @Override
     public Result<IPage<User>> listUsers(Long page, Long pageSize) {
-        IPage<User> pageRequest = new Page<>(page, pageSize);
-        IPage<User> pageResult = userMapper.selectPage(pageRequest, null);
+        IPage<User> pageResult = pageCounter.selectPage(countStrategy, page, pageSize, "users", null,
+                pageRequest -> userMapper.selectPage(pageRequest, null), () -> userMapper.selectCount(null));
         return Result.success(pageResult, "用户列表查询成功");
     }
 
-    private void checkSuperAdminPermission(Principal principal, String targetRole) {
+    private void checkSuperAdminPermission(LoginUser operator, String targetRole) {
         if (targetRole != null && (targetRole.equals("admin") || targetRole.equals("super_admin"))) {
-            User operator = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
-            if (operator == null || !"super_admin".equals(operator.getRole())) {
+            // 角色来自 Token，角色变更时旧 Token 已被吊销，不必再查库
+            if (operator == null || !operator.isSuperAdmin()) {
                 throw new RuntimeException("权限不足，只有超级管理员才能设置其他管理员。");
             }
         }
     }
 
-    // 修改这两个方法的签名，加入 Principal 参数
+    // 修改这两个方法的签名，加入当前登录用户参数
     @Override
-    public Result<User> createUser(Principal principal, UserCreateDTO dto) {
-        checkSuperAdminPermission(principal, dto.getRole());
+    public Result<User> createUser(LoginUser operator, UserCreateDTO dto) {
+        checkSuperAdminPermission(operator, dto.getRole());
 
         if (userMapper.selectOne(new QueryWrapper<User>().eq("username", dto.getUsername())) != null) {
             throw new RuntimeException("用户名已存在");
@@ -58,13 +76,17 @@ public class UserAdminServiceImpl implements UserAdminService {
         user.setEmail(dto.getEmail());
         user.setRole(dto.getRole());
         user.setStatus(1);
+        user.setCreatedAt(LocalDateTime.now());
         userMapper.insert(user);
+        pageCounter.invalidate("users");
+        dashboardAggregateStore.onUserCreated(user);
         return Result.created(user, "用户创建成功");
     }
 
     @Override
-    public Result<User> updateUser(Principal principal, Long id, UserUpdateDTO dto) {
-        checkSuperAdminPermission(principal, dto.getRole());
+    @Transactional
+    public Result<User> updateUser(LoginUser operator, Long id, UserUpdateDTO dto) {
+        checkSuperAdminPermission(operator, dto.getRole());
 
         User user = userMapper.selectById(id);
         if (user == null) {
@@ -73,22 +95,37 @@ public class UserAdminServiceImpl implements UserAdminService {
         if (dto.getRealName() != null) user.setRealName(dto.getRealName());
         if (dto.getEmail() != null) user.setEmail(dto.getEmail());
         if (dto.getPhoneNumber() != null) user.setPhoneNumber(dto.getPhoneNumber());
+        // 角色或状态变化时吊销该用户已签发的 Token，Token 里带的角色不能继续用
+        boolean revoke = (dto.getRole() != null && !dto.getRole().equals(user.getRole()))
+                || (dto.getStatus() != null && !Objects.equals(dto.getStatus(), user.getStatus()));
         if (dto.getRole() != null) user.setRole(dto.getRole());
         if (dto.getStatus() != null) user.setStatus(dto.getStatus());
         userMapper.updateById(user);
+        if (revoke) {
+            tokenVersionCache.revoke(id);
+        }
+        dashboardAggregateStore.onUserUpdated(user);
         return Result.success(user, "用户信息更新成功");
     }
 
     @Override
+    @Transactional
     public Result<Void> deleteUser(Long id) {
-        if (userMapper.selectById(id) == null) {
+        User user = userMapper.selectById(id);
+        if (user == null) {
             throw new RuntimeException("删除失败，找不到ID为 " + id + " 的用户。");
         }
         userMapper.deleteById(id);
+        // 时长记录随用户级联删除
+        pageCounter.invalidate("users");
+        pageCounter.invalidate("service_records");
+        tokenVersionCache.evict(id);
+        dashboardAggregateStore.onUserDeleted(user);
         return Result.success(null, "用户删除成功");
     }
 
     @Override
+    @Transactional
     public Result<Void> updateUserPassword(Long id, UserPasswordUpdateDTO dto) {
         User user = userMapper.selectById(id);
         if (user == null) {
@@ -97,6 +134,7 @@ public class UserAdminServiceImpl implements UserAdminService {
         String encodedPassword = passwordEncoder.encode(dto.getNewPassword());
         user.setPassword(encodedPassword);
         userMapper.updateById(user);
+        tokenVersionCache.revoke(id);
         return Result.success(null, "密码更新成功");
     }
 }
\ No newline at end of file
@@ -0,0 +1,261 @@
+package com.student.webproject.chat.cache;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.text.Normalizer;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AI 问答的进程内答案缓存
+ * 大部分提问都是同几个常见问题换个说法 (怎么报名、时长怎么算、怎么加入组织)，每次都走一次完整的上游补全很浪费。
+ * 先按规范化后的问题精确匹配；没有命中时用 MinHash/LSH 找措辞相近的已缓存问题，相似度达到阈值也算命中。
+ * 管理员可以清除错误答案，或钉住标准答案 (钉住的条目不过期、不被淘汰，且优先于普通缓存)。
+ * 普通条目记下写入时本地知识库的版本，知识库内容变了之后不再命中：当时没有相关资料的问题，现在可能有了
+ */
+@Component
+public class ChatAnswerCache {
+
+    // 太短的问题 ("你好"、"谢谢") 只做精确匹配，近似匹配容易张冠李戴
+    private static final int MIN_NEAR_MATCH_LENGTH = 4;
+
+    private final Cache<String, CachedAnswer> answers;
+    private final Map<String, CachedAnswer> pinned = new ConcurrentHashMap<>();
+    // LSH 桶号 -> 落在这个桶里的问题 key
+    private final Map<Long, Set<String>> buckets = new ConcurrentHashMap<>();
+    private final double similarityThreshold;
+
+    private final Counter exactHits;
+    private final Counter nearHits;
+    private final Counter misses;
+
+    public ChatAnswerCache(MeterRegistry meterRegistry,
+                           @Value("${ai.cache.max-entries:2000}") long maxEntries,
+                           @Value("${ai.cache.ttl-minutes:720}") long ttlMinutes,
+                           @Value("${ai.cache.similarity-threshold:0.6}") double similarityThreshold) {
+        this.similarityThreshold = similarityThreshold;
+        this.answers = Caffeine.newBuilder()
+                .maximumSize(maxEntries)
+                .expireAfterWrite(Duration.ofMinutes(ttlMinutes))
+                .executor(Runnable::run)
+                .removalListener((String key, CachedAnswer value, RemovalCause cause) -> {
+                    if (cause != RemovalCause.REPLACED && value != null) {
+                        unindexIfAbsent(key, value.signature());
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, answers, "chat.answer");
+
+        this.exactHits = Counter.builder("chat.cache.lookups").tag("result", "exact")
+                .description("问答缓存查询次数").register(meterRegistry);
+        this.nearHits = Counter.builder("chat.cache.lookups").tag("result", "near")
+                .description("问答缓存查询次数").register(meterRegistry);
+        this.misses = Counter.builder("chat.cache.lookups").tag("result", "miss")
+                .description("问答缓存查询次数").register(meterRegistry);
+        Gauge.builder("chat.cache.hit_ratio", this, ChatAnswerCache::hitRatio)
+                .description("问答缓存命中率 (含近似命中)").register(meterRegistry);
+        // 每次命中都省掉了一次上游补全调用
+        Gauge.builder("chat.cache.upstream_calls_saved", this, cache -> cache.exactHits.count() + cache.nearHits.count())
+                .description("因命中缓存而省掉的上游调用次数").register(meterRegistry);
+        Gauge.builder("chat.cache.pinned", pinned, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * @param generation 本地知识库的当前版本，早于它写入的普通条目视为未命中
+     * @return 缓存的答案；未命中返回 null
+     */
+    public CachedAnswer lookup(String question, long generation) {
+        String key = normalize(question);
+        if (key.isEmpty()) {
+            misses.increment();
+            return null;
+        }
+
+        CachedAnswer exact = find(key, generation);
+        if (exact != null) {
+            exactHits.increment();
+            exact.hits().incrementAndGet();
+            return exact;
+        }
+
+        if (key.length() >= MIN_NEAR_MATCH_LENGTH) {
+            CachedAnswer near = findNear(key, MinHasher.signature(key), generation);
+            if (near != null) {
+                nearHits.increment();
+                near.hits().incrementAndGet();
+                return near;
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * 缓存一次成功的上游回答 (兜底、报错文案不要放进来)
+     * @param generation 检索资料之前读到的知识库版本
+     */
+    public void put(String question, String answer, long generation) {
+        String key = normalize(question);
+        if (key.isEmpty() || pinned.containsKey(key)) {
+            return;
+        }
+        CachedAnswer entry = new CachedAnswer(question, answer, MinHasher.signature(key), false, generation,
+                LocalDateTime.now(), new AtomicLong());
+        answers.put(key, entry);
+        index(key, entry.signature());
+    }
+
+    /**
+     * 钉住一条标准答案：不过期、不淘汰，措辞相近的提问也会命中它
+     */
+    public CachedAnswer pin(String question, String answer) {
+        String key = normalize(question);
+        if (key.isEmpty()) {
+            throw new IllegalArgumentException("问题不能为空");
+        }
+        CachedAnswer entry = new CachedAnswer(question, answer, MinHasher.signature(key), true, 0,
+                LocalDateTime.now(), new AtomicLong());
+        pinned.put(key, entry);
+        index(key, entry.signature());
+        answers.invalidate(key);
+        return entry;
+    }
+
+    /**
+     * @return 是否确实取消了一条钉住的答案
+     */
+    public boolean unpin(String question) {
+        String key = normalize(question);
+        CachedAnswer removed = pinned.remove(key);
+        if (removed == null) {
+            return false;
+        }
+        unindexIfAbsent(key, removed.signature());
+        return true;
+    }
+
+    /**
+     * 清除一条普通缓存 (钉住的答案需要 unpin)
+     */
+    public boolean evict(String question) {
+        return answers.asMap().remove(normalize(question)) != null;
+    }
+
+    public void evictAll() {
+        answers.invalidateAll();
+    }
+
+    /**
+     * 所有条目：钉住的在前，其余按命中次数降序
+     */
+    public List<CachedAnswer> entries() {
+        List<CachedAnswer> entries = new ArrayList<>(pinned.values());
+        List<CachedAnswer> cached = new ArrayList<>(answers.asMap().values());
+        cached.sort(Comparator.comparingLong((CachedAnswer entry) -> entry.hits().get()).reversed());
+        entries.addAll(cached);
+        return entries;
+    }
+
+    /**
+     * 全角转半角、统一小写，去掉空白和标点："请问，怎么报名？" 与 "请问怎么报名" 视为同一个问题
+     */
+    public static String normalize(String question) {
+        if (question == null) {
+            return "";
+        }
+        String text = Normalizer.normalize(question, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder key = new StringBuilder(text.length());
+        text.codePoints()
+                .filter(Character::isLetterOrDigit)
+                .forEach(key::appendCodePoint);
+        return key.toString();
+    }
+
+    private CachedAnswer find(String key, long generation) {
+        CachedAnswer entry = pinned.get(key);
+        if (entry != null) {
+            return entry;
+        }
+        entry = answers.getIfPresent(key);
+        return entry != null && entry.generation() >= generation ? entry : null;
+    }
+
+    private CachedAnswer findNear(String key, int[] signature, long generation) {
+        CachedAnswer best = null;
+        double bestSimilarity = similarityThreshold;
+        Set<String> seen = new HashSet<>();
+        for (long bandKey : MinHasher.bandKeys(signature)) {
+            Set<String> bucket = buckets.get(bandKey);
+            if (bucket == null) {
+                continue;
+            }
+            for (String candidate : bucket) {
+                if (candidate.equals(key) || !seen.add(candidate)) {
+                    continue;
+                }
+                CachedAnswer entry = find(candidate, generation);
+                if (entry == null) {
+                    continue;
+                }
+                double similarity = MinHasher.similarity(signature, entry.signature());
+                // 同样相似时钉住的标准答案优先
+                if (similarity > bestSimilarity
+                        || (similarity == bestSimilarity && (best == null || entry.pinned() && !best.pinned()))) {
+                    best = entry;
+                    bestSimilarity = similarity;
+                }
+            }
+        }
+        return best;
+    }
+
+    private void index(String key, int[] signature) {
+        for (long bandKey : MinHasher.bandKeys(signature)) {
+            buckets.computeIfAbsent(bandKey, k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    private void unindexIfAbsent(String key, int[] signature) {
+        if (pinned.containsKey(key) || answers.asMap().containsKey(key)) {
+            return;
+        }
+        for (long bandKey : MinHasher.bandKeys(signature)) {
+            buckets.computeIfPresent(bandKey, (k, bucket) -> {
+                bucket.remove(key);
+                return bucket.isEmpty() ? null : bucket;
+            });
+        }
+    }
+
+    private double hitRatio() {
+        double hits = exactHits.count() + nearHits.count();
+        double total = hits + misses.count();
+        return total == 0 ? 0 : hits / total;
+    }
+
+    /**
+     * 一条缓存的答案
+     * @param question 第一次被问到时的原始措辞
+     * @param generation 写入时的知识库版本 (钉住的答案不看版本)
+     */
+    public record CachedAnswer(String question, String answer, int[] signature, boolean pinned, long generation,
+                               LocalDateTime createdAt, AtomicLong hits) {
+    }
+}
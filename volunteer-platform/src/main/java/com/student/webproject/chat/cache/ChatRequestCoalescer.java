@@ -0,0 +1,93 @@
+package com.student.webproject.chat.cache;
+
+import com.student.webproject.chat.client.ChatUpstreamException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * 相同问题的并发请求合并 (single-flight)
+ * 公告一发，几十个人几秒内问同一个问题，此时答案缓存里还没有。规范化后相同的问题同一时刻只向上游发一次：
+ * 第一个请求 (leader) 真正调用，其余请求 (follower) 等待它的结果。
+ * leader 无论成功、失败都会完成 future 并移出登记表，follower 不会被挂住；follower 自己的等待也有上限。
+ */
+@Component
+public class ChatRequestCoalescer {
+
+    private final Map<String, CompletableFuture<Object>> inFlight = new ConcurrentHashMap<>();
+    private final long followerTimeoutMs;
+
+    private final Counter leaders;
+    private final Counter followers;
+
+    public ChatRequestCoalescer(MeterRegistry meterRegistry,
+                                @Value("${ai.coalesce.follower-timeout-ms:50000}") long followerTimeoutMs) {
+        this.followerTimeoutMs = followerTimeoutMs;
+        this.leaders = Counter.builder("chat.coalesce.requests").tag("role", "leader")
+                .description("实际发往上游的请求").register(meterRegistry);
+        this.followers = Counter.builder("chat.coalesce.requests").tag("role", "follower")
+                .description("搭了相同问题顺风车的请求").register(meterRegistry);
+        Gauge.builder("chat.coalesce.ratio", this, ChatRequestCoalescer::coalescedRatio)
+                .description("被合并掉的请求占比").register(meterRegistry);
+        Gauge.builder("chat.coalesce.in_flight", inFlight, Map::size).register(meterRegistry);
+    }
+
+    /**
+     * 执行一次上游调用；如果相同问题的调用正在进行，直接等待它的结果
+     * @throws ChatUpstreamException leader 的调用抛出异常，或 follower 等待超时
+     */
+    @SuppressWarnings("unchecked")
+    public <T> T execute(String question, Supplier<T> call) {
+        String key = ChatAnswerCache.normalize(question);
+        CompletableFuture<Object> future = new CompletableFuture<>();
+        CompletableFuture<Object> existing = inFlight.putIfAbsent(key, future);
+        if (existing != null) {
+            followers.increment();
+            return (T) await(existing);
+        }
+
+        leaders.increment();
+        try {
+            T result = call.get();
+            future.complete(result);
+            return result;
+        } catch (RuntimeException | Error e) {
+            future.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, future);
+        }
+    }
+
+    private Object await(CompletableFuture<Object> future) {
+        try {
+            return future.get(followerTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new ChatUpstreamException("等待相同问题的上游结果超时", true, e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof ChatUpstreamException upstream) {
+                throw upstream;
+            }
+            throw new ChatUpstreamException("相同问题的上游调用失败: " + cause.getMessage(), false, cause);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ChatUpstreamException("等待上游结果时被中断", false, e);
+        }
+    }
+
+    private double coalescedRatio() {
+        double total = leaders.count() + followers.count();
+        return total == 0 ? 0 : followers.count() / total;
+    }
+}
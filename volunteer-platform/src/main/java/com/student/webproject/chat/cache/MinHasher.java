@@ -0,0 +1,84 @@
+package com.student.webproject.chat.cache;
+
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.SplittableRandom;
+
+/**
+ * 字符 shingle 的 MinHash 签名与 LSH 分桶
+ * 中文没有空格分词，按相邻两个字 (bigram) 切片即可很好地反映措辞上的相似度。
+ * 签名 = BANDS 段 × ROWS 行；两句话只要有一段完全相同就成为候选，再用签名估算的 Jaccard 相似度精确比较。
+ */
+final class MinHasher {
+
+    static final int BANDS = 16;
+    static final int ROWS = 4;
+    static final int SIGNATURE_LENGTH = BANDS * ROWS;
+
+    private static final int SHINGLE_SIZE = 2;
+    // 固定种子：签名只在进程内使用，但同一文本每次都要得到同一签名
+    private static final long[] SEEDS = new SplittableRandom(0x5EEDL).longs(SIGNATURE_LENGTH).toArray();
+
+    private MinHasher() {
+    }
+
+    static int[] signature(String text) {
+        int[] signature = new int[SIGNATURE_LENGTH];
+        Arrays.fill(signature, Integer.MAX_VALUE);
+        for (String shingle : shingles(text)) {
+            long base = shingle.hashCode();
+            for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+                int hash = (int) mix(base ^ SEEDS[i]);
+                if (hash < signature[i]) {
+                    signature[i] = hash;
+                }
+            }
+        }
+        return signature;
+    }
+
+    /**
+     * 签名中相同位置取值相等的比例，即 Jaccard 相似度的估计
+     */
+    static double similarity(int[] a, int[] b) {
+        int same = 0;
+        for (int i = 0; i < SIGNATURE_LENGTH; i++) {
+            if (a[i] == b[i]) {
+                same++;
+            }
+        }
+        return (double) same / SIGNATURE_LENGTH;
+    }
+
+    /**
+     * 每一段对应的 LSH 桶号 (段序号放在高 32 位，不同段的桶不会互相碰撞)
+     */
+    static long[] bandKeys(int[] signature) {
+        long[] keys = new long[BANDS];
+        for (int band = 0; band < BANDS; band++) {
+            int hash = Arrays.hashCode(Arrays.copyOfRange(signature, band * ROWS, (band + 1) * ROWS));
+            keys[band] = ((long) band << 32) | (hash & 0xFFFFFFFFL);
+        }
+        return keys;
+    }
+
+    private static Set<String> shingles(String text) {
+        Set<String> shingles = new HashSet<>();
+        if (text.length() <= SHINGLE_SIZE) {
+            shingles.add(text);
+            return shingles;
+        }
+        for (int i = 0; i + SHINGLE_SIZE <= text.length(); i++) {
+            shingles.add(text.substring(i, i + SHINGLE_SIZE));
+        }
+        return shingles;
+    }
+
+    // SplitMix64 的终结函数，把相近的输入打散
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
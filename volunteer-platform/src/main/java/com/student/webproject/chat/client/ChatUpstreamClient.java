@@ -0,0 +1,337 @@
+package com.student.webproject.chat.client;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.httpcomponents.hc5.PoolingHttpClientConnectionManagerMetricsBinder;
+import jakarta.annotation.PreDestroy;
+import org.apache.hc.client5.http.classic.methods.HttpPost;
+import org.apache.hc.client5.http.config.ConnectionConfig;
+import org.apache.hc.client5.http.config.RequestConfig;
+import org.apache.hc.client5.http.impl.classic.CloseableHttpClient;
+import org.apache.hc.client5.http.impl.classic.HttpClients;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManager;
+import org.apache.hc.client5.http.impl.io.PoolingHttpClientConnectionManagerBuilder;
+import org.apache.hc.core5.http.ContentType;
+import org.apache.hc.core5.http.io.entity.EntityUtils;
+import org.apache.hc.core5.http.io.entity.StringEntity;
+import org.apache.hc.core5.util.TimeValue;
+import org.apache.hc.core5.util.Timeout;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AI 对话上游的 HTTP 客户端
+ * 连接池复用长连接 (每个路由的最大连接数可配)，连接、读取、从池里取连接都有超时，
+ * 另有整次调用的总时限：到点后直接中断请求，慢上游不会一直占着调用线程。
+ * 连接池使用情况以 httpcomponents.httpclient.pool.* 指标暴露 (tag httpclient=chat-upstream)，
+ * 上游耗时以 chat.upstream.latency 指标暴露，按结果 (success / http_error / timeout / io_error) 区分。
+ * 每次调用都先经过 ChatUpstreamGuard：上游持续失败时熔断，同时进行的调用数有上限。
+ */
+@Component
+public class ChatUpstreamClient {
+
+    private final String apiUrl;
+    private final String apiKey;
+    private final long totalTimeoutMs;
+    private final long streamTotalTimeoutMs;
+
+    private final PoolingHttpClientConnectionManager connectionManager;
+    private final CloseableHttpClient httpClient;
+    private final ScheduledExecutorService deadlineTimer;
+    private final MeterRegistry meterRegistry;
+    private final ChatUpstreamGuard guard;
+
+    public ChatUpstreamClient(MeterRegistry meterRegistry,
+                              ChatUpstreamGuard guard,
+                              @Value("${ai.model.api.url}") String apiUrl,
+                              @Value("${ai.model.api.key}") String apiKey,
+                              @Value("${ai.upstream.connect-timeout-ms:2000}") long connectTimeoutMs,
+                              @Value("${ai.upstream.read-timeout-ms:30000}") long readTimeoutMs,
+                              @Value("${ai.upstream.total-timeout-ms:45000}") long totalTimeoutMs,
+                              @Value("${ai.upstream.stream-total-timeout-ms:120000}") long streamTotalTimeoutMs,
+                              @Value("${ai.upstream.pool-acquire-timeout-ms:1000}") long poolAcquireTimeoutMs,
+                              @Value("${ai.upstream.max-connections:50}") int maxConnections,
+                              @Value("${ai.upstream.max-connections-per-route:20}") int maxConnectionsPerRoute) {
+        this.meterRegistry = meterRegistry;
+        this.guard = guard;
+        this.apiUrl = apiUrl;
+        this.apiKey = apiKey;
+        this.totalTimeoutMs = totalTimeoutMs;
+        this.streamTotalTimeoutMs = streamTotalTimeoutMs;
+
+        this.connectionManager = PoolingHttpClientConnectionManagerBuilder.create()
+                .setMaxConnTotal(maxConnections)
+                .setMaxConnPerRoute(maxConnectionsPerRoute)
+                .setDefaultConnectionConfig(ConnectionConfig.custom()
+                        .setConnectTimeout(Timeout.ofMilliseconds(connectTimeoutMs))
+                        .setSocketTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        // 长连接最多复用 5 分钟，避免一直用着被中间设备悄悄断掉的连接
+                        .setTimeToLive(TimeValue.ofMinutes(5))
+                        .setValidateAfterInactivity(TimeValue.ofSeconds(10))
+                        .build())
+                .build();
+        this.httpClient = HttpClients.custom()
+                .setConnectionManager(connectionManager)
+                .setDefaultRequestConfig(RequestConfig.custom()
+                        .setConnectionRequestTimeout(Timeout.ofMilliseconds(poolAcquireTimeoutMs))
+                        .setResponseTimeout(Timeout.ofMilliseconds(readTimeoutMs))
+                        .build())
+                .evictExpiredConnections()
+                .evictIdleConnections(TimeValue.ofSeconds(30))
+                .disableAutomaticRetries()
+                .build();
+        new PoolingHttpClientConnectionManagerMetricsBinder(connectionManager, "chat-upstream").bindTo(meterRegistry);
+
+        this.deadlineTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "chat-upstream-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 是否配置了 API 密钥
+     */
+    public boolean isConfigured() {
+        return apiKey != null && !apiKey.isEmpty();
+    }
+
+    /**
+     * 向上游发送一次补全请求，等待完整响应
+     * @param jsonBody 请求体 JSON
+     * @return 上游的状态码和响应体 (非 2xx 也正常返回，由调用方处理)
+     * @throws ChatUpstreamException 连接失败、超时或超过总时限；熔断或并发已满时为 ChatUpstreamRejectedException
+     */
+    public UpstreamResponse post(String jsonBody) {
+        ChatUpstreamGuard.Permit permit = guard.acquire();
+        HttpPost request = new HttpPost(apiUrl);
+        request.setHeader("Authorization", "Bearer " + apiKey);
+        request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+
+        AtomicBoolean deadlineExceeded = new AtomicBoolean(false);
+        ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> {
+            deadlineExceeded.set(true);
+            request.cancel();
+        }, totalTimeoutMs, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        String outcome = "io_error";
+        try {
+            UpstreamResponse response = httpClient.execute(request, httpResponse -> new UpstreamResponse(
+                    httpResponse.getCode(),
+                    httpResponse.getEntity() == null ? null : EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8)));
+            outcome = response.isSuccess() ? "success" : "http_error";
+            if (isUpstreamFault(response.status())) {
+                permit.failure();
+            } else {
+                permit.success();
+            }
+            return response;
+        } catch (IOException e) {
+            if (deadlineExceeded.get()) {
+                outcome = "timeout";
+                throw new ChatUpstreamException("上游调用超过总时限 " + totalTimeoutMs + "ms", true, e);
+            }
+            // 连接超时、读超时、等不到池里的连接都是 InterruptedIOException
+            if (e instanceof InterruptedIOException) {
+                outcome = "timeout";
+                throw new ChatUpstreamException("上游调用超时: " + e.getMessage(), true, e);
+            }
+            throw new ChatUpstreamException("上游调用失败: " + e.getMessage(), false, e);
+        } finally {
+            // 走到这里还没记录结果的都是连接失败、超时
+            permit.failure();
+            deadline.cancel(false);
+            latencyTimer(outcome).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 准备一次流式调用 (请求体里应带 "stream": true)；先拿到句柄，其它线程可以随时取消
+     */
+    public StreamCall prepareStream(String jsonBody) {
+        HttpPost request = new HttpPost(apiUrl);
+        request.setHeader("Authorization", "Bearer " + apiKey);
+        request.setHeader("Accept", "text/event-stream");
+        request.setEntity(new StringEntity(jsonBody, ContentType.APPLICATION_JSON));
+        return new StreamCall(request);
+    }
+
+    /**
+     * 执行流式调用，逐条把上游 SSE 的 data 内容交给 handler，直到 [DONE] 或连接结束
+     * 读超时作用于相邻两段数据之间；总时限按 stream-total-timeout-ms 计。
+     * handler 是同步调用的：它没处理完 (比如浏览器那边写得慢) 就不会读下一段，背压自然传回上游连接。
+     * @throws ChatUpstreamException 上游返回错误码、连接失败、超时或被取消
+     * @throws IOException handler 抛出的 IOException (通常是浏览器已断开)，此时上游请求已被中断
+     */
+    public void stream(StreamCall call, StreamHandler handler) throws IOException {
+        ChatUpstreamGuard.Permit permit = guard.acquire();
+        AtomicBoolean deadlineExceeded = new AtomicBoolean(false);
+        ScheduledFuture<?> deadline = deadlineTimer.schedule(() -> {
+            deadlineExceeded.set(true);
+            call.request.cancel();
+        }, streamTotalTimeoutMs, TimeUnit.MILLISECONDS);
+
+        long start = System.nanoTime();
+        String outcome = "io_error";
+        try {
+            outcome = httpClient.execute(call.request, httpResponse -> {
+                if (httpResponse.getCode() < 200 || httpResponse.getCode() >= 300) {
+                    String body = httpResponse.getEntity() == null ? null : EntityUtils.toString(httpResponse.getEntity(), StandardCharsets.UTF_8);
+                    throw new ChatUpstreamException(httpResponse.getCode(), body);
+                }
+                BufferedReader reader = new BufferedReader(new InputStreamReader(httpResponse.getEntity().getContent(), StandardCharsets.UTF_8));
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.startsWith("data:")) {
+                        continue;
+                    }
+                    String data = line.substring(5).trim();
+                    if ("[DONE]".equals(data)) {
+                        break;
+                    }
+                    try {
+                        handler.onData(data);
+                    } catch (IOException e) {
+                        // 下游已经不要了：中断上游连接 (不会把剩余内容读完再归还)
+                        call.cancel();
+                        throw new DownstreamClosedException(e);
+                    }
+                }
+                return "success";
+            });
+        } catch (DownstreamClosedException e) {
+            outcome = "cancelled";
+            permit.ignore();
+            throw e.getCause();
+        } catch (ChatUpstreamException e) {
+            outcome = "http_error";
+            if (!isUpstreamFault(e.getStatus())) {
+                permit.success();
+            }
+            throw e;
+        } catch (IOException e) {
+            if (call.isCancelled()) {
+                outcome = "cancelled";
+                permit.ignore();
+                throw new ChatUpstreamException("上游调用已取消", false, e);
+            }
+            if (deadlineExceeded.get()) {
+                outcome = "timeout";
+                throw new ChatUpstreamException("上游调用超过总时限 " + streamTotalTimeoutMs + "ms", true, e);
+            }
+            if (e instanceof InterruptedIOException) {
+                outcome = "timeout";
+                throw new ChatUpstreamException("上游调用超时: " + e.getMessage(), true, e);
+            }
+            throw new ChatUpstreamException("上游调用失败: " + e.getMessage(), false, e);
+        } finally {
+            if ("success".equals(outcome)) {
+                permit.success();
+            } else {
+                permit.failure();
+            }
+            deadline.cancel(false);
+            Timer.builder("chat.upstream.stream.duration")
+                    .description("AI 对话上游流式调用的总耗时")
+                    .tag("outcome", outcome)
+                    .register(meterRegistry)
+                    .record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 5xx 和 429 说明上游自身有问题，计入熔断失败率；其余 4xx 是请求本身的问题
+     */
+    private static boolean isUpstreamFault(int status) {
+        return status >= 500 || status == 429;
+    }
+
+    private Timer latencyTimer(String outcome) {
+        return Timer.builder("chat.upstream.latency")
+                .description("AI 对话上游调用耗时")
+                .tag("outcome", outcome)
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+    }
+
+    @PreDestroy
+    public void shutdown() throws IOException {
+        deadlineTimer.shutdownNow();
+        httpClient.close();
+    }
+
+    /**
+     * 流式调用的句柄
+     */
+    public static final class StreamCall {
+
+        private final HttpPost request;
+        private final AtomicBoolean cancelled = new AtomicBoolean(false);
+
+        private StreamCall(HttpPost request) {
+            this.request = request;
+        }
+
+        /**
+         * 中断上游请求 (浏览器断开、超时等)，可以在任意线程调用，重复调用无副作用
+         */
+        public void cancel() {
+            if (cancelled.compareAndSet(false, true)) {
+                request.cancel();
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled.get();
+        }
+    }
+
+    /**
+     * 上游 SSE 每条 data 的处理回调
+     */
+    @FunctionalInterface
+    public interface StreamHandler {
+        /**
+         * @param data 一条 data 的内容 (通常是一段 JSON)
+         * @throws IOException 下游写不出去了，流式调用随之中止
+         */
+        void onData(String data) throws IOException;
+    }
+
+    /**
+     * 把 handler 的 IOException 和上游连接本身的 IOException 区分开
+     */
+    private static final class DownstreamClosedException extends RuntimeException {
+
+        private DownstreamClosedException(IOException cause) {
+            super(cause);
+        }
+
+        @Override
+        public synchronized IOException getCause() {
+            return (IOException) super.getCause();
+        }
+    }
+
+    /**
+     * 上游的一次完整响应
+     */
+    public record UpstreamResponse(int status, String body) {
+
+        public boolean isSuccess() {
+            return status >= 200 && status < 300;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package com.student.webproject.chat.client;
+
+/**
+ * 调用 AI 对话上游失败：连接失败、超时，或流式调用时上游返回了 HTTP 错误码
+ * (非流式调用的错误码通过 UpstreamResponse 正常返回，不抛异常)
+ */
+public class ChatUpstreamException extends RuntimeException {
+
+    private final boolean timeout;
+    // 上游返回的 HTTP 错误码，连接失败、超时等情况下为 0
+    private final int status;
+    private final String responseBody;
+
+    public ChatUpstreamException(String message, boolean timeout, Throwable cause) {
+        super(message, cause);
+        this.timeout = timeout;
+        this.status = 0;
+        this.responseBody = null;
+    }
+
+    public ChatUpstreamException(int status, String responseBody) {
+        super("上游返回HTTP错误: " + status);
+        this.timeout = false;
+        this.status = status;
+        this.responseBody = responseBody;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public String getResponseBody() {
+        return responseBody;
+    }
+
+    public boolean isTimeout() {
+        return timeout;
+    }
+}
@@ -0,0 +1,219 @@
+package com.student.webproject.chat.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * AI 对话上游的熔断器 + 舱壁
+ * 熔断：按最近 window-size 次调用的失败率判断，达到阈值后打开，open-duration 内的调用立即失败；
+ * 到期后进入半开，只放行 half-open-probes 个探测请求，全部成功才关闭，任何一个失败就重新打开。
+ * 舱壁：同时进行的上游调用数有上限，超出的请求不排队，立即失败走兜底文案。
+ * 状态以 chat.upstream.breaker.state 指标暴露 (0 关闭 / 1 打开 / 2 半开)，
+ * 状态切换计入 chat.upstream.breaker.transitions，拒绝计入 chat.upstream.rejected (reason=breaker_open / bulkhead_full)。
+ */
+@Component
+public class ChatUpstreamGuard {
+
+    private static final Logger logger = LoggerFactory.getLogger(ChatUpstreamGuard.class);
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final int minimumCalls;
+    private final int failureRateThreshold;
+    private final long openDurationMs;
+    private final int halfOpenProbes;
+    private final Semaphore bulkhead;
+    private final MeterRegistry meterRegistry;
+
+    // 最近 window-size 次调用的结果 (环形缓冲)，true 为失败
+    private final boolean[] window;
+    private int windowNext;
+    private int windowCount;
+    private int windowFailures;
+
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probesInFlight;
+    private int probeSuccesses;
+    // 每次状态切换加一，用来认出上一轮半开时发出、迟到的探测结果
+    private long generation;
+
+    private final Counter rejectedOpen;
+    private final Counter rejectedBulkhead;
+
+    public ChatUpstreamGuard(MeterRegistry meterRegistry,
+                             @Value("${ai.upstream.breaker.window-size:20}") int windowSize,
+                             @Value("${ai.upstream.breaker.minimum-calls:10}") int minimumCalls,
+                             @Value("${ai.upstream.breaker.failure-rate-threshold:50}") int failureRateThreshold,
+                             @Value("${ai.upstream.breaker.open-duration-ms:30000}") long openDurationMs,
+                             @Value("${ai.upstream.breaker.half-open-probes:3}") int halfOpenProbes,
+                             @Value("${ai.upstream.bulkhead.max-concurrent:20}") int maxConcurrent) {
+        this.meterRegistry = meterRegistry;
+        this.window = new boolean[windowSize];
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.openDurationMs = openDurationMs;
+        this.halfOpenProbes = halfOpenProbes;
+        this.bulkhead = new Semaphore(maxConcurrent);
+
+        this.rejectedOpen = Counter.builder("chat.upstream.rejected").tag("reason", "breaker_open")
+                .description("未调用上游即被拒绝的请求").register(meterRegistry);
+        this.rejectedBulkhead = Counter.builder("chat.upstream.rejected").tag("reason", "bulkhead_full")
+                .description("未调用上游即被拒绝的请求").register(meterRegistry);
+        Gauge.builder("chat.upstream.breaker.state", this, guard -> guard.getState().ordinal())
+                .description("熔断器状态：0 关闭，1 打开，2 半开").register(meterRegistry);
+        Gauge.builder("chat.upstream.bulkhead.available", bulkhead, Semaphore::availablePermits)
+                .description("舱壁剩余的并发名额").register(meterRegistry);
+    }
+
+    /**
+     * 申请一次上游调用；调用结束后必须对返回的 Permit 调用 success / failure / ignore 之一
+     * @throws ChatUpstreamRejectedException 熔断器打开，或并发已满
+     */
+    public Permit acquire() {
+        boolean probe;
+        long probeGeneration;
+        synchronized (this) {
+            if (state == State.OPEN && System.currentTimeMillis() - openedAt >= openDurationMs) {
+                transitionTo(State.HALF_OPEN);
+            }
+            if (state == State.OPEN || (state == State.HALF_OPEN && probesInFlight >= halfOpenProbes)) {
+                rejectedOpen.increment();
+                throw new ChatUpstreamRejectedException("AI上游熔断中，暂不调用");
+            }
+            probe = state == State.HALF_OPEN;
+            probeGeneration = generation;
+            if (probe) {
+                probesInFlight++;
+            }
+        }
+        if (!bulkhead.tryAcquire()) {
+            releaseProbe(probe, probeGeneration);
+            rejectedBulkhead.increment();
+            throw new ChatUpstreamRejectedException("AI上游并发调用已达上限");
+        }
+        return new Permit(probe, probeGeneration);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    private synchronized void record(boolean probe, long probeGeneration, boolean failed) {
+        boolean currentProbe = releaseProbe(probe, probeGeneration);
+        if (state == State.HALF_OPEN) {
+            // 半开期间只看本轮探测的结果；打开前发出、现在才回来的调用不算数
+            if (!currentProbe) {
+                return;
+            }
+            if (failed) {
+                transitionTo(State.OPEN);
+            } else if (++probeSuccesses >= halfOpenProbes) {
+                transitionTo(State.CLOSED);
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            return;
+        }
+
+        if (windowCount == window.length) {
+            if (window[windowNext]) {
+                windowFailures--;
+            }
+        } else {
+            windowCount++;
+        }
+        window[windowNext] = failed;
+        if (failed) {
+            windowFailures++;
+        }
+        windowNext = (windowNext + 1) % window.length;
+
+        if (windowCount >= minimumCalls && windowFailures * 100 >= failureRateThreshold * windowCount) {
+            transitionTo(State.OPEN);
+        }
+    }
+
+    /**
+     * @return 是否是本轮半开的探测请求
+     */
+    private synchronized boolean releaseProbe(boolean probe, long probeGeneration) {
+        if (probe && probeGeneration == generation) {
+            probesInFlight--;
+            return true;
+        }
+        return false;
+    }
+
+    private void transitionTo(State next) {
+        logger.warn("AI上游熔断器 {} -> {} (窗口内失败 {}/{})", state, next, windowFailures, windowCount);
+        state = next;
+        generation++;
+        switch (next) {
+            case OPEN -> openedAt = System.currentTimeMillis();
+            case HALF_OPEN -> {
+                probesInFlight = 0;
+                probeSuccesses = 0;
+            }
+            case CLOSED -> {
+                windowNext = 0;
+                windowCount = 0;
+                windowFailures = 0;
+            }
+        }
+        Counter.builder("chat.upstream.breaker.transitions")
+                .description("熔断器状态切换次数")
+                .tag("to", next.name().toLowerCase())
+                .register(meterRegistry)
+                .increment();
+    }
+
+    /**
+     * 一次获准的上游调用；结果只记录一次，重复调用无副作用
+     */
+    public final class Permit {
+
+        private final boolean probe;
+        private final long probeGeneration;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+
+        private Permit(boolean probe, long probeGeneration) {
+            this.probe = probe;
+            this.probeGeneration = probeGeneration;
+        }
+
+        public void success() {
+            finish(false);
+        }
+
+        public void failure() {
+            finish(true);
+        }
+
+        /**
+         * 调用被下游主动取消等情况：不计入成功也不计入失败，只归还名额
+         */
+        public void ignore() {
+            if (done.compareAndSet(false, true)) {
+                bulkhead.release();
+                releaseProbe(probe, probeGeneration);
+            }
+        }
+
+        private void finish(boolean failed) {
+            if (done.compareAndSet(false, true)) {
+                bulkhead.release();
+                record(probe, probeGeneration, failed);
+            }
+        }
+    }
+}
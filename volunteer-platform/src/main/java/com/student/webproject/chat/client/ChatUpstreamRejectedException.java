@@ -0,0 +1,11 @@
+package com.student.webproject.chat.client;
+
+/**
+ * 没有真正调用上游就被拒绝：熔断器打开，或同时进行的上游调用已达上限
+ */
+public class ChatUpstreamRejectedException extends ChatUpstreamException {
+
+    public ChatUpstreamRejectedException(String message) {
+        super(message, false, null);
+    }
+}
@@ -3,21 +3,138 @@ package com.student.webproject.chat.controller;
 import com.student.webproject.chat.dto.ChatMessageRequest;
 import com.student.webproject.chat.dto.ChatMessageResponse;
 import com.student.webproject.chat.service.ChatService;
+import com.student.webproject.chat.service.ChatStream;
 import com.student.webproject.common.response.Result;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/chat")
 public class ChatController {
 
+    private static final Logger logger = LoggerFactory.getLogger(ChatController.class);
+
     @Autowired
     private ChatService chatService;
 
+    @Autowired
+    @Qualifier("chatExecutor")
+    private ExecutorService chatExecutor;
+
+    // SSE 连接的最长保持时间，应略长于上游流式调用的总时限
+    @Value("${ai.stream.emitter-timeout-ms:150000}")
+    private long emitterTimeoutMs;
+
+    // /send 异步等待的上限，应略长于上游调用的总时限
+    @Value("${ai.send.timeout-ms:50000}")
+    private long sendTimeoutMs;
+
+    /**
+     * 在 chat 线程池里调用上游，Tomcat 线程立即归还；线程池满时直接返回 503，不排在其他接口前面抢线程
+     */
     @PostMapping("/send")
-    public ResponseEntity<Result<ChatMessageResponse>> sendMessage(@RequestBody ChatMessageRequest request) {
-        ChatMessageResponse response = chatService.processMessage(request);
-        return ResponseEntity.ok(Result.success(response));
+    public DeferredResult<ResponseEntity<Result<ChatMessageResponse>>> sendMessage(@RequestBody ChatMessageRequest request) {
+        DeferredResult<ResponseEntity<Result<ChatMessageResponse>>> result = new DeferredResult<>(sendTimeoutMs,
+                () -> ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                        .body(Result.error(503, "AI服务响应超时，请稍后再试。")));
+        try {
+            Future<?> task = chatExecutor.submit(() -> {
+                // 排队期间已经超时 (或客户端已断开) 的请求不再调用上游
+                if (result.isSetOrExpired()) {
+                    return;
+                }
+                try {
+                    result.setResult(ResponseEntity.ok(Result.success(chatService.processMessage(request))));
+                } catch (RuntimeException e) {
+                    result.setErrorResult(e);
+                }
+            });
+            // 超时或出错后取消任务：还在排队的不会再执行，正在调用上游的中断它
+            result.onTimeout(() -> task.cancel(true));
+            result.onError(e -> task.cancel(true));
+        } catch (RejectedExecutionException e) {
+            result.setResult(ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .body(Result.error(503, "当前咨询人数较多，请稍后再试。")));
+        }
+        return result;
+    }
+
+    /**
+     * 流式回答 (Server-Sent Events)：逐段推送 delta 事件，结束时推送 done (带会话 ID)，中途出错推送 error
+     */
+    @PostMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessage(@RequestBody ChatMessageRequest request) {
+        return openEmitter(request);
+    }
+
+    /**
+     * 同上，供浏览器 EventSource 直接使用 (EventSource 只能发 GET)
+     */
+    @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public SseEmitter streamMessage(@RequestParam String message, @RequestParam(required = false) String sessionId) {
+        return openEmitter(new ChatMessageRequest(message, sessionId));
+    }
+
+    /**
+     * 结束会话 (前端"新对话"按钮)，服务端丢弃它的历史
+     */
+    @DeleteMapping("/sessions/{sessionId}")
+    public Result<Void> endSession(@PathVariable String sessionId) {
+        if (!chatService.endSession(sessionId)) {
+            return Result.error(404, "会话不存在或已过期");
+        }
+        return Result.success(null, "会话已结束");
+    }
+
+    private SseEmitter openEmitter(ChatMessageRequest request) {
+        SseEmitter emitter = new SseEmitter(emitterTimeoutMs);
+        ChatStream stream = chatService.openStream(request);
+        // 浏览器断开、超时时立即取消上游，不再空耗上游的 token
+        emitter.onCompletion(stream::cancel);
+        emitter.onTimeout(stream::cancel);
+        emitter.onError(e -> stream.cancel());
+
+        try {
+            chatExecutor.execute(() -> {
+                try {
+                    stream.run(content -> emitter.send(SseEmitter.event().name("delta").data(Map.of("content", content))));
+                    emitter.send(SseEmitter.event().name("done").data(Map.of("sessionId", stream.getSessionId())));
+                    emitter.complete();
+                } catch (IOException e) {
+                    // 浏览器已断开，流已取消
+                    emitter.completeWithError(e);
+                } catch (RuntimeException e) {
+                    logger.error("流式回答中途失败: {}", e.getMessage());
+                    sendErrorAndComplete(emitter, "回答中断，请稍后重试。");
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            sendErrorAndComplete(emitter, "当前咨询人数较多，请稍后再试。");
+        }
+        return emitter;
+    }
+
+    private void sendErrorAndComplete(SseEmitter emitter, String message) {
+        try {
+            emitter.send(SseEmitter.event().name("error").data(Map.of("message", message)));
+            emitter.complete();
+        } catch (IOException e) {
+            emitter.completeWithError(e);
+        }
     }
 }
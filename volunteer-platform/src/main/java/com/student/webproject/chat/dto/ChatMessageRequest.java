@@ -5,6 +5,8 @@ import lombok.Getter;
 @Getter
 public class ChatMessageRequest {
     private String message;
+    // 多轮对话的会话 ID，首轮不传，由服务端生成后随回答返回
+    private String sessionId;
 
     // 构造函数、getter 和 setter
     public ChatMessageRequest() {}
@@ -13,7 +15,16 @@ public class ChatMessageRequest {
         this.message = message;
     }
 
+    public ChatMessageRequest(String message, String sessionId) {
+        this.message = message;
+        this.sessionId = sessionId;
+    }
+
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
 }
\ No newline at end of file
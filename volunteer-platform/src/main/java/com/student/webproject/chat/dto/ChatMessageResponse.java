@@ -9,6 +9,7 @@ public class ChatMessageResponse {
     // Getters 和 Setters
     private String message;
     private LocalDateTime timestamp;
+    private String sessionId;
 
     // 构造函数
     public ChatMessageResponse() {}
@@ -18,6 +19,12 @@ public class ChatMessageResponse {
         this.timestamp = timestamp;
     }
 
+    public ChatMessageResponse(String message, LocalDateTime timestamp, String sessionId) {
+        this.message = message;
+        this.timestamp = timestamp;
+        this.sessionId = sessionId;
+    }
+
     public void setMessage(String message) {
         this.message = message;
     }
@@ -25,4 +32,8 @@ public class ChatMessageResponse {
     public void setTimestamp(LocalDateTime timestamp) {
         this.timestamp = timestamp;
     }
+
+    public void setSessionId(String sessionId) {
+        this.sessionId = sessionId;
+    }
 }
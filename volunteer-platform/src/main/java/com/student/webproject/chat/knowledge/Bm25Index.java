@@ -0,0 +1,161 @@
+package com.student.webproject.chat.knowledge;
+
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * 进程内 BM25 倒排索引，支持逐篇增删 (不需要整体重建)
+ * 中文按相邻两个字切词 (bigram)，连续的字母数字当作一个词；问句里的"怎么""哪些"之类不参与打分。
+ */
+class Bm25Index {
+
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    private static final Set<String> STOP_TOKENS = Set.of(
+            "请问", "怎么", "什么", "哪些", "哪个", "如何", "可以", "是否", "有没", "没有", "一下", "我们", "我想", "想要");
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    // 词 -> (文档 -> 词频)
+    private final Map<String, Map<String, Integer>> postings = new HashMap<>();
+    // 文档 -> 各词词频，删除和更新时用来撤掉旧的倒排项
+    private final Map<String, Map<String, Integer>> documents = new HashMap<>();
+    private final Map<String, Integer> lengths = new HashMap<>();
+    private long totalLength;
+
+    void upsert(String docId, String text) {
+        Map<String, Integer> termFrequencies = new HashMap<>();
+        List<String> tokens = tokenize(text);
+        for (String token : tokens) {
+            termFrequencies.merge(token, 1, Integer::sum);
+        }
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+            documents.put(docId, termFrequencies);
+            lengths.put(docId, tokens.size());
+            totalLength += tokens.size();
+            termFrequencies.forEach((term, tf) -> postings.computeIfAbsent(term, t -> new HashMap<>()).put(docId, tf));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    void remove(String docId) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(docId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return documents.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return 得分最高的至多 limit 篇文档，按得分降序
+     */
+    List<Hit> search(String query, int limit) {
+        Set<String> terms = Set.copyOf(tokenize(query));
+        Map<String, Double> scores = new HashMap<>();
+        lock.readLock().lock();
+        try {
+            int docCount = documents.size();
+            if (docCount == 0) {
+                return List.of();
+            }
+            double averageLength = (double) totalLength / docCount;
+            for (String term : terms) {
+                Map<String, Integer> posting = postings.get(term);
+                if (posting == null) {
+                    continue;
+                }
+                double idf = Math.log(1 + (docCount - posting.size() + 0.5) / (posting.size() + 0.5));
+                posting.forEach((docId, tf) -> {
+                    double norm = K1 * (1 - B + B * lengths.get(docId) / averageLength);
+                    scores.merge(docId, idf * tf * (K1 + 1) / (tf + norm), Double::sum);
+                });
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        List<Hit> hits = new ArrayList<>(scores.size());
+        scores.forEach((docId, score) -> hits.add(new Hit(docId, score)));
+        hits.sort(Comparator.comparingDouble(Hit::score).reversed());
+        return hits.size() > limit ? hits.subList(0, limit) : hits;
+    }
+
+    static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        String normalized = Normalizer.normalize(text, Normalizer.Form.NFKC).toLowerCase();
+        StringBuilder word = new StringBuilder();
+        int previousHan = -1;
+        for (int i = 0; i < normalized.length(); ) {
+            int codePoint = normalized.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                flushWord(word, tokens);
+                if (previousHan >= 0) {
+                    addToken(new String(new int[]{previousHan, codePoint}, 0, 2), tokens);
+                }
+                previousHan = codePoint;
+            } else if (Character.isLetterOrDigit(codePoint)) {
+                previousHan = -1;
+                word.appendCodePoint(codePoint);
+            } else {
+                previousHan = -1;
+                flushWord(word, tokens);
+            }
+        }
+        flushWord(word, tokens);
+        return tokens;
+    }
+
+    private static void flushWord(StringBuilder word, List<String> tokens) {
+        if (word.length() > 0) {
+            addToken(word.toString(), tokens);
+            word.setLength(0);
+        }
+    }
+
+    private static void addToken(String token, List<String> tokens) {
+        if (!STOP_TOKENS.contains(token)) {
+            tokens.add(token);
+        }
+    }
+
+    private void removeLocked(String docId) {
+        Map<String, Integer> old = documents.remove(docId);
+        if (old == null) {
+            return;
+        }
+        totalLength -= lengths.remove(docId);
+        for (String term : old.keySet()) {
+            Map<String, Integer> posting = postings.get(term);
+            posting.remove(docId);
+            if (posting.isEmpty()) {
+                postings.remove(term);
+            }
+        }
+    }
+
+    record Hit(String docId, double score) {
+    }
+}
@@ -0,0 +1,346 @@
+package com.student.webproject.chat.knowledge;
+
+import com.student.webproject.admin.entity.Activity;
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.chat.cache.ChatAnswerCache;
+import com.student.webproject.common.util.TransactionUtils;
+import com.student.webproject.news.News;
+import com.student.webproject.news.NewsMapper;
+import com.student.webproject.organization.entity.Organization;
+import com.student.webproject.organization.mapper.OrganizationMapper;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+/**
+ * AI 助手的本地知识库：活动、新闻、组织的 BM25 检索
+ * 启动时全量加载，之后由各写路径在事务提交后逐篇更新；定时全量重建兜底 (直接改库等情况)。
+ * 把握大的问题 (本周有哪些活动在招募、问题里直接点名了某个活动/组织) 直接作答，不调上游；
+ * 其余情况把最相关的几段资料拼进上游提示词，上游不可用时也能用这些资料给出有用的回答。
+ */
+@Component
+public class PlatformKnowledgeBase {
+
+    private static final Logger logger = LoggerFactory.getLogger(PlatformKnowledgeBase.class);
+
+    private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("MM-dd HH:mm");
+    private static final Pattern RECENT = Pattern.compile("本周|这周|这个星期|这星期|最近|近期|这几天|近几天");
+    // 必须明确是在问"有哪些活动"；只提到报名、活动的问题 (如报名失败怎么办) 交给检索
+    private static final Pattern LISTING = Pattern.compile("有哪些|哪些活动|什么活动|在招募|招募中|在招人");
+    private static final int RECRUITING_DAYS = 7;
+    private static final int RECRUITING_LIST_LIMIT = 10;
+    private static final int MAX_SNIPPET_LENGTH = 150;
+    // 直接作答时，第一名的得分至少是第二名的这么多倍
+    private static final double DIRECT_MARGIN = 1.5;
+
+    private final AdminActivityMapper activityMapper;
+    private final NewsMapper newsMapper;
+    private final OrganizationMapper organizationMapper;
+    private final double minScore;
+    private final int contextPassages;
+
+    // 全量重建时另建一份再整体替换，检索不会看到清空到一半的索引
+    private volatile Snapshot data = new Snapshot();
+    // 资料每变一次加一，答案缓存据此作废当时没有引用资料的回答
+    private final AtomicLong generation = new AtomicLong();
+
+    private final Counter directAnswers;
+    private final Counter augmented;
+    private final Counter unmatched;
+
+    public PlatformKnowledgeBase(AdminActivityMapper activityMapper,
+                                 NewsMapper newsMapper,
+                                 OrganizationMapper organizationMapper,
+                                 MeterRegistry meterRegistry,
+                                 @Value("${ai.knowledge.min-score:1.0}") double minScore,
+                                 @Value("${ai.knowledge.context-passages:3}") int contextPassages) {
+        this.activityMapper = activityMapper;
+        this.newsMapper = newsMapper;
+        this.organizationMapper = organizationMapper;
+        this.minScore = minScore;
+        this.contextPassages = contextPassages;
+
+        this.directAnswers = Counter.builder("chat.knowledge.lookups").tag("result", "direct")
+                .description("本地知识库检索结果").register(meterRegistry);
+        this.augmented = Counter.builder("chat.knowledge.lookups").tag("result", "augmented")
+                .description("本地知识库检索结果").register(meterRegistry);
+        this.unmatched = Counter.builder("chat.knowledge.lookups").tag("result", "none")
+                .description("本地知识库检索结果").register(meterRegistry);
+        Gauge.builder("chat.knowledge.documents", this, kb -> kb.data.index.size()).register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    /**
+     * 全量重建，默认 10 分钟一次
+     * 在新的一份数据上加载，加载完再替换；期间检索仍用旧数据。
+     * 持有锁期间增量更新会等待，所以在查库之后才提交的修改不会被旧数据覆盖
+     */
+    @Scheduled(initialDelayString = "${ai.knowledge.rebuild-interval-ms:600000}",
+            fixedDelayString = "${ai.knowledge.rebuild-interval-ms:600000}")
+    public synchronized void rebuild() {
+        try {
+            List<Activity> allActivities = activityMapper.selectList(null);
+            List<News> allNews = newsMapper.selectList(null);
+            List<Organization> allOrganizations = organizationMapper.selectList(null);
+
+            Snapshot fresh = new Snapshot();
+            allActivities.forEach(activity -> putActivity(fresh, activity));
+            allNews.forEach(news -> putNews(fresh, news));
+            allOrganizations.forEach(organization -> putOrganization(fresh, organization));
+            boolean changed = !fresh.passages.equals(data.passages);
+            data = fresh;
+            if (changed) {
+                generation.incrementAndGet();
+            }
+            logger.info("AI知识库已加载: 活动 {} 条, 新闻 {} 条, 组织 {} 个", allActivities.size(), allNews.size(), allOrganizations.size());
+        } catch (RuntimeException e) {
+            logger.warn("AI知识库加载失败，沿用现有索引: {}", e.getMessage());
+        }
+    }
+
+    // ---------------- 写路径事件 (均在事务提交后生效) ----------------
+
+    public void onActivitySaved(Activity activity) {
+        TransactionUtils.afterCommit(() -> update(current -> putActivity(current, activity)));
+    }
+
+    public void onActivityDeleted(Long activityId) {
+        TransactionUtils.afterCommit(() -> update(current -> {
+            current.activities.remove(activityId);
+            removeDocument(current, activityDocId(activityId));
+        }));
+    }
+
+    public void onNewsSaved(News news) {
+        TransactionUtils.afterCommit(() -> update(current -> putNews(current, news)));
+    }
+
+    public void onNewsDeleted(Long newsId) {
+        TransactionUtils.afterCommit(() -> update(current -> removeDocument(current, "news:" + newsId)));
+    }
+
+    public void onOrganizationSaved(Organization organization) {
+        TransactionUtils.afterCommit(() -> update(current -> putOrganization(current, organization)));
+    }
+
+    /**
+     * 删除组织会级联删除它主办的活动，一并移出索引
+     */
+    public void onOrganizationDeleted(Long organizationId) {
+        TransactionUtils.afterCommit(() -> update(current -> {
+            removeDocument(current, "organization:" + organizationId);
+            current.activities.values().removeIf(activity -> {
+                if (organizationId.equals(activity.getOrganizerId())) {
+                    removeDocument(current, activityDocId(activity.getId()));
+                    return true;
+                }
+                return false;
+            });
+        }));
+    }
+
+    /**
+     * 资料的版本号，全量重建换入了不同的内容或有增量更新时递增
+     */
+    public long generation() {
+        return generation.get();
+    }
+
+    // ---------------- 检索 ----------------
+
+    /**
+     * 检索与问题相关的资料
+     * @return directAnswer 非空表示把握足够、可以直接作答；否则 passages 为应拼进提示词的资料 (可能为空)
+     */
+    public Retrieval retrieve(String question) {
+        String normalized = ChatAnswerCache.normalize(question);
+        if (normalized.isEmpty()) {
+            unmatched.increment();
+            return Retrieval.NONE;
+        }
+
+        Snapshot current = data;
+        if (RECENT.matcher(normalized).find() && LISTING.matcher(normalized).find()) {
+            directAnswers.increment();
+            return new Retrieval(recruitingThisWeek(current), List.of());
+        }
+
+        List<Bm25Index.Hit> hits = current.index.search(question, Math.max(contextPassages, 2));
+        List<Passage> relevant = new ArrayList<>();
+        for (Bm25Index.Hit hit : hits) {
+            Passage passage = current.passages.get(hit.docId());
+            if (hit.score() >= minScore && passage != null) {
+                relevant.add(passage);
+            }
+        }
+        if (relevant.isEmpty()) {
+            unmatched.increment();
+            return Retrieval.NONE;
+        }
+
+        Bm25Index.Hit top = hits.get(0);
+        boolean clearWinner = hits.size() < 2 || top.score() >= hits.get(1).score() * DIRECT_MARGIN;
+        String title = ChatAnswerCache.normalize(relevant.get(0).title());
+        if (clearWinner && title.length() >= 2 && normalized.contains(title)) {
+            directAnswers.increment();
+            return new Retrieval(relevant.get(0).text(), relevant.subList(0, 1));
+        }
+        augmented.increment();
+        return new Retrieval(null, List.copyOf(relevant.subList(0, Math.min(contextPassages, relevant.size()))));
+    }
+
+    /**
+     * 上游不可用时，用检索到的资料组织一个回答
+     */
+    public static String offlineAnswer(List<Passage> passages) {
+        StringBuilder answer = new StringBuilder("AI服务暂时不可用，以下是平台上与您问题相关的信息：");
+        for (Passage passage : passages) {
+            answer.append("\n- ").append(passage.text());
+        }
+        return answer.toString();
+    }
+
+    private String recruitingThisWeek(Snapshot current) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plusDays(RECRUITING_DAYS);
+        List<Activity> recruiting = current.activities.values().stream()
+                .filter(activity -> "recruiting".equals(activity.getStatus()))
+                .filter(activity -> activity.getStartTime() != null
+                        && !activity.getStartTime().isBefore(now) && activity.getStartTime().isBefore(until))
+                .sorted(Comparator.comparing(Activity::getStartTime))
+                .limit(RECRUITING_LIST_LIMIT)
+                .toList();
+        if (recruiting.isEmpty()) {
+            return "最近一周没有正在招募志愿者的活动，可以多关注活动列表，新活动发布后即可报名。";
+        }
+        StringBuilder answer = new StringBuilder("最近一周正在招募志愿者的活动：");
+        for (int i = 0; i < recruiting.size(); i++) {
+            Activity activity = recruiting.get(i);
+            answer.append("\n").append(i + 1).append(". 「").append(activity.getTitle()).append("」 ")
+                    .append(activity.getStartTime().format(TIME_FORMAT)).append(" 开始");
+            if (activity.getLocation() != null) {
+                answer.append("，地点：").append(activity.getLocation());
+            }
+        }
+        answer.append("\n可以在活动详情页点击报名。");
+        return answer.toString();
+    }
+
+    private synchronized void update(Consumer<Snapshot> change) {
+        change.accept(data);
+        generation.incrementAndGet();
+    }
+
+    private void putActivity(Snapshot target, Activity activity) {
+        target.activities.put(activity.getId(), activity);
+        StringBuilder text = new StringBuilder("活动「").append(activity.getTitle()).append("」");
+        if (activity.getDescription() != null) {
+            text.append("：").append(snippet(activity.getDescription()));
+        }
+        if (activity.getStartTime() != null) {
+            text.append(" 时间：").append(activity.getStartTime().format(TIME_FORMAT));
+            if (activity.getEndTime() != null) {
+                text.append(" 至 ").append(activity.getEndTime().format(TIME_FORMAT));
+            }
+        }
+        if (activity.getLocation() != null) {
+            text.append("；地点：").append(activity.getLocation());
+        }
+        if ("recruiting".equals(activity.getStatus())) {
+            text.append("；正在招募");
+            if (activity.getRecruitmentQuota() != null) {
+                text.append("，名额 ").append(activity.getRecruitmentQuota()).append(" 人");
+            }
+        }
+        text.append("。");
+        // 标题重复一次，命中标题的文档排在前面
+        putDocument(target, activityDocId(activity.getId()), activity.getTitle(), text.toString(),
+                activity.getTitle() + " " + activity.getCategory() + " " + text);
+    }
+
+    private void putNews(Snapshot target, News news) {
+        String body = news.getSummary() != null ? news.getSummary() : news.getContent();
+        StringBuilder text = new StringBuilder("新闻「").append(news.getTitle()).append("」");
+        if (news.getPublishedAt() != null) {
+            text.append("(").append(news.getPublishedAt().toLocalDate()).append(")");
+        }
+        if (body != null) {
+            text.append("：").append(snippet(body));
+        }
+        putDocument(target, "news:" + news.getId(), news.getTitle(), text.toString(),
+                news.getTitle() + " " + text + " " + (news.getContent() == null ? "" : news.getContent()));
+    }
+
+    private void putOrganization(Snapshot target, Organization organization) {
+        String text = "组织「" + organization.getName() + "」"
+                + (organization.getDescription() == null ? "" : "：" + snippet(organization.getDescription()));
+        putDocument(target, "organization:" + organization.getId(), organization.getName(), text,
+                organization.getName() + " " + text);
+    }
+
+    private static void putDocument(Snapshot target, String docId, String title, String text, String indexedText) {
+        target.passages.put(docId, new Passage(docId, title, text));
+        target.index.upsert(docId, indexedText);
+    }
+
+    private static void removeDocument(Snapshot target, String docId) {
+        target.passages.remove(docId);
+        target.index.remove(docId);
+    }
+
+    private static String activityDocId(Long id) {
+        return "activity:" + id;
+    }
+
+    private static String snippet(String text) {
+        String trimmed = text.strip();
+        return trimmed.length() <= MAX_SNIPPET_LENGTH ? trimmed : trimmed.substring(0, MAX_SNIPPET_LENGTH) + "…";
+    }
+
+    /**
+     * 索引和资料原文，全量重建时整体替换
+     */
+    private static final class Snapshot {
+        private final Bm25Index index = new Bm25Index();
+        private final Map<String, Passage> passages = new ConcurrentHashMap<>();
+        // 招募中活动的列表要按时间筛选，单独留一份活动行
+        private final Map<Long, Activity> activities = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * 一段可以直接展示或拼进提示词的资料
+     */
+    public record Passage(String docId, String title, String text) {
+    }
+
+    public record Retrieval(String directAnswer, List<Passage> passages) {
+
+        static final Retrieval NONE = new Retrieval(null, List.of());
+
+        public boolean isDirect() {
+            return directAnswer != null;
+        }
+    }
+}
@@ -5,4 +5,15 @@ import com.student.webproject.chat.dto.ChatMessageResponse;
 
 public interface ChatService {
     ChatMessageResponse processMessage(ChatMessageRequest request);
+
+    /**
+     * 流式回答：返回一个还没开始的流，调用方在自己的线程里 run，浏览器断开时 cancel
+     */
+    ChatStream openStream(ChatMessageRequest request);
+
+    /**
+     * 结束一个会话，丢弃它的历史
+     * @return 会话是否存在
+     */
+    boolean endSession(String sessionId);
 }
\ No newline at end of file
@@ -0,0 +1,30 @@
+package com.student.webproject.chat.service;
+
+import java.io.IOException;
+
+/**
+ * 一次流式回答
+ */
+public interface ChatStream {
+
+    /**
+     * 本次问答所属的会话，请求没带时为新生成的 ID
+     */
+    String getSessionId();
+
+    /**
+     * 阻塞执行，直到回答结束、出错或被取消；每收到一段增量回调一次 listener
+     * @throws IOException listener 写不出去 (浏览器已断开)
+     */
+    void run(Listener listener) throws IOException;
+
+    /**
+     * 取消：中断上游请求，run 随即返回。可在任意线程调用
+     */
+    void cancel();
+
+    @FunctionalInterface
+    interface Listener {
+        void onDelta(String content) throws IOException;
+    }
+}
@@ -1,44 +1,78 @@
 package com.student.webproject.chat.service.impl;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.student.webproject.chat.cache.ChatAnswerCache;
+import com.student.webproject.chat.cache.ChatRequestCoalescer;
+import com.student.webproject.chat.client.ChatUpstreamClient;
+import com.student.webproject.chat.client.ChatUpstreamException;
+import com.student.webproject.chat.client.ChatUpstreamRejectedException;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
 import com.student.webproject.chat.dto.ChatMessageRequest;
 import com.student.webproject.chat.dto.ChatMessageResponse;
 import com.student.webproject.chat.service.ChatService;
+import com.student.webproject.chat.service.ChatStream;
+import com.student.webproject.chat.session.ChatSessionStore;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.http.*;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.HttpStatusCode;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.HttpStatusCodeException;
-import org.springframework.web.client.RestClientException;
-import org.springframework.web.client.RestTemplate;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
 
 @Service
 public class ChatServiceImpl implements ChatService {
     private static final Logger logger = LoggerFactory.getLogger(ChatServiceImpl.class);
 
-    // 使用YunWu AI的API URL，确保是正确的API端点
-    @Value("${ai.model.api.url}")
-    private String apiUrl;
+    private static final String SYSTEM_PROMPT = "你是油炬智愿平台的AI助手，专门回答关于志愿服务的问题。回答要简洁、友善且专业。";
 
-    @Value("${ai.model.api.key}")
-    private String apiKey;
-
-    private final RestTemplate restTemplate;
+    // 上游 (YunWu AI) 的地址和密钥由 ChatUpstreamClient 读取
+    private final ChatUpstreamClient upstreamClient;
     private final ObjectMapper objectMapper;
 
     // 备用响应库，当外部API调用失败时使用
     private final Map<String, String[]> fallbackResponses;
     private final Random random = new Random();
 
-    public ChatServiceImpl() {
-        this.restTemplate = new RestTemplate();
+    private final ChatAnswerCache answerCache;
+    private final ChatRequestCoalescer requestCoalescer;
+    private final PlatformKnowledgeBase knowledgeBase;
+    private final ChatSessionStore sessionStore;
+    // 发给上游的整个提示词 (含历史) 的 token 上限
+    private final int maxPromptTokens;
+    // 流式回答从收到请求到第一段内容的耗时
+    private final Timer firstTokenTimer;
+    private final Counter streamCancelled;
+
+    public ChatServiceImpl(ChatUpstreamClient upstreamClient, ChatAnswerCache answerCache,
+                           ChatRequestCoalescer requestCoalescer, PlatformKnowledgeBase knowledgeBase,
+                           ChatSessionStore sessionStore, MeterRegistry meterRegistry,
+                           @Value("${ai.chat.max-prompt-tokens:3000}") int maxPromptTokens) {
+        this.upstreamClient = upstreamClient;
+        this.answerCache = answerCache;
+        this.requestCoalescer = requestCoalescer;
+        this.knowledgeBase = knowledgeBase;
+        this.sessionStore = sessionStore;
+        this.maxPromptTokens = maxPromptTokens;
         this.objectMapper = new ObjectMapper();
         this.fallbackResponses = initializeFallbackResponses();
+        this.firstTokenTimer = Timer.builder("chat.stream.first_token")
+                .description("流式回答的首字耗时")
+                .publishPercentiles(0.5, 0.95, 0.99)
+                .register(meterRegistry);
+        this.streamCancelled = Counter.builder("chat.stream.cancelled")
+                .description("浏览器中途断开而取消的流式回答数")
+                .register(meterRegistry);
     }
 
     private Map<String, String[]> initializeFallbackResponses() {
@@ -52,110 +86,364 @@ public class ChatServiceImpl implements ChatService {
 
     @Override
     public ChatMessageResponse processMessage(ChatMessageRequest request) {
-        logger.info("收到聊天请求: {}", request.getMessage());
+        String message = request.getMessage();
+        logger.info("收到聊天请求: {}", message);
+        String sessionId = resolveSessionId(request);
+        // 多轮对话里的追问依赖上下文，不能套用缓存里的答案，也不能和别人的同一句话合并；
+        // 查缓存、合并请求、写缓存都按这一个判断，本轮开始时会话里还没有内容才算首轮
+        boolean firstTurn = !sessionStore.hasHistory(sessionId);
+        // 先于检索读取：检索之后资料才变的话，这次的回答写进缓存时就已经过时
+        long generation = knowledgeBase.generation();
+
+        if (firstTurn) {
+            ChatAnswerCache.CachedAnswer cached = answerCache.lookup(message, generation);
+            if (cached != null) {
+                logger.debug("命中问答缓存: {}", cached.question());
+                sessionStore.append(sessionId, message, cached.answer());
+                return new ChatMessageResponse(cached.answer(), LocalDateTime.now(), sessionId);
+            }
+        }
+
+        // 平台自己的数据能直接回答的，不调上游；否则把相关资料带给上游
+        PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve(message);
+        if (retrieval.isDirect()) {
+            sessionStore.append(sessionId, message, retrieval.directAnswer());
+            return new ChatMessageResponse(retrieval.directAnswer(), LocalDateTime.now(), sessionId);
+        }
+
+        List<PlatformKnowledgeBase.Passage> passages = retrieval.passages();
+        ChatSessionStore.History history = firstTurn ? ChatSessionStore.History.EMPTY
+                : sessionStore.history(sessionId, historyBudget(message, passages));
+        Reply reply;
+        if (firstTurn) {
+            // 相同问题正在向上游请求时，等待那一次的结果，不重复调用
+            try {
+                reply = requestCoalescer.execute(message, () -> requestAnswer(message, passages, history, true, generation));
+            } catch (ChatUpstreamException e) {
+                logger.error("等待相同问题的上游结果失败: {}", e.getMessage());
+                reply = new Reply(unavailableAnswer(passages), false);
+            }
+        } else {
+            reply = requestAnswer(message, passages, history, false, generation);
+        }
 
+        // 兜底文案不记入历史，免得之后的上下文里全是"服务不可用"
+        if (reply.answered()) {
+            sessionStore.append(sessionId, message, reply.text());
+        }
+        return new ChatMessageResponse(reply.text(), LocalDateTime.now(), sessionId);
+    }
+
+    /**
+     * 调用上游取得回答；各种失败都转换成给用户看的提示文案，不抛异常
+     * @param passages 本地知识库检索到的相关资料，拼进提示词；上游不可用时用它们作答
+     * @param history 本会话的历史 (已按预算截断)
+     * @param firstTurn 会话的第一轮，只有这时的回答才可能写入答案缓存
+     * @param generation 检索前读到的知识库版本
+     */
+    private Reply requestAnswer(String message, List<PlatformKnowledgeBase.Passage> passages,
+                                ChatSessionStore.History history, boolean firstTurn, long generation) {
         try {
             // 验证API密钥是否设置
-            if (apiKey == null || apiKey.isEmpty() || apiKey.equals("")) {
+            if (!upstreamClient.isConfigured()) {
                 logger.error("API密钥未配置，无法调用外部服务");
-                return new ChatMessageResponse(
-                        "抱歉，AI服务未正确配置。请联系管理员设置有效的API密钥。",
-                        LocalDateTime.now()
-                );
+                return new Reply("抱歉，AI服务未正确配置。请联系管理员设置有效的API密钥。", false);
             }
 
-            // 准备请求头
-            HttpHeaders headers = new HttpHeaders();
-            headers.setContentType(MediaType.APPLICATION_JSON);
-            headers.set("Authorization", "Bearer " + apiKey);
-            logger.debug("准备请求头: {}", headers);
-
-            // 准备请求体 - 根据YunWu AI的API规范调整
-            Map<String, Object> requestBody = new HashMap<>();
-            requestBody.put("model", "deepseek-v3");  // 使用正确的模型名称
+            String body = buildRequestBody(message, false, passages, history);
 
-            List<Map<String, String>> messages = new ArrayList<>();
+            // 发送请求到YunWu AI API (连接池 + 超时控制)
+            ChatUpstreamClient.UpstreamResponse rawResponse = upstreamClient.post(body);
+            logger.debug("收到原始响应: {}", rawResponse.body());
 
-            // 添加系统角色消息
-            Map<String, String> systemMessage = new HashMap<>();
-            systemMessage.put("role", "system");
-            systemMessage.put("content", "你是油炬智愿平台的AI助手，专门回答关于志愿服务的问题。回答要简洁、友善且专业。");
-            messages.add(systemMessage);
-
-            // 添加用户的实际问题
-            Map<String, String> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", request.getMessage());
-            messages.add(userMessage);
+            if (rawResponse.status() >= 400) {
+                // 上游返回HTTP错误状态码
+                logger.error("API请求失败，状态码: {}, 响应: {}", rawResponse.status(), rawResponse.body());
+                if (!passages.isEmpty()) {
+                    return new Reply(PlatformKnowledgeBase.offlineAnswer(passages), false);
+                }
+                return new Reply("抱歉，AI服务暂时不可用 (HTTP错误: " + HttpStatusCode.valueOf(rawResponse.status()) + ")。请稍后再试。", false);
+            }
 
-            requestBody.put("messages", messages);
-            // 调整参数以适应YunWu API
-            requestBody.put("temperature", 0.7);
-            requestBody.put("max_tokens", 2000);
+            // 检查响应状态码
+            if (rawResponse.status() == HttpStatus.OK.value() && rawResponse.body() != null) {
+                try {
+                    // 使用Jackson正确解析JSON响应
+                    JsonNode rootNode = objectMapper.readTree(rawResponse.body());
+                    JsonNode choicesNode = rootNode.path("choices");
 
-            // 创建HTTP实体
-            HttpEntity<Map<String, Object>> entity = new HttpEntity<>(requestBody, headers);
-            logger.debug("准备发送请求到: {}", apiUrl);
+                    if (choicesNode.isArray() && choicesNode.size() > 0) {
+                        JsonNode messageNode = choicesNode.get(0).path("message");
+                        String content = messageNode.path("content").asText();
 
-            try {
-                // 发送请求到YunWu AI API
-                ResponseEntity<String> rawResponse = restTemplate.exchange(
-                        apiUrl,
-                        HttpMethod.POST,
-                        entity,
-                        String.class
-                );
-
-                logger.debug("收到原始响应: {}", rawResponse.getBody());
-
-                // 检查响应状态码
-                if (rawResponse.getStatusCode() == HttpStatus.OK && rawResponse.getBody() != null) {
-                    String responseBody = rawResponse.getBody();
-
-                    try {
-                        // 使用Jackson正确解析JSON响应
-                        JsonNode rootNode = objectMapper.readTree(responseBody);
-                        JsonNode choicesNode = rootNode.path("choices");
-
-                        if (choicesNode.isArray() && choicesNode.size() > 0) {
-                            JsonNode messageNode = choicesNode.get(0).path("message");
-                            String content = messageNode.path("content").asText();
-
-                            if (content != null && !content.isEmpty()) {
-                                return new ChatMessageResponse(content, LocalDateTime.now());
+                        if (content != null && !content.isEmpty()) {
+                            if (isCacheable(firstTurn, passages)) {
+                                answerCache.put(message, content, generation);
                             }
+                            return new Reply(content, true);
                         }
-                    } catch (Exception e) {
-                        logger.error("解析JSON响应失败: {}", e.getMessage(), e);
                     }
+                } catch (Exception e) {
+                    logger.error("解析JSON响应失败: {}", e.getMessage(), e);
                 }
-
-                // 如果无法解析响应，返回一个通用错误消息
-                logger.warn("无法从API响应中提取内容");
-                return getFallbackResponse();
-
-            } catch (HttpStatusCodeException e) {
-                // 捕获HTTP错误状态码
-                logger.error("API请求失败，状态码: {}, 响应: {}", e.getStatusCode(), e.getResponseBodyAsString());
-                return new ChatMessageResponse(
-                        "抱歉，AI服务暂时不可用 (HTTP错误: " + e.getStatusCode() + ")。请稍后再试。",
-                        LocalDateTime.now()
-                );
             }
 
-        } catch (RestClientException e) {
-            // 捕获RestTemplate客户端异常
-            logger.error("RestTemplate客户端异常: {}", e.getMessage(), e);
-            return getFallbackResponse();
+            // 如果无法解析响应，返回一个通用错误消息
+            logger.warn("无法从API响应中提取内容");
+            return new Reply(getFallbackResponse().getMessage(), false);
+
+        } catch (ChatUpstreamRejectedException e) {
+            // 熔断中或并发已满，没有真正调用上游
+            logger.warn("AI上游调用被拒绝: {}", e.getMessage());
+            return new Reply(unavailableAnswer(passages), false);
+
+        } catch (ChatUpstreamException e) {
+            // 连接失败或超时
+            logger.error("调用AI上游失败: {}", e.getMessage(), e);
+            return new Reply(unavailableAnswer(passages), false);
 
         } catch (Exception e) {
             // 捕获所有其他异常
             logger.error("处理消息时发生未预期的错误: {}", e.getMessage(), e);
-            return new ChatMessageResponse(
-                    "抱歉，AI助手遇到了技术问题。请稍后再试。",
-                    LocalDateTime.now()
-            );
+            return new Reply("抱歉，AI助手遇到了技术问题。请稍后再试。", false);
+        }
+    }
+
+    @Override
+    public ChatStream openStream(ChatMessageRequest request) {
+        logger.info("收到流式聊天请求: {}", request.getMessage());
+        return new UpstreamChatStream(request.getMessage(), resolveSessionId(request));
+    }
+
+    @Override
+    public boolean endSession(String sessionId) {
+        return sessionStore.remove(sessionId);
+    }
+
+    private static String resolveSessionId(ChatMessageRequest request) {
+        return StringUtils.hasText(request.getSessionId()) ? request.getSessionId() : ChatSessionStore.newSessionId();
+    }
+
+    /**
+     * 整个提示词不超过 max-prompt-tokens：系统提示、资料和本轮提问之外剩下的才留给历史
+     */
+    private int historyBudget(String message, List<PlatformKnowledgeBase.Passage> passages) {
+        int fixed = ChatSessionStore.estimateTokens(SYSTEM_PROMPT) + ChatSessionStore.estimateTokens(message);
+        for (PlatformKnowledgeBase.Passage passage : passages) {
+            fixed += ChatSessionStore.estimateTokens(passage.text());
+        }
+        return Math.max(0, maxPromptTokens - fixed);
+    }
+
+    /**
+     * 只缓存没有上下文、也没有引用平台资料的回答：
+     * 引用了活动/新闻的回答在资料被修改或删除后就过时了，而答案缓存在检索之前命中，不会随知识库更新；
+     * 没引用资料的回答按知识库版本作废，资料变了之后重新检索一次
+     */
+    private static boolean isCacheable(boolean firstTurn, List<PlatformKnowledgeBase.Passage> passages) {
+        return firstTurn && passages.isEmpty();
+    }
+
+    /**
+     * 上游不可用时的回答：有相关资料就用资料作答，否则用兜底文案
+     */
+    private String unavailableAnswer(List<PlatformKnowledgeBase.Passage> passages) {
+        return passages.isEmpty() ? getFallbackResponse().getMessage() : PlatformKnowledgeBase.offlineAnswer(passages);
+    }
+
+    /**
+     * 组装上游请求体 - 根据YunWu AI的API规范调整
+     */
+    private String buildRequestBody(String message, boolean stream, List<PlatformKnowledgeBase.Passage> passages,
+                                    ChatSessionStore.History history) throws JsonProcessingException {
+        Map<String, Object> requestBody = new HashMap<>();
+        requestBody.put("model", "deepseek-v3");  // 使用正确的模型名称
+
+        List<Map<String, String>> messages = new ArrayList<>();
+
+        // 添加系统角色消息
+        Map<String, String> systemMessage = new HashMap<>();
+        systemMessage.put("role", "system");
+        systemMessage.put("content", SYSTEM_PROMPT);
+        messages.add(systemMessage);
+
+        // 平台上与问题相关的资料
+        if (!passages.isEmpty()) {
+            StringBuilder context = new StringBuilder("以下是平台上与用户问题相关的资料，回答时优先依据这些资料：");
+            for (PlatformKnowledgeBase.Passage passage : passages) {
+                context.append("\n- ").append(passage.text());
+            }
+            Map<String, String> contextMessage = new HashMap<>();
+            contextMessage.put("role", "system");
+            contextMessage.put("content", context.toString());
+            messages.add(contextMessage);
+        }
+
+        // 本会话的历史：放不下的早期轮次只带摘要
+        if (history.summary() != null) {
+            Map<String, String> summaryMessage = new HashMap<>();
+            summaryMessage.put("role", "system");
+            summaryMessage.put("content", history.summary());
+            messages.add(summaryMessage);
+        }
+        for (ChatSessionStore.Turn turn : history.turns()) {
+            Map<String, String> turnMessage = new HashMap<>();
+            turnMessage.put("role", turn.role());
+            turnMessage.put("content", turn.content());
+            messages.add(turnMessage);
+        }
+
+        // 添加用户的实际问题
+        Map<String, String> userMessage = new HashMap<>();
+        userMessage.put("role", "user");
+        userMessage.put("content", message);
+        messages.add(userMessage);
+
+        requestBody.put("messages", messages);
+        // 调整参数以适应YunWu API
+        requestBody.put("temperature", 0.7);
+        requestBody.put("max_tokens", 2000);
+        if (stream) {
+            requestBody.put("stream", true);
+        }
+        return objectMapper.writeValueAsString(requestBody);
+    }
+
+    /**
+     * 一次流式回答：上游每吐出一段增量就转发给 listener
+     * 在拿到第一段之前失败时，改为发送与非流式接口相同的兜底文案；已经输出了一部分再失败则抛出，由调用方告知前端
+     */
+    private final class UpstreamChatStream implements ChatStream {
+
+        private final String message;
+        private final String sessionId;
+        private volatile ChatUpstreamClient.StreamCall call;
+        private volatile boolean cancelled;
+        // run 已返回 (含正常结束)：SseEmitter 完成时也会回调 cancel，此时不再算作取消
+        private volatile boolean finished;
+
+        private UpstreamChatStream(String message, String sessionId) {
+            this.message = message;
+            this.sessionId = sessionId;
+        }
+
+        @Override
+        public String getSessionId() {
+            return sessionId;
         }
+
+        @Override
+        public void run(Listener listener) throws IOException {
+            try {
+                respond(listener);
+            } finally {
+                finished = true;
+            }
+        }
+
+        private void respond(Listener listener) throws IOException {
+            boolean firstTurn = !sessionStore.hasHistory(sessionId);
+            long generation = knowledgeBase.generation();
+            if (firstTurn) {
+                ChatAnswerCache.CachedAnswer cached = answerCache.lookup(message, generation);
+                if (cached != null) {
+                    sessionStore.append(sessionId, message, cached.answer());
+                    listener.onDelta(cached.answer());
+                    return;
+                }
+            }
+            PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve(message);
+            if (retrieval.isDirect()) {
+                sessionStore.append(sessionId, message, retrieval.directAnswer());
+                listener.onDelta(retrieval.directAnswer());
+                return;
+            }
+            List<PlatformKnowledgeBase.Passage> passages = retrieval.passages();
+            ChatSessionStore.History history = firstTurn ? ChatSessionStore.History.EMPTY
+                    : sessionStore.history(sessionId, historyBudget(message, passages));
+            if (!upstreamClient.isConfigured()) {
+                logger.error("API密钥未配置，无法调用外部服务");
+                listener.onDelta("抱歉，AI服务未正确配置。请联系管理员设置有效的API密钥。");
+                return;
+            }
+
+            long start = System.nanoTime();
+            boolean[] started = {false};
+            StringBuilder answer = new StringBuilder();
+            try {
+                call = upstreamClient.prepareStream(buildRequestBody(message, true, passages, history));
+                if (cancelled) {
+                    return;
+                }
+                upstreamClient.stream(call, data -> {
+                    String content = parseDelta(data);
+                    if (content == null || content.isEmpty()) {
+                        return;
+                    }
+                    if (!started[0]) {
+                        started[0] = true;
+                        firstTokenTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                    }
+                    answer.append(content);
+                    listener.onDelta(content);
+                });
+                if (!cancelled && answer.length() > 0) {
+                    if (isCacheable(firstTurn, passages)) {
+                        answerCache.put(message, answer.toString(), generation);
+                    }
+                    sessionStore.append(sessionId, message, answer.toString());
+                }
+            } catch (ChatUpstreamException e) {
+                if (cancelled) {
+                    return;
+                }
+                if (started[0]) {
+                    throw e;
+                }
+                if (e.getStatus() >= 400 && passages.isEmpty()) {
+                    logger.error("流式API请求失败，状态码: {}, 响应: {}", e.getStatus(), e.getResponseBody());
+                    listener.onDelta("抱歉，AI服务暂时不可用 (HTTP错误: " + HttpStatusCode.valueOf(e.getStatus()) + ")。请稍后再试。");
+                } else {
+                    logger.error("调用AI上游失败: {}", e.getMessage());
+                    listener.onDelta(unavailableAnswer(passages));
+                }
+            } catch (IOException e) {
+                // 浏览器已断开
+                streamCancelled.increment();
+                throw e;
+            }
+        }
+
+        @Override
+        public void cancel() {
+            if (!cancelled && !finished) {
+                cancelled = true;
+                ChatUpstreamClient.StreamCall current = call;
+                if (current != null && !current.isCancelled()) {
+                    current.cancel();
+                    streamCancelled.increment();
+                }
+            }
+        }
+
+        private String parseDelta(String data) {
+            try {
+                JsonNode choices = objectMapper.readTree(data).path("choices");
+                if (choices.isArray() && choices.size() > 0) {
+                    JsonNode content = choices.get(0).path("delta").path("content");
+                    return content.isTextual() ? content.asText() : null;
+                }
+            } catch (JsonProcessingException e) {
+                logger.warn("无法解析上游流式数据: {}", data);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * @param answered 是否是真正的回答 (上游、缓存或知识库给出的)，兜底和报错文案为 false
+     */
+    private record Reply(String text, boolean answered) {
     }
 
     private ChatMessageResponse getFallbackResponse() {
@@ -0,0 +1,296 @@
+package com.student.webproject.chat.session;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * AI 对话的服务端会话 (多轮上下文)
+ * 所有会话共用一个内存预算 (max-bytes，按字符数估算)，超出时按最近最少使用淘汰整段会话；
+ * 会话数、单个会话保留的轮数也有上限，闲置超过 ttl 的会话定时清理。
+ * 组装上下文时按 token 预算从最近一轮往前取，放不下的早期轮次压缩成一句"之前问过什么"的摘要，
+ * 无论聊多久，发给上游的历史都不会超过预算。
+ * 占用以 chat.session.bytes / chat.session.count 指标暴露，淘汰计入 chat.session.evicted (reason=memory / count / idle)。
+ */
+@Component
+public class ChatSessionStore {
+
+    // 每条消息、每个会话在内存里的固定开销 (对象头、引用、时间戳等) 的粗略估计
+    private static final long TURN_OVERHEAD_BYTES = 64;
+    private static final long SESSION_OVERHEAD_BYTES = 256;
+    // 早期轮次摘要的最大长度
+    private static final int SUMMARY_MAX_CHARS = 200;
+    private static final String SUMMARY_PREFIX = "此前用户还问过：";
+
+    private final long maxBytes;
+    private final int maxSessions;
+    private final int maxTurnsPerSession;
+    private final long ttlMs;
+
+    // accessOrder = true：迭代顺序即最近最少使用顺序
+    private final LinkedHashMap<String, Session> sessions = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter evictedForMemory;
+    private final Counter evictedForCount;
+    private final Counter evictedIdle;
+
+    public ChatSessionStore(MeterRegistry meterRegistry,
+                            @Value("${ai.session.max-bytes:33554432}") long maxBytes,
+                            @Value("${ai.session.max-sessions:10000}") int maxSessions,
+                            @Value("${ai.session.max-turns:40}") int maxTurnsPerSession,
+                            @Value("${ai.session.ttl-minutes:30}") long ttlMinutes) {
+        this.maxBytes = maxBytes;
+        this.maxSessions = maxSessions;
+        this.maxTurnsPerSession = maxTurnsPerSession;
+        this.ttlMs = ttlMinutes * 60_000;
+
+        this.evictedForMemory = Counter.builder("chat.session.evicted").tag("reason", "memory")
+                .description("被淘汰的会话数").register(meterRegistry);
+        this.evictedForCount = Counter.builder("chat.session.evicted").tag("reason", "count")
+                .description("被淘汰的会话数").register(meterRegistry);
+        this.evictedIdle = Counter.builder("chat.session.evicted").tag("reason", "idle")
+                .description("被淘汰的会话数").register(meterRegistry);
+        Gauge.builder("chat.session.bytes", this, ChatSessionStore::getTotalBytes)
+                .description("会话历史估算占用的内存").baseUnit("bytes").register(meterRegistry);
+        Gauge.builder("chat.session.count", this, ChatSessionStore::size).register(meterRegistry);
+    }
+
+    public static String newSessionId() {
+        return UUID.randomUUID().toString();
+    }
+
+    /**
+     * 取会话历史，用于拼上游请求
+     * @param tokenBudget 历史部分最多占多少 token；从最近一轮往前取，放不下的轮次压缩成摘要 (摘要也计入预算)
+     * @return 按时间顺序的历史消息，会话不存在时为空
+     */
+    public History history(String sessionId, int tokenBudget) {
+        List<Turn> turns;
+        synchronized (this) {
+            Session session = sessions.get(sessionId);
+            if (session == null || session.turns.isEmpty()) {
+                return History.EMPTY;
+            }
+            session.lastAccess = System.currentTimeMillis();
+            turns = new ArrayList<>(session.turns);
+        }
+
+        List<Turn> kept = new ArrayList<>();
+        int used = 0;
+        int index = turns.size() - 1;
+        // 按 "提问 + 回答" 成对往前取，不留下没有回答的半轮
+        for (; index >= 1; index -= 2) {
+            Turn question = turns.get(index - 1);
+            Turn answer = turns.get(index);
+            int cost = question.tokens() + answer.tokens();
+            if (used + cost > tokenBudget) {
+                break;
+            }
+            kept.add(answer);
+            kept.add(question);
+            used += cost;
+        }
+        Collections.reverse(kept);
+
+        String summary = null;
+        if (index >= 1) {
+            summary = summarize(turns.subList(0, index + 1), tokenBudget - used);
+        }
+        return new History(kept, summary);
+    }
+
+    /**
+     * 记录一轮问答
+     */
+    public void append(String sessionId, String question, String answer) {
+        Turn questionTurn = new Turn(Turn.USER, question);
+        Turn answerTurn = new Turn(Turn.ASSISTANT, answer);
+        synchronized (this) {
+            Session session = sessions.get(sessionId);
+            if (session == null) {
+                session = new Session();
+                sessions.put(sessionId, session);
+                totalBytes += SESSION_OVERHEAD_BYTES;
+            }
+            session.lastAccess = System.currentTimeMillis();
+            add(session, questionTurn);
+            add(session, answerTurn);
+            // 成对丢弃最早的问答
+            while (session.turns.size() > maxTurnsPerSession) {
+                drop(session, session.turns.removeFirst());
+                drop(session, session.turns.removeFirst());
+            }
+            evictOverflow(sessionId);
+        }
+    }
+
+    public synchronized boolean hasHistory(String sessionId) {
+        Session session = sessions.get(sessionId);
+        return session != null && !session.turns.isEmpty();
+    }
+
+    public synchronized boolean remove(String sessionId) {
+        Session session = sessions.remove(sessionId);
+        if (session == null) {
+            return false;
+        }
+        totalBytes -= session.bytes + SESSION_OVERHEAD_BYTES;
+        return true;
+    }
+
+    /**
+     * 清理闲置会话，每分钟一次
+     */
+    @Scheduled(fixedDelayString = "${ai.session.cleanup-interval-ms:60000}")
+    public synchronized void evictIdle() {
+        long cutoff = System.currentTimeMillis() - ttlMs;
+        Iterator<Session> iterator = sessions.values().iterator();
+        while (iterator.hasNext()) {
+            Session session = iterator.next();
+            if (session.lastAccess < cutoff) {
+                iterator.remove();
+                totalBytes -= session.bytes + SESSION_OVERHEAD_BYTES;
+                evictedIdle.increment();
+            }
+        }
+    }
+
+    public synchronized long getTotalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return sessions.size();
+    }
+
+    /**
+     * token 数的粗略估计：汉字一个字约一个 token，其余字符约四个一个 token
+     */
+    public static int estimateTokens(String text) {
+        if (text == null) {
+            return 0;
+        }
+        int han = 0;
+        int other = 0;
+        for (int i = 0; i < text.length(); ) {
+            int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            if (Character.UnicodeScript.of(codePoint) == Character.UnicodeScript.HAN) {
+                han++;
+            } else {
+                other++;
+            }
+        }
+        return han + (other + 3) / 4;
+    }
+
+    private void drop(Session session, Turn turn) {
+        session.bytes -= turn.bytes();
+        totalBytes -= turn.bytes();
+    }
+
+    private void add(Session session, Turn turn) {
+        session.turns.addLast(turn);
+        session.bytes += turn.bytes();
+        totalBytes += turn.bytes();
+    }
+
+    /**
+     * 超出会话数或内存预算时，从最久没用的会话开始淘汰；刚写入的会话最后处理：
+     * 其他会话都淘汰完仍超预算，就丢掉它最早的问答，只剩本轮也放不下时整个会话不保留，保证 max-bytes 是硬上限
+     */
+    private void evictOverflow(String currentSessionId) {
+        Iterator<Map.Entry<String, Session>> iterator = sessions.entrySet().iterator();
+        while ((sessions.size() > maxSessions || totalBytes > maxBytes) && iterator.hasNext()) {
+            Map.Entry<String, Session> eldest = iterator.next();
+            if (eldest.getKey().equals(currentSessionId)) {
+                continue;
+            }
+            boolean overCount = sessions.size() > maxSessions;
+            iterator.remove();
+            totalBytes -= eldest.getValue().bytes + SESSION_OVERHEAD_BYTES;
+            (overCount ? evictedForCount : evictedForMemory).increment();
+        }
+        Session current = sessions.get(currentSessionId);
+        while (totalBytes > maxBytes && current != null && current.turns.size() > 2) {
+            drop(current, current.turns.removeFirst());
+            drop(current, current.turns.removeFirst());
+        }
+        if (totalBytes > maxBytes && current != null) {
+            remove(currentSessionId);
+            evictedForMemory.increment();
+        }
+    }
+
+    /**
+     * 把放不下的早期轮次压缩成一句：只保留用户问过的问题，超出预算就截断
+     */
+    private static String summarize(List<Turn> dropped, int tokenBudget) {
+        StringBuilder questions = new StringBuilder();
+        for (Turn turn : dropped) {
+            if (Turn.USER.equals(turn.role())) {
+                if (questions.length() > 0) {
+                    questions.append("；");
+                }
+                questions.append(turn.content());
+            }
+        }
+        // 按一个字一个 token 的上界留出空间，保证摘要不超预算
+        int room = Math.min(SUMMARY_MAX_CHARS, tokenBudget) - SUMMARY_PREFIX.length();
+        if (questions.length() == 0 || room < 2) {
+            return null;
+        }
+        if (questions.length() > room) {
+            // 最早的问题最不重要，从前面截掉
+            return SUMMARY_PREFIX + "…" + questions.substring(questions.length() - (room - 1));
+        }
+        return SUMMARY_PREFIX + questions;
+    }
+
+    private static final class Session {
+        private final Deque<Turn> turns = new ArrayDeque<>();
+        private long bytes;
+        private long lastAccess;
+    }
+
+    /**
+     * 一条历史消息
+     * @param role user 或 assistant，与上游 messages 的 role 一致
+     */
+    public record Turn(String role, String content, int tokens, long bytes) {
+
+        public static final String USER = "user";
+        public static final String ASSISTANT = "assistant";
+
+        Turn(String role, String content) {
+            this(role, content, estimateTokens(content), TURN_OVERHEAD_BYTES + 2L * content.length());
+        }
+    }
+
+    /**
+     * 拼上游请求用的历史
+     * @param summary 放不下的早期轮次的摘要，没有时为 null
+     */
+    public record History(List<Turn> turns, String summary) {
+
+        public static final History EMPTY = new History(List.of(), null);
+
+        public boolean isEmpty() {
+            return turns.isEmpty() && summary == null;
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.student.webproject.common.pagination;
+
+/**
+ * 后台分页列表的总数统计方式
+ */
+public enum CountStrategy {
+    // 每次翻页都 COUNT(*)，总数精确
+    EXACT,
+    // 精确 COUNT(*) 的结果按列表和筛选条件缓存一段时间，期间的增删暂不反映在总数上
+    CACHED,
+    // 取数据库统计信息里的表行数估计值，只适用于不带筛选条件的列表，带筛选时按 CACHED 处理
+    ESTIMATED,
+    // 不统计总数，多取一条判断是否还有下一页
+    HAS_NEXT
+}
@@ -0,0 +1,120 @@
+package com.student.webproject.common.pagination;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.student.webproject.admin.mapper.TableStatsMapper;
+import com.student.webproject.common.util.TransactionUtils;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.LongSupplier;
+
+/**
+ * 按 CountStrategy 执行后台列表的分页查询
+ * 分页插件默认每次翻页都跟一条 COUNT(*)，这里由各列表自己选择总数怎么来；
+ * 缓存的总数以 "表名:筛选条件" 为 key，写操作提交后按表名失效
+ */
+public class PageCounter {
+
+    private static final Logger logger = LoggerFactory.getLogger(PageCounter.class);
+
+    private final TableStatsMapper tableStatsMapper;
+    private final Cache<String, Long> counts;
+
+    public PageCounter(TableStatsMapper tableStatsMapper, MeterRegistry meterRegistry, long cacheSeconds) {
+        this.tableStatsMapper = tableStatsMapper;
+        this.counts = Caffeine.newBuilder()
+                .maximumSize(1000)
+                .expireAfterWrite(Duration.ofSeconds(cacheSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, counts, "pagination.count");
+    }
+
+    /**
+     * 按指定策略查询一页
+     * @param table 列表的主表，缓存 key 和行数估计都用它
+     * @param filter 筛选条件，没有筛选时传 null；作为缓存 key 的一部分，需要有稳定的 toString (如 record)
+     * @param query 用传入的 Page 查一页数据，Page 已按策略设置好是否由分页插件 COUNT
+     * @param exactCount 精确统计总数，缓存未命中或拿不到估计值时调用
+     */
+    public <T> IPage<T> selectPage(CountStrategy strategy, long current, long size, String table, Object filter,
+                                   Function<Page<T>, IPage<T>> query, LongSupplier exactCount) {
+        if (strategy == CountStrategy.EXACT) {
+            return query.apply(new Page<>(current, size));
+        }
+        if (strategy == CountStrategy.HAS_NEXT) {
+            return selectWithLookahead(current, size, query);
+        }
+        IPage<T> page = query.apply(new Page<>(current, size, false));
+        page.setTotal(count(strategy, table, filter, exactCount));
+        return page;
+    }
+
+    /**
+     * 只取总数 (如游标分页附带的 withTotal)，HAS_NEXT 没有总数可言，按 CACHED 处理
+     */
+    public long count(CountStrategy strategy, String table, Object filter, LongSupplier exactCount) {
+        if (strategy == CountStrategy.EXACT) {
+            return exactCount.getAsLong();
+        }
+        if (strategy == CountStrategy.ESTIMATED && filter == null) {
+            return counts.get(key(table, null) + "~", key -> estimate(table, exactCount));
+        }
+        return counts.get(key(table, filter), key -> exactCount.getAsLong());
+    }
+
+    /**
+     * 表中数据有增删：事务提交后丢掉该表所有筛选条件下缓存的总数
+     */
+    public void invalidate(String table) {
+        String prefix = table + ":";
+        TransactionUtils.afterCommit(() -> counts.asMap().keySet().removeIf(key -> key.startsWith(prefix)));
+    }
+
+    // 多取一条判断有没有下一页；total 只报到"已知存在的最后一条"，前端据此只显示到下一页
+    private <T> IPage<T> selectWithLookahead(long current, long size, Function<Page<T>, IPage<T>> query) {
+        long offset = current > 1 ? (current - 1) * size : 0;
+        Page<T> lookahead = new Page<>(current, size + 1, false) {
+            @Override
+            public long offset() {
+                return offset;
+            }
+        };
+        List<T> records = query.apply(lookahead).getRecords();
+        boolean hasNext = records.size() > size;
+        if (hasNext) {
+            records = new ArrayList<>(records.subList(0, (int) size));
+        }
+        Page<T> page = new Page<>(current, size, false);
+        page.setRecords(records);
+        page.setTotal(offset + records.size() + (hasNext ? 1 : 0));
+        return page;
+    }
+
+    private Long estimate(String table, LongSupplier exactCount) {
+        try {
+            Long estimated = tableStatsMapper.selectEstimatedRows(table);
+            if (estimated != null) {
+                return estimated;
+            }
+        } catch (DataAccessException e) {
+            // 非 MySQL 的库 (如测试用的 H2) 没有 TABLE_ROWS，退回精确统计
+            logger.debug("无法读取表 {} 的行数估计值: {}", table, e.getMessage());
+        }
+        return exactCount.getAsLong();
+    }
+
+    private static String key(String table, Object filter) {
+        return table + ":" + (filter == null ? "" : filter);
+    }
+}
@@ -0,0 +1,70 @@
+package com.student.webproject.common.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.zip.CRC32;
+
+/**
+ * 游标分页的游标编解码
+ * 游标对客户端是不透明的字符串，内部是"校验值,排序键各字段"用逗号拼接后做 Base64URL 编码。
+ * 校验值由筛选条件和排序键一起算出：换了筛选条件继续翻页、或者改过游标内容，解码时都会被拒绝
+ */
+public final class CursorCodec {
+
+    private static final String SEPARATOR = ",";
+
+    private CursorCodec() {
+    }
+
+    /**
+     * 编码游标
+     * @param filterKey 生成这一页时的筛选条件，没有筛选时传 null
+     * @param parts 最后一条记录的排序键各字段
+     */
+    public static String encode(String filterKey, Object... parts) {
+        StringBuilder raw = new StringBuilder();
+        for (int i = 0; i < parts.length; i++) {
+            if (i > 0) {
+                raw.append(SEPARATOR);
+            }
+            raw.append(parts[i]);
+        }
+        String payload = checksum(filterKey, raw.toString()) + SEPARATOR + raw;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(payload.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * 解码游标
+     * @param cursor 客户端传回的游标
+     * @param filterKey 本次请求的筛选条件，须和生成游标时一致
+     * @param expectedParts 排序键字段个数
+     * @return 各字段的原始字符串
+     */
+    public static String[] decode(String cursor, String filterKey, int expectedParts) {
+        String[] parts;
+        try {
+            String payload = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            parts = payload.split(SEPARATOR, -1);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        if (parts.length != expectedParts + 1) {
+            throw new IllegalArgumentException("无效的分页游标");
+        }
+        String[] keys = Arrays.copyOfRange(parts, 1, parts.length);
+        if (!parts[0].equals(checksum(filterKey, String.join(SEPARATOR, keys)))) {
+            throw new IllegalArgumentException("分页游标与当前筛选条件不符，请从第一页重新查询");
+        }
+        return keys;
+    }
+
+    private static String checksum(String filterKey, String raw) {
+        CRC32 crc = new CRC32();
+        crc.update((filterKey == null ? "" : filterKey).getBytes(StandardCharsets.UTF_8));
+        // 分隔开筛选条件和排序键，避免两段拼接后碰巧相同
+        crc.update(0);
+        crc.update(raw.getBytes(StandardCharsets.UTF_8));
+        return Long.toHexString(crc.getValue());
+    }
+}
@@ -0,0 +1,37 @@
+package com.student.webproject.config;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+@Configuration
+public class ChatExecutorConfig {
+
+    /**
+     * AI 对话专用线程池，等待上游的请求只占这里的线程，不占 Tomcat 的请求线程
+     * 线程数即同时进行的对话上限，排队也满了直接拒绝 (RejectedExecutionException)，由调用方提示稍后再试
+     */
+    @Bean(destroyMethod = "shutdownNow")
+    public ExecutorService chatExecutor(MeterRegistry meterRegistry,
+                                        @Value("${ai.executor.threads:32}") int threads,
+                                        @Value("${ai.executor.queue-capacity:64}") int queueCapacity) {
+        AtomicInteger threadIndex = new AtomicInteger();
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), runnable -> {
+            Thread thread = new Thread(runnable, "chat-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.allowCoreThreadTimeOut(true);
+        // 暴露 executor.active / executor.queued 等指标
+        return ExecutorServiceMetrics.monitor(meterRegistry, executor, "chat");
+    }
+}
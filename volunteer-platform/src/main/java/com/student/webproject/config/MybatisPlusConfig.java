@@ -3,6 +3,10 @@ package com.student.webproject.config;
 import com.baomidou.mybatisplus.annotation.DbType;
 import com.baomidou.mybatisplus.extension.plugins.MybatisPlusInterceptor;
 import com.baomidou.mybatisplus.extension.plugins.inner.PaginationInnerInterceptor;
+import com.student.webproject.admin.mapper.TableStatsMapper;
+import com.student.webproject.common.pagination.PageCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -17,6 +21,17 @@ public class MybatisPlusConfig {
         MybatisPlusInterceptor interceptor = new MybatisPlusInterceptor();
         // 添加针对 MySQL 的分页插件
         interceptor.addInnerInterceptor(new PaginationInnerInterceptor(DbType.MYSQL));
+        // 流式查询的 fetchSize = Integer.MIN_VALUE 只交给 MySQL
+        interceptor.addInnerInterceptor(new StreamingFetchSizeInnerInterceptor());
         return interceptor;
     }
-}
\ No newline at end of file
+
+    /**
+     * 后台列表的总数统计：插件是否 COUNT 由各列表的 CountStrategy 决定 (admin.list.*.count-strategy)
+     */
+    @Bean
+    public PageCounter pageCounter(TableStatsMapper tableStatsMapper, MeterRegistry meterRegistry,
+                                   @Value("${pagination.count.cache-seconds:30}") long cacheSeconds) {
+        return new PageCounter(tableStatsMapper, meterRegistry, cacheSeconds);
+    }
+}
@@ -0,0 +1,44 @@
+package com.student.webproject.config;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import com.baomidou.mybatisplus.extension.plugins.inner.InnerInterceptor;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.mapping.MappedStatement;
+import org.apache.ibatis.reflection.SystemMetaObject;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * 流式查询的 fetchSize 只对 MySQL 生效
+ * <p>
+ * MySQL 驱动靠 fetchSize = Integer.MIN_VALUE 逐行读取结果集，其他库 (如测试用的 H2) 会直接拒绝负数。
+ * 连的不是 MySQL 时去掉这个提示，改用驱动默认的取数方式；整个应用只有一个数据源，所以改一次即可
+ */
+public class StreamingFetchSizeInnerInterceptor implements InnerInterceptor {
+
+    private volatile Boolean mysql;
+
+    @Override
+    public void beforePrepare(StatementHandler sh, Connection connection, Integer transactionTimeout) {
+        MappedStatement ms = PluginUtils.mpStatementHandler(sh).mappedStatement();
+        Integer fetchSize = ms.getFetchSize();
+        if (fetchSize != null && fetchSize == Integer.MIN_VALUE && !isMySql(connection)) {
+            SystemMetaObject.forObject(ms).setValue("fetchSize", null);
+        }
+    }
+
+    private boolean isMySql(Connection connection) {
+        Boolean result = mysql;
+        if (result == null) {
+            try {
+                result = "MySQL".equalsIgnoreCase(connection.getMetaData().getDatabaseProductName());
+            } catch (SQLException e) {
+                // 判断不了时保留原设置，由驱动自己决定
+                return true;
+            }
+            mysql = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,184 @@
+package com.student.webproject.news;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 新闻点赞的写后缓冲 (write-behind)
+ * 点赞只在内存里累加 (LongAdder 内部分段，热门新闻被并发点赞也不会争同一个变量)，当前点赞数直接从内存返回；
+ * 定时把各新闻攒下的增量用一条 UPDATE ... CASE 语句加到 news.likes_count 上，而不是每赞一次读一行、写一整行。
+ * 写库失败时增量退回缓冲区，下次再写；应用正常关闭时会把缓冲区写完。
+ * 内存里只有增量和读到的计数，重启后一律从数据库重新读取，没有需要恢复的状态；
+ * 代价是进程被强杀时最多丢失一个刷新周期内的点赞。
+ * 整整一个刷新周期没有新点赞的新闻会从内存中移除，下次点赞时再从库里读计数。
+ */
+@Component
+public class NewsLikeBuffer {
+
+    private static final Logger logger = LoggerFactory.getLogger(NewsLikeBuffer.class);
+
+    private final NewsMapper newsMapper;
+    private final Map<Long, LikeCounter> counters = new ConcurrentHashMap<>();
+
+    private final Counter flushedLikes;
+    private final Timer flushTimer;
+
+    public NewsLikeBuffer(NewsMapper newsMapper, MeterRegistry meterRegistry) {
+        this.newsMapper = newsMapper;
+        this.flushedLikes = Counter.builder("news.like.flushed")
+                .description("已写入数据库的点赞数").register(meterRegistry);
+        this.flushTimer = Timer.builder("news.like.flush")
+                .description("点赞增量批量写库耗时").register(meterRegistry);
+        Gauge.builder("news.like.pending", this, NewsLikeBuffer::pendingLikes)
+                .description("尚未写入数据库的点赞数").register(meterRegistry);
+        Gauge.builder("news.like.tracked", counters, Map::size)
+                .description("内存中持有计数的新闻数").register(meterRegistry);
+    }
+
+    /**
+     * 点赞一次
+     * @return 点赞后的点赞数；新闻不存在时返回 null
+     */
+    public Integer like(Long newsId) {
+        while (true) {
+            LikeCounter counter = counters.get(newsId);
+            if (counter == null) {
+                // 首次点赞时读一次库里的计数；并发的首次点赞以先放进去的为准
+                Integer persisted = newsMapper.selectLikesCount(newsId);
+                if (persisted == null) {
+                    return null;
+                }
+                LikeCounter loaded = new LikeCounter(persisted);
+                counter = counters.putIfAbsent(newsId, loaded);
+                if (counter == null) {
+                    counter = loaded;
+                }
+            }
+            counter.pending.increment();
+            counter.total.increment();
+            if (!counter.retired) {
+                return (int) counter.total.sum();
+            }
+            // 计数正被 flush 移出内存：撤回这一赞，换一个计数器重试
+            counter.pending.decrement();
+            counter.total.decrement();
+            Thread.onSpinWait();
+        }
+    }
+
+    /**
+     * 展示用的点赞数：内存里有这篇新闻的计数时以内存为准 (含未写库的点赞)
+     */
+    public Integer currentCount(Long newsId, Integer persisted) {
+        LikeCounter counter = counters.get(newsId);
+        return counter == null ? persisted : Integer.valueOf((int) counter.total.sum());
+    }
+
+    /**
+     * 新闻被删除：丢弃它的计数，未写库的点赞也不再写
+     */
+    public void discard(Long newsId) {
+        counters.remove(newsId);
+    }
+
+    /**
+     * 把攒下的增量写入数据库，默认 3 秒一次
+     */
+    @Scheduled(fixedDelayString = "${news.like.flush-interval-ms:3000}")
+    public synchronized void flush() {
+        // 按 id 升序，与其他批量更新以相同顺序加行锁
+        Map<Long, Long> deltas = new TreeMap<>();
+        counters.forEach((newsId, counter) -> {
+            // 先读再减，不用 sumThenReset：后者会丢掉读和清零之间并发加上的点赞
+            // 与移除计数赛跑的点赞会先加后撤，可能让增量短暂为负，照样写回以抵消
+            long delta = counter.pending.sum();
+            if (delta != 0) {
+                counter.pending.add(-delta);
+                deltas.put(newsId, delta);
+            }
+        });
+        if (deltas.isEmpty()) {
+            pruneIdle(deltas);
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            newsMapper.addLikes(deltas);
+            flushedLikes.increment(Math.max(0, deltas.values().stream().mapToLong(Long::longValue).sum()));
+            pruneIdle(deltas);
+        } catch (RuntimeException e) {
+            logger.warn("点赞数写库失败，{} 篇新闻的增量留待下次写入: {}", deltas.size(), e.getMessage());
+            deltas.forEach((newsId, delta) -> {
+                LikeCounter counter = counters.get(newsId);
+                if (counter != null) {
+                    counter.pending.add(delta);
+                }
+            });
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * 移除这一轮没有新增量的计数：库里的值已经是最新的，不必继续占内存
+     * 先标记 retired 再复查 pending，与 like() 里"先加再查 retired"配对：
+     * 两边至少有一方能看到对方的写入，所以不会有点赞加到已移除的计数上
+     */
+    private void pruneIdle(Map<Long, Long> flushed) {
+        counters.forEach((newsId, counter) -> {
+            if (flushed.containsKey(newsId) || counter.pending.sum() != 0) {
+                return;
+            }
+            counter.retired = true;
+            if (counter.pending.sum() == 0) {
+                counters.remove(newsId, counter);
+            } else {
+                counter.retired = false;
+            }
+        });
+    }
+
+    @PreDestroy
+    public void drain() {
+        flush();
+        long left = pendingLikes();
+        if (left > 0) {
+            logger.error("关闭前仍有 {} 个点赞未能写入数据库", left);
+        }
+    }
+
+    private long pendingLikes() {
+        long pending = 0;
+        for (LikeCounter counter : counters.values()) {
+            pending += counter.pending.sum();
+        }
+        return pending;
+    }
+
+    private static final class LikeCounter {
+        // 尚未写库的增量
+        private final LongAdder pending = new LongAdder();
+        // 库里的计数 + 未写库的增量，即对外展示的点赞数
+        private final LongAdder total = new LongAdder();
+        // 已被 flush 移出内存，不再接受点赞
+        private volatile boolean retired;
+
+        private LikeCounter(long persisted) {
+            total.add(persisted);
+        }
+    }
+}
@@ -6,6 +6,12 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import org.apache.ibatis.annotations.Mapper;
 import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface NewsMapper extends BaseMapper<News> {
@@ -15,4 +21,29 @@ public interface NewsMapper extends BaseMapper<News> {
 
     @Select("SELECT n.*, COALESCE(u.real_name, u.username) AS author_name FROM news n LEFT JOIN users u ON n.author_id = u.id WHERE n.id = #{id}")
     News findNewsDetailWithAuthor(@Param("id") Long id);
-}
\ No newline at end of file
+
+    @Select("SELECT likes_count FROM news WHERE id = #{id}")
+    Integer selectLikesCount(@Param("id") Long id);
+
+    /**
+     * 一条语句给多篇新闻的点赞数各自加上一个增量 (在数据库里做加法)
+     * @param deltas 新闻 id -> 点赞增量，按 id 升序传入可让并发的批量更新以相同顺序加行锁
+     */
+    default int addLikes(Map<Long, Long> deltas) {
+        // 以 Long 为键的 Map 不能直接作参数 (见 UserMapper.addServiceHours)，转成 entry 列表
+        List<Map.Entry<Long, Long>> entries = new ArrayList<>(deltas.size());
+        deltas.forEach((newsId, delta) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(newsId, delta)));
+        return addLikesEntries(entries);
+    }
+
+    @Update({
+            "<script>",
+            "UPDATE news SET likes_count = likes_count + CASE id",
+            "<foreach collection='deltas' index='newsId' item='delta'>WHEN #{newsId} THEN CAST(#{delta} AS SIGNED) </foreach>",
+            "ELSE 0 END",
+            "WHERE id IN",
+            "<foreach collection='deltas' index='newsId' open='(' separator=',' close=')'>#{newsId}</foreach>",
+            "</script>"
+    })
+    int addLikesEntries(@Param("deltas") List<Map.Entry<Long, Long>> deltas);
+}
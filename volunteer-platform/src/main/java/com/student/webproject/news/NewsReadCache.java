@@ -0,0 +1,153 @@
+package com.student.webproject.news;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.RemovalCause;
+import com.student.webproject.common.util.TransactionUtils;
+import com.student.webproject.news.dto.NewsDetailDTO;
+import com.student.webproject.news.dto.NewsSummaryDTO;
+import com.student.webproject.news.dto.PageDTO;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+/**
+ * 新闻列表和详情的进程内读缓存
+ * 新闻只会经由后台的新建、修改、删除发生变化，由 NewsAdminServiceImpl 在写入后精确失效；TTL 只是兜底
+ * (例如作者改了姓名、或直接改库)。
+ * 点赞数是唯一频繁变化的字段，不参与失效：缓存里存的是加载时的计数，读出时由 NewsService 用点赞缓冲里的实时计数覆盖。
+ * 缓存的 DTO 是共享的，调用方不能修改，需要覆盖字段时先复制。
+ * 和 ActivityReadCache 一样维护"新闻 id -> 包含它的列表页"的反向索引，修改新闻时直接定位到那几页；
+ * 加载过程中被失效的页在加载完后立即丢弃。
+ */
+@Component
+public class NewsReadCache {
+
+    private final Cache<PageKey, PageDTO<NewsSummaryDTO>> pageCache;
+    private final Cache<Long, NewsDetailDTO> detailCache;
+    private final Map<Long, Set<PageKey>> pagesByNews = new ConcurrentHashMap<>();
+    // 失效序号：新闻最近一次被失效时的序号，整体清空时的序号
+    private final AtomicLong invalidations = new AtomicLong();
+    private final Map<Long, Long> newsInvalidatedAt = new ConcurrentHashMap<>();
+    private volatile long clearedAt;
+
+    public NewsReadCache(MeterRegistry meterRegistry,
+                         @Value("${news.cache.page-max-size:200}") long pageMaxSize,
+                         @Value("${news.cache.detail-max-size:1000}") long detailMaxSize,
+                         @Value("${news.cache.ttl-seconds:600}") long ttlSeconds) {
+        this.pageCache = Caffeine.newBuilder()
+                .maximumSize(pageMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .evictionListener((PageKey key, PageDTO<NewsSummaryDTO> value, RemovalCause cause) -> unindex(key, value))
+                .recordStats()
+                .build();
+        // 详情带着整篇正文，按条数限制即可：单篇正文不大，1000 篇也只有几 MB
+        this.detailCache = Caffeine.newBuilder()
+                .maximumSize(detailMaxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+        // 以 cache.* 指标暴露，tag cache=news.page / news.detail
+        CaffeineCacheMetrics.monitor(meterRegistry, pageCache, "news.page");
+        CaffeineCacheMetrics.monitor(meterRegistry, detailCache, "news.detail");
+    }
+
+    public PageDTO<NewsSummaryDTO> getPage(int page, int pageSize, Supplier<PageDTO<NewsSummaryDTO>> loader) {
+        PageKey pageKey = new PageKey(page, pageSize);
+        long[] loadStartedAt = {-1};
+        PageDTO<NewsSummaryDTO> result = pageCache.get(pageKey, key -> {
+            loadStartedAt[0] = invalidations.get();
+            PageDTO<NewsSummaryDTO> loaded = loader.get();
+            for (Long id : newsIds(loaded)) {
+                pagesByNews.computeIfAbsent(id, k -> ConcurrentHashMap.newKeySet()).add(key);
+            }
+            return loaded;
+        });
+        if (loadStartedAt[0] >= 0 && invalidatedSince(result, loadStartedAt[0])) {
+            invalidatePage(pageKey);
+        }
+        return result;
+    }
+
+    /**
+     * @return 新闻详情；不存在时返回 null 且不缓存
+     */
+    public NewsDetailDTO getDetail(Long id, Function<Long, NewsDetailDTO> loader) {
+        return detailCache.get(id, loader);
+    }
+
+    /**
+     * 发布或删除新闻：列表按发布时间倒序，所有页的边界和总数都会移动，整体失效
+     */
+    public void onNewsAddedOrRemoved(Long id) {
+        TransactionUtils.afterCommit(() -> {
+            detailCache.invalidate(id);
+            clearedAt = invalidations.incrementAndGet();
+            pageCache.asMap().keySet().forEach(this::invalidatePage);
+        });
+    }
+
+    /**
+     * 修改新闻内容：发布时间不变，位置不动，只失效详情和包含它的那些页
+     */
+    public void onNewsUpdated(Long id) {
+        TransactionUtils.afterCommit(() -> {
+            detailCache.invalidate(id);
+            newsInvalidatedAt.merge(id, invalidations.incrementAndGet(), Math::max);
+            Set<PageKey> keys = pagesByNews.get(id);
+            if (keys != null) {
+                List.copyOf(keys).forEach(this::invalidatePage);
+            }
+        });
+    }
+
+    private boolean invalidatedSince(PageDTO<NewsSummaryDTO> page, long since) {
+        return clearedAt > since
+                || newsIds(page).stream().anyMatch(id -> newsInvalidatedAt.getOrDefault(id, 0L) > since);
+    }
+
+    // 在该 key 的原子操作里同时移除缓存页和它的索引
+    private void invalidatePage(PageKey key) {
+        pageCache.asMap().computeIfPresent(key, (k, value) -> {
+            unindex(k, value);
+            return null;
+        });
+    }
+
+    private void unindex(PageKey key, PageDTO<NewsSummaryDTO> value) {
+        if (key == null) {
+            return;
+        }
+        for (Long id : newsIds(value)) {
+            pagesByNews.computeIfPresent(id, (k, keys) -> {
+                keys.remove(key);
+                return keys.isEmpty() ? null : keys;
+            });
+        }
+    }
+
+    private static List<Long> newsIds(PageDTO<NewsSummaryDTO> page) {
+        if (page == null || page.getList() == null) {
+            return List.of();
+        }
+        return page.getList().stream().map(NewsSummaryDTO::getId).toList();
+    }
+
+    // 反向索引里登记的新闻数，测试用
+    int indexedNewsCount() {
+        return pagesByNews.size();
+    }
+
+    private record PageKey(int page, int pageSize) {
+    }
+}
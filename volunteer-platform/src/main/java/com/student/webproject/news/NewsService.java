@@ -5,6 +5,7 @@ import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
 import com.student.webproject.news.dto.NewsDetailDTO;
 import com.student.webproject.news.dto.NewsSummaryDTO;
 import com.student.webproject.news.dto.PageDTO;
+import org.springframework.beans.BeanUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
@@ -19,9 +20,39 @@ public class NewsService {
     @Autowired
     private NewsMapper newsMapper;
 
+    @Autowired
+    private NewsLikeBuffer likeBuffer;
+
+    @Autowired
+    private NewsReadCache readCache;
+
     private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
 
     public PageDTO<NewsSummaryDTO> findNewsPage(int pageNum, int pageSize) {
+        PageDTO<NewsSummaryDTO> cached = readCache.getPage(pageNum, pageSize, () -> loadPage(pageNum, pageSize));
+        // 缓存里的 DTO 是共享的，复制后再覆盖实时点赞数
+        List<NewsSummaryDTO> dtoList = cached.getList().stream()
+                .map(this::withLiveLikes)
+                .collect(Collectors.toList());
+        return new PageDTO<>(cached.getTotal(), dtoList);
+    }
+
+    public NewsDetailDTO findNewsDetailById(Long id) {
+        NewsDetailDTO cached = readCache.getDetail(id, key -> {
+            News news = newsMapper.findNewsDetailWithAuthor(key);
+            return news != null ? convertToDetailDTO(news) : null;
+        });
+        return cached != null ? withLiveLikes(cached) : null;
+    }
+
+    /**
+     * @return 点赞后的点赞数；新闻不存在时返回 null
+     */
+    public Integer likeNews(Long id) {
+        return likeBuffer.like(id);
+    }
+
+    private PageDTO<NewsSummaryDTO> loadPage(int pageNum, int pageSize) {
         Page<News> page = new Page<>(pageNum, pageSize);
         IPage<News> iPage = newsMapper.findNewsPageWithAuthor(page);
 
@@ -32,21 +63,18 @@ public class NewsService {
         return new PageDTO<>(iPage.getTotal(), dtoList);
     }
 
-    public NewsDetailDTO findNewsDetailById(Long id) {
-        News news = newsMapper.findNewsDetailWithAuthor(id);
-        return news != null ? convertToDetailDTO(news) : null;
+    private NewsSummaryDTO withLiveLikes(NewsSummaryDTO cached) {
+        NewsSummaryDTO dto = new NewsSummaryDTO();
+        BeanUtils.copyProperties(cached, dto);
+        dto.setLikesCount(likeBuffer.currentCount(cached.getId(), cached.getLikesCount()));
+        return dto;
     }
 
-    public Integer likeNews(Long id) {
-        News news = newsMapper.selectById(id);
-        if (news == null) {
-            return null;
-        }
-
-        news.setLikesCount(news.getLikesCount() + 1);
-        newsMapper.updateById(news);
-
-        return news.getLikesCount();
+    private NewsDetailDTO withLiveLikes(NewsDetailDTO cached) {
+        NewsDetailDTO dto = new NewsDetailDTO();
+        BeanUtils.copyProperties(cached, dto);
+        dto.setLikesCount(likeBuffer.currentCount(cached.getId(), cached.getLikesCount()));
+        return dto;
     }
 
     private NewsSummaryDTO convertToSummaryDTO(News news) {
@@ -55,7 +83,7 @@ public class NewsService {
         dto.setTitle(news.getTitle());
         dto.setSummary(news.getSummary());
         dto.setAuthorName(news.getAuthorName());
-        dto.setLikesCount(news.getLikesCount());
+        dto.setLikesCount(likeBuffer.currentCount(news.getId(), news.getLikesCount()));
         dto.setCommentsCount(news.getCommentsCount());
         if (news.getPublishedAt() != null) {
             dto.setPublishedAt(news.getPublishedAt().format(FORMATTER));
@@ -70,7 +98,7 @@ public class NewsService {
         dto.setSummary(news.getSummary());
         dto.setContent(news.getContent());
         dto.setAuthorName(news.getAuthorName());
-        dto.setLikesCount(news.getLikesCount());
+        dto.setLikesCount(likeBuffer.currentCount(news.getId(), news.getLikesCount()));
         dto.setCommentsCount(news.getCommentsCount());
         dto.setFavoritesCount(news.getFavoritesCount());
         if (news.getPublishedAt() != null) {
@@ -5,9 +5,10 @@ import com.student.webproject.organization.dto.OrganizationDetailDTO;
 import com.student.webproject.organization.dto.OrganizationSummaryDTO;
 import com.student.webproject.organization.dto.PendingApprovalDTO;
 import com.student.webproject.organization.service.OrganizationService;
+import com.student.webproject.security.LoginUser;
 import lombok.AllArgsConstructor;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import java.security.Principal;
 import java.util.List;
 
 @RestController
@@ -24,34 +25,34 @@ public class OrganizationController {
     }
 
     @GetMapping("/organizations/{id}")
-    public Result<OrganizationDetailDTO> getOrganizationDetails(@PathVariable Long id, Principal principal) {
-        return organizationService.getOrganizationDetails(id, principal);
+    public Result<OrganizationDetailDTO> getOrganizationDetails(@PathVariable Long id, @AuthenticationPrincipal LoginUser loginUser) {
+        return organizationService.getOrganizationDetails(id, loginUser);
     }
 
     // --- 用户操作接口 (需要登录) ---
     @PostMapping("/organizations/{id}/apply")
-    public Result<Void> applyToOrganization(@PathVariable("id") Long orgId, Principal principal) {
-        return organizationService.applyToOrganization(orgId, principal);
+    public Result<Void> applyToOrganization(@PathVariable("id") Long orgId, @AuthenticationPrincipal LoginUser loginUser) {
+        return organizationService.applyToOrganization(orgId, loginUser);
     }
 
     @DeleteMapping("/organizations/{id}/leave")
-    public Result<Void> leaveOrganization(@PathVariable("id") Long orgId, Principal principal) {
-        return organizationService.leaveOrganization(orgId, principal);
+    public Result<Void> leaveOrganization(@PathVariable("id") Long orgId, @AuthenticationPrincipal LoginUser loginUser) {
+        return organizationService.leaveOrganization(orgId, loginUser);
     }
 
     // --- 管理员/负责人操作接口 ---
     @GetMapping("/admin/organizations/{id}/pending-approvals")
-    public Result<List<PendingApprovalDTO>> listPendingApprovals(@PathVariable("id") Long orgId, Principal principal) {
-        return organizationService.listPendingApprovals(orgId, principal);
+    public Result<List<PendingApprovalDTO>> listPendingApprovals(@PathVariable("id") Long orgId, @AuthenticationPrincipal LoginUser loginUser) {
+        return organizationService.listPendingApprovals(orgId, loginUser);
     }
 
     @PostMapping("/admin/memberships/{id}/approve")
-    public Result<Void> approveApplication(@PathVariable("id") Long membershipId, Principal principal) {
-        return organizationService.approveApplication(membershipId, principal);
+    public Result<Void> approveApplication(@PathVariable("id") Long membershipId, @AuthenticationPrincipal LoginUser loginUser) {
+        return organizationService.approveApplication(membershipId, loginUser);
     }
 
     @DeleteMapping("/admin/memberships/{id}")
-    public Result<Void> rejectOrRemoveMember(@PathVariable("id") Long membershipId, Principal principal) {
-        return organizationService.rejectOrRemoveMember(membershipId, principal);
+    public Result<Void> rejectOrRemoveMember(@PathVariable("id") Long membershipId, @AuthenticationPrincipal LoginUser loginUser) {
+        return organizationService.rejectOrRemoveMember(membershipId, loginUser);
     }
 }
\ No newline at end of file
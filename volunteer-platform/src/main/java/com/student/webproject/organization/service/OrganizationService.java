@@ -2,15 +2,15 @@ package com.student.webproject.organization.service;
 
 import com.student.webproject.common.response.Result;
 import com.student.webproject.organization.dto.*;
-import java.security.Principal;
+import com.student.webproject.security.LoginUser;
 import java.util.List;
 
 public interface OrganizationService {
     Result<List<OrganizationSummaryDTO>> listOrganizations();
-    Result<OrganizationDetailDTO> getOrganizationDetails(Long id, Principal principal);
-    Result<Void> applyToOrganization(Long orgId, Principal principal);
-    Result<Void> leaveOrganization(Long orgId, Principal principal);
-    Result<List<PendingApprovalDTO>> listPendingApprovals(Long orgId, Principal principal);
-    Result<Void> approveApplication(Long membershipId, Principal principal);
-    Result<Void> rejectOrRemoveMember(Long membershipId, Principal principal);
+    Result<OrganizationDetailDTO> getOrganizationDetails(Long id, LoginUser loginUser);
+    Result<Void> applyToOrganization(Long orgId, LoginUser loginUser);
+    Result<Void> leaveOrganization(Long orgId, LoginUser loginUser);
+    Result<List<PendingApprovalDTO>> listPendingApprovals(Long orgId, LoginUser loginUser);
+    Result<Void> approveApplication(Long membershipId, LoginUser loginUser);
+    Result<Void> rejectOrRemoveMember(Long membershipId, LoginUser loginUser);
 }
\ No newline at end of file
@@ -8,11 +8,11 @@ import com.student.webproject.organization.entity.OrganizationMember;
 import com.student.webproject.organization.mapper.OrganizationMapper;
 import com.student.webproject.organization.mapper.OrganizationMemberMapper;
 import com.student.webproject.organization.service.OrganizationService;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.Entity.User;
 import com.student.webproject.user.mapper.UserMapper;
 import lombok.AllArgsConstructor;
 import org.springframework.stereotype.Service;
-import java.security.Principal;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Objects;
@@ -31,15 +31,15 @@ public class OrganizationServiceImpl implements OrganizationService {
     }
 
     @Override
-    public Result<OrganizationDetailDTO> getOrganizationDetails(Long id, Principal principal) {
+    public Result<OrganizationDetailDTO> getOrganizationDetails(Long id, LoginUser loginUser) {
         Organization org = organizationMapper.selectById(id);
         if (org == null) throw new RuntimeException("组织不存在");
 
         User leader = userMapper.selectById(org.getLeaderId());
-        User currentUser = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
 
-        OrganizationMember membership = memberMapper.selectOne(new QueryWrapper<OrganizationMember>()
-                .eq("user_id", currentUser.getId()).eq("organization_id", id));
+        // 公开接口，未登录时不查成员关系
+        OrganizationMember membership = loginUser == null ? null : memberMapper.selectOne(new QueryWrapper<OrganizationMember>()
+                .eq("user_id", loginUser.getId()).eq("organization_id", id));
 
         OrganizationDetailDTO dto = new OrganizationDetailDTO();
         dto.setId(org.getId());
@@ -54,13 +54,12 @@ public class OrganizationServiceImpl implements OrganizationService {
     }
 
     @Override
-    public Result<Void> applyToOrganization(Long orgId, Principal principal) {
-        User currentUser = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
-        if (memberMapper.selectOne(new QueryWrapper<OrganizationMember>().eq("user_id", currentUser.getId()).eq("organization_id", orgId)) != null) {
+    public Result<Void> applyToOrganization(Long orgId, LoginUser loginUser) {
+        if (memberMapper.selectOne(new QueryWrapper<OrganizationMember>().eq("user_id", loginUser.getId()).eq("organization_id", orgId)) != null) {
             throw new RuntimeException("您已申请或已加入该组织");
         }
         OrganizationMember newMember = new OrganizationMember();
-        newMember.setUserId(currentUser.getId());
+        newMember.setUserId(loginUser.getId());
         newMember.setOrganizationId(orgId);
         newMember.setStatus("pending"); // 申请状态
         newMember.setJoinDate(LocalDateTime.now());
@@ -69,23 +68,22 @@ public class OrganizationServiceImpl implements OrganizationService {
     }
 
     @Override
-    public Result<Void> leaveOrganization(Long orgId, Principal principal) {
-        User currentUser = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
-        memberMapper.delete(new QueryWrapper<OrganizationMember>().eq("user_id", currentUser.getId()).eq("organization_id", orgId));
+    public Result<Void> leaveOrganization(Long orgId, LoginUser loginUser) {
+        memberMapper.delete(new QueryWrapper<OrganizationMember>().eq("user_id", loginUser.getId()).eq("organization_id", orgId));
         return Result.success(null, "已成功退出组织");
     }
 
     @Override
-    public Result<List<PendingApprovalDTO>> listPendingApprovals(Long orgId, Principal principal) {
-        checkAdminOrLeaderPermission(orgId, principal);
+    public Result<List<PendingApprovalDTO>> listPendingApprovals(Long orgId, LoginUser loginUser) {
+        checkAdminOrLeaderPermission(orgId, loginUser);
         return Result.success(memberMapper.selectPendingApprovalsByOrganizationId(orgId));
     }
 
     @Override
-    public Result<Void> approveApplication(Long membershipId, Principal principal) {
+    public Result<Void> approveApplication(Long membershipId, LoginUser loginUser) {
         OrganizationMember member = memberMapper.selectById(membershipId);
         if (member == null) throw new RuntimeException("申请记录不存在");
-        checkAdminOrLeaderPermission(member.getOrganizationId(), principal);
+        checkAdminOrLeaderPermission(member.getOrganizationId(), loginUser);
 
         member.setStatus("approved");
         member.setMemberRole("member");
@@ -94,19 +92,18 @@ public class OrganizationServiceImpl implements OrganizationService {
     }
 
     @Override
-    public Result<Void> rejectOrRemoveMember(Long membershipId, Principal principal) {
+    public Result<Void> rejectOrRemoveMember(Long membershipId, LoginUser loginUser) {
         OrganizationMember member = memberMapper.selectById(membershipId);
         if (member == null) throw new RuntimeException("成员或申请记录不存在");
-        checkAdminOrLeaderPermission(member.getOrganizationId(), principal);
+        checkAdminOrLeaderPermission(member.getOrganizationId(), loginUser);
         memberMapper.deleteById(membershipId);
         return Result.success(null, "已拒绝申请或移除成员");
     }
 
-    private void checkAdminOrLeaderPermission(Long orgId, Principal principal) {
-        User operator = userMapper.selectOne(new QueryWrapper<User>().eq("username", principal.getName()));
+    private void checkAdminOrLeaderPermission(Long orgId, LoginUser loginUser) {
         Organization org = organizationMapper.selectById(orgId);
-        boolean isSuperAdmin = "super_admin".equals(operator.getRole());
-        boolean isLeader = Objects.equals(operator.getId(), org.getLeaderId());
+        boolean isSuperAdmin = loginUser.isSuperAdmin();
+        boolean isLeader = Objects.equals(loginUser.getId(), org.getLeaderId());
         if (!isSuperAdmin && !isLeader) {
             throw new RuntimeException("权限不足，只有超级管理员或组织负责人可以操作");
         }
@@ -1,5 +1,6 @@
 package com.student.webproject.security;
 
+import com.auth0.jwt.interfaces.DecodedJWT;
 import com.student.webproject.user.util.JwtUtils;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -12,7 +13,6 @@ import org.springframework.security.authentication.AnonymousAuthenticationToken;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
-import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
@@ -24,10 +24,10 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
     private static final Logger logger = LoggerFactory.getLogger(JwtAuthenticationTokenFilter.class);
 
     @Autowired
-    private UserDetailsService userDetailsService;
+    private JwtUtils jwtUtils;
 
     @Autowired
-    private JwtUtils jwtUtils;
+    private TokenVersionCache tokenVersionCache;
 
     @Override
     protected void doFilterInternal(
@@ -43,15 +43,16 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
         }
 
         final String jwt = authHeader.substring(7);
-        final String username = jwtUtils.extractUsername(jwt);
+        // 签名和过期时间只校验一次
+        final DecodedJWT decoded = jwtUtils.verify(jwt);
 
-        // 检查用户名不为空，并且当前认证信息是null或者匿名认证
-        if (username != null && (SecurityContextHolder.getContext().getAuthentication() == null ||
+        // 检查Token有效，并且当前认证信息是null或者匿名认证
+        if (decoded != null && (SecurityContextHolder.getContext().getAuthentication() == null ||
                 SecurityContextHolder.getContext().getAuthentication() instanceof AnonymousAuthenticationToken)) {
 
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(username);
+            UserDetails userDetails = resolveUser(decoded);
 
-            if (jwtUtils.isTokenValid(jwt, userDetails)) {
+            if (userDetails != null) {
                 UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
                         userDetails,
                         null,
@@ -61,9 +62,31 @@ public class JwtAuthenticationTokenFilter extends OncePerRequestFilter {
                         new WebAuthenticationDetailsSource().buildDetails(request)
                 );
                 SecurityContextHolder.getContext().setAuthentication(authToken);
-                logger.info("Authenticated user '{}', setting security context", username);
+                logger.debug("Authenticated user '{}', setting security context", userDetails.getUsername());
             }
         }
         filterChain.doFilter(request, response);
     }
+
+    /**
+     * 直接用签名过的声明构建登录用户，只需核对 (有本地缓存的) token_version，稳态下不查库。
+     * 没有 token_version 的旧版 Token 无法吊销，一律不认，用户重新登录即可拿到新版 Token
+     */
+    private UserDetails resolveUser(DecodedJWT decoded) {
+        String username = decoded.getClaim(JwtUtils.CLAIM_USERNAME).asString();
+        if (username == null) {
+            return null;
+        }
+        if (!jwtUtils.hasIdentityClaims(decoded)) {
+            logger.debug("Rejected token without identity claims for user '{}'", username);
+            return null;
+        }
+        Long userId = decoded.getClaim(JwtUtils.CLAIM_USER_ID).asLong();
+        Integer version = decoded.getClaim(JwtUtils.CLAIM_VERSION).asInt();
+        if (userId == null || version == null || !tokenVersionCache.isCurrent(userId, version)) {
+            logger.debug("Rejected revoked token for user '{}'", username);
+            return null;
+        }
+        return new LoginUser(userId, username, decoded.getClaim(JwtUtils.CLAIM_ROLE).asString());
+    }
 }
\ No newline at end of file
@@ -0,0 +1,94 @@
+package com.student.webproject.security;
+
+import com.student.webproject.user.Entity.User;
+import lombok.Getter;
+import org.springframework.security.core.CredentialsContainer;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.userdetails.UserDetails;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 当前登录用户 (认证主体)
+ * 带着 id 和角色，Controller 用 @AuthenticationPrincipal LoginUser 直接注入，
+ * Service 拿 id/角色即可，不必再按用户名查一次 users 表。
+ * 通过 Token 认证时 id、用户名、角色都来自签名过的声明，password 为空；
+ * 登录时查库构建的在认证完成后擦掉密码哈希，不随认证主体留在内存里；
+ * 它还带着 token_version 和头像，登录接口直接用它签发 Token，不必再查一次库。
+ */
+@Getter
+public class LoginUser implements UserDetails, CredentialsContainer {
+
+    private final Long id;
+    private final String username;
+    private final String role;
+    private String password;
+    private final boolean enabled;
+    // 只有登录时查库构建的才有，通过 Token 认证的为空
+    private final Integer tokenVersion;
+    private final String avatarUrl;
+
+    public LoginUser(Long id, String username, String role) {
+        this(id, username, role, "", true, null, null);
+    }
+
+    private LoginUser(Long id, String username, String role, String password, boolean enabled,
+                      Integer tokenVersion, String avatarUrl) {
+        this.id = id;
+        this.username = username;
+        this.role = role;
+        this.password = password;
+        this.enabled = enabled;
+        this.tokenVersion = tokenVersion;
+        this.avatarUrl = avatarUrl;
+    }
+
+    /**
+     * 登录时从数据库记录构建，带密码哈希供 AuthenticationManager 校验
+     */
+    public static LoginUser from(User user) {
+        // 被禁用的账户无法登录
+        boolean enabled = !Integer.valueOf(0).equals(user.getStatus());
+        return new LoginUser(user.getId(), user.getUsername(), user.getRole(), user.getPassword(), enabled,
+                user.getTokenVersion() == null ? 0 : user.getTokenVersion(), user.getAvatarUrl());
+    }
+
+    /**
+     * 认证完成后擦掉密码哈希；登录时由 AuthenticationManager 调用
+     */
+    @Override
+    public void eraseCredentials() {
+        password = null;
+    }
+
+    public boolean isSuperAdmin() {
+        return "super_admin".equals(role);
+    }
+
+    @Override
+    public Collection<? extends GrantedAuthority> getAuthorities() {
+        return List.of(new SimpleGrantedAuthority(role));
+    }
+
+    @Override
+    public boolean isAccountNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isAccountNonLocked() {
+        return true;
+    }
+
+    @Override
+    public boolean isCredentialsNonExpired() {
+        return true;
+    }
+
+    @Override
+    public boolean isEnabled() {
+        return enabled;
+    }
+}
@@ -0,0 +1,67 @@
+package com.student.webproject.security;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.student.webproject.common.util.TransactionUtils;
+import com.student.webproject.user.mapper.UserMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * 用户 token_version 的本地缓存
+ * Token 里带着签发时的版本号，和这里的当前版本不一致就视为已吊销。
+ * 禁用账号、修改角色、改密码、删除用户时把版本号加一，本机立即生效；
+ * 多实例部署时其他实例最迟在缓存过期 (security.token-version.cache-seconds) 后生效。
+ */
+@Component
+public class TokenVersionCache {
+
+    // 用户已不存在时缓存的占位值，任何 Token 都对不上
+    private static final int MISSING_USER = -1;
+
+    private final UserMapper userMapper;
+    private final Cache<Long, Integer> versions;
+
+    public TokenVersionCache(UserMapper userMapper,
+                             MeterRegistry meterRegistry,
+                             @Value("${security.token-version.cache-seconds:60}") long cacheSeconds,
+                             @Value("${security.token-version.max-size:10000}") long maxSize) {
+        this.userMapper = userMapper;
+        this.versions = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(cacheSeconds))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, versions, "auth.token-version");
+    }
+
+    /**
+     * Token 携带的版本号是否仍是该用户的当前版本
+     */
+    public boolean isCurrent(Long userId, int tokenVersion) {
+        int current = versions.get(userId, id -> {
+            Integer version = userMapper.selectTokenVersion(id);
+            return version == null ? MISSING_USER : version;
+        });
+        return current == tokenVersion;
+    }
+
+    /**
+     * 吊销该用户已签发的所有 Token (版本号原子加一)，事务提交后清掉本地缓存
+     */
+    public void revoke(Long userId) {
+        userMapper.incrementTokenVersion(userId);
+        TransactionUtils.afterCommit(() -> versions.invalidate(userId));
+    }
+
+    /**
+     * 用户被删除后清掉缓存，下次校验会发现用户不存在
+     */
+    public void evict(Long userId) {
+        TransactionUtils.afterCommit(() -> versions.invalidate(userId));
+    }
+}
@@ -0,0 +1,25 @@
+package com.student.webproject.user.Entity;
+
+import com.baomidou.mybatisplus.annotation.IdType;
+import com.baomidou.mybatisplus.annotation.TableId;
+import com.baomidou.mybatisplus.annotation.TableName;
+import lombok.Data;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * 服务时长流水，一行记一笔累计时长的变化；只追加，不修改、不删除
+ */
+@Data
+@TableName("service_hour_ledger")
+public class ServiceHourLedgerEntry {
+    @TableId(type = IdType.AUTO)
+    private Long id;
+    private Long userId;
+    private Long serviceRecordId;
+    private Long activityId;
+    private BigDecimal delta;
+    private String reason;
+    private LocalDateTime createdAt;
+}
@@ -1,5 +1,6 @@
 package com.student.webproject.user.Entity;
 
+import com.baomidou.mybatisplus.annotation.FieldStrategy;
 import com.baomidou.mybatisplus.annotation.IdType;
 import com.baomidou.mybatisplus.annotation.TableField;
 import com.baomidou.mybatisplus.annotation.TableId;
@@ -34,7 +35,12 @@ public class User {
     @TableField(update = "now()")
     private LocalDateTime updatedAt;
 
-    // 确保 totalServiceHours 字段存在，并且类型是 BigDecimal
-    @TableField("total_service_hours")
+    // 累计时长只能通过 ServiceHourLedger 记账 (在库里做加法)，updateById 不会用读出来的旧值覆盖它
+    @TableField(value = "total_service_hours", updateStrategy = FieldStrategy.NEVER)
     private BigDecimal totalServiceHours;
+
+    // Token 版本号，只能通过 UserMapper.incrementTokenVersion 原子加一，updateById 不会覆盖它
+    @JsonIgnore
+    @TableField(value = "token_version", insertStrategy = FieldStrategy.NEVER, updateStrategy = FieldStrategy.NEVER)
+    private Integer tokenVersion;
 }
\ No newline at end of file
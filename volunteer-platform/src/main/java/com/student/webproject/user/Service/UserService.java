@@ -4,6 +4,6 @@ import com.student.webproject.user.dto.UserDetailDTO;
 import com.student.webproject.user.dto.UserUpdateDTO;
 
 public interface UserService {
-    UserDetailDTO getUserByUsername(String username);
-    UserDetailDTO updateUser(String username, UserUpdateDTO userUpdateDTO);
+    UserDetailDTO getUserById(Long userId);
+    UserDetailDTO updateUser(Long userId, UserUpdateDTO userUpdateDTO);
 }
\ No newline at end of file
@@ -2,6 +2,7 @@ package com.student.webproject.user.Service.impl;
 
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
 import com.student.webproject.user.Entity.User;
 import com.student.webproject.user.mapper.UserMapper;
 import com.student.webproject.user.Service.AuthService;
@@ -12,6 +13,8 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 
+import java.time.LocalDateTime;
+
 @Service
 public class AuthServiceImpl implements AuthService {
     @Autowired
@@ -20,6 +23,8 @@ public class AuthServiceImpl implements AuthService {
     private PasswordEncoder passwordEncoder;
     @Autowired
     private JwtUtils jwtUtils;
+    @Autowired
+    private DashboardAggregateStore dashboardAggregateStore;
 
     @Override
     public User register(UserRegisterDTO userRegisterDTO) {
@@ -54,7 +59,9 @@ public class AuthServiceImpl implements AuthService {
         user.setPassword(encodedPassword);
         user.setRole("volunteer");
         user.setStatus(1);
+        user.setCreatedAt(LocalDateTime.now());
         userMapper.insert(user);
+        dashboardAggregateStore.onUserCreated(user);
         return user;
     }
 
@@ -1,17 +1,15 @@
 package com.student.webproject.user.Service.impl;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.Entity.User;
 import com.student.webproject.user.mapper.UserMapper;
 
 import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.security.core.authority.SimpleGrantedAuthority; // 引入权限类
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 
-import java.util.List; // 引入 List
-
 @Service
 public class UserDetailsServiceImpl implements UserDetailsService {
 
@@ -30,15 +28,7 @@ public class UserDetailsServiceImpl implements UserDetailsService {
             throw new UsernameNotFoundException("用户 '" + username + "' 不存在");
         }
 
-        // 3. 将用户的角色（例如 "admin"）封装成一个权限对象
-        //    之前这里是一个空的ArrayList<>()
-        List<SimpleGrantedAuthority> authorities = List.of(new SimpleGrantedAuthority(user.getRole()));
-
-        // 4. 返回包含用户名、密码和【权限】的UserDetails对象
-        return new org.springframework.security.core.userdetails.User(
-                user.getUsername(),
-                user.getPassword(),
-                authorities // 将权限列表传入
-        );
+        // 3. 返回包含 id、用户名、密码和角色权限的登录用户，被禁用的账户无法登录
+        return LoginUser.from(user);
     }
 }
\ No newline at end of file
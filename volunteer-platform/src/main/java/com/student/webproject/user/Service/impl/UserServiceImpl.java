@@ -1,6 +1,6 @@
 package com.student.webproject.user.Service.impl;
 
-import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
 import com.student.webproject.user.dto.UserDetailDTO;
 import com.student.webproject.user.dto.UserUpdateDTO;
 import com.student.webproject.user.Entity.User;
@@ -16,29 +16,24 @@ public class UserServiceImpl implements UserService {
 
     @Autowired
     private UserMapper userMapper;
+    @Autowired
+    private DashboardAggregateStore dashboardAggregateStore;
 
     @Override
-    public UserDetailDTO getUserByUsername(String username) {
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("username", username);
-        User user = userMapper.selectOne(queryWrapper);
+    public UserDetailDTO getUserById(Long userId) {
+        User user = userMapper.selectById(userId);
 
         if (user == null) {
             throw new RuntimeException("用户不存在");
         }
 
-        UserDetailDTO userDetailDTO = new UserDetailDTO();
-        BeanUtils.copyProperties(user, userDetailDTO);
-
-        return userDetailDTO;
+        return toDetailDTO(user);
     }
 
     @Override
     @Transactional
-    public UserDetailDTO updateUser(String username, UserUpdateDTO userUpdateDTO) {
-        QueryWrapper<User> queryWrapper = new QueryWrapper<>();
-        queryWrapper.eq("username", username);
-        User user = userMapper.selectOne(queryWrapper);
+    public UserDetailDTO updateUser(Long userId, UserUpdateDTO userUpdateDTO) {
+        User user = userMapper.selectById(userId);
 
         if (user == null) {
             throw new RuntimeException("用户不存在");
@@ -46,7 +41,15 @@ public class UserServiceImpl implements UserService {
 
         BeanUtils.copyProperties(userUpdateDTO, user);
         userMapper.updateById(user);
+        dashboardAggregateStore.onUserUpdated(user);
 
-        return getUserByUsername(username);
+        // 更新后的实体就是最新数据，不必再查一次
+        return toDetailDTO(user);
+    }
+
+    private UserDetailDTO toDetailDTO(User user) {
+        UserDetailDTO userDetailDTO = new UserDetailDTO();
+        BeanUtils.copyProperties(user, userDetailDTO);
+        return userDetailDTO;
     }
 }
\ No newline at end of file
@@ -1,6 +1,7 @@
 package com.student.webproject.user.controller;
 
 import com.student.webproject.common.response.Result;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.dto.UserLoginDTO;
 import com.student.webproject.user.dto.UserRegisterDTO;
 import com.student.webproject.user.Service.AuthService;
@@ -9,7 +10,6 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -54,9 +54,10 @@ public class AuthController {
         // 如果认证失败，这里会自动抛出异常，并被我们的 GlobalExceptionHandler 捕获
         Authentication authentication = authenticationManager.authenticate(authenticationToken);
 
-        // 3. 认证成功，生成JWT
-        UserDetails userDetails = (UserDetails) authentication.getPrincipal();
-        String token = jwtUtils.generateTokenByUserDetails(userDetails);
+        // 3. 认证成功，生成带 userId/role/版本号 的JWT，之后的请求鉴权不再查库
+        // 认证主体就是 UserDetailsServiceImpl 查出来的那一行，不用再按用户名查一次
+        LoginUser loginUser = (LoginUser) authentication.getPrincipal();
+        String token = jwtUtils.generateToken(loginUser);
         // 4. 封装成功的响应
         Map<String, String> tokenMap = Collections.singletonMap("token", token);
         return Result.success(tokenMap, "登录成功");
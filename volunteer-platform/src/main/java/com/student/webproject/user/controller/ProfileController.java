@@ -1,14 +1,12 @@
 package com.student.webproject.user.controller;
 
 import com.student.webproject.common.response.Result;
-import com.student.webproject.user.Entity.User;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.dto.EnrolledActivityDTO;
 import com.student.webproject.user.dto.ServiceRecordDTO;
-import com.student.webproject.user.mapper.UserMapper;
 import com.student.webproject.user.Service.ProfileService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.annotation.AuthenticationPrincipal;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
@@ -21,31 +19,22 @@ public class ProfileController {
     @Autowired
     private ProfileService profileService;
 
-    @Autowired
-    private UserMapper userMapper;
-
-    private User getUserByDetails(UserDetails userDetails) {
-        if (userDetails == null) {
+    private Long getUserId(LoginUser loginUser) {
+        if (loginUser == null) {
             throw new RuntimeException("用户未登录");
         }
-        User user = userMapper.selectByUsername(userDetails.getUsername());
-        if (user == null) {
-            throw new RuntimeException("用户不存在");
-        }
-        return user;
+        return loginUser.getId();
     }
 
     @GetMapping("/service-records")
-    public Result<List<ServiceRecordDTO>> getServiceRecords(@AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = getUserByDetails(userDetails);
-        List<ServiceRecordDTO> records = profileService.getServiceRecordsByUserId(currentUser.getId());
+    public Result<List<ServiceRecordDTO>> getServiceRecords(@AuthenticationPrincipal LoginUser loginUser) {
+        List<ServiceRecordDTO> records = profileService.getServiceRecordsByUserId(getUserId(loginUser));
         return Result.success(records, "时长明细查询成功");
     }
 
     @GetMapping("/enrollments")
-    public Result<List<EnrolledActivityDTO>> getEnrollments(@AuthenticationPrincipal UserDetails userDetails) {
-        User currentUser = getUserByDetails(userDetails);
-        List<EnrolledActivityDTO> activities = profileService.getEnrolledActivitiesByUserId(currentUser.getId());
+    public Result<List<EnrolledActivityDTO>> getEnrollments(@AuthenticationPrincipal LoginUser loginUser) {
+        List<EnrolledActivityDTO> activities = profileService.getEnrolledActivitiesByUserId(getUserId(loginUser));
         return Result.success(activities, "已报名活动查询成功");
     }
 }
\ No newline at end of file
@@ -1,13 +1,14 @@
 package com.student.webproject.user.controller;
 
 import com.student.webproject.common.response.Result; // 假设你有一个全局的Result封装类
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.dto.UserDetailDTO;
 import com.student.webproject.user.dto.UserUpdateDTO;
 import com.student.webproject.user.Service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
-import java.security.Principal; // 用于获取当前登录用户信息
 
 @RestController
 @RequestMapping("/api/users")
@@ -22,10 +23,9 @@ public class UserController {
      * 请求路径: /api/users/me
      */
     @GetMapping("/me")
-    public Result<UserDetailDTO> getCurrentUser(Principal principal) {
-        // Principal对象由Spring Security在用户认证后注入，其name通常是用户名
-        String username = principal.getName();
-        UserDetailDTO userDetail = userService.getUserByUsername(username);
+    public Result<UserDetailDTO> getCurrentUser(@AuthenticationPrincipal LoginUser loginUser) {
+        // LoginUser由Spring Security在用户认证后注入，直接带着用户id
+        UserDetailDTO userDetail = userService.getUserById(loginUser.getId());
         return Result.success(userDetail, "查询成功");
     }
 
@@ -35,9 +35,8 @@ public class UserController {
      * 请求路径: /api/users/me
      */
     @PutMapping("/me")
-    public Result<UserDetailDTO> updateCurrentUser(@RequestBody UserUpdateDTO userUpdateDTO, Principal principal) {
-        String username = principal.getName();
-        UserDetailDTO updatedUser = userService.updateUser(username, userUpdateDTO);
+    public Result<UserDetailDTO> updateCurrentUser(@RequestBody UserUpdateDTO userUpdateDTO, @AuthenticationPrincipal LoginUser loginUser) {
+        UserDetailDTO updatedUser = userService.updateUser(loginUser.getId(), userUpdateDTO);
         return Result.success(updatedUser,"更新成功" );
     }
 }
\ No newline at end of file
@@ -0,0 +1,41 @@
+package com.student.webproject.user.mapper;
+
+import com.baomidou.mybatisplus.core.mapper.BaseMapper;
+import com.student.webproject.user.Entity.ServiceHourLedgerEntry;
+import org.apache.ibatis.annotations.Insert;
+import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
+import org.apache.ibatis.annotations.Select;
+
+import java.util.Collection;
+import java.util.List;
+
+@Mapper
+public interface ServiceHourLedgerMapper extends BaseMapper<ServiceHourLedgerEntry> {
+
+    /**
+     * 多行 INSERT，一次记多笔流水
+     */
+    @Insert({
+            "<script>",
+            "INSERT INTO service_hour_ledger (user_id, service_record_id, activity_id, delta, reason) VALUES",
+            "<foreach collection='entries' item='e' separator=','>",
+            "(#{e.userId}, #{e.serviceRecordId}, #{e.activityId}, #{e.delta}, #{e.reason})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("entries") List<ServiceHourLedgerEntry> entries);
+
+    /**
+     * 按用户汇总流水，没有流水的用户不在结果里
+     * @return 每个用户一行，只有 userId 和 delta (该用户全部流水之和)
+     */
+    @Select({
+            "<script>",
+            "SELECT user_id, SUM(delta) AS delta FROM service_hour_ledger WHERE user_id IN",
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "GROUP BY user_id",
+            "</script>"
+    })
+    List<ServiceHourLedgerEntry> sumByUserIds(@Param("userIds") Collection<Long> userIds);
+}
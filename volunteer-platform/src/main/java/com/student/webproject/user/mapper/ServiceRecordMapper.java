@@ -4,11 +4,18 @@ package com.student.webproject.user.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.baomidou.mybatisplus.core.metadata.IPage;
 import com.baomidou.mybatisplus.extension.plugins.pagination.Page;
+import com.student.webproject.admin.dto.ServiceHourMismatchDTO;
 import com.student.webproject.admin.dto.ServiceRecordViewDTO;
 import com.student.webproject.user.dto.ServiceRecordDTO;
 import com.student.webproject.user.Entity.ServiceRecord;
+import org.apache.ibatis.annotations.Insert;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Options;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Mapper
@@ -20,11 +27,142 @@ public interface ServiceRecordMapper extends BaseMapper<ServiceRecord> {
     List<ServiceRecordDTO> findServiceRecordsByUserId(Long userId);
     /**
      * 分页联表查询，用于后台管理列表
+     * 可按活动、用户、记录时间 [recordedFrom, recordedTo) 筛选，分别走 idx_activity_recorded / idx_user_recorded / idx_recorded
+     */
+    @Select({
+            "<script>",
+            "SELECT sr.id, sr.user_id, u.student_id, sr.activity_id, u.real_name, a.title as activityTitle, sr.service_hours, sr.remarks, sr.recorded_at",
+            "FROM service_records sr",
+            "LEFT JOIN users u ON sr.user_id = u.id",
+            "LEFT JOIN activities a ON sr.activity_id = a.id",
+            "<where>",
+            "<if test='activityId != null'>sr.activity_id = #{activityId}</if>",
+            "<if test='userId != null'>AND sr.user_id = #{userId}</if>",
+            "<if test='recordedFrom != null'>AND sr.recorded_at &gt;= #{recordedFrom}</if>",
+            "<if test='recordedTo != null'>AND sr.recorded_at &lt; #{recordedTo}</if>",
+            "</where>",
+            "ORDER BY sr.recorded_at DESC, sr.id DESC",
+            "</script>"
+    })
+    IPage<ServiceRecordViewDTO> selectServiceRecordViewPage(Page<?> page,
+                                                            @Param("activityId") Long activityId,
+                                                            @Param("userId") Long userId,
+                                                            @Param("recordedFrom") LocalDateTime recordedFrom,
+                                                            @Param("recordedTo") LocalDateTime recordedTo);
+
+    /**
+     * 游标分页：取排在 (lastRecordedAt, lastId) 之后的 limit 条，按 (recorded_at, id) 倒序
+     * 第一页 lastRecordedAt、lastId 传 null；翻到多深都只扫描 limit 条索引
+     */
+    @Select({
+            "<script>",
+            "SELECT sr.id, sr.user_id, u.student_id, sr.activity_id, u.real_name, a.title as activityTitle, sr.service_hours, sr.remarks, sr.recorded_at",
+            "FROM service_records sr",
+            "LEFT JOIN users u ON sr.user_id = u.id",
+            "LEFT JOIN activities a ON sr.activity_id = a.id",
+            "<where>",
+            "<if test='activityId != null'>sr.activity_id = #{activityId}</if>",
+            "<if test='userId != null'>AND sr.user_id = #{userId}</if>",
+            "<if test='recordedFrom != null'>AND sr.recorded_at &gt;= #{recordedFrom}</if>",
+            "<if test='recordedTo != null'>AND sr.recorded_at &lt; #{recordedTo}</if>",
+            "<if test='lastRecordedAt != null'>",
+            "AND (sr.recorded_at &lt; #{lastRecordedAt} OR (sr.recorded_at = #{lastRecordedAt} AND sr.id &lt; #{lastId}))",
+            "</if>",
+            "</where>",
+            "ORDER BY sr.recorded_at DESC, sr.id DESC",
+            "LIMIT #{limit}",
+            "</script>"
+    })
+    List<ServiceRecordViewDTO> selectServiceRecordViewsAfter(@Param("activityId") Long activityId,
+                                                             @Param("userId") Long userId,
+                                                             @Param("recordedFrom") LocalDateTime recordedFrom,
+                                                             @Param("recordedTo") LocalDateTime recordedTo,
+                                                             @Param("lastRecordedAt") LocalDateTime lastRecordedAt,
+                                                             @Param("lastId") Long lastId,
+                                                             @Param("limit") int limit);
+
+    /**
+     * 按与列表相同的筛选条件统计条数，不联表
+     */
+    @Select({
+            "<script>",
+            "SELECT COUNT(*) FROM service_records sr",
+            "<where>",
+            "<if test='activityId != null'>sr.activity_id = #{activityId}</if>",
+            "<if test='userId != null'>AND sr.user_id = #{userId}</if>",
+            "<if test='recordedFrom != null'>AND sr.recorded_at &gt;= #{recordedFrom}</if>",
+            "<if test='recordedTo != null'>AND sr.recorded_at &lt; #{recordedTo}</if>",
+            "</where>",
+            "</script>"
+    })
+    long countServiceRecordViews(@Param("activityId") Long activityId,
+                                 @Param("userId") Long userId,
+                                 @Param("recordedFrom") LocalDateTime recordedFrom,
+                                 @Param("recordedTo") LocalDateTime recordedTo);
+
+    /**
+     * 按 id 读取并锁住时长记录，修改、删除时用，防止并发的两次修改各自按旧时长算差值
+     */
+    @Select("SELECT * FROM service_records WHERE id = #{id} FOR UPDATE")
+    ServiceRecord selectByIdForUpdate(@Param("id") Long id);
+
+    /**
+     * 按 (用户, 活动) 读取并锁住时长记录
+     */
+    @Select("SELECT * FROM service_records WHERE user_id = #{userId} AND activity_id = #{activityId} FOR UPDATE")
+    ServiceRecord selectByUserAndActivityForUpdate(@Param("userId") Long userId, @Param("activityId") Long activityId);
+
+    /**
+     * 对账：找出 id 在 [fromId, toId] 内、累计时长与时长记录之和不一致的用户
+     * 一条语句按用户分组求和并与 users 比较，结果是同一时刻的快照，不会把正在提交的登记误报成不一致
+     */
+    @Select("SELECT u.id AS userId, u.total_service_hours AS recordedTotal, COALESCE(s.hours, 0) AS expectedTotal " +
+            "FROM users u LEFT JOIN (" +
+            "  SELECT user_id, SUM(service_hours) AS hours FROM service_records " +
+            "  WHERE user_id BETWEEN #{fromId} AND #{toId} GROUP BY user_id" +
+            ") s ON s.user_id = u.id " +
+            "WHERE u.id BETWEEN #{fromId} AND #{toId} AND u.total_service_hours <> COALESCE(s.hours, 0) " +
+            "ORDER BY u.id")
+    List<ServiceHourMismatchDTO> selectHourMismatches(@Param("fromId") long fromId, @Param("toId") long toId);
+
+    /**
+     * 对账修复前复查：给定用户中累计时长与时长记录之和仍不一致的
+     */
+    @Select({
+            "<script>",
+            "SELECT u.id AS userId, u.total_service_hours AS recordedTotal, COALESCE(SUM(sr.service_hours), 0) AS expectedTotal",
+            "FROM users u LEFT JOIN service_records sr ON sr.user_id = u.id",
+            "WHERE u.id IN",
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "GROUP BY u.id, u.total_service_hours",
+            "HAVING u.total_service_hours &lt;&gt; COALESCE(SUM(sr.service_hours), 0)",
+            "ORDER BY u.id",
+            "</script>"
+    })
+    List<ServiceHourMismatchDTO> selectHourMismatchesByUserIds(@Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 在给定的用户中，找出已经有该活动时长记录的那些用户 id
+     */
+    @Select({
+            "<script>",
+            "SELECT user_id FROM service_records WHERE activity_id = #{activityId} AND user_id IN",
+            "<foreach collection='userIds' item='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "</script>"
+    })
+    List<Long> selectExistingUserIds(@Param("activityId") Long activityId, @Param("userIds") Collection<Long> userIds);
+
+    /**
+     * 多行 INSERT，一次写入一批时长记录，自增 id 回填到各条记录上
      */
-    @Select("SELECT sr.id, sr.user_id, sr.activity_id, u.real_name, a.title as activityTitle, sr.service_hours, sr.remarks, sr.recorded_at " +
-            "FROM service_records sr " +
-            "LEFT JOIN users u ON sr.user_id = u.id " +
-            "LEFT JOIN activities a ON sr.activity_id = a.id " +
-            "ORDER BY sr.recorded_at DESC")
-    IPage<ServiceRecordViewDTO> selectServiceRecordViewPage(Page<?> page);
-}
\ No newline at end of file
+    @Options(useGeneratedKeys = true, keyProperty = "records.id", keyColumn = "id")
+    @Insert({
+            "<script>",
+            "INSERT INTO service_records (user_id, activity_id, service_hours, record_method, recorded_by, remarks, recorded_at) VALUES",
+            "<foreach collection='records' item='r' separator=','>",
+            "(#{r.userId}, #{r.activityId}, #{r.serviceHours}, #{r.recordMethod}, #{r.recordedBy}, #{r.remarks}, #{r.recordedAt})",
+            "</foreach>",
+            "</script>"
+    })
+    int insertBatch(@Param("records") List<ServiceRecord> records);
+}
@@ -3,11 +3,114 @@ package com.student.webproject.user.mapper;
 import com.baomidou.mybatisplus.core.mapper.BaseMapper;
 import com.student.webproject.user.Entity.User;
 import org.apache.ibatis.annotations.Mapper;
+import org.apache.ibatis.annotations.Param;
 import org.apache.ibatis.annotations.Select;
+import org.apache.ibatis.annotations.Update;
+
+import java.math.BigDecimal;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
 
 @Mapper
 public interface UserMapper extends BaseMapper<User> {
 
     @Select("SELECT * FROM users WHERE username = #{username}")
     User selectByUsername(String username);
+
+    /**
+     * 查询用户当前的 Token 版本号，用户不存在时返回 null
+     */
+    @Select("SELECT token_version FROM users WHERE id = #{id}")
+    Integer selectTokenVersion(Long id);
+
+    /**
+     * Token 版本号原子加一，使该用户之前签发的 Token 全部失效
+     */
+    @Update("UPDATE users SET token_version = token_version + 1 WHERE id = #{id}")
+    int incrementTokenVersion(Long id);
+
+    /**
+     * 按学号批量查询用户，只取 id 和学号 (批量导入时用一条 IN 查询代替逐行 selectOne)
+     */
+    @Select({
+            "<script>",
+            "SELECT id, student_id FROM users WHERE student_id IN",
+            "<foreach collection='studentIds' item='studentId' open='(' separator=',' close=')'>#{studentId}</foreach>",
+            "</script>"
+    })
+    List<User> selectIdentitiesByStudentIds(@Param("studentIds") Collection<String> studentIds);
+
+    /**
+     * 按 id 批量查询用户，只取 id 和学号
+     */
+    @Select({
+            "<script>",
+            "SELECT id, student_id FROM users WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "</script>"
+    })
+    List<User> selectIdentitiesByIds(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 一条语句给多个用户的累计时长各自加上一个增量 (在数据库里做加法，不是读出来改完再写回)
+     * @param deltas 用户 id -> 时长增量，按 id 升序传入可让并发的批量更新以相同顺序加行锁
+     */
+    default int addServiceHours(Map<Long, BigDecimal> deltas) {
+        // 以 Long 为键的 Map 直接作参数时 MyBatis-Plus 会按字符串键处理，这里转成 entry 列表；
+        // foreach 遍历 Map.Entry 时 index 取键、item 取值
+        List<Map.Entry<Long, BigDecimal>> entries = new ArrayList<>(deltas.size());
+        deltas.forEach((userId, hours) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(userId, hours)));
+        return addServiceHoursEntries(entries);
+    }
+
+    @Update({
+            "<script>",
+            "UPDATE users SET total_service_hours = COALESCE(total_service_hours, 0) + CASE id",
+            // 显式 CAST，避免 CASE 分支里的参数被推断成整数类型
+            "<foreach collection='deltas' index='userId' item='hours'>WHEN #{userId} THEN CAST(#{hours} AS DECIMAL(10, 2)) </foreach>",
+            "ELSE 0 END",
+            "WHERE id IN",
+            "<foreach collection='deltas' index='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "</script>"
+    })
+    int addServiceHoursEntries(@Param("deltas") List<Map.Entry<Long, BigDecimal>> deltas);
+
+    @Select("SELECT MAX(id) FROM users")
+    Long selectMaxId();
+
+    /**
+     * 锁住一批用户行并读出累计时长 (重算累计时长前用，等正在记账的事务提交)
+     */
+    @Select({
+            "<script>",
+            "SELECT id, total_service_hours FROM users WHERE id IN",
+            "<foreach collection='ids' item='id' open='(' separator=',' close=')'>#{id}</foreach>",
+            "ORDER BY id FOR UPDATE",
+            "</script>"
+    })
+    List<User> selectServiceHoursForUpdate(@Param("ids") Collection<Long> ids);
+
+    /**
+     * 一条语句把多个用户的累计时长各自改成给定值 (只用于按流水重算，日常记账用 addServiceHours)
+     * @param totals 用户 id -> 累计时长
+     */
+    default int setServiceHours(Map<Long, BigDecimal> totals) {
+        List<Map.Entry<Long, BigDecimal>> entries = new ArrayList<>(totals.size());
+        totals.forEach((userId, hours) -> entries.add(new AbstractMap.SimpleImmutableEntry<>(userId, hours)));
+        return setServiceHoursEntries(entries);
+    }
+
+    @Update({
+            "<script>",
+            "UPDATE users SET total_service_hours = CASE id",
+            "<foreach collection='totals' index='userId' item='hours'>WHEN #{userId} THEN CAST(#{hours} AS DECIMAL(10, 2)) </foreach>",
+            "ELSE total_service_hours END",
+            "WHERE id IN",
+            "<foreach collection='totals' index='userId' open='(' separator=',' close=')'>#{userId}</foreach>",
+            "</script>"
+    })
+    int setServiceHoursEntries(@Param("totals") List<Map.Entry<Long, BigDecimal>> totals);
 }
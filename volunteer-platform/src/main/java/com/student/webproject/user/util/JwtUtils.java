@@ -5,15 +5,22 @@ import com.auth0.jwt.JWTVerifier;
 import com.auth0.jwt.algorithms.Algorithm;
 import com.auth0.jwt.exceptions.JWTVerificationException;
 import com.auth0.jwt.interfaces.DecodedJWT;
+import com.student.webproject.security.LoginUser;
 import com.student.webproject.user.Entity.User;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Value;
-import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.stereotype.Component;
 import java.util.Date;
 
 @Component
 public class JwtUtils {
 
+    public static final String CLAIM_USER_ID = "userId";
+    public static final String CLAIM_USERNAME = "username";
+    public static final String CLAIM_ROLE = "role";
+    // 签发时用户的 token_version，用于禁用/改角色后吊销旧 Token
+    public static final String CLAIM_VERSION = "ver";
+
     // 从配置文件注入密钥
     @Value("${jwt.secret-key}")
     private String secretKey;
@@ -22,68 +29,57 @@ public class JwtUtils {
     @Value("${jwt.expire-time}")
     private long expireTime;
 
-    /**
-     * 根据UserDetails对象生成JWT Token
-     */
-    public String generateTokenByUserDetails(UserDetails userDetails) {
-        Date expirationDate = new Date(System.currentTimeMillis() + expireTime);
+    // 算法和校验器都是线程安全的，启动时建一次，之后每个请求复用
+    private Algorithm algorithm;
+    private JWTVerifier verifier;
 
-        return JWT.create()
-                .withClaim("username", userDetails.getUsername())
-                .withExpiresAt(expirationDate)
-                .sign(Algorithm.HMAC256(secretKey));
+    @PostConstruct
+    public void init() {
+        this.algorithm = Algorithm.HMAC256(secretKey);
+        this.verifier = JWT.require(algorithm).build();
     }
 
     /**
-     * 从Token中提取用户名
+     * 校验签名和过期时间，一个请求只需要调用一次
+     * @return 解析后的 Token；签名错误或已过期时返回 null
      */
-    public String extractUsername(String token) {
+    public DecodedJWT verify(String token) {
         try {
-            return getDecodedJWT(token).getClaim("username").asString();
+            return verifier.verify(token);
         } catch (JWTVerificationException e) {
             return null;
         }
     }
 
     /**
-     * 验证Token是否有效
+     * 是否带完整的身份声明 (用户 id、角色、token_version)；缺任何一项的 Token 无法吊销，不予认证
      */
-    public boolean isTokenValid(String token, UserDetails userDetails) {
-        try {
-            final String username = extractUsername(token);
-            return (username.equals(userDetails.getUsername()) && !isTokenExpired(token));
-        } catch (JWTVerificationException e) {
-            return false;
-        }
+    public boolean hasIdentityClaims(DecodedJWT jwt) {
+        return !jwt.getClaim(CLAIM_USER_ID).isMissing()
+                && !jwt.getClaim(CLAIM_ROLE).isMissing()
+                && !jwt.getClaim(CLAIM_VERSION).isMissing();
     }
 
     /**
-     * 检查Token是否已过期
-     */
-    private boolean isTokenExpired(String token) {
-        Date expiration = getDecodedJWT(token).getExpiresAt();
-        return expiration.before(new Date());
-    }
-
-    /**
-     * 私有辅助方法：用于验证并解析Token
+     * 根据User对象生成Token的方法
      */
-    private DecodedJWT getDecodedJWT(String token) {
-        JWTVerifier verifier = JWT.require(Algorithm.HMAC256(secretKey)).build();
-        return verifier.verify(token);
+    public String generateToken(User user) {
+        return generateToken(LoginUser.from(user));
     }
 
     /**
-     * 根据User对象生成Token的方法
+     * 根据登录时认证得到的主体生成Token，不用再查库
      */
-    public String generateToken(User user) {
+    public String generateToken(LoginUser user) {
         Date expirationDate = new Date(System.currentTimeMillis() + expireTime);
 
         return JWT.create()
-                .withClaim("userId", user.getId())
-                .withClaim("username", user.getUsername())
+                .withClaim(CLAIM_USER_ID, user.getId())
+                .withClaim(CLAIM_USERNAME, user.getUsername())
+                .withClaim(CLAIM_ROLE, user.getRole())
+                .withClaim(CLAIM_VERSION, user.getTokenVersion() == null ? 0 : user.getTokenVersion())
                 .withClaim("avatarUrl", user.getAvatarUrl())
                 .withExpiresAt(expirationDate)
-                .sign(Algorithm.HMAC256(secretKey));
+                .sign(algorithm);
     }
 }
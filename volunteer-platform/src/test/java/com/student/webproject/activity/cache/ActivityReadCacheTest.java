@@ -0,0 +1,198 @@
+package com.student.webproject.activity.cache;
+
+import com.student.webproject.activity.dto.ActivityListResponse;
+import com.student.webproject.admin.entity.Activity;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 活动读缓存：命中不查库；报名变化只失效包含该活动的页；分类变化失效整个分类；反向索引随淘汰和失效一起清理；
+ * 加载过程中发生的失效不会漏掉正在加载的页
+ */
+class ActivityReadCacheTest {
+
+    private ActivityReadCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new ActivityReadCache(new SimpleMeterRegistry(), 500, 2000, 300, 30);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void repeatedReadsAreServedFromCache() {
+        assertEquals(List.of(1L, 2L), ids(cache.getPage(null, 1, 2, page(1, 2))));
+        assertEquals(List.of(1L, 2L), ids(cache.getPage(null, 1, 2, page(1, 2))));
+        assertEquals(1, loads.get());
+
+        AtomicInteger detailLoads = new AtomicInteger();
+        cache.getActivity(7L, id -> activity(id, detailLoads));
+        cache.getActivity(7L, id -> activity(id, detailLoads));
+        assertEquals(1, detailLoads.get());
+    }
+
+    @Test
+    void missingActivityIsNotCached() {
+        AtomicInteger detailLoads = new AtomicInteger();
+        assertNull(cache.getActivity(9L, id -> {
+            detailLoads.incrementAndGet();
+            return null;
+        }));
+        cache.getActivity(9L, id -> activity(id, detailLoads));
+        assertEquals(2, detailLoads.get());
+    }
+
+    @Test
+    void enrollmentChangeOnlyDropsPagesContainingTheActivity() {
+        cache.getPage(null, 1, 2, page(1, 2));
+        cache.getPage(null, 2, 2, page(3, 4));
+        cache.getPage("环保", 1, 5, page(2, 5));
+        AtomicInteger detailLoads = new AtomicInteger();
+        cache.getActivity(2L, id -> activity(id, detailLoads));
+        loads.set(0);
+
+        cache.onEnrollmentChanged(2L);
+
+        cache.getPage(null, 1, 2, page(1, 2));
+        cache.getPage("环保", 1, 5, page(2, 5));
+        assertEquals(2, loads.get());
+        cache.getPage(null, 2, 2, page(3, 4));
+        assertEquals(2, loads.get());
+        cache.getActivity(2L, id -> activity(id, detailLoads));
+        assertEquals(2, detailLoads.get());
+    }
+
+    @Test
+    void addingAnActivityDropsItsCategoryAndTheAllList() {
+        cache.getPage(null, 1, 2, page(1, 2));
+        cache.getPage("环保", 1, 2, page(1, 2));
+        cache.getPage("助老", 1, 2, page(10, 11));
+        AtomicInteger counts = new AtomicInteger();
+        cache.getCount("环保", () -> counts.incrementAndGet());
+        loads.set(0);
+
+        cache.onActivityAddedOrRemoved(99L, "环保");
+
+        cache.getPage(null, 1, 2, page(1, 2));
+        cache.getPage("环保", 1, 2, page(1, 2));
+        cache.getPage("助老", 1, 2, page(10, 11));
+        assertEquals(2, loads.get());
+        cache.getCount("环保", () -> counts.incrementAndGet());
+        assertEquals(2, counts.get());
+    }
+
+    @Test
+    void invalidationDuringALoadDropsTheLoadedPage() throws Exception {
+        assertReloadedAfterInvalidationDuringLoad(null, () -> cache.onEnrollmentChanged(2L));
+        assertReloadedAfterInvalidationDuringLoad("环保", () -> cache.onActivityAddedOrRemoved(99L, "环保"));
+        assertReloadedAfterInvalidationDuringLoad(null, () -> cache.invalidateAll());
+
+        // 和正在加载的页无关的失效不影响它
+        loads.set(0);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<ActivityListResponse> load = CompletableFuture.supplyAsync(
+                () -> cache.getPage("助老", 1, 2, blocked(page(1, 2), loading, release)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.onEnrollmentChanged(7L);
+        release.countDown();
+        load.get(5, TimeUnit.SECONDS);
+        cache.getPage("助老", 1, 2, page(1, 2));
+        assertEquals(1, loads.get());
+    }
+
+    private void assertReloadedAfterInvalidationDuringLoad(String category, Runnable invalidation) throws Exception {
+        loads.set(0);
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 查库已经读到旧数据，页还没放进缓存时，写操作提交并失效
+        CompletableFuture<ActivityListResponse> load = CompletableFuture.supplyAsync(
+                () -> cache.getPage(category, 1, 2, blocked(page(1, 2), loading, release)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        invalidation.run();
+        release.countDown();
+        assertEquals(List.of(1L, 2L), ids(load.get(5, TimeUnit.SECONDS)));
+
+        cache.getPage(category, 1, 2, page(1, 2));
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.indexedActivityCount());
+    }
+
+    @Test
+    void indexIsClearedWithThePages() {
+        cache.getPage(null, 1, 3, page(1, 3));
+        cache.getPage("环保", 1, 3, page(3, 5));
+        assertEquals(5, cache.indexedActivityCount());
+
+        cache.onEnrollmentChanged(3L);
+        assertEquals(0, cache.indexedActivityCount());
+
+        cache.getPage(null, 1, 3, page(1, 3));
+        cache.invalidateAll();
+        assertEquals(0, cache.indexedActivityCount());
+    }
+
+    @Test
+    void sizeEvictionAlsoUnindexesThePage() {
+        ActivityReadCache small = new ActivityReadCache(new SimpleMeterRegistry(), 1, 10, 300, 30);
+        for (int p = 0; p < 20; p++) {
+            small.getPage(null, p + 1, 2, page(p * 2 + 1, p * 2 + 2));
+        }
+        small.invalidateAll();
+        assertEquals(0, small.indexedActivityCount());
+    }
+
+    private Supplier<ActivityListResponse> page(long firstId, long lastId) {
+        return () -> {
+            loads.incrementAndGet();
+            ActivityListResponse.Data data = new ActivityListResponse.Data();
+            data.setList(LongStream.rangeClosed(firstId, lastId).mapToObj(id -> {
+                ActivityListResponse.ActivityItem item = new ActivityListResponse.ActivityItem();
+                item.setId(id);
+                return item;
+            }).toList());
+            ActivityListResponse response = new ActivityListResponse();
+            response.setData(data);
+            return response;
+        };
+    }
+
+    private static Supplier<ActivityListResponse> blocked(Supplier<ActivityListResponse> loader,
+                                                          CountDownLatch loading, CountDownLatch release) {
+        return () -> {
+            ActivityListResponse response = loader.get();
+            loading.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return response;
+        };
+    }
+
+    private static Activity activity(Long id, AtomicInteger detailLoads) {
+        detailLoads.incrementAndGet();
+        Activity activity = new Activity();
+        activity.setId(id);
+        return activity;
+    }
+
+    private static List<Long> ids(ActivityListResponse response) {
+        return response.getData().getList().stream().map(ActivityListResponse.ActivityItem::getId).toList();
+    }
+}
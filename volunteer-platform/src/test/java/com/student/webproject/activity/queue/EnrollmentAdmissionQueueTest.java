@@ -0,0 +1,212 @@
+package com.student.webproject.activity.queue;
+
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.activity.service.ActivityService;
+import com.student.webproject.activity.service.impl.ActivityServiceImpl;
+import com.student.webproject.support.H2MybatisTestConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 排队报名：按提交顺序录取、队列满时拒绝、批内个别失败不影响其他人、空闲队列回收、停止时答复未处理的请求
+ */
+@SpringJUnitConfig(EnrollmentAdmissionQueueTest.Config.class)
+class EnrollmentAdmissionQueueTest {
+
+    private static final int QUOTA = 3;
+
+    @Import({H2MybatisTestConfig.class, ActivityReadCache.class, ActivityServiceImpl.class})
+    static class Config {
+    }
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<EnrollmentAdmissionQueue> opened = new ArrayList<>();
+    private long activityId;
+    private List<Long> studentIds;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM enrollments");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time, recruitment_quota, current_enrollment) "
+                + "VALUES ('热门活动', NOW(), NOW(), ?, 0)", QUOTA);
+        activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        for (int i = 0; i < 6; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password) VALUES (?, 'x')", "student" + i);
+        }
+        studentIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        for (EnrollmentAdmissionQueue queue : opened) {
+            queue.shutdown();
+        }
+    }
+
+    @Test
+    void admitsInSubmissionOrderUntilQuotaIsFull() throws InterruptedException {
+        EnrollmentAdmissionQueue queue = open(activityService, new SimpleMeterRegistry(), 100, 10);
+        List<EnrollmentTicket> tickets = new ArrayList<>();
+        for (Long studentId : studentIds) {
+            tickets.add(queue.submit(activityId, studentId));
+        }
+
+        awaitFinished(tickets);
+
+        for (int i = 0; i < tickets.size(); i++) {
+            EnrollmentTicket ticket = tickets.get(i);
+            if (i < QUOTA) {
+                assertEquals(EnrollmentTicket.Status.SUCCEEDED, ticket.getStatus(), ticket.getMessage());
+            } else {
+                assertEquals(EnrollmentTicket.Status.FAILED, ticket.getStatus());
+                assertEquals("No available slots", ticket.getMessage());
+            }
+        }
+        assertEquals(studentIds.subList(0, QUOTA),
+                jdbcTemplate.queryForList("SELECT user_id FROM enrollments ORDER BY user_id", Long.class));
+    }
+
+    @Test
+    void refusedTicketInABatchOnlyRollsBackItself() throws InterruptedException {
+        EnrollmentAdmissionQueue queue = open(activityService, new SimpleMeterRegistry(), 100, 10);
+        List<EnrollmentTicket> tickets = List.of(
+                queue.submit(activityId, studentIds.get(0)),
+                queue.submit(activityId, studentIds.get(0)),
+                queue.submit(activityId, studentIds.get(1)));
+
+        awaitFinished(tickets);
+
+        assertEquals(EnrollmentTicket.Status.SUCCEEDED, tickets.get(0).getStatus());
+        assertEquals("Already enrolled", tickets.get(1).getMessage());
+        assertEquals(EnrollmentTicket.Status.SUCCEEDED, tickets.get(2).getStatus());
+        // 重复报名那一条先自增了名额，保存点回滚后不能多占
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT current_enrollment FROM activities WHERE id = ?", Integer.class, activityId));
+        assertEquals(2, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM enrollments", Integer.class));
+    }
+
+    @Test
+    void rejectsWhenQueueIsFull() throws InterruptedException {
+        BlockingService blocking = new BlockingService();
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EnrollmentAdmissionQueue queue = open(blocking.service, meterRegistry, 2, 10);
+
+        EnrollmentTicket inFlight = queue.submit(activityId, 1L);
+        assertTrue(blocking.entered.await(5, TimeUnit.SECONDS));
+        assertNotNull(queue.submit(activityId, 2L));
+        assertNotNull(queue.submit(activityId, 3L));
+        assertNull(queue.submit(activityId, 4L));
+
+        assertEquals(2, queue.getQueueDepth(activityId));
+        assertEquals(1, meterRegistry.get("enrollment.queue.rejected").counter().count());
+        blocking.release.countDown();
+        awaitFinished(List.of(inFlight));
+    }
+
+    @Test
+    void idleQueuesAndTheirMetersAreEvicted() throws InterruptedException {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        EnrollmentAdmissionQueue queue = open(activityService, meterRegistry, 100, 10);
+        awaitFinished(List.of(queue.submit(activityId, studentIds.get(0))));
+        assertNotNull(meterRegistry.find("enrollment.queue.depth").gauge());
+
+        // 凭证出结果时消费任务可能还没收尾，收尾之后才算空闲
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.find("enrollment.queue.depth").gauge() != null) {
+            assertTrue(System.currentTimeMillis() < deadline, "idle queue was not evicted");
+            queue.evictIdleQueues();
+            Thread.sleep(10);
+        }
+
+        assertEquals(0, queue.getQueueDepth(activityId));
+        assertNull(meterRegistry.find("enrollment.queue.latency").timer());
+        assertNull(meterRegistry.find("enrollment.queue.rejected").counter());
+        // 再来请求时重新建队列
+        awaitFinished(List.of(queue.submit(activityId, studentIds.get(1))));
+        assertNotNull(meterRegistry.find("enrollment.queue.depth").gauge());
+    }
+
+    @Test
+    void pendingTicketsAreFailedOnShutdown() throws InterruptedException {
+        BlockingService blocking = new BlockingService();
+        EnrollmentAdmissionQueue queue = new EnrollmentAdmissionQueue(blocking.service, new SimpleMeterRegistry(),
+                transactionManager, true, 10, 1, 1, 30, 0);
+
+        EnrollmentTicket inFlight = queue.submit(activityId, 1L);
+        assertTrue(blocking.entered.await(5, TimeUnit.SECONDS));
+        EnrollmentTicket waiting = queue.submit(activityId, 2L);
+        Thread releaser = new Thread(() -> {
+            try {
+                Thread.sleep(200);
+            } catch (InterruptedException ignored) {
+                Thread.currentThread().interrupt();
+            }
+            blocking.release.countDown();
+        });
+        releaser.start();
+
+        queue.shutdown();
+
+        assertEquals(EnrollmentTicket.Status.SUCCEEDED, inFlight.getStatus());
+        assertEquals(EnrollmentTicket.Status.FAILED, waiting.getStatus());
+        assertTrue(waiting.getMessage().contains("重新报名"), waiting.getMessage());
+        assertNull(queue.submit(activityId, 3L));
+    }
+
+    private EnrollmentAdmissionQueue open(ActivityService service, SimpleMeterRegistry meterRegistry, int capacity, int batchSize) {
+        EnrollmentAdmissionQueue queue = new EnrollmentAdmissionQueue(service, meterRegistry, transactionManager,
+                true, capacity, 1, batchSize, 30, 0);
+        opened.add(queue);
+        return queue;
+    }
+
+    private static void awaitFinished(List<EnrollmentTicket> tickets) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (tickets.stream().anyMatch(ticket -> ticket.getStatus() == EnrollmentTicket.Status.QUEUED)) {
+            assertTrue(System.currentTimeMillis() < deadline, "tickets not processed in time");
+            Thread.sleep(10);
+        }
+    }
+
+    // 第一次报名卡住直到放行，用来把后续请求压在队列里
+    private static final class BlockingService {
+        private final CountDownLatch entered = new CountDownLatch(1);
+        private final CountDownLatch release = new CountDownLatch(1);
+        private final ActivityService service = Mockito.mock(ActivityService.class);
+
+        private BlockingService() {
+            Mockito.doAnswer(invocation -> {
+                entered.countDown();
+                release.await(10, TimeUnit.SECONDS);
+                return null;
+            }).when(service).enrollActivity(Mockito.anyLong(), Mockito.anyLong());
+        }
+    }
+}
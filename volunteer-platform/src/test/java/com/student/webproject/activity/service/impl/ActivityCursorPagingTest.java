@@ -0,0 +1,100 @@
+package com.student.webproject.activity.service.impl;
+
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.activity.dto.ActivityListResponse;
+import com.student.webproject.activity.service.ActivityService;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 活动列表游标翻页：时间完全相同的活动也不重不漏；翻页途中新增活动不会挤乱后续页；游标不能换到别的分类上继续用
+ */
+@SpringJUnitConfig(ActivityCursorPagingTest.Config.class)
+class ActivityCursorPagingTest {
+
+    @Import({H2MybatisTestConfig.class, ActivityReadCache.class, ActivityServiceImpl.class})
+    static class Config {
+    }
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM enrollments");
+        jdbcTemplate.update("DELETE FROM activities");
+        for (int i = 0; i < 23; i++) {
+            // 开始/结束/创建时间全部相同，只能靠 id 区分先后
+            jdbcTemplate.update("INSERT INTO activities (title, category, start_time, end_time, created_at) "
+                    + "VALUES (?, ?, '2026-05-01 09:00:00', '2026-05-01 12:00:00', '2026-04-01 00:00:00')",
+                    "活动" + i, i % 3 == 0 ? "助老" : "环保");
+        }
+    }
+
+    @Test
+    void pagesCoverEveryActivityOnce() {
+        assertEquals(jdbcTemplate.queryForList("SELECT id FROM activities ORDER BY id DESC", Long.class), walk(null, 4));
+        assertEquals(jdbcTemplate.queryForList("SELECT id FROM activities WHERE category = '助老' ORDER BY id DESC", Long.class),
+                walk("助老", 3));
+    }
+
+    @Test
+    void activityAddedMidWalkDoesNotShiftLaterPages() {
+        List<Long> expected = jdbcTemplate.queryForList("SELECT id FROM activities ORDER BY id DESC", Long.class);
+        ActivityListResponse.Data first = activityService.getActivitiesByCursor("", 5, null, false).getData();
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('新活动', NOW(), NOW())");
+
+        List<Long> seen = new ArrayList<>(ids(first));
+        String cursor = first.getNextCursor();
+        while (cursor != null) {
+            ActivityListResponse.Data page = activityService.getActivitiesByCursor(cursor, 5, null, false).getData();
+            seen.addAll(ids(page));
+            cursor = page.getNextCursor();
+        }
+        assertEquals(expected, seen);
+    }
+
+    @Test
+    void cursorIsBoundToItsCategory() {
+        String cursor = activityService.getActivitiesByCursor("", 2, "环保", false).getData().getNextCursor();
+
+        assertThrows(IllegalArgumentException.class, () -> activityService.getActivitiesByCursor(cursor, 2, "助老", false));
+        assertThrows(IllegalArgumentException.class, () -> activityService.getActivitiesByCursor(cursor, 2, null, false));
+        assertEquals(2, activityService.getActivitiesByCursor(cursor, 2, "环保", false).getData().getList().size());
+    }
+
+    private List<Long> walk(String category, int pageSize) {
+        List<Long> seen = new ArrayList<>();
+        String cursor = "";
+        while (true) {
+            ActivityListResponse.Data page = activityService.getActivitiesByCursor(cursor, pageSize, category, false).getData();
+            seen.addAll(ids(page));
+            if (!page.getHasMore()) {
+                assertNull(page.getNextCursor());
+                return seen;
+            }
+            assertFalse(page.getList().isEmpty());
+            cursor = page.getNextCursor();
+        }
+    }
+
+    private static List<Long> ids(ActivityListResponse.Data page) {
+        return page.getList().stream().map(ActivityListResponse.ActivityItem::getId).toList();
+    }
+}
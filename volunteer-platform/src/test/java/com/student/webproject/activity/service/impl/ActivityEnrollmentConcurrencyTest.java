@@ -0,0 +1,183 @@
+package com.student.webproject.activity.service.impl;
+
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.activity.service.ActivityService;
+import com.student.webproject.support.H2MybatisTestConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 热门活动开放报名时的并发压测：大量用户同时抢有限名额，验证不超报、不丢更新；
+ * 每轮压测的耗时和请求数记到 enrollment.load 指标里，不往控制台打印
+ */
+@SpringJUnitConfig(ActivityEnrollmentConcurrencyTest.Config.class)
+class ActivityEnrollmentConcurrencyTest {
+
+    private static final int QUOTA = 50;
+    private static final int STUDENTS = 400;
+    private static final int THREADS = 32;
+
+    @Import({H2MybatisTestConfig.class, ActivityReadCache.class, ActivityServiceImpl.class})
+    static class Config {
+    }
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private long activityId;
+    private List<Long> studentIds;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM enrollments");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time, recruitment_quota, current_enrollment) "
+                + "VALUES ('热门活动', NOW(), NOW(), ?, 0)", QUOTA);
+        activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        for (int i = 0; i < STUDENTS; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password) VALUES (?, 'x')", "student" + i);
+        }
+        studentIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+    }
+
+    @Test
+    void concurrentEnrollmentNeverOversubscribes() throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger full = new AtomicInteger();
+        List<String> unexpected = Collections.synchronizedList(new ArrayList<>());
+
+        long elapsedNanos = runConcurrently(STUDENTS, i -> {
+            try {
+                activityService.enrollActivity(activityId, studentIds.get(i));
+                succeeded.incrementAndGet();
+            } catch (RuntimeException e) {
+                if ("No available slots".equals(e.getMessage())) {
+                    full.incrementAndGet();
+                } else {
+                    unexpected.add(e.toString());
+                }
+            }
+        });
+
+        assertTrue(unexpected.isEmpty(), "unexpected failures: " + unexpected);
+        assertEquals(QUOTA, succeeded.get());
+        assertEquals(STUDENTS - QUOTA, full.get());
+        assertEquals(QUOTA, currentEnrollment());
+        assertEquals(QUOTA, enrollmentRows());
+        record("enroll", STUDENTS, elapsedNanos);
+    }
+
+    @Test
+    void duplicateEnrollmentIsRejectedByUniqueIndex() throws Exception {
+        AtomicInteger succeeded = new AtomicInteger();
+        AtomicInteger duplicates = new AtomicInteger();
+
+        // 同一个学生并发点 20 次报名
+        runConcurrently(20, i -> {
+            try {
+                activityService.enrollActivity(activityId, studentIds.get(0));
+                succeeded.incrementAndGet();
+            } catch (RuntimeException e) {
+                assertEquals("Already enrolled", e.getMessage());
+                duplicates.incrementAndGet();
+            }
+        });
+
+        assertEquals(1, succeeded.get());
+        assertEquals(19, duplicates.get());
+        assertEquals(1, currentEnrollment());
+        assertEquals(1, enrollmentRows());
+    }
+
+    @Test
+    void concurrentEnrollAndUnenrollKeepCounterConsistent() throws Exception {
+        for (int i = 0; i < QUOTA; i++) {
+            activityService.enrollActivity(activityId, studentIds.get(i));
+        }
+
+        // 已报名的一半取消，同时另一批新用户抢释放出来的名额
+        long elapsedNanos = runConcurrently(STUDENTS, i -> {
+            try {
+                if (i < QUOTA / 2) {
+                    activityService.unenrollActivity(activityId, studentIds.get(i));
+                } else if (i >= QUOTA) {
+                    activityService.enrollActivity(activityId, studentIds.get(i));
+                }
+            } catch (RuntimeException e) {
+                assertEquals("No available slots", e.getMessage());
+            }
+        });
+
+        int current = currentEnrollment();
+        assertTrue(current <= QUOTA, "oversubscribed: " + current);
+        assertEquals(enrollmentRows(), current);
+        record("enroll+unenroll", STUDENTS - QUOTA / 2, elapsedNanos);
+    }
+
+    private int currentEnrollment() {
+        return jdbcTemplate.queryForObject("SELECT current_enrollment FROM activities WHERE id = ?", Integer.class, activityId);
+    }
+
+    private int enrollmentRows() {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM enrollments WHERE activity_id = ?", Integer.class, activityId);
+    }
+
+    private long runConcurrently(int tasks, IntConsumer task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int i = 0; i < tasks; i++) {
+            final int index = i;
+            futures.add(pool.submit(() -> {
+                start.await();
+                task.accept(index);
+                return null;
+            }));
+        }
+        long begin = System.nanoTime();
+        start.countDown();
+        for (Future<?> future : futures) {
+            future.get(60, TimeUnit.SECONDS);
+        }
+        long elapsed = System.nanoTime() - begin;
+        pool.shutdown();
+        return elapsed;
+    }
+
+    private void record(String scenario, int requests, long elapsedNanos) {
+        Timer timer = Timer.builder("enrollment.load").tag("scenario", scenario).register(meterRegistry);
+        timer.record(elapsedNanos, TimeUnit.NANOSECONDS);
+        Counter counter = Counter.builder("enrollment.load.requests").tag("scenario", scenario).register(meterRegistry);
+        counter.increment(requests);
+        assertEquals(1, timer.count());
+        assertTrue(counter.count() / timer.totalTime(TimeUnit.SECONDS) > 0, "no throughput recorded for " + scenario);
+    }
+}
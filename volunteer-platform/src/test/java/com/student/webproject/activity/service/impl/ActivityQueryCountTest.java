@@ -0,0 +1,89 @@
+package com.student.webproject.activity.service.impl;
+
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.activity.service.ActivityService;
+import com.student.webproject.support.H2MybatisTestConfig;
+import com.student.webproject.support.StatementCounter;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 报名相关接口的查库次数：当前用户直接取自认证主体，不再按用户名查 users 表
+ */
+@SpringJUnitConfig(ActivityQueryCountTest.Config.class)
+class ActivityQueryCountTest {
+
+    @Import({H2MybatisTestConfig.class, ActivityReadCache.class, ActivityServiceImpl.class})
+    static class Config {
+
+        @Bean
+        StatementCounter statementCounter(SqlSessionFactory sqlSessionFactory) {
+            return new StatementCounter(sqlSessionFactory);
+        }
+    }
+
+    @Autowired
+    private ActivityService activityService;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long activityId;
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM enrollments");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time, recruitment_quota) VALUES ('植树', NOW(), NOW(), 10)");
+        activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        jdbcTemplate.update("INSERT INTO users (username, password) VALUES ('alice', 'x')");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'alice'", Long.class);
+        statementCounter.reset();
+    }
+
+    @Test
+    void enrollAndUnenrollTakeTwoStatementsEach() {
+        activityService.enrollActivity(activityId, userId);
+        assertEquals(List.of("AdminActivityMapper.incrementEnrollmentIfAvailable", "EnrollmentMapper.insertEnrollment"),
+                statementCounter.statements());
+
+        statementCounter.reset();
+        activityService.unenrollActivity(activityId, userId);
+        assertEquals(List.of("EnrollmentMapper.deleteByUserIdAndActivityId", "AdminActivityMapper.decrementEnrollment"),
+                statementCounter.statements());
+    }
+
+    @Test
+    void detailOnlyChecksEnrollmentOnceTheActivityIsCached() {
+        assertFalse(activityService.getActivityById(activityId, userId).getData().getIsEnrolled());
+        assertEquals(2, statementCounter.count(), statementCounter.statements().toString());
+
+        activityService.enrollActivity(activityId, userId);
+        activityService.getActivityById(activityId, userId);
+        statementCounter.reset();
+
+        assertTrue(activityService.getActivityById(activityId, userId).getData().getIsEnrolled());
+        assertEquals(List.of("EnrollmentMapper.existsByUserIdAndActivityId"), statementCounter.statements());
+
+        statementCounter.reset();
+        activityService.getActivityById(activityId, null);
+        assertEquals(0, statementCounter.count(), statementCounter.statements().toString());
+    }
+}
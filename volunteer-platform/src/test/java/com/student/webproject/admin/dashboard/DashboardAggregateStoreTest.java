@@ -0,0 +1,184 @@
+package com.student.webproject.admin.dashboard;
+
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.organization.mapper.OrganizationMapper;
+import com.student.webproject.support.H2MybatisTestConfig;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.mapper.UserMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 仪表盘聚合：增量在提交后应用；对账落在"已提交、增量未应用"之间时不会重复计算；
+ * 组织删除、删掉"最新 N 条"里的用户或活动后在后台重新统计，回滚时不统计
+ */
+@SpringJUnitConfig(H2MybatisTestConfig.class)
+class DashboardAggregateStoreTest {
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private AdminActivityMapper activityMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    private TransactionTemplate transactionTemplate;
+    private OrganizationMapper organizationMapper;
+    private final List<String> organizationCountThreads = new CopyOnWriteArrayList<>();
+    private DashboardAggregateStore store;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM enrollments");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        organizationMapper = Mockito.mock(OrganizationMapper.class);
+        Mockito.when(organizationMapper.selectCount(null)).thenAnswer(invocation -> {
+            organizationCountThreads.add(Thread.currentThread().getName());
+            return 2L;
+        });
+        store = new DashboardAggregateStore(userMapper, activityMapper, organizationMapper);
+        store.warmUp();
+    }
+
+    @AfterEach
+    void tearDown() {
+        store.shutdown();
+    }
+
+    @Test
+    void deltaIsAppliedOnlyAfterCommit() {
+        transactionTemplate.executeWithoutResult(status -> {
+            store.onUserCreated(insertUser("alice", "1.50"));
+            assertEquals(0, store.getStats().getTotalUsers());
+        });
+        assertEquals(1, store.getStats().getTotalUsers());
+        assertEquals(new BigDecimal("1.50"), store.getStats().getTotalServiceHours());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            store.onUserCreated(insertUser("bob", "3.00"));
+            status.setRollbackOnly();
+        });
+        assertEquals(1, store.getStats().getTotalUsers());
+        assertEquals("alice", store.getLatestUsers().get(0).getUsername());
+    }
+
+    @Test
+    void reconcileBetweenCommitAndDeltaDoesNotDoubleCount() {
+        transactionTemplate.executeWithoutResult(status -> {
+            // 行已提交、增量还没应用时跑一次对账
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    store.reconcile();
+                }
+            });
+            store.onUserCreated(insertUser("alice", "2.50"));
+        });
+
+        assertEquals(1, store.getStats().getTotalUsers());
+        assertEquals(new BigDecimal("2.50"), store.getStats().getTotalServiceHours());
+
+        // 没有在途增量时，对账照常纠正直接改库带来的偏差
+        insertUser("direct", "1.00");
+        store.reconcile();
+        assertEquals(2, store.getStats().getTotalUsers());
+        assertEquals(new BigDecimal("3.50"), store.getStats().getTotalServiceHours());
+    }
+
+    @Test
+    void organizationDeleteReloadsOffTheRequestThread() throws InterruptedException {
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('a', NOW(), NOW())");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('b', NOW(), NOW())");
+        store.reconcile();
+        assertEquals(2, store.getStats().getTotalActivities());
+        organizationCountThreads.clear();
+
+        transactionTemplate.executeWithoutResult(status -> {
+            jdbcTemplate.update("DELETE FROM activities WHERE title = 'a'");
+            store.onOrganizationDeleted();
+        });
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (store.getStats().getTotalActivities() != 1) {
+            assertTrue(System.currentTimeMillis() < deadline, "dashboard was not reloaded");
+            Thread.sleep(10);
+        }
+        assertEquals(List.of("dashboard-reload"), organizationCountThreads);
+    }
+
+    @Test
+    void deletingALatestEntryRefillsOffTheRequestThreadOnlyOnCommit() throws InterruptedException {
+        for (int i = 0; i < 6; i++) {
+            insertUser("u" + i, "1.00");
+        }
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('a', NOW(), NOW())");
+        store.reconcile();
+        User latest = store.getLatestUsers().get(0);
+        Long activityId = store.getLatestActivities().get(0).getId();
+        organizationCountThreads.clear();
+
+        // 回滚：不扣数量、不重新统计
+        transactionTemplate.executeWithoutResult(status -> {
+            userMapper.deleteById(latest.getId());
+            store.onUserDeleted(latest);
+            status.setRollbackOnly();
+        });
+        Thread.sleep(100);
+        assertEquals(6, store.getStats().getTotalUsers());
+        assertTrue(store.getLatestUsers().stream().anyMatch(user -> user.getId().equals(latest.getId())));
+        assertTrue(organizationCountThreads.isEmpty(), organizationCountThreads.toString());
+
+        transactionTemplate.executeWithoutResult(status -> {
+            userMapper.deleteById(latest.getId());
+            store.onUserDeleted(latest);
+            jdbcTemplate.update("DELETE FROM activities WHERE id = ?", activityId);
+            store.onActivityDeleted(activityId);
+        });
+        assertEquals(5, store.getStats().getTotalUsers());
+        assertEquals(0, store.getStats().getTotalActivities());
+        assertFalse(store.getLatestUsers().stream().anyMatch(user -> user.getId().equals(latest.getId())));
+
+        // 空出来的位置由后台线程查库补上
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (store.getLatestUsers().size() != 5) {
+            assertTrue(System.currentTimeMillis() < deadline, "latest users were not refilled");
+            Thread.sleep(10);
+        }
+        assertTrue(organizationCountThreads.stream().allMatch("dashboard-reload"::equals), organizationCountThreads.toString());
+        assertFalse(organizationCountThreads.isEmpty());
+    }
+
+    private User insertUser(String username, String hours) {
+        jdbcTemplate.update("INSERT INTO users (username, password, total_service_hours) VALUES (?, 'x', ?)",
+                username, new BigDecimal(hours));
+        User user = new User();
+        user.setId(jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username));
+        user.setUsername(username);
+        user.setTotalServiceHours(new BigDecimal(hours));
+        return user;
+    }
+}
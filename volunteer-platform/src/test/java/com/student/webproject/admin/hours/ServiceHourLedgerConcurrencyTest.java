@@ -0,0 +1,205 @@
+package com.student.webproject.admin.hours;
+
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.ServiceRecordCreateDTO;
+import com.student.webproject.admin.importer.ServiceRecordBatchWriter;
+import com.student.webproject.admin.service.ServiceRecordAdminService;
+import com.student.webproject.admin.service.impl.ServiceRecordAdminServiceImpl;
+import com.student.webproject.support.H2MybatisTestConfig;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntConsumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 多个管理员同时给同一批志愿者登记、修改、删除时长：累计时长 = 记录之和 = 流水之和，不丢更新
+ */
+@SpringJUnitConfig(ServiceHourLedgerConcurrencyTest.Config.class)
+class ServiceHourLedgerConcurrencyTest {
+
+    private static final int USERS = 5;
+    private static final int ACTIVITIES = 40;
+    private static final int THREADS = 16;
+
+    @Import({H2MybatisTestConfig.class, ServiceHourLedger.class, ServiceRecordBatchWriter.class, ServiceRecordAdminServiceImpl.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+    }
+
+    @Autowired
+    private ServiceRecordAdminService serviceRecordAdminService;
+
+    @Autowired
+    private ServiceHourLedger serviceHourLedger;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private List<Long> userIds;
+    private List<Long> activityIds;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM service_hour_ledger");
+        jdbcTemplate.update("DELETE FROM service_records");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < USERS; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password, student_id) VALUES (?, 'x', ?)", "student" + i, "S" + i);
+        }
+        for (int i = 0; i < ACTIVITIES; i++) {
+            jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES (?, NOW(), NOW())", "活动" + i);
+        }
+        userIds = jdbcTemplate.queryForList("SELECT id FROM users ORDER BY id", Long.class);
+        activityIds = jdbcTemplate.queryForList("SELECT id FROM activities ORDER BY id", Long.class);
+    }
+
+    @Test
+    void parallelWritersDoNotDrift() throws Exception {
+        // 每个 (用户, 活动) 一条记录：同一用户的 40 条记录由不同线程同时登记
+        int pairs = USERS * ACTIVITIES;
+        runConcurrently(pairs, i -> serviceRecordAdminService.createServiceRecord(
+                dto(userIds.get(i % USERS), activityIds.get(i / USERS), "1.50")));
+        assertNoDrift();
+        assertEquals(new BigDecimal("60.00"), totalOf(userIds.get(0)));
+
+        // 每条记录被两个线程同时改成不同的值，最后以后提交的为准，累计时长必须跟着对
+        runConcurrently(pairs * 2, i -> {
+            Long userId = userIds.get(i / 2 % USERS);
+            Long activityId = activityIds.get(i / 2 / USERS);
+            serviceRecordAdminService.updateServiceRecord(recordId(userId, activityId),
+                    dto(userId, activityId, i % 2 == 0 ? "2.00" : "3.25"));
+        });
+        assertNoDrift();
+
+        // 一半记录被两个线程同时删除：只有一个删除生效
+        List<Long> toDelete = jdbcTemplate.queryForList("SELECT id FROM service_records WHERE MOD(activity_id, 2) = 0", Long.class);
+        AtomicInteger deleted = new AtomicInteger();
+        List<String> unexpected = Collections.synchronizedList(new ArrayList<>());
+        runConcurrently(toDelete.size() * 2, i -> {
+            try {
+                serviceRecordAdminService.deleteServiceRecord(toDelete.get(i / 2));
+                deleted.incrementAndGet();
+            } catch (RuntimeException e) {
+                if (!e.getMessage().startsWith("删除失败，找不到ID为")) {
+                    unexpected.add(e.toString());
+                }
+            }
+        });
+        assertEquals(List.of(), unexpected);
+        assertEquals(toDelete.size(), deleted.get());
+        assertNoDrift();
+    }
+
+    @Test
+    void profileUpdatesNoLongerOverwriteTotals() {
+        Long userId = userIds.get(0);
+        User stale = userMapper.selectById(userId);
+        serviceRecordAdminService.createServiceRecord(dto(userId, activityIds.get(0), "4.00"));
+
+        // 读出来之后别人登记了时长，再整行写回旧对象也不会把累计时长改回去
+        stale.setRealName("张三");
+        userMapper.updateById(stale);
+
+        assertEquals(new BigDecimal("4.00"), totalOf(userId));
+        assertNoDrift();
+    }
+
+    @Test
+    void rebuildRestoresTotalsFromLedger() {
+        Long userId = userIds.get(1);
+        serviceRecordAdminService.createServiceRecord(dto(userId, activityIds.get(0), "2.50"));
+        serviceRecordAdminService.createServiceRecord(dto(userId, activityIds.get(1), "1.25"));
+        jdbcTemplate.update("UPDATE users SET total_service_hours = 99 WHERE id = ?", userId);
+
+        List<ServiceHourLedger.Correction> corrections = serviceHourLedger.rebuild(userIds);
+
+        assertEquals(1, corrections.size());
+        assertEquals(userId, corrections.get(0).userId());
+        assertEquals(0, new BigDecimal("99").compareTo(corrections.get(0).before()));
+        assertEquals(new BigDecimal("3.75"), corrections.get(0).after());
+        assertEquals(new BigDecimal("3.75"), totalOf(userId));
+        assertEquals(List.of(), serviceHourLedger.rebuild(userIds));
+    }
+
+    private void assertNoDrift() {
+        List<Map<String, Object>> drift = jdbcTemplate.queryForList(
+                "SELECT u.id, u.total_service_hours, "
+                        + "(SELECT COALESCE(SUM(service_hours), 0) FROM service_records sr WHERE sr.user_id = u.id) AS records, "
+                        + "(SELECT COALESCE(SUM(delta), 0) FROM service_hour_ledger l WHERE l.user_id = u.id) AS ledger "
+                        + "FROM users u");
+        for (Map<String, Object> row : drift) {
+            BigDecimal total = (BigDecimal) row.get("total_service_hours");
+            assertEquals(0, total.compareTo((BigDecimal) row.get("records")), "records drift: " + row);
+            assertEquals(0, total.compareTo((BigDecimal) row.get("ledger")), "ledger drift: " + row);
+        }
+    }
+
+    private Long recordId(Long userId, Long activityId) {
+        return jdbcTemplate.queryForObject("SELECT id FROM service_records WHERE user_id = ? AND activity_id = ?",
+                Long.class, userId, activityId);
+    }
+
+    private BigDecimal totalOf(Long userId) {
+        return jdbcTemplate.queryForObject("SELECT total_service_hours FROM users WHERE id = ?", BigDecimal.class, userId);
+    }
+
+    private static ServiceRecordCreateDTO dto(Long userId, Long activityId, String hours) {
+        ServiceRecordCreateDTO dto = new ServiceRecordCreateDTO();
+        dto.setUserId(userId);
+        dto.setActivityId(activityId);
+        dto.setServiceHours(new BigDecimal(hours));
+        return dto;
+    }
+
+    private static void runConcurrently(int tasks, IntConsumer task) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<?>> futures = new ArrayList<>(tasks);
+            for (int i = 0; i < tasks; i++) {
+                int index = i;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    task.accept(index);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+        assertTrue(pool.isShutdown());
+    }
+}
@@ -0,0 +1,155 @@
+package com.student.webproject.admin.hours;
+
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.ServiceHourReconcileReportDTO;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 累计时长对账：分片并行找出不一致的用户，试运行只报告，修复后累计时长、记录、流水三者一致，且受节流限制
+ */
+@SpringJUnitConfig(ServiceHourReconcilerTest.Config.class)
+@TestPropertySource(properties = {
+        "service-hours.reconcile.chunk-size=25",
+        "service-hours.reconcile.threads=3",
+        "service-hours.reconcile.max-chunks-per-second=40"
+})
+class ServiceHourReconcilerTest {
+
+    private static final int USERS = 200;
+
+    @Import({H2MybatisTestConfig.class, ServiceHourLedger.class, ServiceHourReconciler.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+    }
+
+    @Autowired
+    private ServiceHourReconciler reconciler;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM service_hour_ledger");
+        jdbcTemplate.update("DELETE FROM service_records");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('植树', NOW(), NOW())");
+        long activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        for (int i = 0; i < USERS; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password, total_service_hours) VALUES (?, 'x', 2.00)", "student" + i);
+        }
+        jdbcTemplate.update("INSERT INTO service_records (user_id, activity_id, service_hours) SELECT id, ?, 2.00 FROM users", activityId);
+        jdbcTemplate.update("INSERT INTO service_hour_ledger (user_id, activity_id, delta, reason) SELECT id, ?, 2.00, 'create' FROM users",
+                activityId);
+        // 制造偏差：每 20 个用户一个被截成 0，另有一个多记了 1.5 小时
+        jdbcTemplate.update("UPDATE users SET total_service_hours = 0 WHERE MOD(id, 20) = 0");
+        jdbcTemplate.update("UPDATE users SET total_service_hours = 3.50 WHERE id = (SELECT MIN(id) FROM users)");
+    }
+
+    @Test
+    void dryRunReportsWithoutRepairing() {
+        ServiceHourReconcileReportDTO report = reconciler.runNow(true);
+
+        assertEquals("completed", report.getStatus());
+        assertEquals(report.getTotalChunks(), report.getProcessedChunks());
+        assertEquals(11, report.getMismatchedUsers());
+        assertEquals(0, report.getRepairedUsers());
+        assertEquals(0, new BigDecimal("18.50").compareTo(report.getNetDrift()));
+        assertEquals(11, report.getSamples().size());
+        assertEquals(11, mismatchesInDatabase());
+    }
+
+    @Test
+    void repairKeepsTotalsRecordsAndLedgerInStep() {
+        ServiceHourReconcileReportDTO report = reconciler.runNow(false);
+
+        assertEquals(11, report.getMismatchedUsers());
+        assertEquals(11, report.getRepairedUsers());
+        assertEquals(0, mismatchesInDatabase());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users u WHERE u.total_service_hours <> "
+                        + "(SELECT COALESCE(SUM(delta), 0) FROM service_hour_ledger l WHERE l.user_id = u.id)", Integer.class));
+        // 偏差是直接改库造成的，流水本来就和记录一致，不需要补记
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM service_hour_ledger WHERE reason = 'reconcile'", Integer.class));
+
+        ServiceHourReconcileReportDTO again = reconciler.runNow(false);
+        assertEquals(0, again.getMismatchedUsers());
+    }
+
+    @Test
+    void repairAlsoRealignsTheLedger() {
+        // 记录被直接删掉：累计时长和流水都比记录之和多 2 小时
+        long userId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users WHERE MOD(id, 20) <> 0", Long.class);
+        jdbcTemplate.update("DELETE FROM service_records WHERE user_id = ?", userId);
+
+        reconciler.runNow(false);
+
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT total_service_hours FROM users WHERE id = ?", BigDecimal.class, userId).signum());
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT SUM(delta) FROM service_hour_ledger WHERE user_id = ?", BigDecimal.class, userId).signum());
+        assertEquals(0, new BigDecimal("-2.00").compareTo(jdbcTemplate.queryForObject(
+                "SELECT delta FROM service_hour_ledger WHERE user_id = ? AND reason = 'reconcile'", BigDecimal.class, userId)));
+    }
+
+    @Test
+    void chunksAreThrottled() {
+        ServiceHourReconcileReportDTO report = reconciler.runNow(true);
+
+        long maxUserId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        assertEquals("completed", report.getStatus());
+        assertEquals(maxUserId, report.getMaxUserId());
+        assertEquals(25, report.getChunkSize());
+        assertEquals((int) ((maxUserId + 24) / 25), report.getTotalChunks());
+        assertEquals(report.getTotalChunks(), report.getProcessedChunks());
+
+        // 40 片/秒的上限：分片之间的间隔不会被几个线程并行挤掉
+        long minimumMillis = (report.getTotalChunks() - 1) * 1000L / 40;
+        long elapsedMillis = Duration.between(report.getStartedAt(), report.getFinishedAt()).toMillis();
+        assertTrue(elapsedMillis >= minimumMillis * 9 / 10,
+                "reconcile ran faster than the configured throttle: " + elapsedMillis + "ms for " + report.getTotalChunks() + " chunks");
+    }
+
+    @Test
+    void backgroundRunPublishesReport() throws Exception {
+        assertEquals(201, reconciler.start(true).getCode());
+        assertEquals(409, reconciler.start(true).getCode());
+
+        long deadline = System.currentTimeMillis() + 10_000;
+        ServiceHourReconcileReportDTO report = reconciler.getReport().getData();
+        while (report.getFinishedAt() == null && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+            report = reconciler.getReport().getData();
+        }
+        assertNotNull(report.getFinishedAt());
+        assertEquals(11, report.getMismatchedUsers());
+    }
+
+    private int mismatchesInDatabase() {
+        return jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM users u WHERE u.total_service_hours <> "
+                        + "(SELECT COALESCE(SUM(service_hours), 0) FROM service_records sr WHERE sr.user_id = u.id)", Integer.class);
+    }
+}
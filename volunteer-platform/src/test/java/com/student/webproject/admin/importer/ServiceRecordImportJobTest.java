@@ -0,0 +1,212 @@
+package com.student.webproject.admin.importer;
+
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.ImportJobProgressDTO;
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.common.response.Result;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 时长 Excel 后台导入：分批提交、逐行报错的行号和文案与原先一致、重启后从断点继续、只恢复本节点的任务
+ */
+@SpringJUnitConfig(ServiceRecordImportJobTest.Config.class)
+@TestPropertySource(properties = "service-record.import.node-id=node-a")
+class ServiceRecordImportJobTest {
+
+    private static final int STUDENTS = 1200;
+
+    @Import({H2MybatisTestConfig.class, ServiceHourLedger.class, ServiceRecordBatchWriter.class, ServiceRecordImportJobRunner.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+    }
+
+    @Autowired
+    private ServiceRecordImportJobRunner importJobRunner;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long activityId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM import_jobs");
+        jdbcTemplate.update("DELETE FROM service_records");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('植树', NOW(), NOW())");
+        activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        for (int i = 0; i < STUDENTS; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password, student_id, total_service_hours) VALUES (?, 'x', ?, 1.00)",
+                    "student" + i, "S" + i);
+        }
+    }
+
+    @Test
+    void importsAllRowsAcrossChunks() throws Exception {
+        byte[] xlsx = workbook(sheet -> {
+            for (int i = 0; i < STUDENTS; i++) {
+                addRow(sheet, i + 1, "S" + i, 2.5);
+            }
+        });
+
+        Result<ImportJobProgressDTO> submitted = importJobRunner.submit(upload(xlsx), activityId, null);
+        assertEquals(201, submitted.getCode());
+        ImportJobProgressDTO progress = awaitFinished(submitted.getData().getJobId());
+
+        assertEquals("completed", progress.getStatus());
+        assertEquals("成功导入全部 " + STUDENTS + " 条记录！", progress.getMessage());
+        assertEquals(STUDENTS, progress.getTotalRows());
+        assertEquals(STUDENTS, progress.getProcessedRows());
+        assertEquals(0, progress.getFailedRows());
+        assertTrue(progress.getRowsPerSecond() > 0);
+        assertEquals(STUDENTS, progress.getSuccessRows());
+        assertEquals(STUDENTS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_records", Integer.class));
+        assertEquals(0, new BigDecimal("3.50").compareTo(
+                jdbcTemplate.queryForObject("SELECT total_service_hours FROM users WHERE student_id = 'S7'", BigDecimal.class)));
+    }
+
+    @Test
+    void reportsFailedRowsWithOriginalRowNumbers() throws Exception {
+        long existingUser = jdbcTemplate.queryForObject("SELECT id FROM users WHERE student_id = 'S1'", Long.class);
+        jdbcTemplate.update("INSERT INTO service_records (user_id, activity_id, service_hours) VALUES (?, ?, 1)", existingUser, activityId);
+
+        byte[] xlsx = workbook(sheet -> {
+            addRow(sheet, 1, "S0", 1);
+            addRow(sheet, 2, "S1", 1);       // 已有记录
+            addRow(sheet, 3, "NOPE", 1);     // 学号不存在
+            addRow(sheet, 4, "S0", 1);       // 文件内重复
+            Row numericId = sheet.createRow(5);
+            numericId.createCell(0).setCellValue(12345);
+            numericId.createCell(1).setCellValue(1);
+            addRow(sheet, 6, "S2", 4);
+        });
+
+        ImportJobProgressDTO progress = awaitFinished(importJobRunner.submit(upload(xlsx), activityId, null).getData().getJobId());
+
+        assertEquals("completed", progress.getStatus());
+        assertEquals("部分记录导入失败。成功 2 条，失败 4 条。", progress.getMessage());
+        assertEquals(List.of(
+                "第 3 行处理失败: 操作失败：该用户已存在此活动的志愿时长记录，请使用“编辑”功能进行修改。",
+                "第 4 行处理失败: 学号 NOPE 对应的用户不存在",
+                "第 5 行处理失败: 操作失败：该用户已存在此活动的志愿时长记录，请使用“编辑”功能进行修改。",
+                "第 6 行处理失败: Cannot get a STRING value from a NUMERIC cell"), progress.getErrors());
+        assertEquals(0, new BigDecimal("5.00").compareTo(
+                jdbcTemplate.queryForObject("SELECT total_service_hours FROM users WHERE student_id = 'S2'", BigDecimal.class)));
+    }
+
+    @Test
+    void resumesAfterLastCommittedChunk() throws Exception {
+        byte[] xlsx = workbook(sheet -> {
+            for (int i = 0; i < 10; i++) {
+                addRow(sheet, i + 1, "S" + i, 1);
+            }
+        });
+        Path spool = Files.createTempFile("resume-", ".xlsx");
+        Files.write(spool, xlsx);
+        // 模拟重启前已提交了前 4 行 (物理行 1..4)
+        jdbcTemplate.update("INSERT INTO import_jobs (id, activity_id, spool_path, node_id, status, processed_rows, success_rows, last_row_index) "
+                + "VALUES ('resume-job', ?, ?, 'node-a', 'running', 4, 4, 4)", activityId, spool.toString());
+
+        importJobRunner.resumeUnfinished();
+        ImportJobProgressDTO progress = awaitFinished("resume-job");
+
+        assertEquals("completed", progress.getStatus());
+        assertEquals(10, progress.getProcessedRows());
+        assertEquals(10, progress.getSuccessRows());
+        assertNull(progress.getEtaSeconds());
+        assertEquals(6, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_records", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM service_records sr JOIN users u ON sr.user_id = u.id WHERE u.student_id IN ('S0', 'S1', 'S2', 'S3')",
+                Integer.class));
+        assertFalse(Files.exists(spool));
+    }
+
+    @Test
+    void leavesJobsOfOtherNodesAlone() throws Exception {
+        // 另一个节点上正在跑的任务：暂存文件在那台机器上，本节点看不到
+        jdbcTemplate.update("INSERT INTO import_jobs (id, activity_id, spool_path, node_id, status, processed_rows, success_rows, last_row_index) "
+                + "VALUES ('other-node-job', ?, '/elsewhere/other.xlsx', 'node-b', 'running', 4, 4, 4)", activityId);
+
+        importJobRunner.resumeUnfinished();
+        Thread.sleep(200);
+
+        ImportJobProgressDTO progress = importJobRunner.getProgress("other-node-job").getData();
+        assertEquals("running", progress.getStatus());
+        assertNull(progress.getFinishedAt());
+        assertNull(progress.getMessage());
+    }
+
+    @Test
+    void submittedJobIsOwnedByThisNode() throws Exception {
+        byte[] xlsx = workbook(sheet -> addRow(sheet, 1, "S0", 1));
+        String jobId = importJobRunner.submit(upload(xlsx), activityId, null).getData().getJobId();
+        awaitFinished(jobId);
+
+        assertEquals("node-a", jdbcTemplate.queryForObject("SELECT node_id FROM import_jobs WHERE id = ?", String.class, jobId));
+    }
+
+    private ImportJobProgressDTO awaitFinished(String jobId) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            ImportJobProgressDTO progress = importJobRunner.getProgress(jobId).getData();
+            if (progress.getFinishedAt() != null) {
+                return progress;
+            }
+            Thread.sleep(20);
+        }
+        throw new AssertionError("import job " + jobId + " did not finish");
+    }
+
+    private static void addRow(Sheet sheet, int index, String studentId, double hours) {
+        Row row = sheet.createRow(index);
+        row.createCell(0).setCellValue(studentId);
+        row.createCell(1).setCellValue(hours);
+    }
+
+    private static byte[] workbook(Consumer<Sheet> rows) throws Exception {
+        try (XSSFWorkbook workbook = new XSSFWorkbook(); ByteArrayOutputStream out = new ByteArrayOutputStream()) {
+            Sheet sheet = workbook.createSheet();
+            Row header = sheet.createRow(0);
+            header.createCell(0).setCellValue("学生学号");
+            header.createCell(1).setCellValue("服务时长(小时)");
+            header.createCell(2).setCellValue("备注");
+            rows.accept(sheet);
+            workbook.write(out);
+            return out.toByteArray();
+        }
+    }
+
+    private static MockMultipartFile upload(byte[] content) {
+        return new MockMultipartFile("file", "hours.xlsx", null, content);
+    }
+}
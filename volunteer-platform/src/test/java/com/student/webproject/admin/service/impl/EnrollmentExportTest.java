@@ -0,0 +1,157 @@
+package com.student.webproject.admin.service.impl;
+
+import com.student.webproject.activity.cache.ActivityReadCache;
+import com.student.webproject.admin.controller.AdminActivityController;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.EnrollmentViewDTO;
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.admin.service.ActivityAdminService;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
+import com.student.webproject.common.response.Result;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 报名名单导出：流式查询按报名时间逐行回调、只含有效报名；导出的表格内容正确；活动不存在时返回 404 且不写文件
+ */
+@SpringJUnitConfig(EnrollmentExportTest.Config.class)
+class EnrollmentExportTest {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 4, 1, 8, 30);
+
+    @Import({H2MybatisTestConfig.class, ActivityReadCache.class, ActivityAdminServiceImpl.class, AdminActivityController.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+
+        @Bean
+        PlatformKnowledgeBase platformKnowledgeBase() {
+            return Mockito.mock(PlatformKnowledgeBase.class);
+        }
+    }
+
+    @Autowired
+    private AdminActivityMapper activityMapper;
+
+    @Autowired
+    private ActivityAdminService activityAdminService;
+
+    @Autowired
+    private AdminActivityController controller;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long activityId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM enrollments");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('社区清洁', NOW(), NOW())");
+        activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+
+        // 插入顺序和报名时间顺序故意不同；第三位已取消报名
+        enroll("s3", "王五", "2023003", "13800000003", BASE.plusMinutes(20), "enrolled");
+        enroll("s1", "张三", "2023001", "13800000001", BASE, "enrolled");
+        enroll("s4", "赵六", "2023004", "13800000004", BASE.plusMinutes(5), "cancelled");
+        enroll("s2", "李四", "2023002", "13800000002", BASE.plusMinutes(10), "enrolled");
+    }
+
+    @Test
+    void streamingQueryCallsBackRowByRowInEnrollmentOrder() {
+        List<EnrollmentViewDTO> rows = new ArrayList<>();
+        List<Integer> resultCounts = new ArrayList<>();
+        activityMapper.streamEnrollmentsByActivityId(activityId, context -> {
+            rows.add(context.getResultObject());
+            resultCounts.add(context.getResultCount());
+        });
+
+        assertEquals(List.of("张三", "李四", "王五"), rows.stream().map(EnrollmentViewDTO::getRealName).toList());
+        assertEquals(List.of(1, 2, 3), resultCounts);
+        EnrollmentViewDTO first = rows.get(0);
+        assertEquals("2023001", first.getStudentId());
+        assertEquals("13800000001", first.getPhoneNumber());
+        assertEquals(BASE, first.getEnrolledAt());
+        assertEquals(userId("s1"), first.getUserId());
+    }
+
+    @Test
+    void exportWritesOneRowPerEnrollment() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertTrue(activityAdminService.exportEnrollmentsToExcel(activityId, out));
+
+        try (XSSFWorkbook workbook = new XSSFWorkbook(new ByteArrayInputStream(out.toByteArray()))) {
+            Sheet sheet = workbook.getSheetAt(0);
+            assertEquals("活动报名表-社区清洁", sheet.getSheetName());
+            assertEquals(List.of("姓名", "学号", "手机号", "报名时间"), cells(sheet.getRow(0)));
+            assertEquals(List.of("张三", "2023001", "13800000001", "2026-04-01 08:30:00"), cells(sheet.getRow(1)));
+            assertEquals(List.of("李四", "2023002", "13800000002", "2026-04-01 08:40:00"), cells(sheet.getRow(2)));
+            assertEquals(List.of("王五", "2023003", "13800000003", "2026-04-01 08:50:00"), cells(sheet.getRow(3)));
+            assertEquals(3, sheet.getLastRowNum());
+        }
+    }
+
+    @Test
+    void missingActivityIsNotFoundAndNothingIsWritten() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        assertFalse(activityAdminService.exportEnrollmentsToExcel(activityId + 100, out));
+        assertEquals(0, out.size());
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        Result<Void> result = controller.exportEnrollments(activityId + 100, response);
+        assertEquals(404, result.getCode());
+        assertEquals(404, response.getStatus());
+        assertNull(response.getHeader(HttpHeaders.CONTENT_DISPOSITION));
+        assertEquals(0, response.getContentAsByteArray().length);
+
+        MockHttpServletResponse download = new MockHttpServletResponse();
+        assertNull(controller.exportEnrollments(activityId, download));
+        assertEquals(200, download.getStatus());
+        assertTrue(download.getContentAsByteArray().length > 0);
+    }
+
+    private void enroll(String username, String realName, String studentId, String phone, LocalDateTime at, String status) {
+        jdbcTemplate.update("INSERT INTO users (username, password, real_name, student_id, phone_number) VALUES (?, 'x', ?, ?, ?)",
+                username, realName, studentId, phone);
+        jdbcTemplate.update("INSERT INTO enrollments (user_id, activity_id, status, enrolled_at) VALUES (?, ?, ?, ?)",
+                userId(username), activityId, status, at);
+    }
+
+    private Long userId(String username) {
+        return jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+    }
+
+    private static List<String> cells(Row row) {
+        List<String> values = new ArrayList<>();
+        row.forEach(cell -> values.add(cell.getStringCellValue()));
+        return values;
+    }
+}
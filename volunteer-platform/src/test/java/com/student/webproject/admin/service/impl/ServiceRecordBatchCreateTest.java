@@ -0,0 +1,146 @@
+package com.student.webproject.admin.service.impl;
+
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.ServiceRecordBatchCreateDTO;
+import com.student.webproject.admin.dto.ServiceRecordBatchResultDTO;
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.admin.importer.ServiceRecordBatchWriter;
+import com.student.webproject.admin.service.ServiceRecordAdminService;
+import com.student.webproject.common.response.Result;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 批量登记时长：逐条结果与请求一一对应、失败条目不影响其它条目、每个用户总时长只加一次
+ */
+@SpringJUnitConfig(ServiceRecordBatchCreateTest.Config.class)
+class ServiceRecordBatchCreateTest {
+
+    private static final int STUDENTS = 1000;
+
+    @Import({H2MybatisTestConfig.class, ServiceHourLedger.class, ServiceRecordBatchWriter.class, ServiceRecordAdminServiceImpl.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+    }
+
+    @Autowired
+    private ServiceRecordAdminService serviceRecordAdminService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long activityId;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM service_hour_ledger");
+        jdbcTemplate.update("DELETE FROM service_records");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('植树', NOW(), NOW())");
+        activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        for (int i = 0; i < STUDENTS; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password, student_id, total_service_hours) VALUES (?, 'x', ?, 1.00)",
+                    "student" + i, "S" + i);
+        }
+    }
+
+    @Test
+    void recordsAThousandItemsInOneCall() {
+        List<ServiceRecordBatchCreateDTO.Item> items = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            items.add(item(null, "S" + i, "2.50"));
+        }
+
+        Result<ServiceRecordBatchResultDTO> result = serviceRecordAdminService.createServiceRecords(batch(items));
+
+        assertEquals(201, result.getCode());
+        assertEquals(STUDENTS, result.getData().getSuccessCount());
+        assertEquals(0, new BigDecimal("2500.00").compareTo(result.getData().getHoursAdded()));
+        assertEquals(STUDENTS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_records", Integer.class));
+        assertEquals(0, new BigDecimal("3.50").compareTo(
+                jdbcTemplate.queryForObject("SELECT total_service_hours FROM users WHERE student_id = 'S42'", BigDecimal.class)));
+        assertEquals(STUDENTS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_hour_ledger", Integer.class));
+        // 手工登记记为 create，每笔流水都指向它对应的那条记录
+        assertEquals(STUDENTS, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_hour_ledger l "
+                + "JOIN service_records r ON r.id = l.service_record_id AND r.user_id = l.user_id "
+                + "WHERE l.reason = ?", Integer.class, ServiceHourLedger.REASON_CREATE));
+    }
+
+    @Test
+    void reportsEachItemInRequestOrder() {
+        long existingUser = jdbcTemplate.queryForObject("SELECT id FROM users WHERE student_id = 'S1'", Long.class);
+        jdbcTemplate.update("INSERT INTO service_records (user_id, activity_id, service_hours) VALUES (?, ?, 1)", existingUser, activityId);
+        long userS3 = jdbcTemplate.queryForObject("SELECT id FROM users WHERE student_id = 'S3'", Long.class);
+
+        Result<ServiceRecordBatchResultDTO> result = serviceRecordAdminService.createServiceRecords(batch(List.of(
+                item(null, "S0", "1"),
+                item(null, "S1", "1"),          // 已有记录
+                item(null, "NOPE", "1"),        // 学号不存在
+                item(null, "S0", "1"),          // 同一批里重复
+                item(userS3, "S4", "1"),        // userId 与学号不匹配
+                item(userS3, null, "4"),
+                item(null, "S5", null))));      // 缺时长
+
+        ServiceRecordBatchResultDTO data = result.getData();
+        assertEquals("部分记录登记失败。成功 2 条，失败 5 条。", result.getMessage());
+        assertEquals(7, data.getResults().size());
+        assertTrue(data.getResults().get(0).getSuccess());
+        assertEquals("操作失败：该用户已存在此活动的志愿时长记录，请使用“编辑”功能进行修改。", data.getResults().get(1).getMessage());
+        assertEquals("学号 NOPE 对应的用户不存在", data.getResults().get(2).getMessage());
+        assertFalse(data.getResults().get(3).getSuccess());
+        assertEquals("操作失败，用户ID与学号不匹配（ID对应的学号为：S3）", data.getResults().get(4).getMessage());
+        assertTrue(data.getResults().get(5).getSuccess());
+        assertEquals("服务时长不能为空", data.getResults().get(6).getMessage());
+        assertEquals(0, new BigDecimal("5.00").compareTo(
+                jdbcTemplate.queryForObject("SELECT total_service_hours FROM users WHERE id = ?", BigDecimal.class, userS3)));
+    }
+
+    @Test
+    void rejectsUnknownActivityAndOversizedBatches() {
+        ServiceRecordBatchCreateDTO unknown = batch(List.of(item(null, "S0", "1")));
+        unknown.setActivityId(activityId + 1000);
+        assertEquals(404, serviceRecordAdminService.createServiceRecords(unknown).getCode());
+
+        List<ServiceRecordBatchCreateDTO.Item> tooMany = new ArrayList<>();
+        for (int i = 0; i < 2001; i++) {
+            tooMany.add(item(null, "S0", "1"));
+        }
+        assertEquals(400, serviceRecordAdminService.createServiceRecords(batch(tooMany)).getCode());
+        assertEquals(0, jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_records", Integer.class));
+    }
+
+    private ServiceRecordBatchCreateDTO batch(List<ServiceRecordBatchCreateDTO.Item> items) {
+        ServiceRecordBatchCreateDTO dto = new ServiceRecordBatchCreateDTO();
+        dto.setActivityId(activityId);
+        dto.setItems(items);
+        return dto;
+    }
+
+    private static ServiceRecordBatchCreateDTO.Item item(Long userId, String studentId, String hours) {
+        ServiceRecordBatchCreateDTO.Item item = new ServiceRecordBatchCreateDTO.Item();
+        item.setUserId(userId);
+        item.setStudentId(studentId);
+        item.setServiceHours(hours == null ? null : new BigDecimal(hours));
+        return item;
+    }
+}
@@ -0,0 +1,182 @@
+package com.student.webproject.admin.service.impl;
+
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.dto.ServiceRecordCursorPageDTO;
+import com.student.webproject.admin.dto.ServiceRecordQueryDTO;
+import com.student.webproject.admin.dto.ServiceRecordViewDTO;
+import com.student.webproject.admin.hours.ServiceHourLedger;
+import com.student.webproject.admin.importer.ServiceRecordBatchWriter;
+import com.student.webproject.admin.service.ServiceRecordAdminService;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 后台时长记录列表：游标翻页不重不漏 (记录时间相同的按 id 排)、各筛选条件、总数只在需要时统计并缓存
+ */
+@SpringJUnitConfig(ServiceRecordListTest.Config.class)
+class ServiceRecordListTest {
+
+    private static final int STUDENTS = 40;
+    private static final LocalDateTime BASE = LocalDateTime.of(2026, 3, 1, 9, 0);
+
+    @Import({H2MybatisTestConfig.class, ServiceHourLedger.class, ServiceRecordBatchWriter.class, ServiceRecordAdminServiceImpl.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+    }
+
+    @Autowired
+    private ServiceRecordAdminService serviceRecordAdminService;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private final List<Long> activityIds = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM service_hour_ledger");
+        jdbcTemplate.update("DELETE FROM service_records");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        activityIds.clear();
+        for (int a = 0; a < 3; a++) {
+            jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES (?, NOW(), NOW())", "活动" + a);
+            activityIds.add(jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class));
+        }
+        for (int i = 0; i < STUDENTS; i++) {
+            jdbcTemplate.update("INSERT INTO users (username, password, student_id, real_name) VALUES (?, 'x', ?, ?)",
+                    "student" + i, "S" + i, "学生" + i);
+            long userId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+            for (int a = 0; a < activityIds.size(); a++) {
+                // 每 4 条共用一个记录时间，检验同一时刻的记录在翻页时不会重复或丢失
+                LocalDateTime recordedAt = BASE.plusHours((i * 3L + a) / 4 * 5);
+                jdbcTemplate.update("INSERT INTO service_records (user_id, activity_id, service_hours, recorded_at) VALUES (?, ?, 1, ?)",
+                        userId, activityIds.get(a), recordedAt);
+            }
+        }
+    }
+
+    @Test
+    void cursorPagesCoverEveryRecordOnceInOrder() {
+        List<Long> expected = jdbcTemplate.queryForList(
+                "SELECT id FROM service_records ORDER BY recorded_at DESC, id DESC", Long.class);
+
+        List<ServiceRecordViewDTO> seen = walk(new ServiceRecordQueryDTO(), 7);
+
+        assertEquals(expected, seen.stream().map(ServiceRecordViewDTO::getId).toList());
+        assertTrue(seen.stream().allMatch(r -> r.getRealName() != null && r.getActivityTitle() != null && r.getStudentId() != null));
+    }
+
+    @Test
+    void filtersByActivityStudentAndDateRange() {
+        ServiceRecordQueryDTO byActivity = new ServiceRecordQueryDTO();
+        byActivity.setActivityId(activityIds.get(1));
+        List<ServiceRecordViewDTO> activityRecords = walk(byActivity, 6);
+        assertEquals(STUDENTS, activityRecords.size());
+        assertTrue(activityRecords.stream().allMatch(r -> r.getActivityId().equals(activityIds.get(1))));
+
+        ServiceRecordQueryDTO byStudent = new ServiceRecordQueryDTO();
+        byStudent.setStudentId("S5");
+        List<ServiceRecordViewDTO> studentRecords = walk(byStudent, 2);
+        assertEquals(3, studentRecords.size());
+        assertTrue(studentRecords.stream().allMatch(r -> "S5".equals(r.getStudentId())));
+
+        // 两端日期都包含
+        ServiceRecordQueryDTO byDate = new ServiceRecordQueryDTO();
+        byDate.setStartDate(LocalDate.of(2026, 3, 2));
+        byDate.setEndDate(LocalDate.of(2026, 3, 3));
+        int inRange = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM service_records "
+                + "WHERE recorded_at >= '2026-03-02 00:00:00' AND recorded_at < '2026-03-04 00:00:00'", Integer.class);
+        List<ServiceRecordViewDTO> dateRecords = walk(byDate, 5);
+        assertTrue(inRange > 0);
+        assertEquals(inRange, dateRecords.size());
+
+        ServiceRecordQueryDTO unknownStudent = new ServiceRecordQueryDTO();
+        unknownStudent.setStudentId("NOPE");
+        ServiceRecordCursorPageDTO empty = serviceRecordAdminService.listServiceRecordsByCursor("", 10, unknownStudent, true).getData();
+        assertTrue(empty.getList().isEmpty());
+        assertEquals(0L, empty.getTotal());
+    }
+
+    @Test
+    void totalIsOptionalAndCached() {
+        ServiceRecordQueryDTO query = new ServiceRecordQueryDTO();
+        query.setActivityId(activityIds.get(0));
+
+        assertNull(serviceRecordAdminService.listServiceRecordsByCursor("", 10, query, false).getData().getTotal());
+        assertEquals(STUDENTS, serviceRecordAdminService.listServiceRecordsByCursor("", 10, query, true).getData().getTotal());
+
+        // 缓存有效期内新增的记录暂不计入总数，但列表本身是实时的
+        jdbcTemplate.update("INSERT INTO users (username, password, student_id) VALUES ('late', 'x', 'LATE')");
+        long lateUser = jdbcTemplate.queryForObject("SELECT MAX(id) FROM users", Long.class);
+        jdbcTemplate.update("INSERT INTO service_records (user_id, activity_id, service_hours, recorded_at) VALUES (?, ?, 1, ?)",
+                lateUser, activityIds.get(0), BASE.plusYears(1));
+        ServiceRecordCursorPageDTO first = serviceRecordAdminService.listServiceRecordsByCursor("", 10, query, true).getData();
+        assertEquals(STUDENTS, first.getTotal());
+        assertEquals(lateUser, first.getList().get(0).getUserId());
+
+        // 页码分页同样使用缓存的总数
+        IPage<ServiceRecordViewDTO> page = serviceRecordAdminService.listServiceRecords(2L, 10L, query).getData();
+        assertEquals(STUDENTS, page.getTotal());
+        assertEquals(10, page.getRecords().size());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceRecordAdminService.listServiceRecordsByCursor("not-a-cursor", 10, new ServiceRecordQueryDTO(), false));
+    }
+
+    @Test
+    void cursorIsBoundToItsFilter() {
+        ServiceRecordQueryDTO query = new ServiceRecordQueryDTO();
+        query.setActivityId(activityIds.get(0));
+        String cursor = serviceRecordAdminService.listServiceRecordsByCursor("", 5, query, false).getData().getNextCursor();
+
+        ServiceRecordQueryDTO other = new ServiceRecordQueryDTO();
+        other.setActivityId(activityIds.get(1));
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceRecordAdminService.listServiceRecordsByCursor(cursor, 5, other, false));
+        assertThrows(IllegalArgumentException.class,
+                () -> serviceRecordAdminService.listServiceRecordsByCursor(cursor, 5, new ServiceRecordQueryDTO(), false));
+        assertEquals(5, serviceRecordAdminService.listServiceRecordsByCursor(cursor, 5, query, false).getData().getList().size());
+    }
+
+    private List<ServiceRecordViewDTO> walk(ServiceRecordQueryDTO query, int pageSize) {
+        List<ServiceRecordViewDTO> seen = new ArrayList<>();
+        String cursor = "";
+        while (true) {
+            ServiceRecordCursorPageDTO page = serviceRecordAdminService.listServiceRecordsByCursor(cursor, pageSize, query, false).getData();
+            seen.addAll(page.getList());
+            if (!page.getHasMore()) {
+                assertNull(page.getNextCursor());
+                return seen;
+            }
+            assertFalse(page.getList().isEmpty());
+            cursor = page.getNextCursor();
+        }
+    }
+}
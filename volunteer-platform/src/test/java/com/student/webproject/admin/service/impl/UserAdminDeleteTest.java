@@ -0,0 +1,95 @@
+package com.student.webproject.admin.service.impl;
+
+import com.student.webproject.admin.dashboard.DashboardAggregateStore;
+import com.student.webproject.admin.service.UserAdminService;
+import com.student.webproject.security.TokenVersionCache;
+import com.student.webproject.support.H2MybatisTestConfig;
+import com.student.webproject.user.Entity.User;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentMatchers;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 后台删除用户：用户和他的时长记录在同一个事务里删除，后续步骤失败时整体回滚
+ */
+@SpringJUnitConfig(UserAdminDeleteTest.Config.class)
+class UserAdminDeleteTest {
+
+    @Import({H2MybatisTestConfig.class, UserAdminServiceImpl.class})
+    static class Config {
+
+        @Bean
+        DashboardAggregateStore dashboardAggregateStore() {
+            return Mockito.mock(DashboardAggregateStore.class);
+        }
+
+        @Bean
+        TokenVersionCache tokenVersionCache() {
+            return Mockito.mock(TokenVersionCache.class);
+        }
+
+        @Bean
+        PasswordEncoder passwordEncoder() {
+            return Mockito.mock(PasswordEncoder.class);
+        }
+    }
+
+    @Autowired
+    private UserAdminService userAdminService;
+
+    @Autowired
+    private DashboardAggregateStore dashboardAggregateStore;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long userId;
+
+    @BeforeEach
+    void setUp() {
+        Mockito.reset(dashboardAggregateStore);
+        jdbcTemplate.update("DELETE FROM service_records");
+        jdbcTemplate.update("DELETE FROM activities");
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (username, password) VALUES ('alice', 'x')");
+        userId = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'alice'", Long.class);
+        jdbcTemplate.update("INSERT INTO activities (title, start_time, end_time) VALUES ('社区清洁', NOW(), NOW())");
+        long activityId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM activities", Long.class);
+        jdbcTemplate.update("INSERT INTO service_records (user_id, activity_id, service_hours, recorded_at) VALUES (?, ?, 2.00, NOW())",
+                userId, activityId);
+    }
+
+    @Test
+    void deletesTheUserAndItsRecords() {
+        userAdminService.deleteUser(userId);
+
+        assertEquals(0, count("users"));
+        assertEquals(0, count("service_records"));
+        Mockito.verify(dashboardAggregateStore).onUserDeleted(ArgumentMatchers.argThat(user -> user.getId() == userId));
+    }
+
+    @Test
+    void failureAfterTheDeleteRollsItBack() {
+        Mockito.doThrow(new IllegalStateException("boom"))
+                .when(dashboardAggregateStore).onUserDeleted(ArgumentMatchers.any(User.class));
+
+        assertThrows(IllegalStateException.class, () -> userAdminService.deleteUser(userId));
+
+        assertEquals(1, count("users"));
+        assertEquals(1, count("service_records"));
+    }
+
+    private long count(String table) {
+        return jdbcTemplate.queryForObject("SELECT COUNT(*) FROM " + table, Long.class);
+    }
+}
@@ -0,0 +1,91 @@
+package com.student.webproject.chat.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 问答缓存：规范化精确匹配、措辞相近的近似匹配、钉住与清除、命中指标
+ */
+class ChatAnswerCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatAnswerCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ChatAnswerCache(meterRegistry, 100, 60, 0.6);
+    }
+
+    @Test
+    void normalizedQuestionHitsExactly() {
+        cache.put("请问，怎么报名志愿活动？", "在活动详情页点击报名。", 0);
+
+        ChatAnswerCache.CachedAnswer hit = cache.lookup("请问 怎么报名志愿活动?", 0);
+
+        assertNotNull(hit);
+        assertEquals("在活动详情页点击报名。", hit.answer());
+        assertEquals(1, meterRegistry.get("chat.cache.lookups").tag("result", "exact").counter().count());
+    }
+
+    @Test
+    void paraphraseHitsNearDuplicate() {
+        cache.put("请问怎么报名志愿活动", "在活动详情页点击报名。", 0);
+
+        ChatAnswerCache.CachedAnswer hit = cache.lookup("怎么报名志愿活动呀", 0);
+
+        assertNotNull(hit);
+        assertEquals(1, meterRegistry.get("chat.cache.lookups").tag("result", "near").counter().count());
+        assertEquals(1, meterRegistry.get("chat.cache.upstream_calls_saved").gauge().value());
+    }
+
+    @Test
+    void unrelatedQuestionMisses() {
+        cache.put("请问怎么报名志愿活动", "在活动详情页点击报名。", 0);
+
+        assertNull(cache.lookup("志愿时长是怎么计算的", 0));
+        assertNull(cache.lookup("你好", 0));
+        assertEquals(0, meterRegistry.get("chat.cache.hit_ratio").gauge().value());
+    }
+
+    @Test
+    void pinnedAnswerWinsAndSurvivesEvictAll() {
+        cache.put("怎么加入志愿组织", "旧答案", 0);
+        cache.pin("怎么加入志愿组织", "在组织页面提交申请。");
+        cache.evictAll();
+
+        assertEquals("在组织页面提交申请。", cache.lookup("怎么加入志愿组织？", 0).answer());
+        assertEquals("在组织页面提交申请。", cache.lookup("请问怎么加入志愿组织", 0).answer());
+
+        assertTrue(cache.unpin("怎么加入志愿组织"));
+        assertNull(cache.lookup("怎么加入志愿组织", 0));
+    }
+
+    @Test
+    void evictedQuestionNoLongerMatchesNearby() {
+        cache.put("请问怎么报名志愿活动", "在活动详情页点击报名。", 0);
+
+        assertTrue(cache.evict("请问怎么报名志愿活动"));
+
+        assertNull(cache.lookup("怎么报名志愿活动呀", 0));
+        assertTrue(cache.entries().isEmpty());
+    }
+
+    @Test
+    void answerFromAnOlderKnowledgeBaseMisses() {
+        cache.put("请问怎么报名志愿活动", "在活动详情页点击报名。", 3);
+        cache.pin("怎么加入志愿组织", "在组织页面提交申请。");
+
+        assertEquals("在活动详情页点击报名。", cache.lookup("请问怎么报名志愿活动", 3).answer());
+        assertNull(cache.lookup("请问怎么报名志愿活动", 4));
+        assertNull(cache.lookup("怎么报名志愿活动呀", 4));
+        // 钉住的标准答案不看版本
+        assertEquals("在组织页面提交申请。", cache.lookup("怎么加入志愿组织", 4).answer());
+    }
+}
@@ -0,0 +1,119 @@
+package com.student.webproject.chat.cache;
+
+import com.student.webproject.chat.client.ChatUpstreamException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+import java.util.function.Supplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 相同问题合并：只调一次上游、所有人拿到同一结果、leader 失败时 follower 立刻失败而不是挂住
+ */
+class ChatRequestCoalescerTest {
+
+    private static final int CALLERS = 20;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatRequestCoalescer coalescer;
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        coalescer = new ChatRequestCoalescer(meterRegistry, 5_000);
+        callers = Executors.newFixedThreadPool(CALLERS);
+    }
+
+    @AfterEach
+    void tearDown() {
+        callers.shutdownNow();
+    }
+
+    @Test
+    void concurrentIdenticalQuestionsShareOneCall() throws Exception {
+        AtomicInteger upstreamCalls = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = submitAll(i -> i % 2 == 0 ? "怎么报名？" : "怎么 报名", () -> {
+            upstreamCalls.incrementAndGet();
+            await(release);
+            return "点击报名按钮。";
+        });
+        awaitFollowers(CALLERS - 1);
+        release.countDown();
+
+        for (Future<String> result : results) {
+            assertEquals("点击报名按钮。", result.get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(1, upstreamCalls.get());
+        assertEquals(CALLERS - 1, meterRegistry.get("chat.coalesce.requests").tag("role", "follower").counter().count());
+        assertEquals(0.95, meterRegistry.get("chat.coalesce.ratio").gauge().value(), 1e-9);
+        assertEquals(0, meterRegistry.get("chat.coalesce.in_flight").gauge().value());
+    }
+
+    @Test
+    void leaderFailureReleasesFollowers() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+
+        List<Future<String>> results = submitAll(i -> "怎么报名", () -> {
+            await(release);
+            throw new ChatUpstreamException("连接被拒绝", false, null);
+        });
+        awaitFollowers(CALLERS - 1);
+        long start = System.nanoTime();
+        release.countDown();
+
+        for (Future<String> result : results) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(ChatUpstreamException.class, e.getCause());
+        }
+        assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+
+        // 失败的调用已移出登记表，下一次请求重新调用上游
+        assertEquals("好了", coalescer.execute("怎么报名", () -> "好了"));
+    }
+
+    private List<Future<String>> submitAll(IntFunction<String> question,
+                                           Supplier<String> call) {
+        List<Future<String>> results = new ArrayList<>();
+        for (int i = 0; i < CALLERS; i++) {
+            String q = question.apply(i);
+            results.add(callers.submit(() -> coalescer.execute(q, call)));
+        }
+        return results;
+    }
+
+    private void awaitFollowers(int expected) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (meterRegistry.get("chat.coalesce.requests").tag("role", "follower").counter().count() < expected) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("followers did not queue up");
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+package com.student.webproject.chat.client;
+
+import com.student.webproject.support.StubChatUpstream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 上游客户端：连接复用、读超时、总时限、HTTP 错误码透传
+ */
+class ChatUpstreamClientTest {
+
+    private StubChatUpstream upstream;
+    private SimpleMeterRegistry meterRegistry;
+    private ChatUpstreamClient client;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = new StubChatUpstream();
+        meterRegistry = new SimpleMeterRegistry();
+        client = new ChatUpstreamClient(meterRegistry, new ChatUpstreamGuard(meterRegistry, 20, 10, 50, 30_000, 3, 20),
+                upstream.url(), "test-key",
+                500, 300, 800, 800, 500, 10, 5);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.shutdown();
+        upstream.close();
+    }
+
+    @Test
+    void reusesPooledConnections() {
+        for (int i = 0; i < 20; i++) {
+            ChatUpstreamClient.UpstreamResponse response = client.post("{}");
+            assertEquals(200, response.status());
+            assertTrue(response.body().contains("测试助手"));
+        }
+
+        assertEquals(20, upstream.requestCount());
+        assertEquals(1, upstream.connectionCount());
+        assertEquals(20, meterRegistry.get("chat.upstream.latency").tag("outcome", "success").timer().count());
+        assertNotNull(meterRegistry.find("httpcomponents.httpclient.pool.total.max").gauge());
+    }
+
+    @Test
+    void slowFirstByteHitsReadTimeout() {
+        upstream.delay(2_000);
+
+        long start = System.nanoTime();
+        ChatUpstreamException e = assertThrows(ChatUpstreamException.class, () -> client.post("{}"));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(e.isTimeout());
+        assertTrue(elapsedMs < 1_500, "took " + elapsedMs + "ms");
+        assertEquals(1, meterRegistry.get("chat.upstream.latency").tag("outcome", "timeout").timer().count());
+    }
+
+    @Test
+    void tricklingResponseHitsTotalDeadline() {
+        // 每个字节都在读超时之内到达，只有总时限能截住
+        upstream.trickle(100);
+
+        long start = System.nanoTime();
+        ChatUpstreamException e = assertThrows(ChatUpstreamException.class, () -> client.post("{}"));
+        long elapsedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(e.isTimeout());
+        assertTrue(e.getMessage().contains("总时限"), e.getMessage());
+        assertTrue(elapsedMs < 2_000, "took " + elapsedMs + "ms");
+    }
+
+    @Test
+    void httpErrorStatusIsReturnedNotThrown() {
+        upstream.respond(503, "{\"error\":\"busy\"}");
+
+        ChatUpstreamClient.UpstreamResponse response = client.post("{}");
+
+        assertEquals(503, response.status());
+        assertEquals(1, meterRegistry.get("chat.upstream.latency").tag("outcome", "http_error").timer().count());
+    }
+}
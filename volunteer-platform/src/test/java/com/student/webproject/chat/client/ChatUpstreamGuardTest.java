@@ -0,0 +1,91 @@
+package com.student.webproject.chat.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 熔断器：失败率达到阈值后打开、到期后半开探测、探测成功关闭/失败重开；舱壁：并发已满立即拒绝
+ */
+class ChatUpstreamGuardTest {
+
+    private static final long OPEN_MS = 100;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatUpstreamGuard guard;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        guard = new ChatUpstreamGuard(meterRegistry, 10, 4, 50, OPEN_MS, 2, 3);
+    }
+
+    @Test
+    void opensWhenFailureRateReachesThreshold() {
+        guard.acquire().success();
+        guard.acquire().success();
+        guard.acquire().failure();
+        assertEquals(ChatUpstreamGuard.State.CLOSED, guard.getState());
+
+        guard.acquire().failure();
+
+        assertEquals(ChatUpstreamGuard.State.OPEN, guard.getState());
+        assertThrows(ChatUpstreamRejectedException.class, guard::acquire);
+        assertEquals(1, meterRegistry.get("chat.upstream.rejected").tag("reason", "breaker_open").counter().count());
+        assertEquals(1, meterRegistry.get("chat.upstream.breaker.state").gauge().value());
+    }
+
+    @Test
+    void halfOpenProbesCloseTheBreaker() throws InterruptedException {
+        trip();
+        Thread.sleep(OPEN_MS + 20);
+
+        ChatUpstreamGuard.Permit first = guard.acquire();
+        ChatUpstreamGuard.Permit second = guard.acquire();
+        assertEquals(ChatUpstreamGuard.State.HALF_OPEN, guard.getState());
+        // 探测名额用完，其余请求仍然快速失败
+        assertThrows(ChatUpstreamRejectedException.class, guard::acquire);
+
+        first.success();
+        second.success();
+
+        assertEquals(ChatUpstreamGuard.State.CLOSED, guard.getState());
+        assertEquals(1, meterRegistry.get("chat.upstream.breaker.transitions").tag("to", "closed").counter().count());
+    }
+
+    @Test
+    void failedProbeReopens() throws InterruptedException {
+        trip();
+        Thread.sleep(OPEN_MS + 20);
+
+        guard.acquire().failure();
+
+        assertEquals(ChatUpstreamGuard.State.OPEN, guard.getState());
+        assertEquals(2, meterRegistry.get("chat.upstream.breaker.transitions").tag("to", "open").counter().count());
+    }
+
+    @Test
+    void bulkheadRejectsExcessConcurrentCalls() {
+        ChatUpstreamGuard.Permit a = guard.acquire();
+        guard.acquire();
+        guard.acquire();
+
+        assertThrows(ChatUpstreamRejectedException.class, guard::acquire);
+        assertEquals(1, meterRegistry.get("chat.upstream.rejected").tag("reason", "bulkhead_full").counter().count());
+
+        a.ignore();
+        guard.acquire();
+        // 已取消的调用不计入失败率
+        assertEquals(ChatUpstreamGuard.State.CLOSED, guard.getState());
+    }
+
+    private void trip() {
+        for (int i = 0; i < 4; i++) {
+            guard.acquire().failure();
+        }
+        assertEquals(ChatUpstreamGuard.State.OPEN, guard.getState());
+    }
+}
@@ -0,0 +1,105 @@
+package com.student.webproject.chat.controller;
+
+import com.student.webproject.chat.dto.ChatMessageResponse;
+import com.student.webproject.chat.service.ChatService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import java.time.LocalDateTime;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * /send 异步处理：请求线程不等上游，chat 线程池满时直接 503，超时的请求不再调用上游
+ */
+class ChatControllerAsyncTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private ChatService chatService;
+    private ThreadPoolExecutor chatExecutor;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        chatService = Mockito.mock(ChatService.class);
+        Mockito.when(chatService.processMessage(any())).thenAnswer(invocation -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new ChatMessageResponse("好的", LocalDateTime.now());
+        });
+        chatExecutor = new ThreadPoolExecutor(1, 1, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(1));
+
+        ChatController controller = new ChatController();
+        ReflectionTestUtils.setField(controller, "chatService", chatService);
+        ReflectionTestUtils.setField(controller, "chatExecutor", chatExecutor);
+        ReflectionTestUtils.setField(controller, "sendTimeoutMs", 5_000L);
+        mockMvc = MockMvcBuilders.standaloneSetup(controller).build();
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        chatExecutor.shutdownNow();
+    }
+
+    @Test
+    void sendReleasesRequestThreadAndRejectsWhenSaturated() throws Exception {
+        // 两个请求占满 1 个线程 + 1 个排队位，都应立即返回 (异步开始)，不阻塞调用线程
+        MvcResult first = mockMvc.perform(send()).andExpect(request().asyncStarted()).andReturn();
+        MvcResult second = mockMvc.perform(send()).andExpect(request().asyncStarted()).andReturn();
+
+        MvcResult third = mockMvc.perform(send()).andReturn();
+        mockMvc.perform(asyncDispatch(third))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.code").value(503));
+
+        release.countDown();
+        mockMvc.perform(asyncDispatch(first)).andExpect(status().isOk()).andExpect(jsonPath("$.data.message").value("好的"));
+        mockMvc.perform(asyncDispatch(second)).andExpect(status().isOk());
+    }
+
+    @Test
+    void timedOutRequestDoesNotCallUpstream() throws Exception {
+        MvcResult running = mockMvc.perform(send()).andExpect(request().asyncStarted()).andReturn();
+        MvcResult queued = mockMvc.perform(send()).andExpect(request().asyncStarted()).andReturn();
+
+        // 排队中的请求先超时
+        MockAsyncContext asyncContext = (MockAsyncContext) queued.getRequest().getAsyncContext();
+        for (AsyncListener listener : asyncContext.getListeners()) {
+            listener.onTimeout(new AsyncEvent(asyncContext));
+        }
+        mockMvc.perform(asyncDispatch(queued))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(jsonPath("$.code").value(503));
+
+        release.countDown();
+        mockMvc.perform(asyncDispatch(running)).andExpect(status().isOk());
+        chatExecutor.shutdown();
+        assertTrue(chatExecutor.awaitTermination(5, TimeUnit.SECONDS));
+        Mockito.verify(chatService, Mockito.times(1)).processMessage(any());
+    }
+
+    private static RequestBuilder send() {
+        return post("/api/chat/send").contentType(MediaType.APPLICATION_JSON).content("{\"message\":\"hi\"}");
+    }
+}
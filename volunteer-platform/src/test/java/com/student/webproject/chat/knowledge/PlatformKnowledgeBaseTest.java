@@ -0,0 +1,160 @@
+package com.student.webproject.chat.knowledge;
+
+import com.student.webproject.admin.entity.Activity;
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.news.News;
+import com.student.webproject.news.NewsMapper;
+import com.student.webproject.organization.entity.Organization;
+import com.student.webproject.organization.mapper.OrganizationMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 本地知识库：明确问本周有哪些活动在招募时直接作答 (只提到报名的不算)、点名的活动直接作答、其余问题带上相关资料、增量更新
+ */
+class PlatformKnowledgeBaseTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private PlatformKnowledgeBase knowledgeBase;
+
+    @BeforeEach
+    void setUp() {
+        AdminActivityMapper activityMapper = Mockito.mock(AdminActivityMapper.class);
+        NewsMapper newsMapper = Mockito.mock(NewsMapper.class);
+        OrganizationMapper organizationMapper = Mockito.mock(OrganizationMapper.class);
+        Mockito.when(activityMapper.selectList(null)).thenReturn(List.of(
+                activity(1L, "社区植树", "在滨江公园种植树苗，美化社区环境", "滨江公园", 2, 10L),
+                activity(2L, "敬老院探访", "陪伴老人聊天、表演节目", "阳光敬老院", 3, 11L),
+                activity(3L, "图书馆整理", "整理馆藏图书", "校图书馆", 30, 10L)));
+        News news = new News();
+        news.setId(1L);
+        news.setTitle("志愿时长认定办法发布");
+        news.setSummary("志愿服务时长以活动签到签退为准，由组织负责人审核后计入个人累计时长");
+        news.setPublishedAt(LocalDateTime.now().minusDays(1));
+        Mockito.when(newsMapper.selectList(null)).thenReturn(List.of(news));
+        Mockito.when(organizationMapper.selectList(null)).thenReturn(List.of(
+                organization(10L, "青年志愿者协会", "学校最大的志愿服务组织，常年组织环保和社区服务"),
+                organization(11L, "爱心社", "关注老人和儿童的公益社团")));
+
+        meterRegistry = new SimpleMeterRegistry();
+        knowledgeBase = new PlatformKnowledgeBase(activityMapper, newsMapper, organizationMapper, meterRegistry, 1.0, 3);
+        knowledgeBase.rebuild();
+    }
+
+    @Test
+    void recruitingThisWeekIsAnsweredDirectly() {
+        PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve("这周有哪些活动在招募？");
+
+        assertTrue(retrieval.isDirect());
+        assertTrue(retrieval.directAnswer().contains("社区植树"), retrieval.directAnswer());
+        assertTrue(retrieval.directAnswer().contains("敬老院探访"));
+        // 一个月后才开始的不算
+        assertFalse(retrieval.directAnswer().contains("图书馆整理"));
+        assertTrue(retrieval.directAnswer().indexOf("社区植树") < retrieval.directAnswer().indexOf("敬老院探访"));
+    }
+
+    @Test
+    void questionAboutEnrollingIsNotTheRecruitingList() {
+        PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve("最近报名总是失败怎么办");
+
+        assertFalse(retrieval.isDirect());
+        assertEquals(0, meterRegistry.get("chat.knowledge.lookups").tag("result", "direct").counter().count());
+    }
+
+    @Test
+    void namedActivityIsAnsweredDirectly() {
+        PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve("社区植树活动在哪里举行");
+
+        assertTrue(retrieval.isDirect());
+        assertTrue(retrieval.directAnswer().contains("滨江公园"), retrieval.directAnswer());
+    }
+
+    @Test
+    void looserQuestionCarriesRelevantPassages() {
+        PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve("志愿时长是怎么认定的");
+
+        assertFalse(retrieval.isDirect());
+        assertEquals("news:1", retrieval.passages().get(0).docId());
+        assertTrue(PlatformKnowledgeBase.offlineAnswer(retrieval.passages()).contains("签到签退"));
+        assertEquals(1, meterRegistry.get("chat.knowledge.lookups").tag("result", "augmented").counter().count());
+    }
+
+    @Test
+    void unrelatedQuestionFindsNothing() {
+        PlatformKnowledgeBase.Retrieval retrieval = knowledgeBase.retrieve("今天天气怎么样");
+
+        assertFalse(retrieval.isDirect());
+        assertTrue(retrieval.passages().isEmpty());
+    }
+
+    @Test
+    void incrementalUpdatesAreSearchable() {
+        knowledgeBase.onActivitySaved(activity(4L, "河道清洁", "清理河道垃圾", "城西河道", 1, 11L));
+        assertTrue(knowledgeBase.retrieve("河道清洁需要带什么").isDirect());
+
+        knowledgeBase.onActivityDeleted(4L);
+        assertFalse(knowledgeBase.retrieve("河道清洁需要带什么").isDirect());
+
+        // 删除组织时它主办的活动一并移除
+        knowledgeBase.onOrganizationDeleted(10L);
+        String recruiting = knowledgeBase.retrieve("最近有什么活动可以报名").directAnswer();
+        assertFalse(recruiting.contains("社区植树"), recruiting);
+        assertEquals(3, meterRegistry.get("chat.knowledge.documents").gauge().value());
+    }
+
+    @Test
+    void rebuildSwapsInAFullIndex() throws Exception {
+        AtomicBoolean done = new AtomicBoolean();
+        Thread rebuilder = new Thread(() -> {
+            while (!done.get()) {
+                knowledgeBase.rebuild();
+            }
+        });
+        rebuilder.start();
+        try {
+            // 重建期间检索看到的始终是完整的一份
+            for (int i = 0; i < 2_000; i++) {
+                String recruiting = knowledgeBase.retrieve("这周有哪些活动在招募？").directAnswer();
+                assertTrue(recruiting.contains("社区植树"), recruiting);
+                assertEquals("news:1", knowledgeBase.retrieve("志愿时长是怎么认定的").passages().get(0).docId());
+            }
+        } finally {
+            done.set(true);
+            rebuilder.join();
+        }
+        assertEquals(6, meterRegistry.get("chat.knowledge.documents").gauge().value());
+    }
+
+    private static Activity activity(Long id, String title, String description, String location, int startInDays, Long organizerId) {
+        Activity activity = new Activity();
+        activity.setId(id);
+        activity.setTitle(title);
+        activity.setDescription(description);
+        activity.setLocation(location);
+        activity.setCategory("社区服务");
+        activity.setStatus("recruiting");
+        activity.setRecruitmentQuota(20);
+        activity.setOrganizerId(organizerId);
+        activity.setStartTime(LocalDateTime.now().plusDays(startInDays));
+        activity.setEndTime(LocalDateTime.now().plusDays(startInDays).plusHours(3));
+        return activity;
+    }
+
+    private static Organization organization(Long id, String name, String description) {
+        Organization organization = new Organization();
+        organization.setId(id);
+        organization.setName(name);
+        organization.setDescription(description);
+        return organization;
+    }
+}
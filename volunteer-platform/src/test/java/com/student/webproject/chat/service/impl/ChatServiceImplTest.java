@@ -0,0 +1,204 @@
+package com.student.webproject.chat.service.impl;
+
+import com.student.webproject.admin.mapper.AdminActivityMapper;
+import com.student.webproject.chat.cache.ChatAnswerCache;
+import com.student.webproject.chat.cache.ChatRequestCoalescer;
+import com.student.webproject.chat.client.ChatUpstreamClient;
+import com.student.webproject.chat.client.ChatUpstreamGuard;
+import com.student.webproject.chat.dto.ChatMessageRequest;
+import com.student.webproject.chat.dto.ChatMessageResponse;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
+import com.student.webproject.chat.session.ChatSessionStore;
+import com.student.webproject.chat.service.ChatStream;
+import com.student.webproject.news.News;
+import com.student.webproject.news.NewsMapper;
+import com.student.webproject.organization.mapper.OrganizationMapper;
+import com.student.webproject.support.StubChatUpstream;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 对话服务：流式逐段转发、首字耗时、浏览器断开后取消上游；多轮会话带上历史；知识库变化后缓存的回答作废
+ */
+class ChatServiceImplTest {
+
+    private StubChatUpstream upstream;
+    private SimpleMeterRegistry meterRegistry;
+    private ChatUpstreamClient client;
+    private ChatServiceImpl chatService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        upstream = new StubChatUpstream();
+        meterRegistry = new SimpleMeterRegistry();
+        client = new ChatUpstreamClient(meterRegistry, new ChatUpstreamGuard(meterRegistry, 20, 10, 50, 30_000, 3, 20),
+                upstream.url(), "test-key",
+                500, 1_000, 2_000, 5_000, 500, 10, 5);
+        chatService = new ChatServiceImpl(client, new ChatAnswerCache(meterRegistry, 100, 60, 0.6),
+                new ChatRequestCoalescer(meterRegistry, 5_000), emptyKnowledgeBase(meterRegistry),
+                new ChatSessionStore(meterRegistry, 1 << 20, 100, 40, 30), meterRegistry, 3000);
+    }
+
+    private static PlatformKnowledgeBase emptyKnowledgeBase(SimpleMeterRegistry meterRegistry) {
+        return new PlatformKnowledgeBase(Mockito.mock(AdminActivityMapper.class), Mockito.mock(NewsMapper.class),
+                Mockito.mock(OrganizationMapper.class), meterRegistry, 1.0, 3);
+    }
+
+    @AfterEach
+    void tearDown() throws Exception {
+        client.shutdown();
+        upstream.close();
+    }
+
+    @Test
+    void forwardsDeltasInOrder() throws IOException {
+        upstream.stream(20, "你好", "，我是", "测试助手");
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        chatService.openStream(new ChatMessageRequest("hi")).run(received::add);
+
+        assertEquals(List.of("你好", "，我是", "测试助手"), received);
+        assertEquals(1, meterRegistry.get("chat.stream.first_token").timer().count());
+        assertEquals(1, meterRegistry.get("chat.upstream.stream.duration").tag("outcome", "success").timer().count());
+    }
+
+    @Test
+    void upstreamErrorBeforeFirstTokenFallsBackToText() throws IOException {
+        upstream.respond(503, "{\"error\":\"busy\"}").stream(0, "unused");
+        List<String> received = new CopyOnWriteArrayList<>();
+
+        chatService.openStream(new ChatMessageRequest("hi")).run(received::add);
+
+        assertEquals(1, received.size());
+        assertTrue(received.get(0).contains("HTTP错误: 503"), received.get(0));
+    }
+
+    @Test
+    void clientDisconnectCancelsUpstream() throws Exception {
+        upstream.stream(50, "一", "二", "三", "四", "五", "六", "七", "八", "九", "十");
+        List<String> received = new CopyOnWriteArrayList<>();
+        ChatStream stream = chatService.openStream(new ChatMessageRequest("hi"));
+
+        assertThrows(IOException.class, () -> stream.run(content -> {
+            received.add(content);
+            if (received.size() == 2) {
+                throw new IOException("Broken pipe");
+            }
+        }));
+
+        assertEquals(2, received.size());
+        assertTrue(upstream.awaitStreamAborted(2_000), "upstream kept streaming after the client left");
+        assertEquals(1, meterRegistry.get("chat.stream.cancelled").counter().count());
+    }
+
+    @Test
+    void completionCallbackAfterNormalEndIsNotCountedAsCancel() throws IOException {
+        upstream.stream(0, "你好", "，再见");
+        ChatStream stream = chatService.openStream(new ChatMessageRequest("hi"));
+
+        stream.run(content -> { });
+        // SseEmitter 正常 complete 后同样回调 onCompletion -> cancel
+        stream.cancel();
+
+        assertEquals(0, meterRegistry.get("chat.stream.cancelled").counter().count());
+    }
+
+    @Test
+    void followUpQuestionCarriesSessionHistory() {
+        upstream.respond(200, StubChatUpstream.completion("周六上午九点在滨江公园集合。"));
+        ChatMessageResponse first = chatService.processMessage(new ChatMessageRequest("植树活动什么时候开始"));
+
+        upstream.respond(200, StubChatUpstream.completion("请穿运动鞋，带好水杯。"));
+        ChatMessageResponse second = chatService.processMessage(new ChatMessageRequest("需要带什么", first.getSessionId()));
+
+        assertEquals(first.getSessionId(), second.getSessionId());
+        String body = upstream.lastRequestBody();
+        assertTrue(body.contains("植树活动什么时候开始"), body);
+        assertTrue(body.contains("周六上午九点在滨江公园集合。"), body);
+        assertTrue(body.indexOf("周六上午九点") < body.indexOf("需要带什么"), body);
+
+        // 另起一个会话问同一句追问，不带别人的历史
+        chatService.processMessage(new ChatMessageRequest("需要带什么"));
+        assertTrue(!upstream.lastRequestBody().contains("植树"), upstream.lastRequestBody());
+    }
+
+    @Test
+    void answersGroundedInPlatformDataAreNotCached() throws Exception {
+        NewsMapper newsMapper = Mockito.mock(NewsMapper.class);
+        News news = new News();
+        news.setId(1L);
+        news.setTitle("志愿时长认定办法发布");
+        news.setSummary("志愿服务时长以活动签到签退为准，由组织负责人审核后计入个人累计时长");
+        Mockito.when(newsMapper.selectList(null)).thenReturn(List.of(news));
+        PlatformKnowledgeBase knowledgeBase = new PlatformKnowledgeBase(Mockito.mock(AdminActivityMapper.class), newsMapper,
+                Mockito.mock(OrganizationMapper.class), meterRegistry, 1.0, 3);
+        knowledgeBase.rebuild();
+        ChatServiceImpl grounded = new ChatServiceImpl(client, new ChatAnswerCache(meterRegistry, 100, 60, 0.6),
+                new ChatRequestCoalescer(meterRegistry, 5_000), knowledgeBase,
+                new ChatSessionStore(meterRegistry, 1 << 20, 100, 40, 30), meterRegistry, 3000);
+        upstream.respond(200, StubChatUpstream.completion("以签到签退为准。"));
+
+        grounded.processMessage(new ChatMessageRequest("志愿时长是怎么认定的"));
+        grounded.processMessage(new ChatMessageRequest("志愿时长是怎么认定的"));
+
+        // 资料随时可能被修改，引用了资料的回答每次都重新生成
+        assertEquals(2, upstream.requestCount());
+    }
+
+    @Test
+    void cachedAnswerIsDroppedOnceTheKnowledgeBaseHasSomethingRelevant() throws Exception {
+        NewsMapper newsMapper = Mockito.mock(NewsMapper.class);
+        PlatformKnowledgeBase knowledgeBase = new PlatformKnowledgeBase(Mockito.mock(AdminActivityMapper.class), newsMapper,
+                Mockito.mock(OrganizationMapper.class), meterRegistry, 1.0, 3);
+        knowledgeBase.rebuild();
+        ChatServiceImpl service = new ChatServiceImpl(client, new ChatAnswerCache(meterRegistry, 100, 60, 0.6),
+                new ChatRequestCoalescer(meterRegistry, 5_000), knowledgeBase,
+                new ChatSessionStore(meterRegistry, 1 << 20, 100, 40, 30), meterRegistry, 3000);
+        upstream.respond(200, StubChatUpstream.completion("一般以组织认定为准。"));
+        service.processMessage(new ChatMessageRequest("志愿时长是怎么认定的"));
+        service.processMessage(new ChatMessageRequest("志愿时长是怎么认定的"));
+        assertEquals(1, upstream.requestCount());
+
+        // 重建后有了相关新闻：之前没有资料时缓存的回答不再命中
+        News news = new News();
+        news.setId(1L);
+        news.setTitle("志愿时长认定办法发布");
+        news.setSummary("志愿服务时长以活动签到签退为准，由组织负责人审核后计入个人累计时长");
+        Mockito.when(newsMapper.selectList(null)).thenReturn(List.of(news));
+        knowledgeBase.rebuild();
+        upstream.respond(200, StubChatUpstream.completion("以签到签退为准。"));
+
+        assertEquals("以签到签退为准。", service.processMessage(new ChatMessageRequest("志愿时长是怎么认定的")).getMessage());
+        assertEquals(2, upstream.requestCount());
+        assertTrue(upstream.lastRequestBody().contains("签到签退"), upstream.lastRequestBody());
+    }
+
+    @Test
+    void followUpIsNotCachedEvenWhenItsHistoryDoesNotFitTheBudget() {
+        // 提示词预算小到放不下任何历史：追问的 history 为空，但它仍然不是首轮
+        ChatServiceImpl tight = new ChatServiceImpl(client, new ChatAnswerCache(meterRegistry, 100, 60, 0.6),
+                new ChatRequestCoalescer(meterRegistry, 5_000), emptyKnowledgeBase(meterRegistry),
+                new ChatSessionStore(meterRegistry, 1 << 20, 100, 40, 30), meterRegistry, 1);
+        upstream.respond(200, StubChatUpstream.completion("周六上午九点集合。"));
+        ChatMessageResponse first = tight.processMessage(new ChatMessageRequest("植树活动什么时候开始"));
+        upstream.respond(200, StubChatUpstream.completion("请穿运动鞋。"));
+        tight.processMessage(new ChatMessageRequest("需要带什么", first.getSessionId()));
+
+        upstream.respond(200, StubChatUpstream.completion("需要带身份证。"));
+        ChatMessageResponse other = tight.processMessage(new ChatMessageRequest("需要带什么"));
+
+        assertEquals("需要带身份证。", other.getMessage());
+        assertEquals(3, upstream.requestCount());
+    }
+}
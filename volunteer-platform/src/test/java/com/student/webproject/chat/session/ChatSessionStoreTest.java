@@ -0,0 +1,123 @@
+package com.student.webproject.chat.session;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 会话存储：历史按 token 预算截断并摘要、单会话轮数上限、总内存上限下按 LRU 淘汰
+ */
+class ChatSessionStoreTest {
+
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void historyStaysWithinTokenBudget() {
+        ChatSessionStore store = new ChatSessionStore(meterRegistry, 1 << 20, 100, 100, 30);
+        for (int i = 0; i < 20; i++) {
+            store.append("s", "第" + i + "个问题是关于志愿活动的", "这是第" + i + "个回答，内容比较长一些，用来占预算");
+        }
+
+        ChatSessionStore.History history = store.history("s", 100);
+
+        int tokens = ChatSessionStore.estimateTokens(history.summary());
+        for (ChatSessionStore.Turn turn : history.turns()) {
+            tokens += turn.tokens();
+        }
+        assertTrue(tokens <= 100, "used " + tokens);
+        assertFalse(history.turns().isEmpty());
+        assertEquals(0, history.turns().size() % 2);
+        // 保留的是最近的几轮，按时间顺序
+        List<ChatSessionStore.Turn> turns = history.turns();
+        assertEquals("这是第19个回答，内容比较长一些，用来占预算", turns.get(turns.size() - 1).content());
+        assertEquals(ChatSessionStore.Turn.USER, turns.get(0).role());
+    }
+
+    @Test
+    void droppedTurnsAreSummarized() {
+        ChatSessionStore store = new ChatSessionStore(meterRegistry, 1 << 20, 100, 100, 30);
+        store.append("s", "怎么报名", "在活动详情页点击报名按钮，填写信息后提交即可。");
+        store.append("s", "时长怎么算", "以签到签退为准，审核后计入。");
+
+        ChatSessionStore.History history = store.history("s", 35);
+
+        assertEquals(2, history.turns().size());
+        assertEquals("时长怎么算", history.turns().get(0).content());
+        assertEquals("此前用户还问过：怎么报名", history.summary());
+        assertNull(store.history("s", 0).summary());
+    }
+
+    @Test
+    void sessionKeepsOnlyRecentTurns() {
+        ChatSessionStore store = new ChatSessionStore(meterRegistry, 1 << 20, 100, 4, 30);
+        for (int i = 0; i < 5; i++) {
+            store.append("s", "问" + i, "答" + i);
+        }
+
+        List<ChatSessionStore.Turn> turns = store.history("s", 1000).turns();
+
+        assertEquals(4, turns.size());
+        assertEquals("问3", turns.get(0).content());
+    }
+
+    @Test
+    void memoryCapEvictsLeastRecentlyUsedSessions() {
+        // 每个会话约 256 + 2 * (64 + 2 * 50) = 584 字节，上限只够两个
+        ChatSessionStore store = new ChatSessionStore(meterRegistry, 1200, 100, 40, 30);
+        String text = "字".repeat(50);
+        store.append("a", text, text);
+        store.append("b", text, text);
+        store.history("a", 100);
+        store.append("c", text, text);
+
+        assertTrue(store.hasHistory("a"));
+        assertFalse(store.hasHistory("b"));
+        assertTrue(store.hasHistory("c"));
+        assertTrue(store.getTotalBytes() <= 1200);
+        assertEquals(store.getTotalBytes(), meterRegistry.get("chat.session.bytes").gauge().value());
+        assertEquals(1, meterRegistry.get("chat.session.evicted").tag("reason", "memory").counter().count());
+
+        assertTrue(store.remove("a"));
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    void memoryCapAlsoTrimsTheCurrentSession() {
+        ChatSessionStore store = new ChatSessionStore(meterRegistry, 1200, 100, 40, 30);
+        String text = "字".repeat(50);
+        for (int i = 0; i < 5; i++) {
+            store.append("s", "问" + i + text, text);
+        }
+
+        assertTrue(store.getTotalBytes() <= 1200, "bytes " + store.getTotalBytes());
+        List<ChatSessionStore.Turn> turns = store.history("s", 10_000).turns();
+        assertEquals("问4" + text, turns.get(turns.size() - 2).content());
+        assertFalse(turns.stream().anyMatch(turn -> turn.content().startsWith("问0")));
+    }
+
+    @Test
+    void turnLargerThanTheWholeBudgetIsNotKept() {
+        ChatSessionStore store = new ChatSessionStore(meterRegistry, 1200, 100, 40, 30);
+        store.append("a", "怎么报名", "点报名按钮");
+        String huge = "字".repeat(1000);
+
+        store.append("b", huge, huge);
+
+        assertFalse(store.hasHistory("b"));
+        assertTrue(store.getTotalBytes() <= 1200);
+        assertEquals(0, store.getTotalBytes());
+        assertEquals(2, meterRegistry.get("chat.session.evicted").tag("reason", "memory").counter().count());
+    }
+}
@@ -0,0 +1,100 @@
+package com.student.webproject.common.pagination;
+
+import com.baomidou.mybatisplus.core.conditions.query.QueryWrapper;
+import com.baomidou.mybatisplus.core.metadata.IPage;
+import com.student.webproject.support.H2MybatisTestConfig;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.mapper.UserMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 各总数策略：分页数据一致，总数分别为精确值、缓存值 (写后失效)、估计值 (H2 退回精确值)、"已知存在的最后一条"
+ */
+@SpringJUnitConfig(H2MybatisTestConfig.class)
+class PageCounterTest {
+
+    private static final int USERS = 25;
+
+    @Autowired
+    private PageCounter pageCounter;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM users");
+        for (int i = 0; i < USERS; i++) {
+            insertUser("user" + i);
+        }
+        pageCounter.invalidate("users");
+    }
+
+    @Test
+    void exactCountsEveryTime() {
+        IPage<User> page = page(CountStrategy.EXACT, 3);
+        assertEquals(USERS, page.getTotal());
+        assertEquals(5, page.getRecords().size());
+
+        insertUser("late");
+        assertEquals(USERS + 1, page(CountStrategy.EXACT, 1).getTotal());
+    }
+
+    @Test
+    void cachedCountIsReusedUntilInvalidated() {
+        assertEquals(USERS, page(CountStrategy.CACHED, 1).getTotal());
+
+        insertUser("late");
+        IPage<User> stale = page(CountStrategy.CACHED, 3);
+        assertEquals(USERS, stale.getTotal());
+        assertEquals(6, stale.getRecords().size());
+
+        pageCounter.invalidate("users");
+        assertEquals(USERS + 1, page(CountStrategy.CACHED, 1).getTotal());
+    }
+
+    @Test
+    void estimatedFallsBackToExactWithoutTableStatistics() {
+        assertEquals(USERS, page(CountStrategy.ESTIMATED, 1).getTotal());
+    }
+
+    @Test
+    void hasNextFetchesOneExtraRowInsteadOfCounting() {
+        List<Long> expected = userMapper.selectList(new QueryWrapper<User>().orderByAsc("id")).stream().map(User::getId).toList();
+
+        IPage<User> first = page(CountStrategy.HAS_NEXT, 1);
+        assertEquals(expected.subList(0, 10), first.getRecords().stream().map(User::getId).toList());
+        assertEquals(11, first.getTotal());
+        assertEquals(2, first.getPages());
+
+        IPage<User> second = page(CountStrategy.HAS_NEXT, 2);
+        assertEquals(expected.subList(10, 20), second.getRecords().stream().map(User::getId).toList());
+        assertEquals(21, second.getTotal());
+
+        IPage<User> last = page(CountStrategy.HAS_NEXT, 3);
+        assertEquals(expected.subList(20, 25), last.getRecords().stream().map(User::getId).toList());
+        assertEquals(USERS, last.getTotal());
+        assertEquals(3, last.getPages());
+    }
+
+    private IPage<User> page(CountStrategy strategy, long current) {
+        return pageCounter.selectPage(strategy, current, 10, "users", null,
+                pageRequest -> userMapper.selectPage(pageRequest, new QueryWrapper<User>().orderByAsc("id")),
+                () -> userMapper.selectCount(null));
+    }
+
+    private void insertUser(String username) {
+        jdbcTemplate.update("INSERT INTO users (username, password) VALUES (?, 'x')", username);
+    }
+}
@@ -0,0 +1,52 @@
+package com.student.webproject.common.util;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 游标编解码：原样还原排序键；改过内容、字段数不对、不是 Base64、换了筛选条件的游标一律拒绝
+ */
+class CursorCodecTest {
+
+    @Test
+    void roundTripsSortKeys() {
+        String cursor = CursorCodec.encode("环保", "2026-03-01T09:00", 42L);
+        assertArrayEquals(new String[]{"2026-03-01T09:00", "42"}, CursorCodec.decode(cursor, "环保", 2));
+
+        // 没有筛选条件时 null 和空串等价
+        assertArrayEquals(new String[]{"7"}, CursorCodec.decode(CursorCodec.encode(null, 7L), "", 1));
+    }
+
+    @Test
+    void rejectsEditedCursor() {
+        String cursor = CursorCodec.encode(null, 42L);
+        String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        String edited = Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.replace(",42", ",43").getBytes(StandardCharsets.UTF_8));
+
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(edited, null, 1));
+        assertEquals("分页游标与当前筛选条件不符，请从第一页重新查询", e.getMessage());
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        String unsigned = Base64.getUrlEncoder().withoutPadding().encodeToString("42".getBytes(StandardCharsets.UTF_8));
+        for (String cursor : new String[]{"not a cursor!", unsigned, CursorCodec.encode(null, 1L, 2L)}) {
+            IllegalArgumentException e = assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(cursor, null, 1));
+            assertEquals("无效的分页游标", e.getMessage());
+        }
+    }
+
+    @Test
+    void rejectsCursorFromAnotherFilter() {
+        String cursor = CursorCodec.encode("环保", 42L);
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(cursor, "助老", 1));
+        assertThrows(IllegalArgumentException.class, () -> CursorCodec.decode(cursor, null, 1));
+    }
+}
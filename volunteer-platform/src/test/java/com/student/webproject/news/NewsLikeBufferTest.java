@@ -0,0 +1,192 @@
+package com.student.webproject.news;
+
+import com.student.webproject.support.H2MybatisTestConfig;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 点赞写后缓冲：并发点赞不丢计数、批量写库、空闲计数移出内存；
+ * 吞吐至少是原先逐次读写整行的 MIN_SPEEDUP 倍
+ */
+@SpringJUnitConfig(NewsLikeBufferTest.Config.class)
+class NewsLikeBufferTest {
+
+    private static final int THREADS = 16;
+    private static final int LIKES_PER_THREAD = 500;
+    // 缓冲路径 (含最后一次刷库) 相对逐次读写整行的最低吞吐倍数；H2 上实测约 400 倍，留足余量防止机器抖动误报
+    private static final double MIN_SPEEDUP = 20.0;
+
+    @Import({H2MybatisTestConfig.class, NewsLikeBuffer.class})
+    static class Config {
+    }
+
+    @Autowired
+    private NewsLikeBuffer likeBuffer;
+
+    @Autowired
+    private NewsMapper newsMapper;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long newsId;
+
+    @BeforeEach
+    void setUp() {
+        // 写完上一个测试留下的增量，第二次把它们的计数移出内存
+        likeBuffer.flush();
+        likeBuffer.flush();
+        jdbcTemplate.update("DELETE FROM news");
+        jdbcTemplate.update("INSERT INTO news (title, content, likes_count) VALUES ('植树活动回顾', '正文', 10)");
+        newsId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM news", Long.class);
+    }
+
+    @Test
+    void concurrentLikesAreAllPersistedAfterFlush() throws Exception {
+        List<Integer> returned = runConcurrently(() -> likeBuffer.like(newsId));
+
+        // 返回的点赞数在内存里就是准确的，最大值即最终计数
+        int expected = 10 + THREADS * LIKES_PER_THREAD;
+        assertEquals(expected, returned.stream().mapToInt(Integer::intValue).max().orElseThrow());
+        assertEquals(expected, likeBuffer.currentCount(newsId, 10));
+
+        likeBuffer.flush();
+        assertEquals(expected, likesInDatabase());
+        // 再次刷新不会重复写
+        likeBuffer.flush();
+        assertEquals(expected, likesInDatabase());
+    }
+
+    @Test
+    void likesDuringFlushAreNotLost() throws Exception {
+        ExecutorService flusher = Executors.newSingleThreadExecutor();
+        try {
+            CountDownLatch done = new CountDownLatch(1);
+            Future<?> flushing = flusher.submit(() -> {
+                while (done.getCount() > 0) {
+                    likeBuffer.flush();
+                }
+            });
+            runConcurrently(() -> likeBuffer.like(newsId));
+            done.countDown();
+            flushing.get();
+        } finally {
+            flusher.shutdownNow();
+        }
+        likeBuffer.flush();
+        assertEquals(10 + THREADS * LIKES_PER_THREAD, likesInDatabase());
+    }
+
+    @Test
+    void missingNewsReturnsNull() {
+        assertNull(likeBuffer.like(newsId + 1000));
+    }
+
+    @Test
+    void batchFlushPersistsEveryNewsCount() throws Exception {
+        jdbcTemplate.update("INSERT INTO news (title, content, likes_count) VALUES ('第二篇', '正文', 0)");
+        long otherId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM news", Long.class);
+
+        runConcurrently(() -> likeBuffer.like(newsId));
+        for (int i = 0; i < 7; i++) {
+            likeBuffer.like(otherId);
+        }
+        likeBuffer.flush();
+
+        assertEquals(10 + THREADS * LIKES_PER_THREAD, likesInDatabase());
+        assertEquals(7, jdbcTemplate.queryForObject("SELECT likes_count FROM news WHERE id = ?", Integer.class, otherId));
+    }
+
+    @Test
+    void idleCountersArePrunedAfterAFullCycle() {
+        likeBuffer.like(newsId);
+        likeBuffer.flush();
+        // 刚写过库的计数保留一轮
+        assertEquals(1.0, meterRegistry.get("news.like.tracked").gauge().value());
+
+        likeBuffer.flush();
+        assertEquals(0.0, meterRegistry.get("news.like.tracked").gauge().value());
+        assertEquals(11, likesInDatabase());
+
+        // 移除后再点赞从库里重新读计数
+        assertEquals(12, likeBuffer.like(newsId));
+        likeBuffer.flush();
+        assertEquals(12, likesInDatabase());
+    }
+
+    @Test
+    void bufferedLikesOutpaceReadModifyWrite() throws Exception {
+        // 原先的做法：读出整行，在 Java 里加一，再整行写回 (并发下还会丢计数)
+        long start = System.nanoTime();
+        runConcurrently(() -> {
+            News news = newsMapper.selectById(newsId);
+            news.setLikesCount(news.getLikesCount() + 1);
+            newsMapper.updateById(news);
+            return news.getLikesCount();
+        });
+        double directRate = THREADS * LIKES_PER_THREAD / ((System.nanoTime() - start) / 1e9);
+
+        jdbcTemplate.update("UPDATE news SET likes_count = 10 WHERE id = ?", newsId);
+        likeBuffer.flush();
+        likeBuffer.flush();
+        start = System.nanoTime();
+        runConcurrently(() -> likeBuffer.like(newsId));
+        likeBuffer.flush();
+        double bufferedRate = THREADS * LIKES_PER_THREAD / ((System.nanoTime() - start) / 1e9);
+
+        assertEquals(10 + THREADS * LIKES_PER_THREAD, likesInDatabase());
+        assertTrue(bufferedRate >= directRate * MIN_SPEEDUP, String.format(
+                "buffered %.0f likes/s should be at least %.0fx read-modify-write %.0f likes/s",
+                bufferedRate, MIN_SPEEDUP, directRate));
+    }
+
+    private int likesInDatabase() {
+        return jdbcTemplate.queryForObject("SELECT likes_count FROM news WHERE id = ?", Integer.class, newsId);
+    }
+
+    private static List<Integer> runConcurrently(Callable<Integer> like) throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<List<Integer>>> futures = new ArrayList<>();
+            for (int t = 0; t < THREADS; t++) {
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    List<Integer> counts = new ArrayList<>(LIKES_PER_THREAD);
+                    for (int i = 0; i < LIKES_PER_THREAD; i++) {
+                        counts.add(like.call());
+                    }
+                    return counts;
+                }));
+            }
+            start.countDown();
+            List<Integer> all = new ArrayList<>();
+            for (Future<List<Integer>> future : futures) {
+                all.addAll(future.get());
+            }
+            return all;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
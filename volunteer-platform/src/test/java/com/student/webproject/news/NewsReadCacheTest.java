@@ -0,0 +1,118 @@
+package com.student.webproject.news;
+
+import com.student.webproject.news.dto.NewsSummaryDTO;
+import com.student.webproject.news.dto.PageDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 新闻读缓存：修改新闻只失效包含它的页；发布、删除失效所有页；反向索引随淘汰和失效一起清理；
+ * 加载过程中发生的失效不会漏掉正在加载的页
+ */
+class NewsReadCacheTest {
+
+    private NewsReadCache cache;
+    private AtomicInteger loads;
+
+    @BeforeEach
+    void setUp() {
+        cache = new NewsReadCache(new SimpleMeterRegistry(), 200, 1000, 600);
+        loads = new AtomicInteger();
+    }
+
+    @Test
+    void updateOnlyDropsPagesContainingTheNews() {
+        cache.getPage(1, 2, page(1, 2));
+        cache.getPage(2, 2, page(3, 4));
+        cache.getPage(1, 5, page(1, 5));
+        loads.set(0);
+
+        cache.onNewsUpdated(2L);
+
+        cache.getPage(1, 2, page(1, 2));
+        cache.getPage(1, 5, page(1, 5));
+        assertEquals(2, loads.get());
+        cache.getPage(2, 2, page(3, 4));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void addOrRemoveDropsEveryPageAndItsIndex() {
+        cache.getPage(1, 2, page(1, 2));
+        cache.getPage(2, 2, page(3, 4));
+        assertEquals(4, cache.indexedNewsCount());
+        loads.set(0);
+
+        cache.onNewsAddedOrRemoved(9L);
+
+        assertEquals(0, cache.indexedNewsCount());
+        cache.getPage(1, 2, page(1, 2));
+        cache.getPage(2, 2, page(3, 4));
+        assertEquals(2, loads.get());
+    }
+
+    @Test
+    void sizeEvictionAlsoUnindexesThePage() {
+        NewsReadCache small = new NewsReadCache(new SimpleMeterRegistry(), 1, 10, 600);
+        for (int p = 0; p < 20; p++) {
+            small.getPage(p + 1, 2, page(p * 2 + 1, p * 2 + 2));
+        }
+        small.onNewsAddedOrRemoved(99L);
+        assertEquals(0, small.indexedNewsCount());
+    }
+
+    @Test
+    void updateDuringALoadDropsTheLoadedPage() throws Exception {
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        // 查库已经读到旧数据，页还没放进缓存时，修改提交并失效
+        CompletableFuture<PageDTO<NewsSummaryDTO>> load = CompletableFuture.supplyAsync(
+                () -> cache.getPage(1, 2, blocked(page(1, 2), loading, release)));
+        assertTrue(loading.await(5, TimeUnit.SECONDS));
+        cache.onNewsUpdated(2L);
+        release.countDown();
+        load.get(5, TimeUnit.SECONDS);
+
+        cache.getPage(1, 2, page(1, 2));
+        assertEquals(2, loads.get());
+        assertEquals(2, cache.indexedNewsCount());
+    }
+
+    private Supplier<PageDTO<NewsSummaryDTO>> page(long firstId, long lastId) {
+        return () -> {
+            loads.incrementAndGet();
+            List<NewsSummaryDTO> list = LongStream.rangeClosed(firstId, lastId).mapToObj(id -> {
+                NewsSummaryDTO item = new NewsSummaryDTO();
+                item.setId(id);
+                return item;
+            }).toList();
+            return new PageDTO<>(list.size(), list);
+        };
+    }
+
+    private static Supplier<PageDTO<NewsSummaryDTO>> blocked(Supplier<PageDTO<NewsSummaryDTO>> loader,
+                                                             CountDownLatch loading, CountDownLatch release) {
+        return () -> {
+            PageDTO<NewsSummaryDTO> page = loader.get();
+            loading.countDown();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return page;
+        };
+    }
+}
@@ -0,0 +1,125 @@
+package com.student.webproject.news;
+
+import com.student.webproject.admin.service.impl.NewsAdminServiceImpl;
+import com.student.webproject.chat.knowledge.PlatformKnowledgeBase;
+import com.student.webproject.news.dto.NewsCreateDTO;
+import com.student.webproject.news.dto.NewsDetailDTO;
+import com.student.webproject.news.dto.NewsSummaryDTO;
+import com.student.webproject.news.dto.NewsUpdateDTO;
+import com.student.webproject.security.LoginUser;
+import com.student.webproject.support.H2MybatisTestConfig;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * 新闻列表、详情走缓存，后台写操作后立即可见，点赞数始终是实时的
+ */
+@SpringJUnitConfig(NewsServiceCacheTest.Config.class)
+class NewsServiceCacheTest {
+
+    @Import({H2MybatisTestConfig.class, NewsLikeBuffer.class, NewsReadCache.class, NewsService.class,
+            NewsAdminServiceImpl.class})
+    static class Config {
+
+        @Bean
+        PlatformKnowledgeBase platformKnowledgeBase() {
+            return Mockito.mock(PlatformKnowledgeBase.class);
+        }
+    }
+
+    @Autowired
+    private NewsService newsService;
+
+    @Autowired
+    private NewsAdminServiceImpl newsAdminService;
+
+    @Autowired
+    private NewsLikeBuffer likeBuffer;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private long newsId;
+
+    @BeforeEach
+    void setUp() {
+        // 经由后台删除，顺带清掉上一个用例留下的缓存
+        jdbcTemplate.queryForList("SELECT id FROM news", Long.class).forEach(newsAdminService::deleteNews);
+        jdbcTemplate.update("INSERT INTO news (title, content, likes_count, published_at) "
+                + "VALUES ('植树活动回顾', '正文', 5, DATEADD('HOUR', -1, NOW()))");
+        newsId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM news", Long.class);
+    }
+
+    @Test
+    void servesFeedAndDetailFromCacheUntilAdminWrites() {
+        assertEquals("植树活动回顾", titles().get(0));
+        assertEquals("正文", newsService.findNewsDetailById(newsId).getContent());
+
+        // 绕过后台直接改库：缓存不感知，仍返回旧内容
+        jdbcTemplate.update("UPDATE news SET title = '直接改库', content = '新正文' WHERE id = ?", newsId);
+        assertEquals("植树活动回顾", titles().get(0));
+        assertEquals("正文", newsService.findNewsDetailById(newsId).getContent());
+
+        // 后台修改后立即可见
+        newsAdminService.updateNews(newsId, update("后台修改"));
+        assertEquals("后台修改", titles().get(0));
+        assertEquals("后台修改", newsService.findNewsDetailById(newsId).getTitle());
+    }
+
+    @Test
+    void createAndDeleteInvalidateFeed() {
+        assertEquals(1, titles().size());
+
+        NewsCreateDTO dto = new NewsCreateDTO();
+        dto.setTitle("新发布");
+        dto.setContent("正文");
+        long created = newsAdminService.createNews(dto, new LoginUser(1L, "admin", "admin")).getData().getId();
+        assertEquals(List.of("新发布", "植树活动回顾"), titles());
+
+        newsAdminService.deleteNews(created);
+        assertEquals(List.of("植树活动回顾"), titles());
+        assertNull(newsService.findNewsDetailById(created));
+    }
+
+    @Test
+    void likesAreOverlaidOnCachedEntries() {
+        assertEquals(5, newsService.findNewsDetailById(newsId).getLikesCount());
+        assertEquals(5, newsService.findNewsPage(1, 10).getList().get(0).getLikesCount());
+
+        newsService.likeNews(newsId);
+        newsService.likeNews(newsId);
+
+        NewsDetailDTO detail = newsService.findNewsDetailById(newsId);
+        assertEquals(7, detail.getLikesCount());
+        assertEquals(7, newsService.findNewsPage(1, 10).getList().get(0).getLikesCount());
+        // 返回的是副本，缓存里的条目不受影响
+        detail.setLikesCount(0);
+        assertEquals(7, newsService.findNewsDetailById(newsId).getLikesCount());
+
+        likeBuffer.flush();
+        newsAdminService.updateNews(newsId, update("植树活动回顾"));
+        assertEquals(7, newsService.findNewsDetailById(newsId).getLikesCount());
+    }
+
+    private List<String> titles() {
+        return newsService.findNewsPage(1, 10).getList().stream().map(NewsSummaryDTO::getTitle).toList();
+    }
+
+    private static NewsUpdateDTO update(String title) {
+        NewsUpdateDTO dto = new NewsUpdateDTO();
+        dto.setTitle(title);
+        dto.setContent("正文");
+        return dto;
+    }
+}
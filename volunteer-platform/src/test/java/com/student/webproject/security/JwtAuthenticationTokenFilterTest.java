@@ -0,0 +1,254 @@
+package com.student.webproject.security;
+
+import com.auth0.jwt.JWT;
+import com.auth0.jwt.algorithms.Algorithm;
+import com.student.webproject.support.H2MybatisTestConfig;
+import com.student.webproject.support.StatementCounter;
+import com.student.webproject.user.Entity.User;
+import com.student.webproject.user.Service.AuthService;
+import com.student.webproject.user.Service.impl.UserDetailsServiceImpl;
+import com.student.webproject.user.controller.AuthController;
+import com.student.webproject.user.dto.UserLoginDTO;
+import com.student.webproject.user.mapper.UserMapper;
+import com.student.webproject.user.util.JwtUtils;
+import org.apache.ibatis.session.SqlSessionFactory;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.Mockito;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.ProviderManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.authentication.dao.DaoAuthenticationProvider;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.crypto.factory.PasswordEncoderFactories;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.context.junit.jupiter.SpringJUnitConfig;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Token 认证：新版 Token 只核对版本号，改密码/删除用户后旧 Token 立即失效；
+ * 篡改、过期、换密钥签发的 Token 一律不认；没有版本号的旧版 Token 无法吊销，同样不认 (也不查库)；
+ * 新版 Token 在版本号缓存命中后不查库；登录只查一次库，查到的用户在认证完成后不再带着密码哈希
+ */
+@SpringJUnitConfig(JwtAuthenticationTokenFilterTest.Config.class)
+@TestPropertySource(properties = {"jwt.secret-key=test-secret", "jwt.expire-time=3600000"})
+class JwtAuthenticationTokenFilterTest {
+
+    @Import({H2MybatisTestConfig.class, JwtUtils.class, TokenVersionCache.class,
+            UserDetailsServiceImpl.class, JwtAuthenticationTokenFilter.class, AuthController.class})
+    static class Config {
+
+        @Bean
+        AuthenticationManager authenticationManager(UserDetailsServiceImpl userDetailsService) {
+            DaoAuthenticationProvider provider = new DaoAuthenticationProvider();
+            provider.setUserDetailsService(userDetailsService);
+            provider.setPasswordEncoder(PasswordEncoderFactories.createDelegatingPasswordEncoder());
+            return new ProviderManager(provider);
+        }
+
+        @Bean
+        AuthService authService() {
+            return Mockito.mock(AuthService.class);
+        }
+
+        @Bean
+        StatementCounter statementCounter(SqlSessionFactory sqlSessionFactory) {
+            return new StatementCounter(sqlSessionFactory);
+        }
+    }
+
+    @Autowired
+    private JwtAuthenticationTokenFilter filter;
+
+    @Autowired
+    private JwtUtils jwtUtils;
+
+    @Autowired
+    private TokenVersionCache tokenVersionCache;
+
+    @Autowired
+    private UserMapper userMapper;
+
+    @Autowired
+    private AuthenticationManager authenticationManager;
+
+    @Autowired
+    private AuthController authController;
+
+    @Autowired
+    private StatementCounter statementCounter;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    private User user;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate.update("DELETE FROM users");
+        jdbcTemplate.update("INSERT INTO users (username, password, role) VALUES ('alice', '{noop}secret', 'student')");
+        user = userMapper.selectById(jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = 'alice'", Long.class));
+        SecurityContextHolder.clearContext();
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void currentTokenAuthenticatesFromClaims() throws Exception {
+        Authentication authentication = authenticate(jwtUtils.generateToken(user));
+
+        assertNotNull(authentication);
+        LoginUser principal = (LoginUser) authentication.getPrincipal();
+        assertEquals(user.getId(), principal.getId());
+        assertEquals("student", principal.getRole());
+    }
+
+    @Test
+    void tokenIssuedBeforePasswordChangeIsRejected() throws Exception {
+        String token = jwtUtils.generateToken(user);
+        // 先让版本号进缓存，确认吊销会清掉它
+        assertNotNull(authenticate(token));
+
+        tokenVersionCache.revoke(user.getId());
+
+        assertNull(authenticate(token));
+        assertNotNull(authenticate(jwtUtils.generateToken(userMapper.selectById(user.getId()))));
+    }
+
+    @Test
+    void tokenOfDeletedUserIsRejected() throws Exception {
+        String token = jwtUtils.generateToken(user);
+        assertNotNull(authenticate(token));
+
+        userMapper.deleteById(user.getId());
+        tokenVersionCache.evict(user.getId());
+
+        assertNull(authenticate(token));
+    }
+
+    @Test
+    void tamperedExpiredOrForeignTokensAreRejected() throws Exception {
+        String token = jwtUtils.generateToken(user);
+        String[] parts = token.split("\\.");
+        String payload = new String(Base64.getUrlDecoder().decode(parts[1]), StandardCharsets.UTF_8)
+                .replace("\"student\"", "\"super_admin\"");
+        String tampered = parts[0] + "." + Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(payload.getBytes(StandardCharsets.UTF_8)) + "." + parts[2];
+        assertNull(authenticate(tampered));
+
+        String expired = JWT.create()
+                .withClaim(JwtUtils.CLAIM_USER_ID, user.getId())
+                .withClaim(JwtUtils.CLAIM_USERNAME, "alice")
+                .withClaim(JwtUtils.CLAIM_ROLE, "student")
+                .withClaim(JwtUtils.CLAIM_VERSION, 0)
+                .withExpiresAt(new Date(System.currentTimeMillis() - 60_000))
+                .sign(Algorithm.HMAC256("test-secret"));
+        assertNull(authenticate(expired));
+
+        String foreign = JWT.create()
+                .withClaim(JwtUtils.CLAIM_USER_ID, user.getId())
+                .withClaim(JwtUtils.CLAIM_USERNAME, "alice")
+                .withClaim(JwtUtils.CLAIM_ROLE, "super_admin")
+                .withClaim(JwtUtils.CLAIM_VERSION, 0)
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("another-secret"));
+        assertNull(authenticate(foreign));
+    }
+
+    @Test
+    void legacyTokenWithoutVersionIsRejected() throws Exception {
+        // 升级前签发的 Token 只有用户名
+        String legacy = JWT.create()
+                .withClaim(JwtUtils.CLAIM_USERNAME, "alice")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("test-secret"));
+        String withoutVersion = JWT.create()
+                .withClaim(JwtUtils.CLAIM_USER_ID, user.getId())
+                .withClaim(JwtUtils.CLAIM_USERNAME, "alice")
+                .withClaim(JwtUtils.CLAIM_ROLE, "student")
+                .withExpiresAt(new Date(System.currentTimeMillis() + 60_000))
+                .sign(Algorithm.HMAC256("test-secret"));
+        statementCounter.reset();
+
+        assertNull(authenticate(legacy));
+        assertNull(authenticate(withoutVersion));
+        assertEquals(0, statementCounter.count(), statementCounter.statements().toString());
+    }
+
+    @Test
+    void currentTokenNeedsNoQueryOnceItsVersionIsCached() throws Exception {
+        String token = jwtUtils.generateToken(user);
+        statementCounter.reset();
+
+        assertNotNull(authenticate(token));
+        assertEquals(List.of("UserMapper.selectTokenVersion"), statementCounter.statements());
+
+        statementCounter.reset();
+        assertNotNull(authenticate(token));
+        assertNotNull(authenticate(token));
+        assertEquals(0, statementCounter.count(), statementCounter.statements().toString());
+    }
+
+    @Test
+    void loginChecksThePasswordThenErasesIt() {
+        statementCounter.reset();
+
+        Authentication authentication = authenticationManager.authenticate(
+                new UsernamePasswordAuthenticationToken("alice", "secret"));
+
+        assertEquals(1, statementCounter.count(), statementCounter.statements().toString());
+        LoginUser principal = (LoginUser) authentication.getPrincipal();
+        assertEquals(user.getId(), principal.getId());
+        assertNull(principal.getPassword());
+        assertNull(authentication.getCredentials());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void loginIssuesATokenWithASingleQuery() throws Exception {
+        jdbcTemplate.update("UPDATE users SET token_version = 3, avatar_url = '/a.png' WHERE id = ?", user.getId());
+        UserLoginDTO dto = new UserLoginDTO();
+        dto.setUsername("alice");
+        dto.setPassword("secret");
+        statementCounter.reset();
+
+        String token = ((Map<String, String>) authController.login(dto).getData()).get("token");
+
+        // 只有认证时按用户名查的那一次
+        assertEquals(1, statementCounter.count(), statementCounter.statements().toString());
+        assertEquals(3, jwtUtils.verify(token).getClaim(JwtUtils.CLAIM_VERSION).asInt());
+        assertEquals("/a.png", jwtUtils.verify(token).getClaim("avatarUrl").asString());
+        LoginUser principal = (LoginUser) authenticate(token).getPrincipal();
+        assertEquals(user.getId(), principal.getId());
+        assertEquals("student", principal.getRole());
+    }
+
+    private Authentication authenticate(String token) throws Exception {
+        SecurityContextHolder.clearContext();
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/users/me");
+        request.addHeader("Authorization", "Bearer " + token);
+        filter.doFilter(request, new MockHttpServletResponse(), new MockFilterChain());
+        return SecurityContextHolder.getContext().getAuthentication();
+    }
+}
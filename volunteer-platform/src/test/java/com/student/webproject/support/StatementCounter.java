@@ -0,0 +1,51 @@
+package com.student.webproject.support;
+
+import com.baomidou.mybatisplus.core.toolkit.PluginUtils;
+import org.apache.ibatis.executor.statement.StatementHandler;
+import org.apache.ibatis.plugin.Interceptor;
+import org.apache.ibatis.plugin.Intercepts;
+import org.apache.ibatis.plugin.Invocation;
+import org.apache.ibatis.plugin.Signature;
+import org.apache.ibatis.session.SqlSessionFactory;
+
+import java.sql.Connection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 统计经过 MyBatis 执行的 SQL 语句，用于断言某个操作要查几次库
+ * 在 SqlSessionFactory 上注册为插件，记录每条语句对应的 Mapper 方法
+ */
+@Intercepts(@Signature(type = StatementHandler.class, method = "prepare", args = {Connection.class, Integer.class}))
+public class StatementCounter implements Interceptor {
+
+    private final List<String> statements = new CopyOnWriteArrayList<>();
+
+    public StatementCounter(SqlSessionFactory sqlSessionFactory) {
+        sqlSessionFactory.getConfiguration().addInterceptor(this);
+    }
+
+    @Override
+    public Object intercept(Invocation invocation) throws Throwable {
+        String id = PluginUtils.mpStatementHandler((StatementHandler) invocation.getTarget()).mappedStatement().getId();
+        // 只留 "Mapper.方法"，断言失败时一眼看出多查了哪条
+        String[] parts = id.split("\\.");
+        statements.add(parts.length < 2 ? id : parts[parts.length - 2] + "." + parts[parts.length - 1]);
+        return invocation.proceed();
+    }
+
+    public void reset() {
+        statements.clear();
+    }
+
+    public int count() {
+        return statements.size();
+    }
+
+    /**
+     * 已执行的语句，按执行顺序
+     */
+    public List<String> statements() {
+        return List.copyOf(statements);
+    }
+}
@@ -0,0 +1,156 @@
+package com.student.webproject.support;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 本地的 AI 对话上游替身 (JDK 自带 HttpServer)，用于测试超时、连接复用和错误处理
+ * 默认返回一条 OpenAI 兼容格式的补全结果，可调整状态码、延迟，改成逐字节慢慢吐出响应体，或以 SSE 逐段推送。
+ */
+public class StubChatUpstream implements AutoCloseable {
+
+    private final HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final Set<Integer> clientPorts = ConcurrentHashMap.newKeySet();
+
+    private volatile int status = 200;
+    private volatile String body = completion("你好，我是测试助手。");
+    private volatile long delayMs;
+    // > 0 时响应体每隔这么多毫秒写一个字节
+    private volatile long trickleIntervalMs;
+    // 非空时以 SSE 逐段推送这些增量，每段间隔 streamIntervalMs
+    private volatile List<String> streamDeltas;
+    private volatile long streamIntervalMs;
+    private final CountDownLatch streamAborted = new CountDownLatch(1);
+    private volatile String lastRequestBody;
+
+    public StubChatUpstream() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/", this::handle);
+        server.setExecutor(Executors.newCachedThreadPool());
+        server.start();
+    }
+
+    public String url() {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + "/v1/chat/completions";
+    }
+
+    public StubChatUpstream respond(int status, String body) {
+        this.status = status;
+        this.body = body;
+        return this;
+    }
+
+    public StubChatUpstream delay(long delayMs) {
+        this.delayMs = delayMs;
+        return this;
+    }
+
+    public StubChatUpstream trickle(long intervalMs) {
+        this.trickleIntervalMs = intervalMs;
+        return this;
+    }
+
+    public StubChatUpstream stream(long intervalMs, String... deltas) {
+        this.streamDeltas = List.of(deltas);
+        this.streamIntervalMs = intervalMs;
+        return this;
+    }
+
+    /**
+     * 等待客户端在流式响应推送完之前断开
+     */
+    public boolean awaitStreamAborted(long timeoutMs) throws InterruptedException {
+        return streamAborted.await(timeoutMs, TimeUnit.MILLISECONDS);
+    }
+
+    public String lastRequestBody() {
+        return lastRequestBody;
+    }
+
+    public int requestCount() {
+        return requests.get();
+    }
+
+    /**
+     * 收到的请求来自多少个不同的客户端连接
+     */
+    public int connectionCount() {
+        return clientPorts.size();
+    }
+
+    public static String completion(String content) {
+        return "{\"choices\":[{\"message\":{\"role\":\"assistant\",\"content\":\"" + content + "\"}}]}";
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        requests.incrementAndGet();
+        clientPorts.add(exchange.getRemoteAddress().getPort());
+        lastRequestBody = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+        try {
+            if (delayMs > 0) {
+                Thread.sleep(delayMs);
+            }
+            if (status == 200 && streamDeltas != null) {
+                writeStream(exchange);
+                return;
+            }
+            byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(status, bytes.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                if (trickleIntervalMs > 0) {
+                    for (byte b : bytes) {
+                        out.write(b);
+                        out.flush();
+                        Thread.sleep(trickleIntervalMs);
+                    }
+                } else {
+                    out.write(bytes);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            // 客户端已断开
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private void writeStream(HttpExchange exchange) throws IOException, InterruptedException {
+        exchange.getResponseHeaders().set("Content-Type", "text/event-stream");
+        exchange.sendResponseHeaders(200, 0);
+        OutputStream out = exchange.getResponseBody();
+        try {
+            for (String delta : streamDeltas) {
+                String chunk = "{\"choices\":[{\"delta\":{\"content\":\"" + delta + "\"}}]}";
+                out.write(("data: " + chunk + "\n\n").getBytes(StandardCharsets.UTF_8));
+                out.flush();
+                Thread.sleep(streamIntervalMs);
+            }
+            out.write("data: [DONE]\n\n".getBytes(StandardCharsets.UTF_8));
+            out.flush();
+        } catch (IOException e) {
+            streamAborted.countDown();
+            throw e;
+        }
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
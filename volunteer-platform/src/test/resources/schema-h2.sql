@@ -0,0 +1,130 @@
+-- 测试用表结构，与 SQL/V1__initial_schema.sql 保持一致 (去掉了 H2 不支持的 COMMENT / UNSIGNED)
+
+CREATE TABLE `users` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `student_id` VARCHAR(50) NULL UNIQUE,
+    `username` VARCHAR(50) NOT NULL UNIQUE,
+    `password` VARCHAR(255) NOT NULL,
+    `real_name` VARCHAR(50) NULL,
+    `email` VARCHAR(100) NULL UNIQUE,
+    `phone_number` VARCHAR(20) NULL UNIQUE,
+    `avatar_url` VARCHAR(255) NULL,
+    `role` VARCHAR(20) NOT NULL DEFAULT 'volunteer',
+    `total_service_hours` DECIMAL(10, 2) NOT NULL DEFAULT 0.00,
+    `status` TINYINT NOT NULL DEFAULT 1,
+    `token_version` INT NOT NULL DEFAULT 0,
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `activities` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `title` VARCHAR(255) NOT NULL,
+    `description` TEXT NULL,
+    `cover_image_url` VARCHAR(255) NULL,
+    `category` VARCHAR(50) NULL,
+    `location` VARCHAR(255) NULL,
+    `start_time` DATETIME NOT NULL,
+    `end_time` DATETIME NOT NULL,
+    `organizer_id` BIGINT NULL,
+    `recruitment_quota` INT NOT NULL DEFAULT 0,
+    `current_enrollment` INT NOT NULL DEFAULT 0,
+    `status` VARCHAR(20) NOT NULL DEFAULT 'recruiting',
+    `created_by` BIGINT NULL,
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    INDEX `idx_category_id` (`category`, `id`)
+);
+
+CREATE TABLE `enrollments` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `user_id` BIGINT NOT NULL,
+    `activity_id` BIGINT NOT NULL,
+    `status` VARCHAR(20) NOT NULL DEFAULT 'enrolled',
+    `enrolled_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    CONSTRAINT `uq_user_activity` UNIQUE (`user_id`, `activity_id`),
+    CONSTRAINT `fk_enroll_user` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE,
+    CONSTRAINT `fk_enroll_activity` FOREIGN KEY (`activity_id`) REFERENCES `activities` (`id`) ON DELETE CASCADE
+);
+
+CREATE TABLE `service_records` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `user_id` BIGINT NOT NULL,
+    `activity_id` BIGINT NOT NULL,
+    `service_hours` DECIMAL(10, 2) NOT NULL,
+    `record_method` VARCHAR(20) NOT NULL DEFAULT 'manual',
+    `recorded_by` BIGINT NULL,
+    `remarks` VARCHAR(500) NULL,
+    `recorded_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    CONSTRAINT `uq_record_user_activity` UNIQUE (`user_id`, `activity_id`),
+    INDEX `idx_recorded` (`recorded_at`, `id`),
+    INDEX `idx_activity_recorded` (`activity_id`, `recorded_at`, `id`),
+    INDEX `idx_user_recorded` (`user_id`, `recorded_at`, `id`),
+    CONSTRAINT `fk_record_user` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE,
+    CONSTRAINT `fk_record_activity` FOREIGN KEY (`activity_id`) REFERENCES `activities` (`id`) ON DELETE CASCADE
+);
+
+-- 流水表会被大量并发事务同时追加，H2 的自增列在这种情况下偶发分配出重复值，改用独立序列
+CREATE SEQUENCE `service_hour_ledger_seq`;
+
+CREATE TABLE `service_hour_ledger` (
+    `id` BIGINT NOT NULL DEFAULT NEXT VALUE FOR `service_hour_ledger_seq`,
+    `user_id` BIGINT NOT NULL,
+    `service_record_id` BIGINT NULL,
+    `activity_id` BIGINT NULL,
+    `delta` DECIMAL(10, 2) NOT NULL,
+    `reason` VARCHAR(20) NOT NULL,
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`),
+    INDEX `idx_ledger_user` (`user_id`, `id`),
+    CONSTRAINT `fk_ledger_user` FOREIGN KEY (`user_id`) REFERENCES `users` (`id`) ON DELETE CASCADE
+);
+
+CREATE TABLE `news` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `title` VARCHAR(255) NOT NULL,
+    `summary` TEXT NULL,
+    `content` TEXT NOT NULL,
+    `author_id` BIGINT NULL,
+    `likes_count` INT NOT NULL DEFAULT 0,
+    `comments_count` INT NOT NULL DEFAULT 0,
+    `favorites_count` INT NOT NULL DEFAULT 0,
+    `published_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `updated_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (`id`)
+);
+
+CREATE TABLE `import_jobs` (
+    `id` VARCHAR(36) NOT NULL,
+    `activity_id` BIGINT NOT NULL,
+    `file_name` VARCHAR(255) NULL,
+    `spool_path` VARCHAR(500) NOT NULL,
+    `node_id` VARCHAR(100) NOT NULL,
+    `status` VARCHAR(20) NOT NULL DEFAULT 'queued',
+    `total_rows` INT NULL,
+    `processed_rows` INT NOT NULL DEFAULT 0,
+    `success_rows` INT NOT NULL DEFAULT 0,
+    `failed_rows` INT NOT NULL DEFAULT 0,
+    `last_row_index` INT NOT NULL DEFAULT 0,
+    `message` VARCHAR(500) NULL,
+    `created_by` BIGINT NULL,
+    `created_at` DATETIME NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    `started_at` DATETIME NULL,
+    `finished_at` DATETIME NULL,
+    PRIMARY KEY (`id`),
+    INDEX `idx_node_status` (`node_id`, `status`)
+);
+
+CREATE TABLE `import_job_errors` (
+    `id` BIGINT NOT NULL AUTO_INCREMENT,
+    `job_id` VARCHAR(36) NOT NULL,
+    `row_num` INT NOT NULL,
+    `message` VARCHAR(500) NOT NULL,
+    PRIMARY KEY (`id`),
+    INDEX `idx_job_row` (`job_id`, `row_num`),
+    CONSTRAINT `fk_import_error_job` FOREIGN KEY (`job_id`) REFERENCES `import_jobs` (`id`) ON DELETE CASCADE
+);